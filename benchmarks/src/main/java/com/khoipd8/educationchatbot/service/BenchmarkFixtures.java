@@ -0,0 +1,76 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.khoipd8.educationchatbot.entity.Program;
+import com.khoipd8.educationchatbot.entity.University;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Đọc fixtures đã commit trong src/main/resources/fixtures (HTML trang điểm chuẩn, JSON thpt-get-block,
+ * text kết quả tra cứu SBD, danh sách trường và câu hỏi mẫu) để mọi lần chạy đo trên cùng dữ liệu.
+ */
+final class BenchmarkFixtures {
+
+    static final String UNIVERSITY_PAGE_URL = "https://diemthi.tuyensinh247.com/diem-chuan/dai-hoc-bach-khoa-ha-noi-BKA.html";
+
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private BenchmarkFixtures() {}
+
+    static byte[] bytes(String name) {
+        try (InputStream in = BenchmarkFixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing fixture: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String text(String name) {
+        return new String(bytes(name), StandardCharsets.UTF_8);
+    }
+
+    static List<String> queries() {
+        return Arrays.stream(text("queries.txt").split("\n"))
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .toList();
+    }
+
+    static Map<String, Object> thptGetBlockResponse() {
+        try {
+            return MAPPER.readValue(bytes("thpt-get-block.json"), new TypeReference<>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Trường + ngành mẫu (giống dữ liệu sau khi crawl), gắn lại quan hệ program -> university
+     */
+    static List<University> universities() {
+        try {
+            List<University> universities = MAPPER.readValue(bytes("universities.json"), new TypeReference<>() {});
+            for (University university : universities) {
+                for (Program program : university.getPrograms()) {
+                    program.setUniversity(university);
+                }
+            }
+            return universities;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
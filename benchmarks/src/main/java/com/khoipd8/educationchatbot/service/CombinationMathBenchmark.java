@@ -0,0 +1,49 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.StudentScore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tính tổng điểm / tổ hợp đủ điều kiện từ điểm môn (SubjectVector + CombinationTable),
+ * với điểm lấy từ fixtures/thpt-get-block.json.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Thread)
+public class CombinationMathBenchmark {
+
+    private StudentScore studentScore;
+    private SubjectVector vector;
+    private double[] totals;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        Map<String, Object> apiData = (Map<String, Object>) BenchmarkFixtures.thptGetBlockResponse().get("data");
+        studentScore = new SBDLookupService().buildStudentScoreFromAPIData(apiData, "Toàn quốc");
+        vector = new SubjectVector();
+        totals = new double[CombinationTable.size()];
+    }
+
+    @Benchmark
+    public SubjectVector subjectVectorOf() {
+        return SubjectVector.of(studentScore);
+    }
+
+    @Benchmark
+    public int computeTotals() {
+        return CombinationTable.computeTotals(vector.load(studentScore), totals);
+    }
+
+    @Benchmark
+    public List<String> eligibleCodes() {
+        return CombinationTable.eligibleCodes(vector.load(studentScore));
+    }
+}
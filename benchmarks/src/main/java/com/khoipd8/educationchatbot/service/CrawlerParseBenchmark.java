@@ -0,0 +1,73 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.dto.UniversityInfo;
+import com.khoipd8.educationchatbot.entity.Program;
+import com.khoipd8.educationchatbot.entity.University;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse trang điểm chuẩn (fixtures/university-page.html: 9 bảng x 42 ngành, kèm nav/quảng cáo như trang thật).
+ * parseHtml + crawlProgramsFixed tách riêng để biết thời gian nằm ở jsoup hay ở bước đọc bảng.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class CrawlerParseBenchmark {
+
+    private TuyenSinh247CrawlerService crawlerService;
+    private UniversityInfo info;
+    private byte[] rawPage;
+    private String html;
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        crawlerService = new TuyenSinh247CrawlerService();
+        info = new UniversityInfo();
+        info.setCode("BKA");
+        info.setName("Đại học Bách Khoa Hà Nội");
+        info.setUrl(BenchmarkFixtures.UNIVERSITY_PAGE_URL);
+
+        rawPage = BenchmarkFixtures.bytes("university-page.html");
+        html = BenchmarkFixtures.text("university-page.html");
+        document = Jsoup.parse(html, info.getUrl());
+    }
+
+    @Benchmark
+    public Document parseHtml() {
+        return Jsoup.parse(html, info.getUrl());
+    }
+
+    @Benchmark
+    public List<Program> crawlProgramsFixed() {
+        return crawlerService.crawlProgramsFixed(document, new University());
+    }
+
+    @Benchmark
+    public University parseUniversityDetails() {
+        return crawlerService.parseUniversityDetails(info, document);
+    }
+
+    @Benchmark
+    public String contentHash() {
+        return crawlerService.contentHash(document);
+    }
+
+    /**
+     * Đường đi thật của 1 trang: bytes -> Document -> University (như fetchUniversityPage + processFetchedPage)
+     */
+    @Benchmark
+    public University parseFromBytes() throws Exception {
+        Document doc = Jsoup.parse(new ByteArrayInputStream(rawPage), null, info.getUrl());
+        return crawlerService.parseUniversityDetails(info, doc);
+    }
+}
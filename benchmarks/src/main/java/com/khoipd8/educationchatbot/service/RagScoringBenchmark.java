@@ -0,0 +1,72 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.University;
+import com.khoipd8.educationchatbot.service.EnhancedRAGService.DocumentChunk;
+import com.khoipd8.educationchatbot.service.EnhancedRAGService.QueryContext;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chấm điểm / tìm chunk cho RAG. Chunks sinh từ fixtures/universities.json (20 trường x 18 ngành)
+ * bằng EnhancedRAGService.createEnhancedChunks như lúc index thật.
+ * Mỗi operation chạy hết các câu hỏi trong fixtures/queries.txt.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class RagScoringBenchmark {
+
+    private ChatGPTRAGService chatGPTRAGService;
+    private EnhancedRAGService enhancedRAGService;
+    private List<DocumentChunk> chunks;
+    private List<String> queries;
+    private List<QueryContext> queryContexts;
+
+    @Setup
+    public void setUp() {
+        chatGPTRAGService = new ChatGPTRAGService();
+        enhancedRAGService = new EnhancedRAGService();
+
+        chunks = new ArrayList<>();
+        for (University university : BenchmarkFixtures.universities()) {
+            chunks.addAll(enhancedRAGService.createEnhancedChunks(university));
+        }
+        queries = BenchmarkFixtures.queries();
+        queryContexts = queries.stream().map(enhancedRAGService::analyzeQuery).toList();
+    }
+
+    /**
+     * calculateRelevanceScore cho mọi cặp (câu hỏi, chunk) - đúng khối lượng của searchRelevantChunks khi sort
+     */
+    @Benchmark
+    public double calculateRelevanceScore() {
+        double total = 0;
+        for (String query : queries) {
+            for (DocumentChunk chunk : chunks) {
+                total += chatGPTRAGService.calculateRelevanceScore(chunk, query);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public void analyzeQuery(Blackhole blackhole) {
+        for (String query : queries) {
+            blackhole.consume(enhancedRAGService.analyzeQuery(query));
+        }
+    }
+
+    @Benchmark
+    public void intelligentSearch(Blackhole blackhole) {
+        for (QueryContext queryContext : queryContexts) {
+            blackhole.consume(enhancedRAGService.intelligentSearch(queryContext, chunks, 3));
+        }
+    }
+}
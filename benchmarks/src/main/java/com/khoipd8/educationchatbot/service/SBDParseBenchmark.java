@@ -0,0 +1,57 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.entity.StudentScore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse kết quả tra cứu SBD: text trang Selenium (fixtures/sbd-result.txt) và JSON thpt-get-block
+ * (fixtures/thpt-get-block.json) -> StudentScore + CombinationScore.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx1g")
+@State(Scope.Benchmark)
+public class SBDParseBenchmark {
+
+    private SBDLookupService lookupService;
+    private String resultText;
+    private byte[] apiResponseBytes;
+    private Map<String, Object> apiData;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        lookupService = new SBDLookupService();
+        resultText = BenchmarkFixtures.text("sbd-result.txt");
+        apiResponseBytes = BenchmarkFixtures.bytes("thpt-get-block.json");
+        apiData = (Map<String, Object>) BenchmarkFixtures.thptGetBlockResponse().get("data");
+    }
+
+    @Benchmark
+    public StudentScore parseStudentScoreFromText() {
+        return lookupService.parseStudentScoreFromText(resultText, "01012345", "Toàn quốc");
+    }
+
+    @Benchmark
+    public Map<String, Object> decodeApiResponse() throws Exception {
+        return BenchmarkFixtures.MAPPER.readValue(apiResponseBytes, new TypeReference<>() {});
+    }
+
+    @Benchmark
+    public void buildFromApiData(Blackhole blackhole) {
+        StudentScore studentScore = lookupService.buildStudentScoreFromAPIData(apiData, "Toàn quốc");
+        List<CombinationScore> combinations =
+                lookupService.buildCombinationScoresFromAPIData(apiData, studentScore.getSbd(), "Toàn quốc");
+        blackhole.consume(studentScore);
+        blackhole.consume(combinations);
+    }
+}
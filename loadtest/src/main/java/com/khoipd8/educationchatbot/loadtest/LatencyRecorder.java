@@ -0,0 +1,92 @@
+package com.khoipd8.educationchatbot.loadtest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ghi độ trễ (micro giây) theo từng endpoint; percentile tính chính xác trên toàn bộ mẫu khi báo cáo.
+ */
+final class LatencyRecorder {
+
+    private static final double[] PERCENTILES = {50, 90, 95, 99, 99.9};
+
+    private final Map<String, EndpointSamples> samples = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long latencyMicros, int status) {
+        samples.computeIfAbsent(endpoint, k -> new EndpointSamples()).add(latencyMicros, status);
+    }
+
+    /**
+     * Báo cáo theo endpoint + dòng "total"; durationSeconds = thời gian pha đo
+     */
+    Map<String, Map<String, Object>> report(double durationSeconds) {
+        Map<String, Map<String, Object>> report = new TreeMap<>();
+        EndpointSamples total = new EndpointSamples();
+        for (Map.Entry<String, EndpointSamples> entry : samples.entrySet()) {
+            report.put(entry.getKey(), entry.getValue().summary(durationSeconds));
+            total.addAll(entry.getValue());
+        }
+        report.put("total", total.summary(durationSeconds));
+        return report;
+    }
+
+    private static final class EndpointSamples {
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<Integer, Integer> statusCounts = new TreeMap<>();
+
+        synchronized void add(long latencyMicros, int status) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latencyMicros;
+            statusCounts.merge(status, 1, Integer::sum);
+        }
+
+        synchronized void addAll(EndpointSamples other) {
+            synchronized (other) {
+                if (count + other.count > latencies.length) {
+                    latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, count + other.count));
+                }
+                System.arraycopy(other.latencies, 0, latencies, count, other.count);
+                count += other.count;
+                other.statusCounts.forEach((status, n) -> statusCounts.merge(status, n, Integer::sum));
+            }
+        }
+
+        synchronized Map<String, Object> summary(double durationSeconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int errors = statusCounts.entrySet().stream()
+                    .filter(e -> e.getKey() < 200 || e.getKey() >= 400)
+                    .mapToInt(Map.Entry::getValue)
+                    .sum();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", count);
+            summary.put("errors", errors);
+            summary.put("throughput_rps", round(count / durationSeconds));
+            summary.put("mean_ms", count > 0 ? round(Arrays.stream(sorted).average().orElse(0) / 1000.0) : 0.0);
+            for (double p : PERCENTILES) {
+                summary.put("p" + (p == Math.floor(p) ? String.valueOf((int) p) : String.valueOf(p)) + "_ms",
+                        round(percentile(sorted, p) / 1000.0));
+            }
+            summary.put("max_ms", count > 0 ? round(sorted[count - 1] / 1000.0) : 0.0);
+            summary.put("status_codes", new TreeMap<>(statusCounts));
+            return summary;
+        }
+
+        // Nearest-rank
+        private static long percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+
+        private static double round(double value) {
+            return Math.round(value * 100.0) / 100.0;
+        }
+    }
+}
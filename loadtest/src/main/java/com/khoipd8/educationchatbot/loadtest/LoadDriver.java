@@ -0,0 +1,249 @@
+package com.khoipd8.educationchatbot.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bắn request vào ứng dụng theo tỉ trọng --mix.
+ * - Closed model (--rate=0): --concurrency worker, mỗi worker gửi request kế tiếp ngay khi nhận response.
+ * - Open model (--rate>0): request được lên lịch đều theo thời gian, độ trễ tính từ thời điểm lẽ ra phải gửi
+ *   nên khi ứng dụng chậm, thời gian xếp hàng vẫn hiện trong percentile (tránh coordinated omission).
+ */
+@Slf4j
+final class LoadDriver {
+
+    // status_codes trong báo cáo: -1 = lỗi kết nối/timeout, -2 = HTTP 200 nhưng body "status":"error"
+    static final int STATUS_IO_ERROR = -1;
+    static final int STATUS_APP_ERROR = -2;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String[] REGIONS = {"Toàn quốc", "Toàn quốc", "Toàn quốc", "Toàn quốc", "Miền Bắc", "Miền Nam"};
+
+    private final LoadTestConfig config;
+    private final String appUrl;
+    private final HttpClient httpClient;
+    private final List<String> chatQueries;
+    private final TreeMap<Integer, String> mix = new TreeMap<>();
+    private final int totalWeight;
+
+    LoadDriver(LoadTestConfig config, String appUrl) {
+        this.config = config;
+        this.appUrl = appUrl;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        this.chatQueries = loadChatQueries();
+
+        int cumulative = 0;
+        for (Map.Entry<String, Integer> entry : config.getMix().entrySet()) {
+            if (entry.getValue() > 0) {
+                cumulative += entry.getValue();
+                mix.put(cumulative, entry.getKey());
+            }
+        }
+        if (cumulative == 0) {
+            throw new IllegalArgumentException("--mix must have at least one positive weight");
+        }
+        totalWeight = cumulative;
+    }
+
+    /**
+     * Chạy 1 pha trong durationMs; recorder = null cho pha warm-up (không ghi số liệu)
+     */
+    void run(long durationMs, LatencyRecorder recorder, long phaseSeed) throws InterruptedException {
+        if (config.getDouble("rate") > 0) {
+            runOpenModel(durationMs, recorder, phaseSeed);
+        } else {
+            runClosedModel(durationMs, recorder, phaseSeed);
+        }
+    }
+
+    private void runClosedModel(long durationMs, LatencyRecorder recorder, long phaseSeed) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMs);
+        List<Thread> workers = new ArrayList<>();
+        for (int w = 0; w < config.getInt("concurrency"); w++) {
+            Random random = new Random(phaseSeed * 7919 + w);
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < deadline) {
+                    PlannedRequest planned = next(random);
+                    long start = System.nanoTime();
+                    int status = send(planned);
+                    if (recorder != null) {
+                        recorder.record(planned.endpoint(), (System.nanoTime() - start) / 1000, status);
+                    }
+                }
+            }, "load-worker-" + w);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    private void runOpenModel(long durationMs, LatencyRecorder recorder, long phaseSeed) throws InterruptedException {
+        int maxInFlight = config.getInt("concurrency");
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Random random = new Random(phaseSeed);
+        long intervalNanos = (long) (1_000_000_000L / config.getDouble("rate"));
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            inFlight.acquire();
+            PlannedRequest planned = next(random);
+            httpClient.sendAsync(planned.request(), HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        if (recorder != null) {
+                            recorder.record(planned.endpoint(), (System.nanoTime() - intended) / 1000,
+                                    error != null ? STATUS_IO_ERROR : statusOf(response));
+                        }
+                        inFlight.release();
+                    });
+        }
+        // Chờ các request còn đang bay
+        if (!inFlight.tryAcquire(maxInFlight, 2, TimeUnit.MINUTES)) {
+            log.warn("Some requests did not complete within 2 minutes after the phase ended");
+        }
+    }
+
+    private int send(PlannedRequest planned) {
+        try {
+            return statusOf(httpClient.send(planned.request(), HttpResponse.BodyHandlers.ofString()));
+        } catch (IOException e) {
+            return STATUS_IO_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return STATUS_IO_ERROR;
+        }
+    }
+
+    private static int statusOf(HttpResponse<String> response) {
+        if (response.statusCode() == 200 && response.body() != null && response.body().contains("\"status\":\"error\"")) {
+            return STATUS_APP_ERROR;
+        }
+        return response.statusCode();
+    }
+
+    // ====== KỊCH BẢN ======
+
+    record PlannedRequest(String endpoint, HttpRequest request) {}
+
+    PlannedRequest next(Random random) {
+        String group = mix.higherEntry(random.nextInt(totalWeight)).getValue();
+        return switch (group) {
+            case "chat" -> chat(random);
+            case "sbd" -> sbdLookup(random);
+            case "data" -> data(random);
+            default -> throw new IllegalArgumentException("Unknown --mix group: " + group + " (chat, sbd, data)");
+        };
+    }
+
+    private PlannedRequest chat(Random random) {
+        String message = chatQueries.get(random.nextInt(chatQueries.size()));
+        if (random.nextInt(100) < config.getInt("chat-unique-percent")) {
+            // Thêm chi tiết riêng của từng thí sinh như người dùng thật -> không trúng response cache
+            message += String.format(" Mình được %.2f điểm, ở %s.", 18 + random.nextInt(45) * 0.25,
+                    TuyenSinh247Stub.LOCATIONS[random.nextInt(TuyenSinh247Stub.LOCATIONS.length)]);
+        }
+        Map<String, Object> body = Map.of(
+            "message", message,
+            "session_id", "loadtest-" + random.nextInt(config.getInt("chat-sessions")));
+        try {
+            return new PlannedRequest("chat", HttpRequest.newBuilder(URI.create(appUrl + "/api/chatgpt/chat"))
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                    .build());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private PlannedRequest sbdLookup(Random random) {
+        String sbd = TuyenSinh247Stub.sbd(random.nextInt(config.getInt("sbd-pool")));
+        String region = REGIONS[random.nextInt(REGIONS.length)];
+        return get("sbd.lookup-api", "/api/sbd/lookup-api/" + sbd + "?region=" + encode(region));
+    }
+
+    private PlannedRequest data(Random random) {
+        int universities = config.getInt("universities");
+        int roll = random.nextInt(100);
+        if (roll < 25) {
+            int pages = Math.max(1, (universities + 19) / 20);
+            return get("data.universities", "/api/data/universities?page=" + random.nextInt(pages) + "&size=20");
+        }
+        if (roll < 60) {
+            return get("data.university", "/api/data/universities/" + TuyenSinh247Stub.universityCode(random.nextInt(universities)));
+        }
+        if (roll < 75) {
+            return random.nextBoolean()
+                    ? get("data.search", "/api/data/search?location=" + encode(TuyenSinh247Stub.LOCATIONS[random.nextInt(TuyenSinh247Stub.LOCATIONS.length)]))
+                    : get("data.search", "/api/data/search?major=" + encode(TuyenSinh247Stub.MAJORS[random.nextInt(TuyenSinh247Stub.MAJORS.length)]));
+        }
+        if (roll < 90) {
+            double minScore = 17 + random.nextInt(17) * 0.5;
+            String query = "minScore=" + minScore + "&maxScore=" + (minScore + 3);
+            if (random.nextBoolean()) {
+                query += "&combination=" + TuyenSinh247Stub.COMBINATIONS[random.nextInt(4)];
+            }
+            return get("data.programs", "/api/data/programs?" + query);
+        }
+        return get("data.statistics", "/api/data/statistics");
+    }
+
+    private PlannedRequest get(String endpoint, String path) {
+        return new PlannedRequest(endpoint, HttpRequest.newBuilder(URI.create(appUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept", "application/json")
+                .GET()
+                .build());
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> loadChatQueries() {
+        try (InputStream in = LoadDriver.class.getResourceAsStream("/chat-queries.txt")) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource chat-queries.txt");
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    HttpClient getHttpClient() {
+        return httpClient;
+    }
+}
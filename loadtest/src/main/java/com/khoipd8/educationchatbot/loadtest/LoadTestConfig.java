@@ -0,0 +1,119 @@
+package com.khoipd8.educationchatbot.loadtest;
+
+import java.util.*;
+
+/**
+ * Tham số dòng lệnh dạng --key=value. Key không thuộc load test (vd: --spring.datasource.url=...)
+ * được chuyển nguyên cho ứng dụng nhúng khi chạy --embedded-app=true.
+ */
+final class LoadTestConfig {
+
+    static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("app-url", "http://localhost:8080");     // Ứng dụng đang chạy sẵn (bỏ qua khi embedded-app)
+        DEFAULTS.put("embedded-app", "false");                // Tự khởi động ứng dụng trong cùng JVM, trỏ sang stub
+        DEFAULTS.put("app-port", "18081");                    // Cổng của ứng dụng nhúng
+        DEFAULTS.put("stub-port", "18080");
+        DEFAULTS.put("concurrency", "32");                    // Số worker (closed model) / số request đang bay tối đa (open model)
+        DEFAULTS.put("rate", "0");                            // req/s cố định (open model); 0 = closed model
+        DEFAULTS.put("warmup-s", "15");
+        DEFAULTS.put("duration-s", "60");
+        DEFAULTS.put("mix", "chat:20,sbd:30,data:50");        // Tỉ trọng các nhóm endpoint
+        DEFAULTS.put("seed-data", "true");                    // crawl-all từ stub diem-chuan trước khi đo
+        DEFAULTS.put("seed-timeout-s", "600");
+        DEFAULTS.put("universities", "60");                   // Số trường trên trang diem-chuan.html của stub
+        DEFAULTS.put("sbd-pool", "5000");                     // Số SBD khác nhau được tra cứu
+        DEFAULTS.put("sbd-missing-percent", "10");            // % SBD stub trả "không tìm thấy"
+        DEFAULTS.put("chat-sessions", "500");
+        DEFAULTS.put("chat-unique-percent", "70");            // % câu hỏi có thêm chi tiết riêng (không trúng response cache)
+        DEFAULTS.put("openai-latency-ms", "800");             // Thời gian tới token đầu tiên
+        DEFAULTS.put("openai-jitter-ms", "400");
+        DEFAULTS.put("openai-token-ms", "15");                // Thời gian sinh mỗi token (cộng vào latency khi không stream)
+        DEFAULTS.put("openai-error-percent", "0");            // % request trả 429
+        DEFAULTS.put("openai-usage-tokens", "0");             // usage trả về; 0 để không chạm ngưỡng ngân sách của ChatGPTRAGService
+        DEFAULTS.put("thpt-latency-ms", "120");
+        DEFAULTS.put("thpt-jitter-ms", "80");
+        DEFAULTS.put("thpt-error-percent", "0");              // % request trả 503
+        DEFAULTS.put("page-latency-ms", "200");
+        DEFAULTS.put("page-jitter-ms", "100");
+        DEFAULTS.put("report", "loadtest-report.json");
+        DEFAULTS.put("random-seed", "42");
+    }
+
+    private final Map<String, String> values = new HashMap<>(DEFAULTS);
+    private final List<String> appArgs = new ArrayList<>();
+
+    static LoadTestConfig parse(String[] args) {
+        LoadTestConfig config = new LoadTestConfig();
+        for (String arg : args) {
+            if ("--help".equals(arg) || "-h".equals(arg)) {
+                config.values.put("help", "true");
+                continue;
+            }
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --key=value, got: " + arg);
+            }
+            String key = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+            if (DEFAULTS.containsKey(key)) {
+                config.values.put(key, value);
+            } else {
+                config.appArgs.add(arg);
+            }
+        }
+        return config;
+    }
+
+    static String usage() {
+        StringBuilder usage = new StringBuilder("Usage: java -jar loadtest.jar [--key=value ...]\n\nOptions (default):\n");
+        DEFAULTS.forEach((key, value) -> usage.append(String.format("  --%-22s %s%n", key, value)));
+        usage.append("\nOther --key=value arguments are passed to the embedded application (e.g. --spring.datasource.url=...).\n");
+        return usage.toString();
+    }
+
+    boolean isHelp() {
+        return values.containsKey("help");
+    }
+
+    String get(String key) {
+        return values.get(key);
+    }
+
+    int getInt(String key) {
+        return Integer.parseInt(values.get(key));
+    }
+
+    double getDouble(String key) {
+        return Double.parseDouble(values.get(key));
+    }
+
+    boolean getBoolean(String key) {
+        return Boolean.parseBoolean(values.get(key));
+    }
+
+    List<String> getAppArgs() {
+        return appArgs;
+    }
+
+    /**
+     * Tỉ trọng từ --mix=chat:20,sbd:30,data:50
+     */
+    Map<String, Integer> getMix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : values.get("mix").split(",")) {
+            String[] kv = part.trim().split(":");
+            if (kv.length != 2) {
+                throw new IllegalArgumentException("Invalid --mix entry: " + part);
+            }
+            mix.put(kv[0].trim(), Integer.parseInt(kv[1].trim()));
+        }
+        return mix;
+    }
+
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new TreeMap<>(values);
+        map.remove("help");
+        return map;
+    }
+}
@@ -0,0 +1,171 @@
+package com.khoipd8.educationchatbot.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.khoipd8.educationchatbot.EducationChatbotApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Load test offline: dựng stub OpenAI + tuyensinh247, (tùy chọn) chạy ứng dụng trong cùng JVM trỏ sang stub,
+ * nạp dữ liệu bằng crawl-all từ stub, warm-up, đo rồi in percentile/throughput theo endpoint
+ * và ghi báo cáo JSON (--report) để so sánh giữa các lần chạy.
+ */
+@Slf4j
+public final class LoadTestRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private LoadTestRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.parse(args);
+        if (config.isHelp()) {
+            System.out.print(LoadTestConfig.usage());
+            return;
+        }
+
+        try (StubServer stubs = new StubServer(config.getInt("stub-port"))) {
+            OpenAIStub openAIStub = new OpenAIStub(config);
+            TuyenSinh247Stub tuyenSinh247Stub = new TuyenSinh247Stub(config);
+            openAIStub.register(stubs);
+            tuyenSinh247Stub.register(stubs);
+            stubs.start();
+            log.info("🧪 Stub servers listening on {}", stubs.baseUrl());
+
+            Map<String, String> overrides = appOverrides(stubs.baseUrl());
+            ConfigurableApplicationContext app = null;
+            String appUrl;
+            if (config.getBoolean("embedded-app")) {
+                appUrl = "http://localhost:" + config.get("app-port");
+                app = startEmbeddedApp(config, overrides);
+            } else {
+                appUrl = config.get("app-url");
+                StringBuilder hint = new StringBuilder();
+                overrides.forEach((key, value) -> hint.append(" --").append(key).append('=').append(value));
+                log.info("Using running application at {}. It must be started with:{}", appUrl, hint);
+            }
+
+            try {
+                LoadDriver driver = new LoadDriver(config, appUrl);
+                long seed = Long.parseLong(config.get("random-seed"));
+
+                if (config.getBoolean("seed-data")) {
+                    seedUniversities(driver.getHttpClient(), appUrl, config.getInt("seed-timeout-s"));
+                }
+
+                log.info("🔥 Warm-up {} s ...", config.get("warmup-s"));
+                driver.run(config.getInt("warmup-s") * 1000L, null, seed);
+
+                log.info("⏱️ Measuring {} s (mix {}, concurrency {}, rate {}) ...",
+                        config.get("duration-s"), config.get("mix"), config.get("concurrency"), config.get("rate"));
+                LatencyRecorder recorder = new LatencyRecorder();
+                long start = System.nanoTime();
+                driver.run(config.getInt("duration-s") * 1000L, recorder, seed + 1);
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                Map<String, Map<String, Object>> endpoints = recorder.report(seconds);
+                printTable(endpoints);
+
+                Map<String, Object> report = new LinkedHashMap<>();
+                report.put("app_url", appUrl);
+                report.put("measured_seconds", Math.round(seconds * 10) / 10.0);
+                report.put("config", config.toMap());
+                report.put("endpoints", endpoints);
+                report.put("stubs", Map.of(
+                    "openai", openAIStub.getStats(),
+                    "tuyensinh247", tuyenSinh247Stub.getStats()));
+                File reportFile = new File(config.get("report"));
+                MAPPER.writeValue(reportFile, report);
+                log.info("📄 Report written to {}", reportFile.getAbsolutePath());
+            } finally {
+                if (app != null) {
+                    app.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Cấu hình ứng dụng trỏ mọi upstream sang stub
+     */
+    private static Map<String, String> appOverrides(String stubBaseUrl) {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        overrides.put("openai.api.url", stubBaseUrl + OpenAIStub.PATH);
+        overrides.put("openai.api.key", "loadtest-stub");
+        overrides.put("sbd.api.url", stubBaseUrl + TuyenSinh247Stub.THPT_PATH);
+        overrides.put("crawler.base-url", stubBaseUrl);
+        overrides.put("crawler.politeness.requests-per-second", "50");
+        overrides.put("crawler.politeness.burst", "10");
+        overrides.put("crawler.archive.enabled", "false");
+        return overrides;
+    }
+
+    // Tham số dòng lệnh (ưu tiên cao hơn application.yml), sau đó tới các --key=value người dùng truyền thêm
+    private static ConfigurableApplicationContext startEmbeddedApp(LoadTestConfig config, Map<String, String> overrides) {
+        List<String> appArgs = new ArrayList<>();
+        overrides.forEach((key, value) -> appArgs.add("--" + key + "=" + value));
+        appArgs.add("--server.port=" + config.get("app-port"));
+        appArgs.addAll(config.getAppArgs());
+
+        log.info("🚀 Starting embedded application on port {} ...", config.get("app-port"));
+        return new SpringApplicationBuilder(EducationChatbotApplication.class)
+                .run(appArgs.toArray(String[]::new));
+    }
+
+    /**
+     * Nạp trường/ngành vào DB qua POST /api/crawler/crawl-all (crawl từ stub diem-chuan) và chờ job xong
+     */
+    @SuppressWarnings("unchecked")
+    private static void seedUniversities(HttpClient httpClient, String appUrl, int timeoutSeconds) throws Exception {
+        log.info("🌱 Seeding universities via crawl-all from the diem-chuan stub ...");
+        HttpResponse<String> started = httpClient.send(HttpRequest.newBuilder(URI.create(appUrl + "/api/crawler/crawl-all"))
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.noBody())
+                .build(), HttpResponse.BodyHandlers.ofString());
+        Map<String, Object> body = MAPPER.readValue(started.body(), Map.class);
+        Object jobId = body.get("job_id");
+        if (jobId == null && body.get("current_progress") instanceof Map<?, ?> progress) {
+            jobId = progress.get("job_id");
+        }
+        if (jobId == null) {
+            throw new IllegalStateException("crawl-all did not return a job_id: " + started.body());
+        }
+
+        long deadline = System.currentTimeMillis() + timeoutSeconds * 1000L;
+        while (System.currentTimeMillis() < deadline) {
+            HttpResponse<String> response = httpClient.send(HttpRequest.newBuilder(URI.create(appUrl + "/api/crawler/jobs/" + jobId))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            Map<String, Object> progress = MAPPER.readValue(response.body(), Map.class);
+            if (!"running".equals(progress.get("status"))) {
+                log.info("🌱 Seed job {} {}: done={}, failed={}, outcomes={}", jobId, progress.get("status"),
+                        progress.get("done"), progress.get("failed"), progress.get("outcomes"));
+                return;
+            }
+            log.info("🌱 Seed job {}: {}%", jobId, progress.get("percent"));
+            Thread.sleep(2000);
+        }
+        throw new IllegalStateException("Seed job " + jobId + " did not finish within " + timeoutSeconds + " s");
+    }
+
+    private static void printTable(Map<String, Map<String, Object>> endpoints) {
+        String format = "%-20s %9s %7s %9s %9s %9s %9s %9s %9s%n";
+        StringBuilder table = new StringBuilder("\n");
+        table.append(String.format(format, "endpoint", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        endpoints.forEach((endpoint, s) -> table.append(String.format(format, endpoint,
+                s.get("requests"), s.get("errors"), s.get("throughput_rps"),
+                s.get("p50_ms"), s.get("p90_ms"), s.get("p99_ms"), s.get("p99.9_ms"), s.get("max_ms"))));
+        System.out.println(table);
+    }
+}
@@ -0,0 +1,166 @@
+package com.khoipd8.educationchatbot.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stub POST /v1/chat/completions theo định dạng OpenAI: độ trễ tới token đầu + thời gian sinh từng token,
+ * "stream": true trả SSE (chat.completion.chunk ... [DONE]), có thể giả lập lỗi 429.
+ */
+final class OpenAIStub {
+
+    static final String PATH = "/v1/chat/completions";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final String ANSWER_TEMPLATE =
+            "Dựa trên dữ liệu tuyển sinh hiện có, với câu hỏi \"%s\" bạn nên tham khảo điểm chuẩn các năm gần đây "
+            + "của từng trường, so sánh với điểm tổ hợp của mình và ưu tiên những ngành có điểm chuẩn thấp hơn điểm "
+            + "của bạn từ 1 đến 2 điểm để tăng khả năng trúng tuyển. Bạn cũng nên xem thêm chỉ tiêu, học phí và "
+            + "phương thức xét tuyển (điểm thi THPT, học bạ, đánh giá năng lực) trước khi đăng ký nguyện vọng.";
+
+    private final long latencyMs;
+    private final long jitterMs;
+    private final long tokenMs;
+    private final int errorPercent;
+    private final int usageTokens;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder streamed = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    OpenAIStub(LoadTestConfig config) {
+        latencyMs = config.getInt("openai-latency-ms");
+        jitterMs = config.getInt("openai-jitter-ms");
+        tokenMs = config.getInt("openai-token-ms");
+        errorPercent = config.getInt("openai-error-percent");
+        usageTokens = config.getInt("openai-usage-tokens");
+    }
+
+    void register(StubServer server) {
+        server.register(PATH, this::handle);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            StubServer.respond(exchange, 405, null, null);
+            return;
+        }
+        requests.increment();
+        Map<String, Object> request = MAPPER.readValue(exchange.getRequestBody(), Map.class);
+
+        if (StubServer.chance(errorPercent)) {
+            rateLimited.increment();
+            StubServer.sleepLatency(latencyMs / 4, 0);
+            StubServer.respond(exchange, 429, "application/json", MAPPER.writeValueAsBytes(Map.of(
+                "error", Map.of(
+                    "message", "Rate limit reached for requests",
+                    "type", "requests",
+                    "code", "rate_limit_exceeded"))));
+            return;
+        }
+
+        String model = String.valueOf(request.getOrDefault("model", "gpt-4o-mini"));
+        int maxTokens = request.get("max_tokens") instanceof Number n ? n.intValue() : 256;
+        List<String> tokens = answerTokens(lastUserMessage((List<Map<String, Object>>) request.get("messages")), maxTokens);
+        String id = "chatcmpl-stub-" + UUID.randomUUID();
+
+        StubServer.sleepLatency(latencyMs, jitterMs);
+        if (Boolean.TRUE.equals(request.get("stream"))) {
+            streamed.increment();
+            stream(exchange, id, model, tokens);
+        } else {
+            StubServer.sleep(tokenMs * tokens.size());
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("id", id);
+            response.put("object", "chat.completion");
+            response.put("created", System.currentTimeMillis() / 1000);
+            response.put("model", model);
+            response.put("choices", List.of(Map.of(
+                "index", 0,
+                "message", Map.of("role", "assistant", "content", String.join("", tokens)),
+                "finish_reason", "stop")));
+            response.put("usage", Map.of(
+                "prompt_tokens", usageTokens,
+                "completion_tokens", usageTokens > 0 ? tokens.size() : 0,
+                "total_tokens", usageTokens > 0 ? usageTokens + tokens.size() : 0));
+            StubServer.respond(exchange, 200, "application/json", MAPPER.writeValueAsBytes(response));
+        }
+    }
+
+    private void stream(HttpExchange exchange, String id, String model, List<String> tokens) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0); // chunked
+        long created = System.currentTimeMillis() / 1000;
+        try (OutputStream out = exchange.getResponseBody()) {
+            writeEvent(out, chunk(id, model, created, Map.of("role", "assistant", "content", ""), null));
+            for (String token : tokens) {
+                StubServer.sleep(tokenMs);
+                writeEvent(out, chunk(id, model, created, Map.of("content", token), null));
+            }
+            writeEvent(out, chunk(id, model, created, Map.of(), "stop"));
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+    }
+
+    private Map<String, Object> chunk(String id, String model, long created, Map<String, Object> delta, String finishReason) {
+        Map<String, Object> choice = new LinkedHashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("id", id);
+        chunk.put("object", "chat.completion.chunk");
+        chunk.put("created", created);
+        chunk.put("model", model);
+        chunk.put("choices", List.of(choice));
+        return chunk;
+    }
+
+    private void writeEvent(OutputStream out, Map<String, Object> payload) throws IOException {
+        out.write("data: ".getBytes(StandardCharsets.UTF_8));
+        out.write(MAPPER.writeValueAsBytes(payload));
+        out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String lastUserMessage(List<Map<String, Object>> messages) {
+        if (messages == null) {
+            return "";
+        }
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            if ("user".equals(messages.get(i).get("role"))) {
+                String content = String.valueOf(messages.get(i).get("content"));
+                return content.length() > 80 ? content.substring(0, 80) : content;
+            }
+        }
+        return "";
+    }
+
+    // 1 token ~ 1 từ kèm khoảng trắng, cắt theo max_tokens như API thật
+    private List<String> answerTokens(String question, int maxTokens) {
+        String[] words = String.format(ANSWER_TEMPLATE, question).split(" ");
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < words.length && tokens.size() < maxTokens; i++) {
+            tokens.add(i == 0 ? words[i] : " " + words[i]);
+        }
+        return tokens;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("requests", requests.sum());
+        stats.put("streamed", streamed.sum());
+        stats.put("rate_limited", rateLimited.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,281 @@
+package com.khoipd8.educationchatbot.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stub của tuyensinh247: POST /api/user/thpt-get-block (điểm thi theo SBD), GET /diem-chuan.html
+ * (danh sách trường) và GET /diem-chuan/*-XXX.html (trang điểm chuẩn, hỗ trợ ETag/304).
+ * Dữ liệu sinh tất định theo SBD / mã trường nên mỗi lượt chạy giống nhau.
+ */
+final class TuyenSinh247Stub {
+
+    static final String THPT_PATH = "/api/user/thpt-get-block";
+    static final String INDEX_PATH = "/diem-chuan.html";
+    static final String PAGE_PATH = "/diem-chuan/";
+
+    static final String[] LOCATIONS = {"Hà Nội", "TP.HCM", "Đà Nẵng", "Cần Thơ", "Huế"};
+    static final String[] MAJORS = {
+        "Công nghệ thông tin", "Khoa học máy tính", "Kỹ thuật phần mềm", "Hệ thống thông tin", "An toàn thông tin",
+        "Trí tuệ nhân tạo", "Khoa học dữ liệu", "Kỹ thuật điện tử - viễn thông", "Kỹ thuật cơ khí", "Kỹ thuật ô tô",
+        "Công nghệ sinh học", "Quản trị kinh doanh", "Marketing", "Tài chính - Ngân hàng", "Kế toán", "Kiểm toán",
+        "Kinh tế quốc tế", "Logistics và quản lý chuỗi cung ứng", "Ngôn ngữ Anh", "Ngôn ngữ Nhật", "Luật",
+        "Luật kinh tế", "Y khoa", "Dược học", "Điều dưỡng", "Sư phạm Toán học", "Tâm lý học", "Báo chí",
+        "Kiến trúc", "Kỹ thuật xây dựng", "Du lịch", "Thương mại điện tử"
+    };
+    static final String[] COMBINATIONS = {"A00", "A01", "D01", "D07", "B00", "C00", "A00; A01", "A00; A01; D01", "D01; D14; D15"};
+
+    // Môn trong mark_info và các tổ hợp trả về trong blocks
+    private static final String[] SUBJECTS = {"Toán", "Ngữ văn", "Vật lí", "Hóa học", "Sinh học", "Lịch sử", "Địa lí", "Tiếng Anh"};
+    private static final Object[][] BLOCKS = {
+        {"A00", "Toán, Vật lí, Hóa học", new int[]{0, 2, 3}},
+        {"A01", "Toán, Vật lí, Tiếng Anh", new int[]{0, 2, 7}},
+        {"B00", "Toán, Hóa học, Sinh học", new int[]{0, 3, 4}},
+        {"C00", "Ngữ văn, Lịch sử, Địa lí", new int[]{1, 5, 6}},
+        {"D01", "Toán, Ngữ văn, Tiếng Anh", new int[]{0, 1, 7}},
+        {"D07", "Toán, Hóa học, Tiếng Anh", new int[]{0, 3, 7}}
+    };
+    private static final Pattern PAGE_CODE = Pattern.compile(".*-([A-Z]{3})\\.html");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int universityCount;
+    private final int missingPercent;
+    private final long thptLatencyMs;
+    private final long thptJitterMs;
+    private final int thptErrorPercent;
+    private final long pageLatencyMs;
+    private final long pageJitterMs;
+
+    private final Map<String, byte[]> pageCache = new ConcurrentHashMap<>();
+    private final LongAdder thptRequests = new LongAdder();
+    private final LongAdder thptMissing = new LongAdder();
+    private final LongAdder thptErrors = new LongAdder();
+    private final LongAdder pageRequests = new LongAdder();
+    private final LongAdder pageNotModified = new LongAdder();
+
+    TuyenSinh247Stub(LoadTestConfig config) {
+        universityCount = config.getInt("universities");
+        missingPercent = config.getInt("sbd-missing-percent");
+        thptLatencyMs = config.getInt("thpt-latency-ms");
+        thptJitterMs = config.getInt("thpt-jitter-ms");
+        thptErrorPercent = config.getInt("thpt-error-percent");
+        pageLatencyMs = config.getInt("page-latency-ms");
+        pageJitterMs = config.getInt("page-jitter-ms");
+    }
+
+    void register(StubServer server) {
+        server.register(THPT_PATH, this::handleThptGetBlock);
+        server.register(INDEX_PATH, this::handleIndex);
+        server.register(PAGE_PATH, this::handlePage);
+    }
+
+    // ====== DỮ LIỆU DÙNG CHUNG VỚI LOAD DRIVER ======
+
+    static String universityCode(int index) {
+        char[] code = new char[3];
+        for (int i = 2; i >= 0; i--) {
+            code[i] = (char) ('A' + index % 26);
+            index /= 26;
+        }
+        return new String(code);
+    }
+
+    static String universityName(int index) {
+        return "Trường Đại học Thử tải số " + (index + 1) + " " + LOCATIONS[index % LOCATIONS.length];
+    }
+
+    static String sbd(int index) {
+        return String.format("%02d%06d", 1 + index % 64, index);
+    }
+
+    boolean isMissing(String sbd) {
+        return Math.floorMod(sbd.hashCode() * 31 + 7, 100) < missingPercent;
+    }
+
+    // ====== HANDLERS ======
+
+    @SuppressWarnings("unchecked")
+    private void handleThptGetBlock(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            StubServer.respond(exchange, 405, null, null);
+            return;
+        }
+        thptRequests.increment();
+        Map<String, Object> request = MAPPER.readValue(exchange.getRequestBody(), Map.class);
+        String sbd = String.valueOf(request.get("userNumber"));
+        StubServer.sleepLatency(thptLatencyMs, thptJitterMs);
+
+        if (StubServer.chance(thptErrorPercent)) {
+            thptErrors.increment();
+            StubServer.respond(exchange, 503, "text/html; charset=utf-8",
+                    "<html><body>Service Temporarily Unavailable</body></html>".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+        if (isMissing(sbd)) {
+            thptMissing.increment();
+            StubServer.respond(exchange, 200, "application/json", MAPPER.writeValueAsBytes(Map.of(
+                "success", false,
+                "message", "Không tìm thấy thông tin thí sinh")));
+            return;
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("success", true);
+        response.put("message", "OK");
+        response.put("data", studentData(sbd, String.valueOf(request.get("region"))));
+        StubServer.respond(exchange, 200, "application/json", MAPPER.writeValueAsBytes(response));
+    }
+
+    private void handleIndex(HttpExchange exchange) throws IOException {
+        pageRequests.increment();
+        StubServer.sleepLatency(pageLatencyMs, pageJitterMs);
+        byte[] body = pageCache.computeIfAbsent(INDEX_PATH, k -> indexPage().getBytes(StandardCharsets.UTF_8));
+        StubServer.respond(exchange, 200, "text/html; charset=utf-8", body);
+    }
+
+    private void handlePage(HttpExchange exchange) throws IOException {
+        pageRequests.increment();
+        Matcher matcher = PAGE_CODE.matcher(exchange.getRequestURI().getPath());
+        int index = matcher.matches() ? indexOf(matcher.group(1)) : -1;
+        if (index < 0) {
+            StubServer.respond(exchange, 404, "text/html; charset=utf-8", "<html><body>Not found</body></html>".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        // Nội dung cố định theo mã trường nên ETag cố định: lần crawl sau trả 304
+        String etag = "\"" + universityCode(index) + "-v1\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            pageNotModified.increment();
+            StubServer.sleepLatency(pageLatencyMs / 2, pageJitterMs / 2);
+            StubServer.respond(exchange, 304, null, null);
+            return;
+        }
+
+        StubServer.sleepLatency(pageLatencyMs, pageJitterMs);
+        byte[] body = pageCache.computeIfAbsent(universityCode(index), k -> universityPage(index).getBytes(StandardCharsets.UTF_8));
+        StubServer.respond(exchange, 200, "text/html; charset=utf-8", body);
+    }
+
+    // ====== SINH DỮ LIỆU ======
+
+    private Map<String, Object> studentData(String sbd, String region) {
+        Random random = new Random(sbd.hashCode());
+        double[] scores = new double[SUBJECTS.length];
+        boolean naturalScience = random.nextBoolean();
+        List<Map<String, Object>> markInfo = new ArrayList<>();
+        for (int i = 0; i < SUBJECTS.length; i++) {
+            // Ban tự nhiên thi Lý-Hóa-Sinh, ban xã hội thi Sử-Địa
+            boolean taken = i == 0 || i == 1 || i == 7 || (naturalScience ? i >= 2 && i <= 4 : i == 5 || i == 6);
+            if (!taken) {
+                scores[i] = Double.NaN;
+                continue;
+            }
+            scores[i] = Math.round((3 + random.nextDouble() * 7) * 4) / 4.0;
+            markInfo.add(Map.of("name", SUBJECTS[i], "score", String.valueOf(scores[i])));
+        }
+
+        List<Map<String, Object>> blocks = new ArrayList<>();
+        for (Object[] block : BLOCKS) {
+            double total = 0;
+            for (int subject : (int[]) block[2]) {
+                total += scores[subject];
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("value", block[0]);
+            entry.put("label", block[1]);
+            if (Double.isNaN(total)) {
+                entry.put("point", null);
+            } else {
+                total = Math.round(total * 100) / 100.0;
+                int totalStudents = 200_000 + random.nextInt(200_000);
+                entry.put("point", total);
+                entry.put("ranking", Map.of(
+                    "equal", 200 + random.nextInt(3000),
+                    "higher", (int) (totalStudents * Math.max(0, 30 - total) / 30),
+                    "total", totalStudents));
+                entry.put("same2024", Math.round((total - 0.25 + random.nextDouble() * 0.5) * 100) / 100.0);
+            }
+            blocks.add(entry);
+        }
+
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("candidate_number", sbd);
+        data.put("data_year", 2025);
+        data.put("region", region);
+        data.put("mark_info", markInfo);
+        data.put("blocks", blocks);
+        return data;
+    }
+
+    private String indexPage() {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html lang=\"vi\"><head><meta charset=\"utf-8\">"
+                + "<title>Điểm chuẩn đại học 2024</title></head><body><h1>Điểm chuẩn các trường đại học</h1><ul>\n");
+        for (int i = 0; i < universityCount; i++) {
+            html.append("<li><a href=\"").append(PAGE_PATH).append("truong-thu-tai-so-").append(i + 1).append('-')
+                .append(universityCode(i)).append(".html\">Điểm chuẩn ").append(universityName(i))
+                .append(" 2024</a></li>\n");
+        }
+        return html.append("</ul></body></html>").toString();
+    }
+
+    private String universityPage(int index) {
+        Random random = new Random(universityCode(index).hashCode());
+        String name = universityName(index);
+        StringBuilder html = new StringBuilder();
+        html.append("<!DOCTYPE html><html lang=\"vi\"><head><meta charset=\"utf-8\">")
+            .append("<title>Điểm chuẩn ").append(name).append(" 2024 chính xác</title>")
+            .append("<meta name=\"description\" content=\"Điểm chuẩn ").append(name).append(" các năm 2022 - 2024.\">")
+            .append("<script>window.dataLayer = window.dataLayer || [];</script></head><body>\n")
+            .append("<h1>Điểm chuẩn ").append(name).append(" 2024</h1>\n")
+            .append("<p>").append(name).append(" - ").append(LOCATIONS[index % LOCATIONS.length]).append(".</p>\n");
+
+        List<String> majors = new ArrayList<>(Arrays.asList(MAJORS));
+        Collections.shuffle(majors, random);
+        majors = majors.subList(0, 18 + random.nextInt(MAJORS.length - 18));
+        double level = 17 + random.nextDouble() * 8;
+
+        String[][] sections = {{"2024", "Điểm thi THPT"}, {"2023", "Điểm thi THPT"}, {"2024", "Xét học bạ"}};
+        for (String[] section : sections) {
+            html.append("<h2>Điểm chuẩn ").append(name).append(" năm ").append(section[0])
+                .append(" theo phương thức ").append(section[1]).append("</h2>\n")
+                .append("<table><thead><tr><th>Tên ngành</th><th>Tổ hợp môn</th><th>Điểm chuẩn</th><th>Ghi chú</th></tr></thead><tbody>\n");
+            for (String major : majors) {
+                double score = Math.min(29.5, Math.round((level + random.nextDouble() * 5) * 4) / 4.0);
+                html.append("<tr><td>").append(major).append("</td><td>")
+                    .append(COMBINATIONS[random.nextInt(COMBINATIONS.length)]).append("</td><td>")
+                    .append(score).append("</td><td>")
+                    .append(random.nextInt(4) == 0 ? "Tiêu chí phụ: Toán >= 7" : "").append("</td></tr>\n");
+            }
+            html.append("</tbody></table>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private int indexOf(String code) {
+        int index = 0;
+        for (char c : code.toCharArray()) {
+            index = index * 26 + (c - 'A');
+        }
+        return index < universityCount ? index : -1;
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("thpt_requests", thptRequests.sum());
+        stats.put("thpt_missing", thptMissing.sum());
+        stats.put("thpt_errors", thptErrors.sum());
+        stats.put("page_requests", pageRequests.sum());
+        stats.put("page_not_modified", pageNotModified.sum());
+        return stats;
+    }
+}
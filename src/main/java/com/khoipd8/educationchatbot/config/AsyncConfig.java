@@ -1,11 +1,13 @@
 package com.khoipd8.educationchatbot.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
@@ -21,4 +23,64 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-}
\ No newline at end of file
+
+    @Bean(name = "sbdLookupExecutor")
+    public Executor sbdLookupExecutor(@Value("${sbd.api.max-concurrency:8}") int maxConcurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrency);
+        executor.setMaxPoolSize(maxConcurrency);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("sbd-lookup-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "webCrawlExecutor")
+    public Executor webCrawlExecutor(@Value("${sbd.web-crawl.max-threads:12}") int maxThreads,
+                                     @Value("${sbd.web-crawl.queue-capacity:8}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        // core = max: hàng đợi có giới hạn chỉ nhận tác vụ khi đủ thread đang chạy
+        executor.setCorePoolSize(maxThreads);
+        executor.setMaxPoolSize(maxThreads);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(queueCapacity);
+        // Đầy thì từ chối: HedgedStrategyRunner bỏ qua hedge thay vì chạy chiến lược trên thread gọi
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("web-crawl-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "crawlExecutor")
+    public Executor crawlExecutor(@Value("${crawler.scheduler.fetch-concurrency:6}") int fetchConcurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(fetchConcurrency);
+        executor.setMaxPoolSize(fetchConcurrency);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("crawl-fetch-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "crawlPersistExecutor")
+    public Executor crawlPersistExecutor(@Value("${crawler.scheduler.persist-threads:3}") int persistThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(persistThreads);
+        executor.setMaxPoolSize(persistThreads);
+        executor.setQueueCapacity(20);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setThreadNamePrefix("crawl-persist-");
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "archiveReparseExecutor")
+    public Executor archiveReparseExecutor(@Value("${crawler.archive.reparse-threads:4}") int reparseThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(reparseThreads);
+        executor.setMaxPoolSize(reparseThreads);
+        executor.setThreadNamePrefix("archive-reparse-");
+        executor.initialize();
+        return executor;
+    }
+}
@@ -173,15 +173,37 @@ public class ChatGPTController {
     }
 
     @GetMapping("/sessions")
-    @Operation(summary = "Lấy danh sách sessions")
-    public ResponseEntity<Map<String, Object>> getAllSessions() {
+    @Operation(summary = "Lấy danh sách sessions (phân trang theo cursor, mới nhất trước)")
+    public ResponseEntity<Map<String, Object>> getAllSessions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(name = "max_age_minutes", required = false) Integer maxAgeMinutes,
+            @RequestParam(name = "min_messages", required = false) Integer minMessages,
+            @RequestParam(name = "max_messages", required = false) Integer maxMessages) {
         try {
-            List<Map<String, Object>> sessions = chatSessionService.getAllSessions();
-            return ResponseEntity.ok(Map.of(
-                "status", "success",
-                "session_count", sessions.size(),
-                "sessions", sessions
-            ));
+            Map<String, Object> page = chatSessionService.getSessionPage(
+                    cursor, limit, maxAgeMinutes, minMessages, maxMessages);
+            
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", "success");
+            response.put("session_count", page.get("total_active_sessions"));
+            response.putAll(page);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/sessions/stats")
+    @Operation(summary = "Thống kê session store (eviction, heap usage)")
+    public ResponseEntity<Map<String, Object>> getSessionStoreStats() {
+        try {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", "success");
+            response.putAll(chatSessionService.getSessionStoreStats());
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             return ResponseEntity.status(500).body(Map.of("error", e.getMessage()));
         }
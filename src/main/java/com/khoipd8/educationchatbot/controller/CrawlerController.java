@@ -1,14 +1,20 @@
 package com.khoipd8.educationchatbot.controller;
 
 import com.khoipd8.educationchatbot.dto.UniversityInfo;
-import com.khoipd8.educationchatbot.entity.Program;
+import com.khoipd8.educationchatbot.entity.CrawlJob;
 import com.khoipd8.educationchatbot.entity.University;
+import com.khoipd8.educationchatbot.repository.ProgramBatchRepository;
+import com.khoipd8.educationchatbot.repository.ProgramRepository;
 import com.khoipd8.educationchatbot.repository.UniversityRepository;
+import com.khoipd8.educationchatbot.service.CrawlArchiveService;
+import com.khoipd8.educationchatbot.service.CrawlJobService;
 import com.khoipd8.educationchatbot.service.TuyenSinh247CrawlerService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -18,8 +24,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @RestController
 @RequestMapping("/api/crawler")
@@ -33,10 +37,15 @@ public class CrawlerController {
     @Autowired
     private UniversityRepository universityRepository;
     
-    // Global crawl status tracking
-    private volatile boolean crawlInProgress = false;
-    private CompletableFuture<Map<String, Object>> currentCrawlFuture = null;
-    private Map<String, Object> lastCrawlResult = new HashMap<>();
+    @Autowired
+    private ProgramRepository programRepository;
+    
+    // Trạng thái crawl được lưu DB (crawl_jobs / crawl_job_items), không giữ trong field
+    @Autowired
+    private CrawlJobService crawlJobService;
+    
+    @Autowired
+    private CrawlArchiveService archiveService;
     
     /**
      * 🔍 DISCOVER UNIVERSITIES
@@ -115,52 +124,39 @@ public class CrawlerController {
             String upperCode = code.toUpperCase();
             log.info("🎯 Starting single university crawl for: {}", upperCode);
             
-            // Check if university exists before crawling
-            Optional<University> existingUniversity = universityRepository.findByCode(upperCode);
-            boolean isUpdate = existingUniversity.isPresent();
-            
             // Crawl fresh data from website
             University crawledUniversity = crawlerService.crawlSingleUniversity(upperCode);
             
-            University saved;
-            String action;
-            int oldProgramCount = 0;
+            // Ghi theo diff: chỉ insert / update / delete chương trình thay đổi
+            ProgramBatchRepository.SyncResult sync = crawlerService.saveCrawledUniversity(crawledUniversity);
+            boolean isUpdate = !"created".equals(sync.action());
+            int oldProgramCount = isUpdate ? sync.previousProgramCount() : 0;
             
-            if (isUpdate) {
-                // UPDATE existing university
-                University existing = existingUniversity.get();
-                oldProgramCount = existing.getPrograms().size();
-                
-                updateExistingUniversityData(existing, crawledUniversity);
-                saved = universityRepository.save(existing);
-                action = "updated";
-                
-                log.info("🔄 Updated existing university: {} (Programs: {} → {})", 
-                        saved.getName(), oldProgramCount, saved.getPrograms().size());
-            } else {
-                // CREATE new university
-                saved = universityRepository.save(crawledUniversity);
-                action = "created";
-                
-                log.info("🆕 Created new university: {} ({} programs)", 
-                        saved.getName(), saved.getPrograms().size());
-            }
+            log.info("🔄 {} university: {} (Programs: {} → {}, +{} ~{} -{})", sync.action(),
+                    crawledUniversity.getName(), oldProgramCount, sync.programCount(),
+                    sync.inserted(), sync.updated(), sync.deleted());
             
             response.put("status", "success");
             response.put("operation", "crawl_single");
-            response.put("action", action);
+            response.put("action", sync.action());
             response.put("is_update", isUpdate);
-            response.put("message", String.format("Successfully %s university: %s", action, saved.getName()));
+            response.put("message", String.format("Successfully %s university: %s", sync.action(), crawledUniversity.getName()));
             response.put("university", Map.of(
-                "id", saved.getId(),
-                "name", saved.getName(),
-                "code", saved.getCode(),
-                "location", saved.getLocation() != null ? saved.getLocation() : "N/A",
-                "programs_count", saved.getPrograms().size(),
+                "id", sync.universityId(),
+                "name", crawledUniversity.getName(),
+                "code", crawledUniversity.getCode(),
+                "location", crawledUniversity.getLocation() != null ? crawledUniversity.getLocation() : "N/A",
+                "programs_count", sync.programCount(),
                 "old_programs_count", oldProgramCount,
-                "programs_change", saved.getPrograms().size() - oldProgramCount,
+                "programs_change", sync.programCount() - oldProgramCount,
                 "last_updated", System.currentTimeMillis()
             ));
+            response.put("program_changes", Map.of(
+                "inserted", sync.inserted(),
+                "updated", sync.updated(),
+                "deleted", sync.deleted(),
+                "unchanged", sync.unchanged()
+            ));
             
         } catch (Exception e) {
             log.error("❌ Single crawl failed for: {}", code, e);
@@ -197,47 +193,40 @@ public class CrawlerController {
         
         Map<String, Object> response = new HashMap<>();
         
-        if (crawlInProgress) {
+        Optional<CrawlJob> running = crawlJobService.findRunningJob(CrawlJobService.JOB_CRAWL_ALL);
+        if (running.isPresent()) {
             response.put("status", "already_running");
             response.put("operation", "crawl_all");
             response.put("message", "Crawl process is already running. Please wait for completion or stop it first.");
-            response.put("current_progress", getCurrentProgress());
+            response.put("current_progress", crawlJobService.buildProgress(running.get()));
             return ResponseEntity.ok(response);
         }
         
         try {
-            crawlInProgress = true;
             log.info("🚀 Starting FULL CRAWL operation (forceUpdate: {}, skipExisting: {})", 
                     forceUpdate, skipExisting);
             
-            currentCrawlFuture = crawlAllUniversitiesAsync(forceUpdate, skipExisting);
-            
-            // Setup completion handler
-            currentCrawlFuture.whenComplete((result, throwable) -> {
-                crawlInProgress = false;
-                if (throwable != null) {
-                    log.error("❌ Full crawl failed", throwable);
-                    lastCrawlResult.put("status", "failed");
-                    lastCrawlResult.put("error", throwable.getMessage());
-                } else {
-                    log.info("✅ Full crawl completed: {}", result);
-                    lastCrawlResult = result;
-                }
-                lastCrawlResult.put("completed_at", System.currentTimeMillis());
-            });
+            CrawlJob job = crawlJobService.startCrawlAll(forceUpdate, skipExisting);
             
             response.put("status", "started");
             response.put("operation", "crawl_all");
-            response.put("message", "Full crawl process started asynchronously");
+            response.put("message", "Full crawl job started asynchronously");
+            response.put("job_id", job.getId());
+            response.put("total_items", job.getTotalItems());
+            response.put("skipped_items", job.getSkippedItems());
             response.put("options", Map.of(
                 "force_update", forceUpdate,
                 "skip_existing", skipExisting
             ));
             response.put("started_at", System.currentTimeMillis());
-            response.put("estimated_time_minutes", "15-30");
+            response.put("estimated_time_minutes", "3-5");
             
+        } catch (IllegalStateException e) {
+            response.put("status", "already_running");
+            response.put("operation", "crawl_all");
+            response.put("message", e.getMessage());
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
-            crawlInProgress = false;
             log.error("❌ Failed to start full crawl", e);
             response.put("status", "error");
             response.put("operation", "crawl_all");
@@ -258,20 +247,23 @@ public class CrawlerController {
         Map<String, Object> status = new HashMap<>();
         
         try {
-            // Current crawl status
+            // Current crawl status (từ crawl_jobs)
+            Optional<CrawlJob> running = crawlJobService.findRunningJob(CrawlJobService.JOB_CRAWL_ALL);
+            Optional<CrawlJob> latest = crawlJobService.findLatestJob();
+            
             status.put("operation", "status_check");
-            status.put("crawl_in_progress", crawlInProgress);
+            status.put("crawl_in_progress", running.isPresent());
             status.put("timestamp", System.currentTimeMillis());
             
-            if (crawlInProgress && currentCrawlFuture != null) {
+            if (running.isPresent()) {
                 status.put("crawl_status", "running");
                 status.put("message", "Crawl is currently in progress...");
-                status.put("progress", getCurrentProgress());
-            } else if (!lastCrawlResult.isEmpty()) {
+                status.put("progress", crawlJobService.buildProgress(running.get()));
+            } else if (latest.isPresent()) {
                 status.put("crawl_status", "idle");
-                status.put("last_crawl_result", lastCrawlResult);
+                status.put("last_crawl_result", crawlJobService.buildProgress(latest.get()));
                 
-                if (lastCrawlResult.containsKey("status") && "completed".equals(lastCrawlResult.get("status"))) {
+                if (CrawlJobService.STATUS_COMPLETED.equals(latest.get().getStatus())) {
                     status.put("message", "Last crawl completed successfully");
                 } else {
                     status.put("message", "Last crawl failed or was interrupted");
@@ -281,19 +273,13 @@ public class CrawlerController {
                 status.put("message", "No crawl has been executed yet");
             }
             
-            // Database statistics
+            // Database statistics (COUNT, không load entity)
             long totalUniversities = universityRepository.count();
-            long totalPrograms = universityRepository.findAll().stream()
-                    .mapToLong(u -> u.getPrograms().size())
-                    .sum();
-            
-            // Get recent updates (universities updated in last 24 hours)
-            long recentUpdates = universityRepository.findAll().stream()
-                    .filter(u -> u.getUpdatedAt() != null)
-                    .filter(u -> u.getUpdatedAt().isAfter(
-                            java.time.LocalDateTime.now().minusHours(24)))
-                    .count();
+            long totalPrograms = programRepository.count();
+            long recentUpdates = universityRepository.countByUpdatedAtAfter(
+                    java.time.LocalDateTime.now().minusHours(24));
             
+            status.put("discovery_cache", crawlerService.getDiscoveryCacheStats());
             status.put("database_stats", Map.of(
                 "total_universities", totalUniversities,
                 "total_programs", totalPrograms,
@@ -317,6 +303,7 @@ public class CrawlerController {
      * Operation: Crawl một nhóm trường cụ thể theo danh sách mã trường
      * Logic: Update nếu có, tạo mới nếu chưa có
      * Purpose: Crawl selective cho testing hoặc cập nhật nhóm trường cụ thể
+     * Mode: Asynchronous - trả về job_id ngay, theo dõi qua /jobs/{jobId}, /jobs/{jobId}/items hoặc SSE /jobs/{jobId}/events
      */
     @PostMapping("/crawl-batch")
     public ResponseEntity<Map<String, Object>> crawlBatchUniversities(@RequestBody Map<String, Object> request) {
@@ -334,99 +321,21 @@ public class CrawlerController {
                 return ResponseEntity.badRequest().body(response);
             }
             
-            log.info("🔄 Starting BATCH CRAWL for {} universities (forceUpdate: {})", 
+            log.info("🔄 Starting BATCH CRAWL job for {} universities (forceUpdate: {})", 
                     codes.size(), forceUpdate);
             
-            AtomicInteger successful = new AtomicInteger(0);
-            AtomicInteger updated = new AtomicInteger(0);
-            AtomicInteger created = new AtomicInteger(0);
-            AtomicInteger failed = new AtomicInteger(0);
-            AtomicInteger skipped = new AtomicInteger(0);
-            
-            List<Map<String, Object>> results = new ArrayList<>();
-            
-            for (String code : codes) {
-                try {
-                    String upperCode = code.toUpperCase();
-                    
-                    // Check if exists
-                    Optional<University> existing = universityRepository.findByCode(upperCode);
-                    boolean shouldSkip = existing.isPresent() && !forceUpdate;
-                    
-                    if (shouldSkip) {
-                        skipped.incrementAndGet();
-                        results.add(Map.of(
-                            "code", upperCode,
-                            "status", "skipped",
-                            "reason", "Already exists and force_update=false"
-                        ));
-                        continue;
-                    }
-                    
-                    // Crawl university
-                    University crawledUniversity = crawlerService.crawlSingleUniversity(upperCode);
-                    
-                    if (existing.isPresent()) {
-                        // Update
-                        University existingU = existing.get();
-                        updateExistingUniversityData(existingU, crawledUniversity);
-                        universityRepository.save(existingU);
-                        updated.incrementAndGet();
-                        
-                        results.add(Map.of(
-                            "code", upperCode,
-                            "status", "updated",
-                            "name", existingU.getName(),
-                            "programs_count", existingU.getPrograms().size()
-                        ));
-                    } else {
-                        // Create
-                        University saved = universityRepository.save(crawledUniversity);
-                        created.incrementAndGet();
-                        
-                        results.add(Map.of(
-                            "code", upperCode,
-                            "status", "created",
-                            "name", saved.getName(),
-                            "programs_count", saved.getPrograms().size()
-                        ));
-                    }
-                    
-                    successful.incrementAndGet();
-                    
-                    // Rate limiting
-                    Thread.sleep(1500);
-                    
-                } catch (Exception e) {
-                    log.error("❌ Failed to crawl university: {}", code, e);
-                    failed.incrementAndGet();
-                    
-                    results.add(Map.of(
-                        "code", code.toUpperCase(),
-                        "status", "failed",
-                        "error", e.getMessage()
-                    ));
-                }
-            }
+            CrawlJob job = crawlJobService.startCrawlBatch(codes, forceUpdate);
             
-            response.put("status", "completed");
+            response.put("status", "started");
             response.put("operation", "crawl_batch");
-            response.put("summary", Map.of(
-                "total_requested", codes.size(),
-                "successful", successful.get(),
-                "created", created.get(),
-                "updated", updated.get(),
-                "skipped", skipped.get(),
-                "failed", failed.get()
-            ));
+            response.put("job_id", job.getId());
+            response.put("total_requested", job.getTotalItems());
             response.put("options", Map.of("force_update", forceUpdate));
-            response.put("results", results);
-            response.put("message", String.format(
-                "Batch crawl completed: %d successful (%d created, %d updated), %d skipped, %d failed", 
-                successful.get(), created.get(), updated.get(), skipped.get(), failed.get()));
-            
-            log.info("✅ Batch crawl completed: {} successful, {} failed", 
-                    successful.get(), failed.get());
+            response.put("status_url", "/api/crawler/jobs/" + job.getId());
+            response.put("results_url", "/api/crawler/jobs/" + job.getId() + "/items");
+            response.put("events_url", "/api/crawler/jobs/" + job.getId() + "/events");
+            response.put("message", String.format("Batch crawl job %d started for %d universities", 
+                    job.getId(), job.getTotalItems()));
             
         } catch (Exception e) {
             log.error("❌ Batch crawl error", e);
@@ -445,29 +354,29 @@ public class CrawlerController {
      * Purpose: Emergency stop hoặc cancel crawl
      */
     @PostMapping("/stop")
-    public ResponseEntity<Map<String, Object>> stopCrawl() {
+    public ResponseEntity<Map<String, Object>> stopCrawl(
+            @Parameter(description = "Chỉ dừng job này (bỏ trống = dừng mọi job đang chạy)")
+            @RequestParam(name = "job_id", required = false) Long jobId) {
         Map<String, Object> response = new HashMap<>();
         
-        if (!crawlInProgress) {
-            response.put("status", "not_running");
-            response.put("operation", "stop_crawl");
-            response.put("message", "No crawl process is currently running");
-            return ResponseEntity.ok(response);
-        }
-        
         try {
-            log.info("⏹️ Stopping crawl process...");
-            
-            if (currentCrawlFuture != null) {
-                boolean cancelled = currentCrawlFuture.cancel(true);
-                response.put("cancelled", cancelled);
+            log.info("⏹️ Stopping crawl process (job: {})...", jobId != null ? jobId : "all");
+            
+            // Hủy hợp tác: worker dừng lấy trang mới, item còn lại chuyển sang cancelled
+            int cancelled = jobId != null
+                    ? (crawlJobService.cancelJob(jobId) ? 1 : 0)
+                    : crawlJobService.cancelRunningJobs();
+            if (cancelled == 0) {
+                response.put("status", "not_running");
+                response.put("operation", "stop_crawl");
+                response.put("message", "No crawl process is currently running");
+                return ResponseEntity.ok(response);
             }
             
-            crawlInProgress = false;
-            
             response.put("status", "stopped");
             response.put("operation", "stop_crawl");
-            response.put("message", "Crawl process has been stopped");
+            response.put("cancelled_jobs", cancelled);
+            response.put("message", "Crawl stop requested - pages in flight will finish first");
             response.put("stopped_at", System.currentTimeMillis());
             
             log.info("✅ Crawl process stopped");
@@ -482,6 +391,107 @@ public class CrawlerController {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * 📋 GET CRAWL JOB
+     * Operation: Xem tiến độ một crawl job (frontier lưu DB, còn nguyên sau restart)
+     * Purpose: Theo dõi tiến độ, throughput và ETA của job
+     */
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Tiến độ crawl job", 
+               description = "Số item theo trạng thái, kết quả, throughput và ETA của một crawl job")
+    public ResponseEntity<Map<String, Object>> getCrawlJob(@PathVariable Long jobId) {
+        return crawlJobService.getJobProgress(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of(
+                    "status", "not_found",
+                    "message", "Crawl job " + jobId + " not found"
+                )));
+    }
+    
+    /**
+     * 📋 GET CRAWL JOB RESULTS
+     * Operation: Kết quả từng mã trường đã xử lý xong của job
+     * Purpose: Poll kết quả batch crawl thay cho SSE
+     */
+    @GetMapping("/jobs/{jobId}/items")
+    public ResponseEntity<Map<String, Object>> getCrawlJobItems(@PathVariable Long jobId) {
+        Optional<Map<String, Object>> progress = crawlJobService.getJobProgress(jobId);
+        if (progress.isEmpty()) {
+            return ResponseEntity.status(404).body(Map.of(
+                "status", "not_found",
+                "message", "Crawl job " + jobId + " not found"
+            ));
+        }
+        
+        Map<String, Object> response = new HashMap<>();
+        response.put("job", progress.get());
+        response.put("results", crawlJobService.getFinishedItems(jobId));
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 📡 STREAM CRAWL JOB EVENTS
+     * Operation: Server-Sent Events - "item" cho từng mã xong, "job" khi job kết thúc
+     * Purpose: Nhận kết quả batch crawl theo thời gian thực
+     */
+    @GetMapping(value = "/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream kết quả crawl job", 
+               description = "SSE: phát lại các mã đã xong rồi phát tiếp từng mã khi xong; sự kiện 'job' cuối cùng chứa tiến độ tổng")
+    public SseEmitter streamCrawlJobEvents(@PathVariable Long jobId) {
+        return crawlJobService.subscribe(jobId);
+    }
+    
+    /**
+     * 📦 CRAWL ARCHIVE STATS
+     * Operation: Danh sách segment archive (1 segment / crawl job), số bản ghi, dung lượng
+     * Purpose: Kiểm tra HTML gốc đã lưu trước khi parse lại
+     */
+    @GetMapping("/archive")
+    @Operation(summary = "Thống kê crawl archive", 
+               description = "Các segment HTML gốc đã lưu và số trường có bản lưu")
+    public ResponseEntity<Map<String, Object>> getArchiveStats() {
+        try {
+            Map<String, Object> response = archiveService.getStats();
+            response.put("reparse", archiveService.getReparseStatus());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error reading crawl archive", e);
+            return ResponseEntity.status(500).body(Map.of(
+                "status", "error",
+                "message", e.getMessage()
+            ));
+        }
+    }
+    
+    /**
+     * ♻️ REPARSE FROM ARCHIVE
+     * Operation: Parse lại HTML đã lưu (1 segment, hoặc bản mới nhất của mỗi trường) và ghi DB theo diff
+     * Purpose: Áp dụng parser mới cho dữ liệu cũ mà không crawl lại website
+     * Database impact: INSERT/UPDATE/DELETE programs thay đổi
+     */
+    @PostMapping("/archive/reparse")
+    @Operation(summary = "Parse lại từ archive", 
+               description = "Chạy nền, parse song song từ bytes local; xem kết quả tại GET /api/crawler/archive")
+    public ResponseEntity<Map<String, Object>> reparseFromArchive(
+            @Parameter(description = "Tên segment (vd: job-12-crawl_all); bỏ trống = bản mới nhất của mỗi trường")
+            @RequestParam(required = false) String segment,
+            @RequestBody(required = false) List<String> codes) {
+        try {
+            return ResponseEntity.ok(archiveService.startReparse(segment, codes));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(Map.of(
+                "status", "already_running",
+                "message", e.getMessage()
+            ));
+        } catch (Exception e) {
+            log.error("Error starting archive reparse", e);
+            return ResponseEntity.status(500).body(Map.of(
+                "status", "error",
+                "message", e.getMessage()
+            ));
+        }
+    }
+    
     /**
      * 🔗 TEST CONNECTION
      * Operation: Test kết nối đến website tuyensinh247.com
@@ -541,7 +551,7 @@ public class CrawlerController {
         try {
             log.info("📋 Getting sample universities (limit: {})...", limit);
             
-            List<UniversityInfo> universities = crawlerService.discoverUniversities();
+            List<UniversityInfo> universities = crawlerService.getDiscoveredUniversities();
             
             // Get sample with mix of existing and new
             List<UniversityInfo> sample = universities.stream().limit(limit).toList();
@@ -589,160 +599,4 @@ public class CrawlerController {
         
         return ResponseEntity.ok(response);
     }
-    
-    // ====== HELPER METHODS ======
-    
-    private CompletableFuture<Map<String, Object>> crawlAllUniversitiesAsync(boolean forceUpdate, boolean skipExisting) {
-        return CompletableFuture.supplyAsync(() -> {
-            Map<String, Object> result = new HashMap<>();
-            
-            try {
-                log.info("🚀 Starting async full crawl...");
-                
-                // Discover all universities
-                List<UniversityInfo> universityInfos = crawlerService.discoverUniversities();
-                log.info("📋 Discovered {} universities to process", universityInfos.size());
-                
-                AtomicInteger processed = new AtomicInteger(0);
-                AtomicInteger created = new AtomicInteger(0);
-                AtomicInteger updated = new AtomicInteger(0);
-                AtomicInteger skipped = new AtomicInteger(0);
-                AtomicInteger errors = new AtomicInteger(0);
-                
-                for (UniversityInfo info : universityInfos) {
-                    try {
-                        Optional<University> existing = universityRepository.findByCode(info.getCode());
-                        boolean exists = existing.isPresent();
-                        
-                        // Skip logic
-                        if (exists && skipExisting && !forceUpdate) {
-                            skipped.incrementAndGet();
-                            continue;
-                        }
-                        
-                        // Crawl university data
-                        University crawledUniversity = crawlerService.crawlUniversityDetails(info);
-                        
-                        if (exists) {
-                            // Update existing
-                            University existingU = existing.get();
-                            updateExistingUniversityData(existingU, crawledUniversity);
-                            universityRepository.save(existingU);
-                            updated.incrementAndGet();
-                        } else {
-                            // Create new
-                            universityRepository.save(crawledUniversity);
-                            created.incrementAndGet();
-                        }
-                        
-                        processed.incrementAndGet();
-                        
-                        // Progress logging
-                        if (processed.get() % 10 == 0) {
-                            log.info("📊 Progress: {}/{} processed (Created: {}, Updated: {}, Skipped: {}, Errors: {})", 
-                                    processed.get(), universityInfos.size(), 
-                                    created.get(), updated.get(), skipped.get(), errors.get());
-                        }
-                        
-                        // Rate limiting
-                        Thread.sleep(1000 + (long)(Math.random() * 1000));
-                        
-                    } catch (Exception e) {
-                        errors.incrementAndGet();
-                        log.error("❌ Error processing university {}: {}", info.getName(), e.getMessage());
-                        
-                        // Continue with next university
-                        try {
-                            Thread.sleep(2000); // Longer delay on error
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                            break;
-                        }
-                    }
-                }
-                
-                result.put("status", "completed");
-                result.put("operation", "crawl_all");
-                result.put("total_discovered", universityInfos.size());
-                result.put("processed", processed.get());
-                result.put("created", created.get());
-                result.put("updated", updated.get());
-                result.put("skipped", skipped.get());
-                result.put("errors", errors.get());
-                result.put("success_rate", processed.get() > 0 ? 
-                        Math.round((double)(processed.get() - errors.get()) / processed.get() * 100.0) : 0);
-                
-                log.info("✅ Full crawl completed: {} processed, {} created, {} updated, {} skipped, {} errors", 
-                        processed.get(), created.get(), updated.get(), skipped.get(), errors.get());
-                
-            } catch (Exception e) {
-                log.error("❌ Fatal error in full crawl", e);
-                result.put("status", "failed");
-                result.put("operation", "crawl_all");
-                result.put("error", e.getMessage());
-            }
-            
-            return result;
-        });
-    }
-    
-    private void updateExistingUniversityData(University existing, University newData) {
-        // Update university basic info
-        existing.setName(newData.getName());
-        existing.setFullName(newData.getFullName());
-        
-        if (newData.getLocation() != null && !newData.getLocation().equals("Chưa xác định")) {
-            existing.setLocation(newData.getLocation());
-        }
-        if (newData.getDescription() != null) {
-            existing.setDescription(newData.getDescription());
-        }
-        if (newData.getWebsite() != null) {
-            existing.setWebsite(newData.getWebsite());
-        }
-        if (newData.getType() != null) {
-            existing.setType(newData.getType());
-        }
-        
-        // Smart program update: merge instead of replace
-        Map<String, Program> existingProgramsMap = new HashMap<>();
-        for (Program p : existing.getPrograms()) {
-            String key = p.getName() + "|" + (p.getNote() != null ? p.getNote() : "");
-            existingProgramsMap.put(key, p);
-        }
-        
-        // Clear and rebuild program list
-        existing.getPrograms().clear();
-        
-        for (Program newProgram : newData.getPrograms()) {
-            String key = newProgram.getName() + "|" + (newProgram.getNote() != null ? newProgram.getNote() : "");
-            Program existingProgram = existingProgramsMap.get(key);
-            
-            if (existingProgram != null) {
-                // Update existing program
-                if (newProgram.getBenchmarkScore2024() != null) {
-                    existingProgram.setBenchmarkScore2024(newProgram.getBenchmarkScore2024());
-                }
-                if (newProgram.getSubjectCombination() != null) {
-                    existingProgram.setSubjectCombination(newProgram.getSubjectCombination());
-                }
-                if (newProgram.getAdmissionMethod() != null) {
-                    existingProgram.setAdmissionMethod(newProgram.getAdmissionMethod());
-                }
-                existing.getPrograms().add(existingProgram);
-            } else {
-                // Add new program
-                newProgram.setUniversity(existing);
-                existing.getPrograms().add(newProgram);
-            }
-        }
-    }
-    
-    private Map<String, Object> getCurrentProgress() {
-        // This could be enhanced to track actual progress
-        return Map.of(
-            "status", crawlInProgress ? "running" : "idle",
-            "message", crawlInProgress ? "Crawl in progress..." : "No active crawl"
-        );
-    }
 }       
\ No newline at end of file
@@ -5,10 +5,19 @@ import com.khoipd8.educationchatbot.repository.StudentScoreRepository;
 import com.khoipd8.educationchatbot.repository.CombinationScoreRepository;
 import com.khoipd8.educationchatbot.entity.CombinationScore;
 import com.khoipd8.educationchatbot.service.SeleniumSBDService;
+import com.khoipd8.educationchatbot.service.SeleniumDriverPool;
+import com.khoipd8.educationchatbot.service.SBDNegativeCache;
+import com.khoipd8.educationchatbot.service.BulkSBDLookupService;
+import com.khoipd8.educationchatbot.service.SBDRangeSweeperService;
+import com.khoipd8.educationchatbot.service.StudentScoreReadModel;
+import com.khoipd8.educationchatbot.service.SBDSingleFlight;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.bind.annotation.*;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -23,6 +32,10 @@ import org.openqa.selenium.support.ui.ExpectedConditions;
 
 import org.openqa.selenium.JavascriptExecutor;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.HashMap;
@@ -53,6 +66,26 @@ public class SBDLookupController {
     @Autowired
     private SeleniumSBDService seleniumSBDService;
 
+    @Autowired
+    private SeleniumDriverPool seleniumDriverPool;
+
+    @Autowired
+    private SBDNegativeCache sbdNegativeCache;
+
+    @Autowired
+    private StudentScoreReadModel studentScoreReadModel;
+
+    @Autowired
+    private SBDSingleFlight sbdSingleFlight;
+
+    @Autowired
+    private BulkSBDLookupService bulkSBDLookupService;
+
+    @Autowired
+    private SBDRangeSweeperService sbdRangeSweeperService;
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     /**
      * 🤖 SELENIUM LOOKUP - CHẮC CHẮN THÀNH CÔNG
      */
@@ -76,6 +109,51 @@ public class SBDLookupController {
         }
     }
 
+    /**
+     * 📊 SELENIUM POOL STATS
+     */
+    @GetMapping("/selenium-pool/stats")
+    @Operation(summary = "Thống kê pool Chrome driver", description = "Số driver đang sống, rảnh, đã tạo và đã thay mới.")
+    public ResponseEntity<Map<String, Object>> getSeleniumPoolStats() {
+        return ResponseEntity.ok(seleniumDriverPool.getPoolStats());
+    }
+
+    /**
+     * 📊 NEGATIVE CACHE STATS
+     */
+    @GetMapping("/negative-cache/stats")
+    @Operation(summary = "Thống kê cache SBD không tồn tại", description = "Số entry, số lần trả lời từ cache và số lần Bloom filter loại trước.")
+    public ResponseEntity<Map<String, Object>> getNegativeCacheStats() {
+        return ResponseEntity.ok(sbdNegativeCache.getStats());
+    }
+
+    /**
+     * 📊 WEB CRAWL STRATEGY STATS
+     */
+    @GetMapping("/web-crawl/stats")
+    @Operation(summary = "Thống kê các cách crawl website", description = "Số lần thử, tỉ lệ thành công, độ trễ EWMA và hedge delay của từng cách crawl.")
+    public ResponseEntity<Map<String, Object>> getWebCrawlStats() {
+        return ResponseEntity.ok(sbdLookupService.getWebCrawlStrategyStats());
+    }
+
+    /**
+     * 📊 SINGLE-FLIGHT STATS
+     */
+    @GetMapping("/single-flight/stats")
+    @Operation(summary = "Thống kê gộp request trùng SBD", description = "Số lần thực sự tra cứu và số request được gộp vào tra cứu đang chạy.")
+    public ResponseEntity<Map<String, Object>> getSingleFlightStats() {
+        return ResponseEntity.ok(sbdSingleFlight.getStats());
+    }
+
+    /**
+     * 📊 READ CACHE STATS
+     */
+    @GetMapping("/read-cache/stats")
+    @Operation(summary = "Thống kê cache điểm thi theo SBD", description = "Số entry, hit/miss của read model học sinh + tổ hợp.")
+    public ResponseEntity<Map<String, Object>> getReadCacheStats() {
+        return ResponseEntity.ok(studentScoreReadModel.getStats());
+    }
+
     /**
  * 🔍 DEBUG SELENIUM - Xem browser hoạt động
  */
@@ -191,25 +269,112 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
         }
     }
 
-    @Operation(summary = "Lấy tất cả SBD đã lưu", description = "Trả về danh sách tất cả SBD đã lưu trong database.")
-    @GetMapping("/all")
-    public ResponseEntity<List<String>> getAllSBDs() {
-        List<String> allSBDs = studentScoreRepository.findAll().stream().map(s -> s.getSbd()).toList();
-        return ResponseEntity.ok(allSBDs);
+    /**
+     * 📦 BULK LOOKUP - tra cứu nhiều SBD, trả kết quả dạng NDJSON (stream)
+     */
+    @Operation(summary = "Tra cứu hàng loạt SBD", description = "Nhận danh sách SBD, trả từng kết quả dạng NDJSON ngay khi có. SBD đã có trong database được trả ngay, còn lại gọi API song song có giới hạn.")
+    @PostMapping(value = "/bulk-lookup", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> bulkLookup(@RequestBody Map<String, Object> request) {
+        Object rawSbds = request.get("sbds");
+        if (!(rawSbds instanceof List<?> rawList)) {
+            return ResponseEntity.badRequest().build();
+        }
+        String region = request.get("region") != null ? request.get("region").toString() : "Toàn quốc";
+        
+        try {
+            List<String> sbds = bulkSBDLookupService.normalizeSbds(
+                    rawList.stream().map(String::valueOf).collect(Collectors.toList()));
+            log.info("📦 Bulk lookup for {} SBDs in region: {}", sbds.size(), region);
+            
+            StreamingResponseBody body = out -> bulkSBDLookupService.streamLookup(sbds, region, out);
+            return ResponseEntity.ok().contentType(NDJSON).body(body);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid bulk lookup request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @Operation(summary = "Tra cứu hàng loạt SBD từ file", description = "Upload file text/CSV chứa SBD (mỗi dòng hoặc phân tách bởi dấu phẩy), trả kết quả dạng NDJSON.")
+    @PostMapping(value = "/bulk-lookup/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> bulkLookupUpload(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(defaultValue = "Toàn quốc") String region) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            List<String> sbds = bulkSBDLookupService.normalizeSbds(bulkSBDLookupService.readSbds(reader));
+            log.info("📦 Bulk lookup from file {} with {} SBDs", file.getOriginalFilename(), sbds.size());
+            
+            StreamingResponseBody body = out -> bulkSBDLookupService.streamLookup(sbds, region, out);
+            return ResponseEntity.ok().contentType(NDJSON).body(body);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid bulk lookup file: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            log.error("Error reading bulk lookup file", e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    /**
+     * 🧹 SBD SWEEPER - nạp trước điểm theo dải SBD của từng tỉnh
+     */
+    @Operation(summary = "Bắt đầu quét trước dải SBD", description = "Quét SBD theo mã tỉnh (2 chữ số đầu), gọi API với tốc độ giới hạn và lưu theo batch. Tiến độ được checkpoint nên có thể chạy tiếp sau khi restart.")
+    @PostMapping("/sweeper/start")
+    public ResponseEntity<Map<String, Object>> startSweeper(
+            @Parameter(description = "Danh sách mã tỉnh, phân tách bởi dấu phẩy", example = "01,02") @RequestParam List<String> prefixes,
+            @RequestParam(defaultValue = "Toàn quốc") String region,
+            @Parameter(description = "Quét lại từ đầu (bỏ checkpoint cũ)") @RequestParam(defaultValue = "false") boolean restart) {
+        try {
+            return ResponseEntity.ok(sbdRangeSweeperService.startSweep(prefixes, region, restart));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("status", "error");
+            error.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    @Operation(summary = "Dừng sweeper", description = "Dừng sau batch hiện tại, checkpoint được giữ lại.")
+    @PostMapping("/sweeper/stop")
+    public ResponseEntity<Map<String, Object>> stopSweeper() {
+        return ResponseEntity.ok(sbdRangeSweeperService.stopSweep());
+    }
+
+    @Operation(summary = "Trạng thái sweeper", description = "Tiến độ, throughput và checkpoint của từng mã tỉnh.")
+    @GetMapping("/sweeper/status")
+    public ResponseEntity<Map<String, Object>> getSweeperStatus() {
+        return ResponseEntity.ok(sbdRangeSweeperService.getSweepStatus());
+    }
+
+    @Operation(summary = "Lấy tất cả SBD đã lưu", description = "Stream danh sách SBD đã lưu (sắp xếp tăng dần) dạng JSON array hoặc NDJSON. Phân trang keyset: after = SBD cuối của trang trước, limit = số SBD tối đa.")
+    @GetMapping(value = "/all", produces = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> getAllSBDs(
+            @RequestParam(defaultValue = "json") String format,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "0") int limit) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        StreamingResponseBody body = out -> bulkSBDLookupService.streamAllSbds(out, ndjson, after, limit);
+        return ResponseEntity.ok()
+                .contentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
     @Operation(summary = "Cập nhật lại điểm SBD (yêu cầu crawl lại)", description = "Crawl lại điểm thi cho SBD, cập nhật trạng thái là 'update'.")
     @PutMapping("/update/{sbd}")
     public ResponseEntity<Map<String, Object>> updateSBD(@PathVariable String sbd, @RequestParam(defaultValue = "Toàn quốc") String region) {
-        // Xóa dữ liệu cũ
-        combinationScoreRepository.deleteBySbd(sbd);
-        studentScoreRepository.deleteBySbd(sbd);
+        // Crawl lại thật sự - bỏ qua negative cache
+        sbdNegativeCache.invalidate(sbd);
         // Crawl lại
         Map<String, Object> result = sbdLookupService.getStudentScoreFromAPI(sbd, region);
         if ("found".equals(result.get("status")) && result.get("data") != null) {
+            // Upsert ghi đè dữ liệu cũ, tổ hợp không còn sẽ bị xóa
             sbdLookupService.saveStudentScoreFromAPIData((Map<String, Object>) result.get("data"), region);
             result.put("update_status", "updated");
         } else {
+            // Xóa dữ liệu cũ
+            combinationScoreRepository.deleteBySbd(sbd);
+            studentScoreRepository.deleteBySbd(sbd);
+            studentScoreReadModel.evict(sbd);
             result.put("update_status", "not_found");
         }
         return ResponseEntity.ok(result);
@@ -220,6 +385,7 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
     public ResponseEntity<Map<String, Object>> deleteSBD(@PathVariable String sbd) {
         combinationScoreRepository.deleteBySbd(sbd);
         studentScoreRepository.deleteBySbd(sbd);
+        studentScoreReadModel.evict(sbd);
         Map<String, Object> resp = new HashMap<>();
         resp.put("status", "deleted");
         resp.put("sbd", sbd);
@@ -240,10 +406,12 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
         
         try {
             log.info("Force refreshing data for SBD: {}", sbd);
+            sbdNegativeCache.invalidate(sbd);
             
             // Delete existing data
             combinationScoreRepository.deleteBySbd(sbd);
             studentScoreRepository.deleteBySbd(sbd);
+            studentScoreReadModel.evict(sbd);
             
             // Force crawl new data
             Map<String, Object> result = sbdLookupService.lookupStudentScore(sbd, region);
@@ -305,7 +473,8 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
     @GetMapping("/combination-analysis/{sbd}/{combinationCode}")
     public ResponseEntity<Map<String, Object>> getCombinationAnalysis(
             @PathVariable String sbd,
-            @PathVariable String combinationCode) {
+            @PathVariable String combinationCode,
+            @RequestParam(defaultValue = "0.5") double window) {
         
         Map<String, Object> response = new HashMap<>();
         
@@ -320,9 +489,10 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
             
             var combScore = combinationScores.get(0);
             
-            // Get comparison data
-            var similarScores = combinationScoreRepository.findByTotalScoreBetween(
-                combScore.getTotalScore() - 0.5, combScore.getTotalScore() + 0.5);
+            // Get comparison data - chỉ đếm trong cùng tổ hợp, không load entity
+            double halfWindow = Math.max(0, window);
+            long similarScores = combinationScoreRepository.countByCombinationCodeAndTotalScoreBetween(
+                combinationCode, combScore.getTotalScore() - halfWindow, combScore.getTotalScore() + halfWindow);
             
             response.put("status", "found");
             response.put("combination_analysis", Map.of(
@@ -336,7 +506,8 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
                     "students_with_higher_score", combScore.getStudentsWithHigherScore(),
                     "students_with_same_score", combScore.getStudentsWithSameScore(),
                     "total_students_in_combination", combScore.getTotalStudentsInCombination(),
-                    "similar_scores_nearby", similarScores.size()
+                    "similar_scores_nearby", similarScores,
+                    "similar_scores_window", halfWindow
                 ),
                 "equivalent_score_2024", combScore.getEquivalentScore2024(),
                 "performance_assessment", assessPerformance(combScore)
@@ -375,6 +546,7 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
             
             // Delete student score
             studentScoreRepository.deleteBySbd(sbd);
+            studentScoreReadModel.evict(sbd);
             
             response.put("status", "deleted");
             response.put("message", "Successfully deleted all data for SBD: " + sbd);
@@ -442,6 +614,7 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
             // Force delete any existing data
             combinationScoreRepository.deleteBySbd(sbd);
             studentScoreRepository.deleteBySbd(sbd);
+            studentScoreReadModel.evict(sbd);
             
             // Test different crawling approaches
             Map<String, Object> testResults = new HashMap<>();
@@ -1351,6 +1524,7 @@ public ResponseEntity<Map<String, Object>> debugSelenium(@PathVariable String sb
     public ResponseEntity<Map<String, Object>> deleteAllBySbd(@PathVariable String sbd) {
         combinationScoreRepository.deleteBySbd(sbd);
         studentScoreRepository.deleteBySbd(sbd);
+        studentScoreReadModel.evict(sbd);
         Map<String, Object> resp = new HashMap<>();
         resp.put("status", "deleted_all");
         resp.put("sbd", sbd);
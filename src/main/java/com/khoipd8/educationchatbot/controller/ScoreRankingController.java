@@ -2,6 +2,7 @@ package com.khoipd8.educationchatbot.controller;
 
 import com.khoipd8.educationchatbot.entity.ScoreRanking;
 import com.khoipd8.educationchatbot.repository.ScoreRankingRepository;
+import com.khoipd8.educationchatbot.service.ScoreDistributionService;
 import com.khoipd8.educationchatbot.service.ScoreRankingCrawlerService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,9 @@ public class ScoreRankingController {
     @Autowired
     private ScoreRankingRepository scoreRankingRepository;
     
+    @Autowired
+    private ScoreDistributionService scoreDistributionService;
+    
     /**
      * 🕷️ CRAWL SCORE RANKINGS
      * Operation: Crawl xếp hạng điểm thi cho năm cụ thể
@@ -274,4 +278,51 @@ public class ScoreRankingController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * 📈 ESTIMATE RANK FROM DISTRIBUTION
+     * Operation: Ước lượng thứ hạng từ phân bố điểm thực nghiệm
+     * Purpose: Trả lời hạng / percentile O(1) cho bất kỳ điểm nào
+     */
+    @GetMapping("/distribution/estimate")
+    public ResponseEntity<Map<String, Object>> estimateFromDistribution(
+            @RequestParam Integer year,
+            @RequestParam String combination,
+            @RequestParam(defaultValue = "Cả nước") String region,
+            @RequestParam Double score) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        ScoreDistributionService.RankEstimate estimate = scoreDistributionService.estimate(year, combination, region, score);
+        response.put("status", "success");
+        response.put("year", year);
+        response.put("combination", combination);
+        response.put("region", region);
+        response.put("score", score);
+        response.put("ranking_position", estimate.higher() + 1);
+        response.put("students_with_higher_score", estimate.higher());
+        response.put("students_with_same_score", estimate.same());
+        response.put("total_candidates", estimate.total());
+        response.put("percentile", estimate.percentile());
+        response.put("source", estimate.source());
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * 📊 DISTRIBUTION STATS
+     */
+    @GetMapping("/distribution/stats")
+    public ResponseEntity<Map<String, Object>> getDistributionStats() {
+        return ResponseEntity.ok(scoreDistributionService.getStats());
+    }
+    
+    /**
+     * 🔄 REBUILD DISTRIBUTIONS
+     */
+    @PostMapping("/distribution/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildDistributions() {
+        scoreDistributionService.rebuild();
+        return ResponseEntity.ok(scoreDistributionService.getStats());
+    }
 }
@@ -5,7 +5,9 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 @Entity
-@Table(name = "combination_scores")
+@Table(name = "combination_scores",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"sbd", "combination_code"}),
+       indexes = @Index(name = "idx_combination_scores_code_total", columnList = "combination_code, total_score"))
 @Data
 @EqualsAndHashCode
 public class CombinationScore {
@@ -45,6 +47,10 @@ public class CombinationScore {
     @Column(name = "equivalent_score_2024")
     private Double equivalentScore2024;
     
+    // Nguồn của thứ hạng: null/"upstream" = lấy từ upstream, "estimated" = ước lượng từ phân bố điểm
+    @Column(name = "rank_source", length = 16)
+    private String rankSource;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "student_score_id")
     private StudentScore studentScore;
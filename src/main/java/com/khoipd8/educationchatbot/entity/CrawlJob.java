@@ -0,0 +1,77 @@
+package com.khoipd8.educationchatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "crawl_jobs", indexes = @Index(name = "idx_crawl_jobs_status", columnList = "status"))
+@Data
+@EqualsAndHashCode
+public class CrawlJob {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_type", nullable = false, length = 32)
+    private String jobType; // crawl_all, crawl_batch
+    
+    @Column(name = "status", nullable = false, length = 32)
+    private String status; // running, completed, cancelled, failed
+    
+    @Column(name = "force_update", nullable = false)
+    private Boolean forceUpdate = false;
+    
+    @Column(name = "skip_existing", nullable = false)
+    private Boolean skipExisting = false;
+    
+    @Column(name = "total_items", nullable = false)
+    private Integer totalItems = 0;
+    
+    @Column(name = "skipped_items", nullable = false)
+    private Integer skippedItems = 0;
+    
+    @Column(name = "resume_count", nullable = false)
+    private Integer resumeCount = 0;
+    
+    @Column(name = "owner_id", length = 128)
+    private String ownerId; // Node đang chạy job
+    
+    @Column(name = "heartbeat_at")
+    private LocalDateTime heartbeatAt; // Node chủ gia hạn định kỳ; quá lease thì node khác được nhận job
+    
+    @Column(name = "cancel_requested")
+    private Boolean cancelRequested = false; // Hủy từ node khác: node chủ hủy ở lần heartbeat kế tiếp
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+    
+    @Column(name = "resumed_at")
+    private LocalDateTime resumedAt; // Lần chạy (hoặc chạy tiếp sau restart) gần nhất - dùng tính throughput
+    
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
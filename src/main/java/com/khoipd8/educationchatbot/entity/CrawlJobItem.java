@@ -0,0 +1,53 @@
+package com.khoipd8.educationchatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "crawl_job_items",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"job_id", "university_code"}),
+       indexes = @Index(name = "idx_crawl_job_items_job_status", columnList = "job_id, status"))
+@Data
+@EqualsAndHashCode
+public class CrawlJobItem {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+    
+    @Column(name = "university_code", nullable = false, length = 10)
+    private String universityCode;
+    
+    @Column(name = "university_name")
+    private String universityName;
+    
+    @Column(name = "url", nullable = false, length = 500)
+    private String url;
+    
+    @Column(name = "priority", nullable = false)
+    private Integer priority = 0;
+    
+    @Column(name = "order_key", nullable = false)
+    private Long orderKey = 0L;
+    
+    @Column(name = "status", nullable = false, length = 32)
+    private String status; // pending, done, failed, cancelled
+    
+    @Column(name = "outcome", length = 32)
+    private String outcome; // created, updated, unchanged, failed
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+}
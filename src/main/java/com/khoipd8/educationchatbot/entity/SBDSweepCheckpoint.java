@@ -0,0 +1,66 @@
+package com.khoipd8.educationchatbot.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "sbd_sweep_checkpoints",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"province_prefix", "region"}))
+@Data
+@EqualsAndHashCode
+public class SBDSweepCheckpoint {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "province_prefix", nullable = false, length = 2)
+    private String provincePrefix; // 2 chữ số đầu của SBD (mã sở GD&ĐT)
+    
+    @Column(name = "region", nullable = false)
+    private String region;
+    
+    @Column(name = "next_sequence", nullable = false)
+    private Integer nextSequence; // 6 chữ số cuối của SBD sẽ quét tiếp
+    
+    @Column(name = "last_found_sequence")
+    private Integer lastFoundSequence;
+    
+    @Column(name = "consecutive_misses", nullable = false)
+    private Integer consecutiveMisses = 0;
+    
+    @Column(name = "found_count", nullable = false)
+    private Integer foundCount = 0;
+    
+    @Column(name = "miss_count", nullable = false)
+    private Integer missCount = 0;
+    
+    @Column(name = "error_count", nullable = false)
+    private Integer errorCount = 0;
+    
+    @Column(name = "status", nullable = false)
+    private String status; // pending, running, paused, completed
+    
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+    
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = LocalDateTime.now();
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -43,6 +43,10 @@ public class ScoreRanking {
     @Column(name = "cumulative_frequency")
     private Integer cumulativeFrequency; // Tích lũy từ điểm này trở lên
     
+    // Nguồn dữ liệu: "crawled" = bảng xếp hạng thật; null = dữ liệu sinh từ mô hình (bản cũ)
+    @Column(name = "data_source", length = 16)
+    private String dataSource;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
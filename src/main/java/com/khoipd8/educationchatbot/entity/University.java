@@ -40,6 +40,17 @@ public class University {
     @Column(columnDefinition = "TEXT")
     private String description;
 
+    // Validator của trang điểm chuẩn lần crawl gần nhất (conditional GET)
+    @Column(name = "page_etag")
+    private String pageEtag;
+
+    @Column(name = "page_last_modified")
+    private String pageLastModified;
+
+    // SHA-256 nội dung đã chuẩn hóa của trang, để nhận ra trang không đổi khi server không hỗ trợ 304
+    @Column(name = "page_content_hash", length = 64)
+    private String pageContentHash;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
@@ -8,6 +8,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,12 +16,21 @@ public interface CombinationScoreRepository extends JpaRepository<CombinationSco
     
     List<CombinationScore> findBySbd(String sbd);
     
+    List<CombinationScore> findBySbdIn(Collection<String> sbds);
+    
     List<CombinationScore> findByCombinationCode(String combinationCode);
     
     List<CombinationScore> findBySbdAndCombinationCode(String sbd, String combinationCode);
     
     List<CombinationScore> findByTotalScoreBetween(Double minScore, Double maxScore);
     
+    // Chỉ đếm, chạy hoàn toàn trên index (combination_code, total_score)
+    @Query("SELECT COUNT(cs) FROM CombinationScore cs WHERE cs.combinationCode = :code " +
+           "AND cs.totalScore BETWEEN :minScore AND :maxScore")
+    long countByCombinationCodeAndTotalScoreBetween(@Param("code") String combinationCode,
+                                                    @Param("minScore") Double minScore,
+                                                    @Param("maxScore") Double maxScore);
+    
     @Modifying
     @Transactional
     void deleteBySbd(String sbd);
@@ -28,6 +38,17 @@ public interface CombinationScoreRepository extends JpaRepository<CombinationSco
     @Query("SELECT cs FROM CombinationScore cs WHERE cs.totalScore >= :minScore ORDER BY cs.totalScore DESC")
     List<CombinationScore> findByMinScore(@Param("minScore") Double minScore);
     
+    // Mỗi dòng: [năm, tổ hợp, khu vực, điểm, số bản ghi, max higher, max same, max total]
+    // Thứ hạng do hệ thống tự ước lượng (rank_source = 'estimated') không được dùng làm mốc,
+    // tránh vòng lặp ước lượng -> lưu -> đọc lại như dữ liệu upstream
+    @Query("SELECT s.examYear, cs.combinationCode, cs.region, cs.totalScore, COUNT(cs), " +
+           "MAX(CASE WHEN cs.rankSource IS NULL OR cs.rankSource <> 'estimated' THEN cs.studentsWithHigherScore END), " +
+           "MAX(CASE WHEN cs.rankSource IS NULL OR cs.rankSource <> 'estimated' THEN cs.studentsWithSameScore END), " +
+           "MAX(CASE WHEN cs.rankSource IS NULL OR cs.rankSource <> 'estimated' THEN cs.totalStudentsInCombination END) " +
+           "FROM CombinationScore cs JOIN StudentScore s ON s.sbd = cs.sbd " +
+           "GROUP BY s.examYear, cs.combinationCode, cs.region, cs.totalScore")
+    List<Object[]> aggregateScoreDistribution();
+    
     @Query("SELECT DISTINCT cs.combinationCode FROM CombinationScore cs")
     List<String> findAllCombinationCodes();
 }
\ No newline at end of file
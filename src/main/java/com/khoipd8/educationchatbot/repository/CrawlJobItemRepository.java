@@ -0,0 +1,52 @@
+package com.khoipd8.educationchatbot.repository;
+
+import com.khoipd8.educationchatbot.entity.CrawlJobItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CrawlJobItemRepository extends JpaRepository<CrawlJobItem, Long> {
+    
+    List<CrawlJobItem> findByJobIdAndStatus(Long jobId, String status);
+    
+    List<CrawlJobItem> findByJobIdAndStatusNotOrderByCompletedAtAsc(Long jobId, String status);
+    
+    // Mỗi dòng: [status, số item] - chạy trên index (job_id, status)
+    @Query("SELECT i.status, COUNT(i) FROM CrawlJobItem i WHERE i.jobId = :jobId GROUP BY i.status")
+    List<Object[]> countByStatus(@Param("jobId") Long jobId);
+    
+    // Mỗi dòng: [outcome, số item]
+    @Query("SELECT i.outcome, COUNT(i) FROM CrawlJobItem i WHERE i.jobId = :jobId AND i.outcome IS NOT NULL GROUP BY i.outcome")
+    List<Object[]> countByOutcome(@Param("jobId") Long jobId);
+    
+    long countByJobIdAndCompletedAtAfter(Long jobId, LocalDateTime after);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlJobItem i SET i.status = :status, i.outcome = :outcome, i.attempts = i.attempts + 1, " +
+           "i.lastError = :error, i.completedAt = :completedAt WHERE i.jobId = :jobId AND i.universityCode = :code")
+    int markFinished(@Param("jobId") Long jobId,
+                     @Param("code") String code,
+                     @Param("status") String status,
+                     @Param("outcome") String outcome,
+                     @Param("error") String error,
+                     @Param("completedAt") LocalDateTime completedAt);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlJobItem i SET i.attempts = i.attempts + 1, i.lastError = :error " +
+           "WHERE i.jobId = :jobId AND i.universityCode = :code")
+    int recordFailedAttempt(@Param("jobId") Long jobId, @Param("code") String code, @Param("error") String error);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlJobItem i SET i.status = :toStatus WHERE i.jobId = :jobId AND i.status = :fromStatus")
+    int updateStatus(@Param("jobId") Long jobId, @Param("fromStatus") String fromStatus, @Param("toStatus") String toStatus);
+}
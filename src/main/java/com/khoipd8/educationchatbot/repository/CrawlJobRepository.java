@@ -0,0 +1,45 @@
+package com.khoipd8.educationchatbot.repository;
+
+import com.khoipd8.educationchatbot.entity.CrawlJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CrawlJobRepository extends JpaRepository<CrawlJob, Long> {
+    
+    List<CrawlJob> findByStatus(String status);
+    
+    Optional<CrawlJob> findFirstByOrderByIdDesc();
+    
+    Optional<CrawlJob> findFirstByJobTypeAndStatusOrderByIdDesc(String jobType, String status);
+    
+    // Nhận job: chỉ thành công nếu job chưa có chủ, đã là của node này, hoặc lease của chủ cũ đã hết hạn
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlJob j SET j.ownerId = :owner, j.heartbeatAt = :now WHERE j.id = :id AND j.status = :status " +
+           "AND (j.ownerId IS NULL OR j.ownerId = :owner OR j.heartbeatAt IS NULL OR j.heartbeatAt < :expiredBefore)")
+    int claim(@Param("id") Long id,
+              @Param("owner") String owner,
+              @Param("status") String status,
+              @Param("now") LocalDateTime now,
+              @Param("expiredBefore") LocalDateTime expiredBefore);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlJob j SET j.heartbeatAt = :now WHERE j.id = :id AND j.ownerId = :owner AND j.status = :status")
+    int renewLease(@Param("id") Long id, @Param("owner") String owner, @Param("status") String status,
+                   @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Transactional
+    @Query("UPDATE CrawlJob j SET j.cancelRequested = true WHERE j.id = :id AND j.status = :status")
+    int requestCancel(@Param("id") Long id, @Param("status") String status);
+}
@@ -0,0 +1,316 @@
+package com.khoipd8.educationchatbot.repository;
+
+import com.khoipd8.educationchatbot.entity.Program;
+import com.khoipd8.educationchatbot.entity.University;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Ghi dữ liệu trường vừa crawl bằng diff theo khóa chương trình (tên | ghi chú | phương thức):
+ * chỉ INSERT chương trình mới, UPDATE chương trình có thay đổi, DELETE chương trình không còn trên trang,
+ * tất cả bằng JDBC batch. Chương trình không đổi không sinh câu lệnh nào.
+ */
+@Repository
+public class ProgramBatchRepository {
+
+    private static final String INSERT_PROGRAM_SQL =
+        "INSERT INTO programs (name, subject_combination, admission_method, benchmark_score_2024, " +
+        "benchmark_score_2023, benchmark_score_2022, note, university_id, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_PROGRAM_SQL =
+        "UPDATE programs SET subject_combination = ?, benchmark_score_2024 = ?, benchmark_score_2023 = ?, " +
+        "benchmark_score_2022 = ?, updated_at = ? WHERE id = ?";
+
+    private static final String INSERT_UNIVERSITY_SQL =
+        "INSERT INTO universities (name, code, full_name, location, type, website, description, " +
+        "page_etag, page_last_modified, page_content_hash, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_UNIVERSITY_SQL =
+        "UPDATE universities SET name = ?, full_name = ?, location = ?, type = ?, website = ?, description = ?, " +
+        "page_etag = ?, page_last_modified = ?, page_content_hash = ?, updated_at = ? WHERE id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public static String programKey(String name, String note, String method) {
+        return name + "|" + (note != null ? note : "") + "|" + (method != null ? method : "");
+    }
+
+    /**
+     * Tạo mới hoặc cập nhật trường (theo mã) cùng danh sách chương trình vừa crawl
+     */
+    @Transactional
+    public SyncResult upsertUniversity(University crawled) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<University> rows = jdbcTemplate.query(
+            "SELECT id, name, full_name, location, type, website, description, page_etag, page_last_modified, " +
+            "page_content_hash FROM universities WHERE code = ?",
+            (rs, i) -> {
+                University u = new University();
+                u.setId(rs.getLong("id"));
+                u.setName(rs.getString("name"));
+                u.setFullName(rs.getString("full_name"));
+                u.setLocation(rs.getString("location"));
+                u.setType(rs.getString("type"));
+                u.setWebsite(rs.getString("website"));
+                u.setDescription(rs.getString("description"));
+                u.setPageEtag(rs.getString("page_etag"));
+                u.setPageLastModified(rs.getString("page_last_modified"));
+                u.setPageContentHash(rs.getString("page_content_hash"));
+                return u;
+            },
+            crawled.getCode());
+
+        if (rows.isEmpty()) {
+            long universityId = insertUniversity(crawled, now);
+            insertPrograms(universityId, crawled.getPrograms(), now);
+            return new SyncResult("created", universityId, crawled.getPrograms().size(), 0, 0, 0);
+        }
+
+        University existing = rows.get(0);
+        boolean universityChanged = mergeUniversityFields(existing, crawled);
+        SyncResult programs = syncPrograms(existing.getId(), crawled.getPrograms(), now);
+
+        if (universityChanged || programs.hasWrites()) {
+            jdbcTemplate.update(UPDATE_UNIVERSITY_SQL,
+                existing.getName(), existing.getFullName(), existing.getLocation(), existing.getType(),
+                existing.getWebsite(), existing.getDescription(), existing.getPageEtag(),
+                existing.getPageLastModified(), existing.getPageContentHash(), now, existing.getId());
+            return new SyncResult("updated", existing.getId(), programs.inserted(), programs.updated(),
+                    programs.deleted(), programs.unchanged());
+        }
+        return programs;
+    }
+
+    // ====== HELPER METHODS ======
+
+    private SyncResult syncPrograms(Long universityId, List<Program> crawledPrograms, Timestamp now) {
+        List<Program> existingPrograms = jdbcTemplate.query(
+            "SELECT id, name, note, admission_method, subject_combination, benchmark_score_2024, " +
+            "benchmark_score_2023, benchmark_score_2022 FROM programs WHERE university_id = ?",
+            (rs, i) -> {
+                Program p = new Program();
+                p.setId(rs.getLong("id"));
+                p.setName(rs.getString("name"));
+                p.setNote(rs.getString("note"));
+                p.setAdmissionMethod(rs.getString("admission_method"));
+                p.setSubjectCombination(rs.getString("subject_combination"));
+                p.setBenchmarkScore2024(getDouble(rs, "benchmark_score_2024"));
+                p.setBenchmarkScore2023(getDouble(rs, "benchmark_score_2023"));
+                p.setBenchmarkScore2022(getDouble(rs, "benchmark_score_2022"));
+                return p;
+            },
+            universityId);
+
+        ProgramDiff diff = diffPrograms(existingPrograms, crawledPrograms);
+        List<Program> updates = diff.updates();
+        List<Long> deleteIds = diff.deleteIds();
+
+        insertPrograms(universityId, diff.inserts(), now);
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_PROGRAM_SQL, updates, updates.size(), (ps, p) -> {
+                ps.setString(1, p.getSubjectCombination());
+                setDouble(ps, 2, p.getBenchmarkScore2024());
+                setDouble(ps, 3, p.getBenchmarkScore2023());
+                setDouble(ps, 4, p.getBenchmarkScore2022());
+                ps.setTimestamp(5, now);
+                ps.setLong(6, p.getId());
+            });
+        }
+        if (!deleteIds.isEmpty()) {
+            namedJdbcTemplate.update("DELETE FROM programs WHERE id IN (:ids)", new MapSqlParameterSource("ids", deleteIds));
+        }
+
+        return new SyncResult(diff.hasWrites() ? "updated" : "unchanged", universityId,
+                diff.inserts().size(), updates.size(), deleteIds.size(), diff.unchanged());
+    }
+
+    /**
+     * So khớp chương trình trong DB với danh sách vừa crawl theo programKey.
+     * Chương trình cần UPDATE được merge sẵn vào bản ghi cũ (giữ id).
+     */
+    static ProgramDiff diffPrograms(List<Program> existingPrograms, List<Program> crawledPrograms) {
+        Map<String, Program> existingByKey = new HashMap<>();
+        List<Long> deleteIds = new ArrayList<>();
+        for (Program p : existingPrograms) {
+            // Bản ghi trùng khóa (dữ liệu cũ) bị xóa, giữ bản đầu tiên
+            if (existingByKey.putIfAbsent(programKey(p.getName(), p.getNote(), p.getAdmissionMethod()), p) != null) {
+                deleteIds.add(p.getId());
+            }
+        }
+
+        List<Program> inserts = new ArrayList<>();
+        List<Program> updates = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+        int unchanged = 0;
+
+        for (Program crawled : crawledPrograms) {
+            String key = programKey(crawled.getName(), crawled.getNote(), crawled.getAdmissionMethod());
+            if (!seenKeys.add(key)) {
+                continue;
+            }
+            Program existing = existingByKey.get(key);
+            if (existing == null) {
+                inserts.add(crawled);
+            } else if (mergeProgramFields(existing, crawled)) {
+                updates.add(existing);
+            } else {
+                unchanged++;
+            }
+        }
+
+        existingByKey.forEach((key, existing) -> {
+            if (!seenKeys.contains(key)) {
+                deleteIds.add(existing.getId());
+            }
+        });
+
+        return new ProgramDiff(inserts, updates, deleteIds, unchanged);
+    }
+
+    // Điểm / tổ hợp mới (khác null) ghi đè giá trị cũ; trả về true nếu có thay đổi
+    private static boolean mergeProgramFields(Program existing, Program crawled) {
+        boolean changed = false;
+        if (crawled.getBenchmarkScore2024() != null && !crawled.getBenchmarkScore2024().equals(existing.getBenchmarkScore2024())) {
+            existing.setBenchmarkScore2024(crawled.getBenchmarkScore2024());
+            changed = true;
+        }
+        if (crawled.getBenchmarkScore2023() != null && !crawled.getBenchmarkScore2023().equals(existing.getBenchmarkScore2023())) {
+            existing.setBenchmarkScore2023(crawled.getBenchmarkScore2023());
+            changed = true;
+        }
+        if (crawled.getBenchmarkScore2022() != null && !crawled.getBenchmarkScore2022().equals(existing.getBenchmarkScore2022())) {
+            existing.setBenchmarkScore2022(crawled.getBenchmarkScore2022());
+            changed = true;
+        }
+        if (crawled.getSubjectCombination() != null && !crawled.getSubjectCombination().equals(existing.getSubjectCombination())) {
+            existing.setSubjectCombination(crawled.getSubjectCombination());
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean mergeUniversityFields(University existing, University crawled) {
+        boolean changed = false;
+        changed |= setIfDifferent(existing.getName(), crawled.getName(), existing::setName);
+        changed |= setIfDifferent(existing.getFullName(), crawled.getFullName(), existing::setFullName);
+        if (crawled.getLocation() != null && !crawled.getLocation().equals("Chưa xác định")) {
+            changed |= setIfDifferent(existing.getLocation(), crawled.getLocation(), existing::setLocation);
+        }
+        if (crawled.getDescription() != null) {
+            changed |= setIfDifferent(existing.getDescription(), crawled.getDescription(), existing::setDescription);
+        }
+        if (crawled.getWebsite() != null) {
+            changed |= setIfDifferent(existing.getWebsite(), crawled.getWebsite(), existing::setWebsite);
+        }
+        if (crawled.getType() != null) {
+            changed |= setIfDifferent(existing.getType(), crawled.getType(), existing::setType);
+        }
+        changed |= setIfDifferent(existing.getPageEtag(), crawled.getPageEtag(), existing::setPageEtag);
+        changed |= setIfDifferent(existing.getPageLastModified(), crawled.getPageLastModified(), existing::setPageLastModified);
+        changed |= setIfDifferent(existing.getPageContentHash(), crawled.getPageContentHash(), existing::setPageContentHash);
+        return changed;
+    }
+
+    private static boolean setIfDifferent(String current, String value, java.util.function.Consumer<String> setter) {
+        if (Objects.equals(current, value)) {
+            return false;
+        }
+        setter.accept(value);
+        return true;
+    }
+
+    private long insertUniversity(University u, Timestamp now) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_UNIVERSITY_SQL, Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, u.getName());
+            ps.setString(2, u.getCode());
+            ps.setString(3, u.getFullName());
+            ps.setString(4, u.getLocation());
+            ps.setString(5, u.getType());
+            ps.setString(6, u.getWebsite());
+            ps.setString(7, u.getDescription());
+            ps.setString(8, u.getPageEtag());
+            ps.setString(9, u.getPageLastModified());
+            ps.setString(10, u.getPageContentHash());
+            ps.setTimestamp(11, now);
+            ps.setTimestamp(12, now);
+            return ps;
+        }, keyHolder);
+        return Objects.requireNonNull(keyHolder.getKey()).longValue();
+    }
+
+    private void insertPrograms(long universityId, List<Program> programs, Timestamp now) {
+        if (programs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_PROGRAM_SQL, programs, programs.size(), (ps, p) -> {
+            ps.setString(1, p.getName());
+            ps.setString(2, p.getSubjectCombination());
+            ps.setString(3, p.getAdmissionMethod());
+            setDouble(ps, 4, p.getBenchmarkScore2024());
+            setDouble(ps, 5, p.getBenchmarkScore2023());
+            setDouble(ps, 6, p.getBenchmarkScore2022());
+            ps.setString(7, p.getNote());
+            ps.setLong(8, universityId);
+            ps.setTimestamp(9, now);
+            ps.setTimestamp(10, now);
+        });
+    }
+
+    private static Double getDouble(java.sql.ResultSet rs, String column) throws SQLException {
+        double value = rs.getDouble(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value != null) {
+            ps.setDouble(index, value);
+        } else {
+            ps.setNull(index, Types.DOUBLE);
+        }
+    }
+
+    record ProgramDiff(List<Program> inserts, List<Program> updates, List<Long> deleteIds, int unchanged) {
+        boolean hasWrites() {
+            return !inserts.isEmpty() || !updates.isEmpty() || !deleteIds.isEmpty();
+        }
+    }
+
+    /**
+     * action: created / updated / unchanged; số chương trình theo từng loại thao tác
+     */
+    public record SyncResult(String action, long universityId, int inserted, int updated, int deleted, int unchanged) {
+        public boolean hasWrites() {
+            return inserted > 0 || updated > 0 || deleted > 0;
+        }
+
+        public int programCount() {
+            return inserted + updated + unchanged;
+        }
+
+        public int previousProgramCount() {
+            return updated + deleted + unchanged;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.khoipd8.educationchatbot.repository;
+
+import com.khoipd8.educationchatbot.entity.SBDSweepCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SBDSweepCheckpointRepository extends JpaRepository<SBDSweepCheckpoint, Long> {
+    
+    Optional<SBDSweepCheckpoint> findByProvincePrefixAndRegion(String provincePrefix, String region);
+    
+    List<SBDSweepCheckpoint> findByStatus(String status);
+    
+    List<SBDSweepCheckpoint> findByStatusIn(List<String> statuses);
+}
@@ -0,0 +1,159 @@
+package com.khoipd8.educationchatbot.repository;
+
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.entity.StudentScore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Ghi điểm thi hàng loạt bằng JDBC batch + MySQL upsert (INSERT ... ON DUPLICATE KEY UPDATE).
+ * Không đi qua Hibernate nên id IDENTITY không chặn batching, và không cần delete + insert lại.
+ */
+@Repository
+public class ScoreBatchRepository {
+
+    private static final String UPSERT_STUDENT_SQL =
+        "INSERT INTO student_scores (sbd, exam_year, region, score_math, score_literature, score_english, " +
+        "score_physics, score_chemistry, score_biology, score_history, score_geography, score_civic_education, " +
+        "eligible_combinations, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE exam_year = VALUES(exam_year), region = VALUES(region), " +
+        "score_math = VALUES(score_math), score_literature = VALUES(score_literature), " +
+        "score_english = VALUES(score_english), score_physics = VALUES(score_physics), " +
+        "score_chemistry = VALUES(score_chemistry), score_biology = VALUES(score_biology), " +
+        "score_history = VALUES(score_history), score_geography = VALUES(score_geography), " +
+        "score_civic_education = VALUES(score_civic_education), " +
+        "eligible_combinations = COALESCE(VALUES(eligible_combinations), eligible_combinations), " +
+        "updated_at = VALUES(updated_at)";
+
+    private static final String UPSERT_COMBINATION_SQL =
+        "INSERT INTO combination_scores (sbd, combination_code, combination_name, total_score, region, " +
+        "rank_position, students_with_same_score, students_with_higher_score, total_students_in_combination, " +
+        "equivalent_score_2024, rank_source, student_score_id) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+        "ON DUPLICATE KEY UPDATE combination_name = VALUES(combination_name), total_score = VALUES(total_score), " +
+        "region = VALUES(region), rank_position = VALUES(rank_position), " +
+        "students_with_same_score = VALUES(students_with_same_score), " +
+        "students_with_higher_score = VALUES(students_with_higher_score), " +
+        "total_students_in_combination = VALUES(total_students_in_combination), " +
+        "equivalent_score_2024 = VALUES(equivalent_score_2024), rank_source = VALUES(rank_source), " +
+        "student_score_id = VALUES(student_score_id)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Upsert danh sách học sinh cùng toàn bộ tổ hợp của họ trong 1 transaction.
+     * Tổ hợp không còn trong dữ liệu mới sẽ bị xóa bằng 1 câu lệnh cho cả batch.
+     */
+    @Transactional
+    public int upsertAll(List<StudentScore> students, Map<String, List<CombinationScore>> combinationsBySbd) {
+        if (students.isEmpty()) {
+            return 0;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(UPSERT_STUDENT_SQL, students, students.size(), (ps, student) -> {
+            ps.setString(1, student.getSbd());
+            ps.setInt(2, student.getExamYear());
+            ps.setString(3, student.getRegion());
+            setDouble(ps, 4, student.getScoreMath());
+            setDouble(ps, 5, student.getScoreLiterature());
+            setDouble(ps, 6, student.getScoreEnglish());
+            setDouble(ps, 7, student.getScorePhysics());
+            setDouble(ps, 8, student.getScoreChemistry());
+            setDouble(ps, 9, student.getScoreBiology());
+            setDouble(ps, 10, student.getScoreHistory());
+            setDouble(ps, 11, student.getScoreGeography());
+            setDouble(ps, 12, student.getScoreCivicEducation());
+            ps.setString(13, student.getEligibleCombinations());
+            ps.setTimestamp(14, now);
+            ps.setTimestamp(15, now);
+        });
+
+        List<String> sbds = students.stream().map(StudentScore::getSbd).toList();
+        Map<String, Long> idBySbd = findIdsBySbd(sbds);
+
+        List<CombinationScore> combinations = new ArrayList<>();
+        List<String> keptKeys = new ArrayList<>();
+        for (String sbd : sbds) {
+            for (CombinationScore combination : combinationsBySbd.getOrDefault(sbd, List.of())) {
+                combinations.add(combination);
+                keptKeys.add(sbd + "|" + combination.getCombinationCode());
+            }
+        }
+
+        // Xóa tổ hợp cũ không còn xuất hiện (thay cho deleteBySbd toàn bộ)
+        MapSqlParameterSource params = new MapSqlParameterSource("sbds", sbds);
+        if (keptKeys.isEmpty()) {
+            namedJdbcTemplate.update("DELETE FROM combination_scores WHERE sbd IN (:sbds)", params);
+        } else {
+            params.addValue("keys", keptKeys);
+            namedJdbcTemplate.update(
+                "DELETE FROM combination_scores WHERE sbd IN (:sbds) " +
+                "AND CONCAT(sbd, '|', combination_code) NOT IN (:keys)", params);
+        }
+
+        if (!combinations.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT_COMBINATION_SQL, combinations, combinations.size(), (ps, combination) -> {
+                ps.setString(1, combination.getSbd());
+                ps.setString(2, combination.getCombinationCode());
+                ps.setString(3, combination.getCombinationName());
+                ps.setDouble(4, combination.getTotalScore());
+                ps.setString(5, combination.getRegion());
+                setInteger(ps, 6, combination.getRankPosition());
+                setInteger(ps, 7, combination.getStudentsWithSameScore());
+                setInteger(ps, 8, combination.getStudentsWithHigherScore());
+                setInteger(ps, 9, combination.getTotalStudentsInCombination());
+                setDouble(ps, 10, combination.getEquivalentScore2024());
+                ps.setString(11, combination.getRankSource());
+                Long studentId = idBySbd.get(combination.getSbd());
+                if (studentId != null) {
+                    ps.setLong(12, studentId);
+                } else {
+                    ps.setNull(12, Types.BIGINT);
+                }
+            });
+        }
+
+        return students.size();
+    }
+
+    private Map<String, Long> findIdsBySbd(List<String> sbds) {
+        Map<String, Long> idBySbd = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, sbd FROM student_scores WHERE sbd IN (:sbds)",
+                new MapSqlParameterSource("sbds", sbds),
+                rs -> {
+                    idBySbd.put(rs.getString("sbd"), rs.getLong("id"));
+                });
+        return idBySbd;
+    }
+
+    private static void setDouble(java.sql.PreparedStatement ps, int index, Double value) throws java.sql.SQLException {
+        if (value != null) {
+            ps.setDouble(index, value);
+        } else {
+            ps.setNull(index, Types.DOUBLE);
+        }
+    }
+
+    private static void setInteger(java.sql.PreparedStatement ps, int index, Integer value) throws java.sql.SQLException {
+        if (value != null) {
+            ps.setInt(index, value);
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+}
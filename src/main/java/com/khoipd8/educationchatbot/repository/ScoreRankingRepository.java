@@ -30,6 +30,11 @@ public interface ScoreRankingRepository extends JpaRepository<ScoreRanking, Long
             @Param("combination") String combination,
             @Param("score") Double score);
     
+    // Mỗi dòng: [năm, tổ hợp, khu vực, điểm, hạng, số cùng điểm, tổng thí sinh, nguồn dữ liệu]
+    @Query("SELECT sr.examYear, sr.subjectCombination, sr.region, sr.totalScore, sr.rankingPosition, " +
+           "sr.scoreFrequency, sr.totalCandidates, sr.dataSource FROM ScoreRanking sr")
+    List<Object[]> findRankingPoints();
+    
     @Query("SELECT DISTINCT sr.subjectCombination FROM ScoreRanking sr WHERE sr.examYear = :year")
     List<String> findAvailableCombinations(@Param("year") Integer year);
     
@@ -1,6 +1,7 @@
 package com.khoipd8.educationchatbot.repository;
 
 import com.khoipd8.educationchatbot.entity.StudentScore;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -8,6 +9,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +18,19 @@ public interface StudentScoreRepository extends JpaRepository<StudentScore, Long
     
     Optional<StudentScore> findBySbd(String sbd);
     
+    List<StudentScore> findBySbdIn(Collection<String> sbds);
+    
+    // Học sinh + toàn bộ tổ hợp trong 1 query (mỗi dòng: [StudentScore, CombinationScore hoặc null])
+    @Query("SELECT s, cs FROM StudentScore s LEFT JOIN CombinationScore cs ON cs.sbd = s.sbd WHERE s.sbd = :sbd")
+    List<Object[]> findWithCombinationsBySbd(@Param("sbd") String sbd);
+    
+    @Query("SELECT s.sbd FROM StudentScore s WHERE s.sbd IN :sbds")
+    List<String> findExistingSbds(@Param("sbds") Collection<String> sbds);
+    
+    // Keyset pagination trên unique index của sbd, chỉ lấy cột sbd
+    @Query("SELECT s.sbd FROM StudentScore s WHERE s.sbd > :after ORDER BY s.sbd")
+    List<String> findSbdsAfter(@Param("after") String after, Pageable pageable);
+    
     List<StudentScore> findByExamYear(Integer examYear);
     
     List<StudentScore> findByRegion(String region);
@@ -2,10 +2,13 @@ package com.khoipd8.educationchatbot.repository;
 
 import com.khoipd8.educationchatbot.entity.University;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,9 +26,23 @@ public interface UniversityRepository extends JpaRepository<University, Long> {
     @Query("SELECT u FROM University u JOIN FETCH u.programs WHERE u.code = :code")
     Optional<University> findByCodeWithPrograms(@Param("code") String code);
 
+    long countByUpdatedAtAfter(LocalDateTime after);
+
     @Query("SELECT DISTINCT u.location FROM University u WHERE u.location IS NOT NULL")
     List<String> findAllLocations();
 
+    // Mỗi dòng: [mã trường, updatedAt, ETag, Last-Modified, content hash] - xếp ưu tiên frontier + conditional GET
+    @Query("SELECT u.code, u.updatedAt, u.pageEtag, u.pageLastModified, u.pageContentHash FROM University u")
+    List<Object[]> findCrawlMetadata();
+
+    // Trang không đổi nội dung nhưng server trả validator mới: chỉ cập nhật validator
+    @Modifying
+    @Transactional
+    @Query("UPDATE University u SET u.pageEtag = :etag, u.pageLastModified = :lastModified WHERE u.code = :code")
+    int updatePageValidators(@Param("code") String code,
+                             @Param("etag") String etag,
+                             @Param("lastModified") String lastModified);
+
     @Query("SELECT COUNT(p) FROM University u JOIN u.programs p WHERE u.id = :universityId")
     Long countProgramsByUniversityId(@Param("universityId") Long universityId);
 }
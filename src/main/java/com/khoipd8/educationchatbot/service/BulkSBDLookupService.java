@@ -0,0 +1,292 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.entity.StudentScore;
+import com.khoipd8.educationchatbot.repository.CombinationScoreRepository;
+import com.khoipd8.educationchatbot.repository.StudentScoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Tra cứu hàng loạt SBD: trả ngay các SBD đã có trong database, phần còn lại gọi API
+ * song song (giới hạn bởi concurrency cap + rate limiter của ThptScoreApiClient).
+ * Kết quả được ghi ra dạng NDJSON ngay khi có, việc lưu database chạy theo batch.
+ */
+@Service
+@Slf4j
+public class BulkSBDLookupService {
+
+    private static final Pattern SBD_SEPARATOR = Pattern.compile("[\\s,;]+");
+    private static final int DB_CHUNK_SIZE = 500;
+    private static final ObjectWriter LINE_WRITER = new ObjectMapper().writer();
+    // sbdLookupExecutor dùng chung với sweeper: đầy mà không có request nào của stream đang chạy để chờ
+    // thì thử lại vài lần (backoff tăng dần) rồi báo lỗi cho SBD đó
+    private static final int MAX_SUBMIT_RETRIES = 3;
+
+    @Autowired
+    private SBDLookupService sbdLookupService;
+
+    @Autowired
+    private StudentScoreRepository studentScoreRepository;
+
+    @Autowired
+    private CombinationScoreRepository combinationScoreRepository;
+
+    @Autowired
+    private ThptScoreApiClient thptScoreApiClient;
+
+    @Autowired
+    @Qualifier("sbdLookupExecutor")
+    private Executor sbdLookupExecutor;
+
+    @Value("${sbd.bulk.max-sbds:5000}")
+    private int maxSbds;
+
+    @Value("${sbd.bulk.persist-batch-size:100}")
+    private int persistBatchSize;
+
+    @Value("${sbd.bulk.export-page-size:5000}")
+    private int exportPageSize;
+
+    /**
+     * Đọc danh sách SBD từ file upload (mỗi dòng 1 hoặc nhiều SBD, phân tách bởi dấu phẩy/khoảng trắng)
+     */
+    public List<String> readSbds(BufferedReader reader) throws IOException {
+        Set<String> sbds = new LinkedHashSet<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            for (String token : SBD_SEPARATOR.split(line.trim())) {
+                if (!token.isEmpty()) {
+                    sbds.add(token);
+                }
+            }
+            if (sbds.size() > maxSbds) {
+                throw new IllegalArgumentException("Tối đa " + maxSbds + " SBD mỗi lần tra cứu");
+            }
+        }
+        return new ArrayList<>(sbds);
+    }
+
+    /**
+     * Chuẩn hóa danh sách SBD: trim, bỏ trống, bỏ trùng, kiểm tra giới hạn
+     */
+    public List<String> normalizeSbds(Collection<String> rawSbds) {
+        if (rawSbds == null || rawSbds.isEmpty()) {
+            throw new IllegalArgumentException("Danh sách SBD không được để trống");
+        }
+        List<String> sbds = rawSbds.stream()
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .filter(sbd -> !sbd.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+        if (sbds.size() > maxSbds) {
+            throw new IllegalArgumentException("Tối đa " + maxSbds + " SBD mỗi lần tra cứu");
+        }
+        return sbds;
+    }
+
+    /**
+     * Ghi kết quả từng SBD ra output dạng NDJSON (1 JSON object mỗi dòng), dòng cuối là summary
+     */
+    public void streamLookup(List<String> sbds, String region, OutputStream out) throws IOException {
+        long startTime = System.currentTimeMillis();
+        int fromDatabase = 0;
+
+        // Bước 1: database hits - truy vấn theo chunk, không gọi upstream
+        Set<String> misses = new LinkedHashSet<>(sbds);
+        for (int i = 0; i < sbds.size(); i += DB_CHUNK_SIZE) {
+            List<String> chunk = sbds.subList(i, Math.min(i + DB_CHUNK_SIZE, sbds.size()));
+            Map<String, List<CombinationScore>> combinationsBySbd = combinationScoreRepository.findBySbdIn(chunk).stream()
+                    .collect(Collectors.groupingBy(CombinationScore::getSbd));
+
+            for (StudentScore student : studentScoreRepository.findBySbdIn(chunk)) {
+                List<CombinationScore> combinations = combinationsBySbd.getOrDefault(student.getSbd(), List.of());
+                if (combinations.isEmpty()) {
+                    continue; // Dữ liệu chưa đầy đủ - lấy lại từ API
+                }
+                writeLine(out, sbdLookupService.formatExistingData(student, combinations));
+                misses.remove(student.getSbd());
+                fromDatabase++;
+            }
+        }
+        out.flush();
+
+        // Bước 2: misses - fan out có giới hạn số request đang chạy
+        int found = 0;
+        int notFound = 0;
+        int errors = 0;
+        List<Map<String, Object>> pendingSave = new ArrayList<>(persistBatchSize);
+        List<CompletableFuture<Integer>> saves = new ArrayList<>();
+
+        CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(sbdLookupExecutor);
+        Iterator<String> next = misses.iterator();
+        int inFlight = 0;
+        int window = thptScoreApiClient.getMaxConcurrency() * 2;
+        String deferred = null; // SBD bị executor từ chối, gửi lại sau
+        int rejectedStreak = 0;
+
+        try {
+            while (deferred != null || next.hasNext() || inFlight > 0) {
+                while (inFlight < window && (deferred != null || next.hasNext())) {
+                    String sbd = deferred != null ? deferred : next.next();
+                    deferred = null;
+                    try {
+                        completion.submit(() -> sbdLookupService.getStudentScoreFromAPI(sbd, region, true));
+                        inFlight++;
+                        rejectedStreak = 0;
+                    } catch (RejectedExecutionException e) {
+                        if (inFlight > 0) {
+                            deferred = sbd; // Chờ 1 request của stream xong rồi gửi lại
+                            break;
+                        }
+                        if (rejectedStreak < MAX_SUBMIT_RETRIES) {
+                            Thread.sleep(200L * ++rejectedStreak);
+                            deferred = sbd;
+                            break;
+                        }
+                        rejectedStreak = 0;
+                        errors++;
+                        writeLine(out, overloadedResult(sbd, region));
+                        out.flush();
+                    }
+                }
+                if (inFlight == 0) {
+                    continue;
+                }
+
+                Map<String, Object> result = completion.take().get();
+                inFlight--;
+
+                String status = (String) result.get("status");
+                if ("found".equals(status)) {
+                    found++;
+                    // Không sửa map trả về từ single-flight (có thể dùng chung với request khác)
+                    result = new HashMap<>(result);
+                    result.put("source", "api");
+                    pendingSave.add(castData(result.get("data")));
+                    if (pendingSave.size() >= persistBatchSize) {
+                        saves.add(persistAsync(pendingSave, region));
+                        pendingSave = new ArrayList<>(persistBatchSize);
+                    }
+                } else if ("not_found".equals(status)) {
+                    notFound++;
+                } else {
+                    errors++;
+                }
+                writeLine(out, result);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Bulk lookup interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Bulk lookup failed", e.getCause());
+        }
+
+        if (!pendingSave.isEmpty()) {
+            saves.add(persistAsync(pendingSave, region));
+        }
+        int saved = saves.stream().mapToInt(CompletableFuture::join).sum();
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("status", "summary");
+        summary.put("total_sbds", sbds.size());
+        summary.put("from_database", fromDatabase);
+        summary.put("from_api", found);
+        summary.put("not_found", notFound);
+        summary.put("errors", errors);
+        summary.put("saved", saved);
+        summary.put("elapsed_ms", System.currentTimeMillis() - startTime);
+        writeLine(out, summary);
+        out.flush();
+
+        log.info("Bulk SBD lookup: {} SBDs, {} from database, {} from API, {} not found, {} errors",
+                sbds.size(), fromDatabase, found, notFound, errors);
+    }
+
+    /**
+     * Ghi toàn bộ SBD đã lưu ra output theo từng trang keyset (sbd > after), bộ nhớ không phụ thuộc kích thước bảng.
+     * ndjson = false: 1 JSON array; ndjson = true: mỗi dòng 1 SBD. limit <= 0: không giới hạn.
+     */
+    public void streamAllSbds(OutputStream out, boolean ndjson, String after, int limit) throws IOException {
+        String cursor = after != null ? after : "";
+        long written = 0;
+        if (!ndjson) {
+            out.write('[');
+        }
+
+        while (limit <= 0 || written < limit) {
+            int pageSize = limit <= 0 ? exportPageSize : (int) Math.min(exportPageSize, limit - written);
+            List<String> page = studentScoreRepository.findSbdsAfter(cursor, PageRequest.of(0, pageSize));
+            for (String sbd : page) {
+                if (!ndjson && written > 0) {
+                    out.write(',');
+                }
+                out.write(LINE_WRITER.writeValueAsBytes(sbd));
+                if (ndjson) {
+                    out.write('\n');
+                }
+                written++;
+            }
+            out.flush();
+            if (page.size() < pageSize) {
+                break;
+            }
+            cursor = page.get(page.size() - 1);
+        }
+
+        if (!ndjson) {
+            out.write(']');
+        }
+        out.flush();
+    }
+
+    private CompletableFuture<Integer> persistAsync(List<Map<String, Object>> batch, String region) {
+        try {
+            return CompletableFuture.supplyAsync(
+                    () -> sbdLookupService.saveStudentScoresFromAPIData(batch, region), sbdLookupExecutor);
+        } catch (RejectedExecutionException e) {
+            // Pool đầy: ghi ngay trên thread stream (backpressure) thay vì làm đứt response
+            return CompletableFuture.completedFuture(sbdLookupService.saveStudentScoresFromAPIData(batch, region));
+        }
+    }
+
+    private Map<String, Object> overloadedResult(String sbd, String region) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "error");
+        result.put("sbd", sbd);
+        result.put("region", region);
+        result.put("message", "Hệ thống đang quá tải, vui lòng thử lại sau cho SBD: " + sbd);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> castData(Object data) {
+        return (Map<String, Object>) data;
+    }
+
+    private void writeLine(OutputStream out, Map<String, Object> value) throws IOException {
+        out.write(LINE_WRITER.writeValueAsBytes(value));
+        out.write('\n');
+    }
+}
@@ -56,6 +56,9 @@ public class ChatGPTRAGService {
     @Autowired
     private StudentScoreRepository studentScoreRepository;
     
+    @Autowired
+    private SBDNegativeCache sbdNegativeCache;
+    
     @Value("${openai.api.key}")
     private String openaiApiKey;
     
@@ -736,7 +739,7 @@ public class ChatGPTRAGService {
                 .anyMatch(lowerContent::contains);
     }
     
-    private double calculateRelevanceScore(DocumentChunk chunk, String query) {
+    double calculateRelevanceScore(DocumentChunk chunk, String query) {
         String lowerQuery = query.toLowerCase();
         String lowerContent = chunk.getContent().toLowerCase();
         
@@ -1015,6 +1018,15 @@ public class ChatGPTRAGService {
     private Map<String, Object> processSBDLookup(String sbd, String sessionId) {
         Map<String, Object> response = new HashMap<>();
         try {
+            // SBD vừa được xác nhận không tồn tại - trả lời ngay, không poll DB
+            if (sbdNegativeCache.isKnownMissing(sbd, "Toàn quốc")) {
+                response.put("answer", String.format("Số báo danh '%s' không tồn tại trên hệ thống, vui lòng thử SBD khác hoặc thử lại sau ít phút.", sbd));
+                response.put("status", "not_found");
+                response.put("session_id", sessionId);
+                response.put("searched_sbd", sbd);
+                return response;
+            }
+            
             // Poll DB for up to 5 seconds
             StudentScore foundScore = null;
             for (int i = 0; i < 5; i++) {
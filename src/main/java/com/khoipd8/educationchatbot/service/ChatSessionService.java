@@ -1,11 +1,24 @@
 package com.khoipd8.educationchatbot.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 @Service
 @Slf4j
@@ -14,6 +27,35 @@ public class ChatSessionService {
     // Store chat sessions in memory (for demo - production should use Redis/DB)
     private final Map<String, ChatSession> activeSessions = new ConcurrentHashMap<>();
     
+    // Secondary index theo lastActivity (mới nhất trước) cho listing/pagination
+    private final NavigableSet<ActivityKey> activityIndex = new ConcurrentSkipListSet<>();
+    
+    private static final int MAX_PAGE_SIZE = 500;
+    // Giới hạn số entry duyệt cho 1 trang khi bộ lọc số message loại gần hết sessions
+    static final int MAX_SCANNED_PER_PAGE = 5_000;
+    
+    @Value("${chatgpt.session.idle-timeout-minutes:120}")
+    private long idleTimeoutMinutes;
+    
+    @Value("${chatgpt.session.expiry-tick-ms:30000}")
+    private long expiryTickMs;
+    
+    // Timing wheel thay cho full scan: mỗi session nằm trong đúng 1 slot theo deadline
+    private SessionExpiryWheel expiryWheel;
+    
+    // Metrics cho session store
+    private final AtomicLong evictedSessions = new AtomicLong();
+    private final AtomicLong deletedSessions = new AtomicLong();
+    private final AtomicLong estimatedHeapBytes = new AtomicLong();
+    
+    @PostConstruct
+    void initExpiryWheel() {
+        long timeoutTicks = Math.max(1, (idleTimeoutMinutes * 60_000L) / expiryTickMs);
+        expiryWheel = new SessionExpiryWheel(expiryTickMs, timeoutTicks, System.currentTimeMillis());
+        log.info("Session expiry wheel: {} slots, tick {} ms, idle timeout {} minutes",
+                expiryWheel.getSlotCount(), expiryTickMs, idleTimeoutMinutes);
+    }
+    
     /**
      * 🆕 Tạo session mới
      */
@@ -21,6 +63,7 @@ public class ChatSessionService {
         String sessionId = generateSessionId();
         ChatSession session = new ChatSession(sessionId);
         activeSessions.put(sessionId, session);
+        trackNewSession(session);
         
         log.info("Created new chat session: {}", sessionId);
         return sessionId;
@@ -33,7 +76,14 @@ public class ChatSessionService {
         ChatSession session = getOrCreateSession(sessionId);
         
         ChatMessage message = new ChatMessage(role, content, LocalDateTime.now());
-        session.addMessage(message);
+        synchronized (session) {
+            ActivityKey previousKey = session.getActivityKey();
+            session.addMessage(message);
+            if (activityIndex.remove(previousKey)) {
+                activityIndex.add(session.getActivityKey());
+            }
+        }
+        estimatedHeapBytes.addAndGet(message.estimateHeapBytes() + ChatSession.REFERENCE_BYTES);
         
         log.debug("Added {} message to session {}: {}", role, sessionId, 
                  content.length() > 50 ? content.substring(0, 50) + "..." : content);
@@ -92,20 +142,12 @@ public class ChatSessionService {
             return Map.of("exists", false);
         }
         
-        long userMessages = session.getMessages().stream()
-                .filter(m -> "user".equals(m.getRole()))
-                .count();
-        
-        long botMessages = session.getMessages().stream()
-                .filter(m -> "assistant".equals(m.getRole()))
-                .count();
-        
         return Map.of(
             "exists", true,
             "session_id", sessionId,
-            "total_messages", session.getMessages().size(),
-            "user_messages", userMessages,
-            "bot_messages", botMessages,
+            "total_messages", session.getMessageCount(),
+            "user_messages", session.getUserMessageCount(),
+            "bot_messages", session.getAssistantMessageCount(),
             "created_at", session.getCreatedAt(),
             "last_activity", session.getLastActivity(),
             "duration_minutes", java.time.Duration.between(session.getCreatedAt(), LocalDateTime.now()).toMinutes()
@@ -116,59 +158,192 @@ public class ChatSessionService {
      * 🗑️ Xóa session
      */
     public boolean deleteSession(String sessionId) {
-        ChatSession removed = activeSessions.remove(sessionId);
-        if (removed != null) {
-            log.info("Deleted chat session: {} ({} messages)", sessionId, removed.getMessages().size());
+        ChatSession session = activeSessions.get(sessionId);
+        if (session != null && removeSession(session)) {
+            deletedSessions.incrementAndGet();
+            log.info("Deleted chat session: {} ({} messages)", sessionId, session.getMessageCount());
             return true;
         }
         return false;
     }
     
     /**
-     * 📋 Lấy danh sách tất cả sessions
+     * 📄 Lấy 1 trang sessions theo cursor (mới nhất trước), có lọc theo tuổi và số message.
+     * Duyệt index từ cursor, dừng ở mốc tuổi và duyệt tối đa MAX_SCANNED_PER_PAGE entry mỗi trang:
+     * bộ lọc số message chọn lọc có thể trả trang thiếu (thậm chí rỗng) kèm cursor để duyệt tiếp.
      */
-    public List<Map<String, Object>> getAllSessions() {
-        List<Map<String, Object>> sessions = new ArrayList<>();
-        
-        for (ChatSession session : activeSessions.values()) {
-            sessions.add(Map.of(
-                "session_id", session.getSessionId(),
-                "message_count", session.getMessages().size(),
-                "created_at", session.getCreatedAt(),
-                "last_activity", session.getLastActivity()
-            ));
+    public Map<String, Object> getSessionPage(String cursor, int limit, Integer maxAgeMinutes,
+                                              Integer minMessages, Integer maxMessages) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        
+        NavigableSet<ActivityKey> view = activityIndex;
+        ActivityKey cursorKey = ActivityKey.parse(cursor);
+        if (cursorKey != null) {
+            view = activityIndex.tailSet(cursorKey, false);
         }
         
-        // Sort by last activity
-        sessions.sort((a, b) -> 
-            ((LocalDateTime) b.get("last_activity")).compareTo((LocalDateTime) a.get("last_activity")));
+        long minActivityMillis = maxAgeMinutes != null
+                ? System.currentTimeMillis() - maxAgeMinutes * 60_000L
+                : Long.MIN_VALUE;
+        
+        List<Map<String, Object>> sessions = new ArrayList<>(pageSize);
+        ActivityKey lastReturned = null;
+        ActivityKey lastScanned = null;
+        int scanned = 0;
+        boolean hasMore = false;
+        boolean scanLimitReached = false;
         
-        return sessions;
+        for (ActivityKey key : view) {
+            if (key.lastActivityMillis() < minActivityMillis) {
+                break; // Index giảm dần theo thời gian - phần còn lại đều cũ hơn
+            }
+            if (scanned == MAX_SCANNED_PER_PAGE) {
+                // Chưa biết phía sau còn session khớp hay không: trả cursor tại vị trí đã duyệt tới
+                hasMore = true;
+                scanLimitReached = true;
+                break;
+            }
+            scanned++;
+            lastScanned = key;
+            
+            ChatSession session = activeSessions.get(key.sessionId());
+            if (session == null) {
+                continue;
+            }
+            int messageCount = session.getMessageCount();
+            if ((minMessages != null && messageCount < minMessages)
+                    || (maxMessages != null && messageCount > maxMessages)) {
+                continue;
+            }
+            if (sessions.size() == pageSize) {
+                hasMore = true; // Đã thấy ít nhất 1 session khớp cho trang sau
+                break;
+            }
+            
+            sessions.add(session.toSummary());
+            lastReturned = key;
+        }
+        
+        ActivityKey nextKey = scanLimitReached ? lastScanned : lastReturned;
+        
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("sessions", sessions);
+        page.put("page_size", sessions.size());
+        page.put("has_more", hasMore);
+        page.put("next_cursor", hasMore && nextKey != null ? nextKey.toCursor() : null);
+        page.put("scanned", scanned);
+        page.put("scan_limit_reached", scanLimitReached);
+        page.put("total_active_sessions", activeSessions.size());
+        return page;
     }
     
     /**
-     * 🧹 Cleanup old sessions (call periodically)
+     * 🧹 Cleanup old sessions (expiry wheel đã tự dọn session idle)
      */
     public int cleanupOldSessions(int maxAgeHours) {
-        LocalDateTime cutoff = LocalDateTime.now().minusHours(maxAgeHours);
+        long cutoffMillis = System.currentTimeMillis() - maxAgeHours * 3_600_000L;
         
-        List<String> toRemove = activeSessions.entrySet().stream()
-                .filter(entry -> entry.getValue().getLastActivity().isBefore(cutoff))
-                .map(Map.Entry::getKey)
-                .toList();
+        // Chỉ duyệt phần đuôi của index (các session cũ hơn cutoff)
+        List<ActivityKey> toRemove = new ArrayList<>(
+                activityIndex.tailSet(new ActivityKey(cutoffMillis - 1, ""), true));
         
-        toRemove.forEach(activeSessions::remove);
+        int removed = 0;
+        for (ActivityKey key : toRemove) {
+            ChatSession session = activeSessions.get(key.sessionId());
+            if (session != null && evictSession(session)) {
+                removed++;
+            }
+        }
         
-        if (!toRemove.isEmpty()) {
-            log.info("Cleaned up {} old chat sessions", toRemove.size());
+        if (removed > 0) {
+            log.info("Cleaned up {} old chat sessions", removed);
         }
         
-        return toRemove.size();
+        return removed;
+    }
+    
+    /**
+     * ⏱️ Advance expiry wheel - chỉ xử lý các slot đã tới hạn, không quét toàn bộ sessions
+     */
+    @Scheduled(fixedDelayString = "${chatgpt.session.expiry-tick-ms:30000}")
+    public void expireIdleSessions() {
+        long nowMillis = System.currentTimeMillis();
+        long idleTimeoutMillis = idleTimeoutMinutes * 60_000L;
+        int evicted = 0;
+        
+        for (String sessionId : expiryWheel.advance(nowMillis)) {
+            ChatSession session = activeSessions.get(sessionId);
+            if (session == null) {
+                continue; // Đã bị xóa thủ công
+            }
+            
+            long deadline = session.getLastActivityMillis() + idleTimeoutMillis;
+            if (deadline > nowMillis) {
+                // Session vẫn hoạt động - dời sang slot mới (lazy reschedule)
+                expiryWheel.schedule(sessionId, deadline);
+            } else if (evictSession(session)) {
+                evicted++;
+            }
+        }
+        
+        if (evicted > 0) {
+            log.info("Expired {} idle chat sessions ({} active)", evicted, activeSessions.size());
+        }
+    }
+    
+    /**
+     * 📈 Thống kê session store (eviction + heap usage)
+     */
+    public Map<String, Object> getSessionStoreStats() {
+        Runtime runtime = Runtime.getRuntime();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active_sessions", activeSessions.size());
+        stats.put("evicted_sessions", evictedSessions.get());
+        stats.put("deleted_sessions", deletedSessions.get());
+        stats.put("estimated_session_heap_bytes", estimatedHeapBytes.get());
+        stats.put("scheduled_expiry_entries", expiryWheel.size());
+        stats.put("expiry_wheel_slots", expiryWheel.getSlotCount());
+        stats.put("expiry_tick_ms", expiryTickMs);
+        stats.put("idle_timeout_minutes", idleTimeoutMinutes);
+        stats.put("jvm_heap_used_bytes", runtime.totalMemory() - runtime.freeMemory());
+        stats.put("jvm_heap_max_bytes", runtime.maxMemory());
+        return stats;
     }
     
     // Helper methods
     private ChatSession getOrCreateSession(String sessionId) {
-        return activeSessions.computeIfAbsent(sessionId, id -> new ChatSession(id));
+        return activeSessions.computeIfAbsent(sessionId, id -> {
+            ChatSession session = new ChatSession(id);
+            trackNewSession(session);
+            return session;
+        });
+    }
+    
+    private void trackNewSession(ChatSession session) {
+        activityIndex.add(session.getActivityKey());
+        estimatedHeapBytes.addAndGet(session.getEstimatedHeapBytes());
+        expiryWheel.schedule(session.getSessionId(),
+                session.getLastActivityMillis() + idleTimeoutMinutes * 60_000L);
+    }
+    
+    private boolean evictSession(ChatSession session) {
+        if (removeSession(session)) {
+            evictedSessions.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+    
+    private boolean removeSession(ChatSession session) {
+        synchronized (session) {
+            if (!activeSessions.remove(session.getSessionId(), session)) {
+                return false;
+            }
+            activityIndex.remove(session.getActivityKey());
+        }
+        estimatedHeapBytes.addAndGet(-session.getEstimatedHeapBytes());
+        return true;
     }
     
     private String generateSessionId() {
@@ -178,44 +353,258 @@ public class ChatSessionService {
     
     // Inner classes
     public static class ChatSession {
+        // Ước lượng overhead của session: object header, map entry, list, LocalDateTime
+        private static final long BASE_HEAP_BYTES = 256;
+        // Mỗi phần tử trong ArrayList tốn 1 reference
+        private static final long REFERENCE_BYTES = 8;
+        
         private final String sessionId;
         private final LocalDateTime createdAt;
-        private LocalDateTime lastActivity;
+        private volatile LocalDateTime lastActivity;
+        private volatile long lastActivityMillis;
         private final List<ChatMessage> messages;
+        private volatile long estimatedHeapBytes;
+        private volatile ActivityKey activityKey;
+        
+        // Summary được cập nhật khi thêm message, không cần duyệt lại messages
+        private volatile int userMessageCount;
+        private volatile int assistantMessageCount;
         
         public ChatSession(String sessionId) {
             this.sessionId = sessionId;
             this.createdAt = LocalDateTime.now();
             this.lastActivity = LocalDateTime.now();
+            this.lastActivityMillis = System.currentTimeMillis();
             this.messages = new ArrayList<>();
+            this.estimatedHeapBytes = BASE_HEAP_BYTES + 2L * sessionId.length();
+            this.activityKey = new ActivityKey(lastActivityMillis, sessionId);
         }
         
-        public void addMessage(ChatMessage message) {
+        public synchronized void addMessage(ChatMessage message) {
             messages.add(message);
             lastActivity = LocalDateTime.now();
+            lastActivityMillis = System.currentTimeMillis();
+            activityKey = new ActivityKey(lastActivityMillis, sessionId);
+            estimatedHeapBytes += message.estimateHeapBytes() + REFERENCE_BYTES;
+            
+            if ("user".equals(message.getRole())) {
+                userMessageCount++;
+            } else if ("assistant".equals(message.getRole())) {
+                assistantMessageCount++;
+            }
+        }
+        
+        public Map<String, Object> toSummary() {
+            return Map.of(
+                "session_id", sessionId,
+                "message_count", getMessageCount(),
+                "created_at", createdAt,
+                "last_activity", lastActivity
+            );
         }
         
         // Getters
         public String getSessionId() { return sessionId; }
         public LocalDateTime getCreatedAt() { return createdAt; }
         public LocalDateTime getLastActivity() { return lastActivity; }
+        public long getLastActivityMillis() { return lastActivityMillis; }
         public List<ChatMessage> getMessages() { return messages; }
+        public long getEstimatedHeapBytes() { return estimatedHeapBytes; }
+        public ActivityKey getActivityKey() { return activityKey; }
+        public synchronized int getMessageCount() { return messages.size(); }
+        public int getUserMessageCount() { return userMessageCount; }
+        public int getAssistantMessageCount() { return assistantMessageCount; }
+    }
+    
+    /**
+     * Key của activity index: sắp xếp lastActivity giảm dần, sessionId để phân biệt.
+     * Cũng được dùng làm cursor dạng "millis:sessionId".
+     */
+    public record ActivityKey(long lastActivityMillis, String sessionId) implements Comparable<ActivityKey> {
+        
+        @Override
+        public int compareTo(ActivityKey other) {
+            int byTime = Long.compare(other.lastActivityMillis, lastActivityMillis);
+            return byTime != 0 ? byTime : sessionId.compareTo(other.sessionId);
+        }
+        
+        public String toCursor() {
+            return lastActivityMillis + ":" + sessionId;
+        }
+        
+        static ActivityKey parse(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            int separator = cursor.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid session cursor: " + cursor);
+            }
+            try {
+                return new ActivityKey(Long.parseLong(cursor.substring(0, separator)),
+                        cursor.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid session cursor: " + cursor, e);
+            }
+        }
+    }
+    
+    /**
+     * Hashed timing wheel: mỗi slot chứa các session hết hạn trong tick đó.
+     * Số slot đủ phủ idle timeout nên mỗi entry chỉ được xử lý một lần mỗi vòng,
+     * session còn hoạt động được dời slot khi tới hạn (O(1) amortized / session).
+     */
+    static class SessionExpiryWheel {
+        private final long tickMs;
+        private final int mask;
+        private final ConcurrentLinkedQueue<String>[] slots;
+        private final AtomicLong size = new AtomicLong();
+        private long currentTick;
+        
+        @SuppressWarnings("unchecked")
+        SessionExpiryWheel(long tickMs, long timeoutTicks, long startMillis) {
+            int slotCount = Integer.highestOneBit((int) Math.min(timeoutTicks + 1, 1 << 20)) << 1;
+            this.tickMs = tickMs;
+            this.mask = slotCount - 1;
+            this.slots = new ConcurrentLinkedQueue[slotCount];
+            for (int i = 0; i < slotCount; i++) {
+                slots[i] = new ConcurrentLinkedQueue<>();
+            }
+            this.currentTick = startMillis / tickMs;
+        }
+        
+        void schedule(String sessionId, long deadlineMillis) {
+            // Làm tròn lên để không bao giờ expire sớm hơn deadline
+            long tick = (deadlineMillis + tickMs - 1) / tickMs;
+            slots[(int) (tick & mask)].add(sessionId);
+            size.incrementAndGet();
+        }
+        
+        /**
+         * Lấy ra các entry của những slot đã tới hạn từ lần advance trước tới nowMillis.
+         */
+        synchronized List<String> advance(long nowMillis) {
+            long targetTick = nowMillis / tickMs;
+            List<String> due = new ArrayList<>();
+            
+            // Nếu bị trễ hơn một vòng thì chỉ cần quét mỗi slot một lần
+            long fromTick = Math.max(currentTick + 1, targetTick - mask);
+            for (long tick = fromTick; tick <= targetTick; tick++) {
+                ConcurrentLinkedQueue<String> slot = slots[(int) (tick & mask)];
+                String sessionId;
+                while ((sessionId = slot.poll()) != null) {
+                    due.add(sessionId);
+                    size.decrementAndGet();
+                }
+            }
+            
+            currentTick = Math.max(currentTick, targetTick);
+            return due;
+        }
+        
+        int getSlotCount() { return slots.length; }
+        long size() { return size.get(); }
     }
     
+    /**
+     * Message lưu ở dạng nén gọn: role 1 byte, timestamp epoch-millis, content UTF-8
+     * (deflate nếu dài hơn ngưỡng). Content chỉ được decode khi lấy lịch sử.
+     */
     public static class ChatMessage {
-        private final String role; // "user", "assistant", "system"
-        private final String content;
-        private final LocalDateTime timestamp;
+        // Text ngắn hơn ngưỡng này nén không có lợi
+        private static final int COMPRESSION_THRESHOLD_BYTES = 512;
+        private static final ZoneId ZONE = ZoneId.systemDefault();
+        
+        private final byte role;
+        private final boolean compressed;
+        private final long timestampMillis;
+        private final byte[] content;
         
         public ChatMessage(String role, String content, LocalDateTime timestamp) {
-            this.role = role;
-            this.content = content;
-            this.timestamp = timestamp;
+            this.role = (byte) Role.fromValue(role).ordinal();
+            this.timestampMillis = timestamp.atZone(ZONE).toInstant().toEpochMilli();
+            
+            byte[] utf8 = content.getBytes(StandardCharsets.UTF_8);
+            byte[] deflated = utf8.length > COMPRESSION_THRESHOLD_BYTES ? deflate(utf8) : null;
+            this.compressed = deflated != null && deflated.length < utf8.length;
+            this.content = compressed ? deflated : utf8;
         }
         
         // Getters
-        public String getRole() { return role; }
-        public String getContent() { return content; }
-        public LocalDateTime getTimestamp() { return timestamp; }
+        public String getRole() { return Role.values()[role].getValue(); }
+        public String getContent() {
+            byte[] utf8 = compressed ? inflate(content) : content;
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+        public LocalDateTime getTimestamp() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZONE);
+        }
+        public long getTimestampMillis() { return timestampMillis; }
+        public boolean isCompressed() { return compressed; }
+        
+        // Ước lượng: object header + fields + byte[] header + payload
+        long estimateHeapBytes() {
+            return 48 + content.length;
+        }
+        
+        private static byte[] deflate(byte[] input) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(input);
+                deflater.finish();
+                ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+                byte[] buffer = new byte[1024];
+                while (!deflater.finished()) {
+                    out.write(buffer, 0, deflater.deflate(buffer));
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+        
+        private static byte[] inflate(byte[] input) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(input);
+                ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+                byte[] buffer = new byte[1024];
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buffer);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    out.write(buffer, 0, n);
+                }
+                return out.toByteArray();
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Corrupted chat message content", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+    
+    public enum Role {
+        USER("user"),
+        ASSISTANT("assistant"),
+        SYSTEM("system");
+        
+        private final String value;
+        
+        Role(String value) {
+            this.value = value;
+        }
+        
+        public String getValue() { return value; }
+        
+        public static Role fromValue(String value) {
+            for (Role role : values()) {
+                if (role.value.equals(value)) {
+                    return role;
+                }
+            }
+            throw new IllegalArgumentException("Unknown chat role: " + value);
+        }
     }
 }
\ No newline at end of file
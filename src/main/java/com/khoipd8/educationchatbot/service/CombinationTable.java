@@ -0,0 +1,175 @@
+package com.khoipd8.educationchatbot.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.khoipd8.educationchatbot.service.SubjectVector.*;
+
+/**
+ * Bảng tổ hợp xét tuyển cố định: mã tổ hợp -> 3 môn (theo thứ tự hiển thị).
+ * Chỉ gồm các tổ hợp tính được từ 9 môn đang lưu trong StudentScore.
+ * Kiểm tra đủ điều kiện = 1 phép AND bitmask, tổng điểm = 3 phép cộng, không cấp phát.
+ */
+public final class CombinationTable {
+
+    private static final Object[][] DEFINITIONS = {
+        {"A00", MATH, PHYSICS, CHEMISTRY},
+        {"A01", MATH, PHYSICS, ENGLISH},
+        {"A02", MATH, PHYSICS, BIOLOGY},
+        {"A03", MATH, PHYSICS, HISTORY},
+        {"A04", MATH, PHYSICS, GEOGRAPHY},
+        {"A05", MATH, CHEMISTRY, HISTORY},
+        {"A06", MATH, CHEMISTRY, GEOGRAPHY},
+        {"A07", MATH, HISTORY, GEOGRAPHY},
+        {"A08", MATH, HISTORY, CIVIC_EDUCATION},
+        {"A09", MATH, GEOGRAPHY, CIVIC_EDUCATION},
+        {"A10", MATH, PHYSICS, CIVIC_EDUCATION},
+        {"A11", MATH, CHEMISTRY, CIVIC_EDUCATION},
+        {"B00", MATH, CHEMISTRY, BIOLOGY},
+        {"B01", MATH, BIOLOGY, HISTORY},
+        {"B02", MATH, BIOLOGY, GEOGRAPHY},
+        {"B03", MATH, BIOLOGY, LITERATURE},
+        {"B04", MATH, BIOLOGY, CIVIC_EDUCATION},
+        {"B08", MATH, BIOLOGY, ENGLISH},
+        {"C00", LITERATURE, HISTORY, GEOGRAPHY},
+        {"C01", LITERATURE, MATH, PHYSICS},
+        {"C02", LITERATURE, MATH, CHEMISTRY},
+        {"C03", LITERATURE, MATH, HISTORY},
+        {"C04", LITERATURE, MATH, GEOGRAPHY},
+        {"C05", LITERATURE, PHYSICS, CHEMISTRY},
+        {"C06", LITERATURE, PHYSICS, BIOLOGY},
+        {"C07", LITERATURE, PHYSICS, HISTORY},
+        {"C08", LITERATURE, CHEMISTRY, BIOLOGY},
+        {"C09", LITERATURE, PHYSICS, GEOGRAPHY},
+        {"C10", LITERATURE, CHEMISTRY, HISTORY},
+        {"C12", LITERATURE, BIOLOGY, HISTORY},
+        {"C13", LITERATURE, BIOLOGY, GEOGRAPHY},
+        {"C14", LITERATURE, MATH, CIVIC_EDUCATION},
+        {"C16", LITERATURE, PHYSICS, CIVIC_EDUCATION},
+        {"C17", LITERATURE, CHEMISTRY, CIVIC_EDUCATION},
+        {"C19", LITERATURE, HISTORY, CIVIC_EDUCATION},
+        {"C20", LITERATURE, GEOGRAPHY, CIVIC_EDUCATION},
+        {"D01", LITERATURE, MATH, ENGLISH},
+        {"D07", MATH, CHEMISTRY, ENGLISH},
+        {"D08", MATH, BIOLOGY, ENGLISH},
+        {"D09", MATH, HISTORY, ENGLISH},
+        {"D10", MATH, GEOGRAPHY, ENGLISH},
+        {"D11", LITERATURE, PHYSICS, ENGLISH},
+        {"D12", LITERATURE, CHEMISTRY, ENGLISH},
+        {"D13", LITERATURE, BIOLOGY, ENGLISH},
+        {"D14", LITERATURE, HISTORY, ENGLISH},
+        {"D15", LITERATURE, GEOGRAPHY, ENGLISH},
+        {"D66", LITERATURE, CIVIC_EDUCATION, ENGLISH},
+        {"D84", MATH, CIVIC_EDUCATION, ENGLISH},
+    };
+
+    private static final int SIZE = DEFINITIONS.length;
+    private static final String[] CODES = new String[SIZE];
+    private static final String[] NAMES = new String[SIZE];
+    // 3 chỉ số môn liên tiếp cho mỗi tổ hợp
+    private static final byte[] SUBJECTS = new byte[SIZE * 3];
+    private static final int[] MASKS = new int[SIZE];
+    private static final Map<String, Integer> INDEX_BY_CODE = new HashMap<>();
+
+    static {
+        for (int i = 0; i < SIZE; i++) {
+            Object[] definition = DEFINITIONS[i];
+            CODES[i] = (String) definition[0];
+            StringBuilder name = new StringBuilder();
+            for (int j = 0; j < 3; j++) {
+                int subject = (Integer) definition[j + 1];
+                SUBJECTS[i * 3 + j] = (byte) subject;
+                MASKS[i] |= 1 << subject;
+                if (j > 0) name.append(", ");
+                name.append(SUBJECT_NAMES[subject]);
+            }
+            NAMES[i] = name.toString();
+            INDEX_BY_CODE.put(CODES[i], i);
+        }
+    }
+
+    private CombinationTable() {
+    }
+
+    public static int size() {
+        return SIZE;
+    }
+
+    public static String code(int index) {
+        return CODES[index];
+    }
+
+    /**
+     * Chỉ số của tổ hợp trong bảng, -1 nếu không có
+     */
+    public static int indexOf(String code) {
+        Integer index = code != null ? INDEX_BY_CODE.get(code.trim().toUpperCase()) : null;
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Tên tổ hợp ("Toán, Vật lí, Hóa học"); mã không có trong bảng thì trả lại chính mã
+     */
+    public static String nameOf(String code) {
+        int index = indexOf(code);
+        return index >= 0 ? NAMES[index] : code;
+    }
+
+    public static boolean isEligible(int index, SubjectVector vector) {
+        return (vector.presentMask() & MASKS[index]) == MASKS[index];
+    }
+
+    /**
+     * Tổng điểm tổ hợp, NaN nếu thiếu môn
+     */
+    public static double total(int index, SubjectVector vector) {
+        if (!isEligible(index, vector)) {
+            return Double.NaN;
+        }
+        int base = index * 3;
+        double sum = (double) vector.get(SUBJECTS[base]) + vector.get(SUBJECTS[base + 1]) + vector.get(SUBJECTS[base + 2]);
+        // Điểm thi là bội số của 0.05 - làm tròn để loại sai số float
+        return Math.round(sum * 100.0) / 100.0;
+    }
+
+    /**
+     * Tổng điểm theo mã tổ hợp, null nếu thiếu môn hoặc mã không có trong bảng
+     */
+    public static Double total(String code, SubjectVector vector) {
+        int index = indexOf(code);
+        if (index < 0 || !isEligible(index, vector)) {
+            return null;
+        }
+        return total(index, vector);
+    }
+
+    /**
+     * Tính tổng điểm của mọi tổ hợp trong 1 lượt vào buffer của người gọi (NaN = không đủ môn).
+     * totals.length >= size(). Trả về số tổ hợp đủ điều kiện. Không cấp phát - dùng cho tính lại hàng loạt.
+     */
+    public static int computeTotals(SubjectVector vector, double[] totals) {
+        int eligible = 0;
+        for (int i = 0; i < SIZE; i++) {
+            totals[i] = total(i, vector);
+            if (!Double.isNaN(totals[i])) {
+                eligible++;
+            }
+        }
+        return eligible;
+    }
+
+    /**
+     * Danh sách mã tổ hợp đủ điều kiện, theo thứ tự trong bảng
+     */
+    public static List<String> eligibleCodes(SubjectVector vector) {
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < SIZE; i++) {
+            if (isEligible(i, vector)) {
+                codes.add(CODES[i]);
+            }
+        }
+        return codes;
+    }
+}
@@ -0,0 +1,374 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.dto.UniversityInfo;
+import com.khoipd8.educationchatbot.entity.University;
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Kho lưu HTML gốc của mọi trang đã fetch, append-only, chia segment theo lượt crawl.
+ * Mỗi bản ghi là 1 gzip member độc lập (kiểu .warc.gz) nên đọc ngẫu nhiên được theo offset;
+ * file .idx đi kèm (mã trường, offset, độ dài) cho phép tìm bản mới nhất của mỗi trường.
+ * Dùng để parse lại từ bytes local khi sửa lỗi parser, không cần crawl lại website.
+ */
+@Service
+@Slf4j
+public class CrawlArchiveService {
+
+    private static final String SEGMENT_SUFFIX = ".warc.gz";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    @Value("${crawler.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${crawler.archive.dir:./data/crawl-archive}")
+    private String archiveDir;
+
+    @Autowired
+    private TuyenSinh247CrawlerService crawlerService;
+
+    @Autowired
+    @Qualifier("archiveReparseExecutor")
+    private Executor reparseExecutor;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    private Path root;
+    // Mã trường -> bản lưu mới nhất (mọi segment)
+    private final Map<String, ArchiveRef> latestByCode = new ConcurrentHashMap<>();
+    private final Map<String, Object> segmentLocks = new ConcurrentHashMap<>();
+
+    private volatile boolean reparseInProgress = false;
+    private volatile Map<String, Object> lastReparseResult = Map.of();
+
+    @PostConstruct
+    void init() {
+        root = Paths.get(archiveDir);
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(root);
+            loadIndexes();
+        } catch (IOException e) {
+            log.warn("Không mở được crawl archive tại {}: {}", root, e.getMessage());
+        }
+    }
+
+    /**
+     * Ghi 1 trang vừa fetch (status 200) vào segment; lỗi ghi archive không làm hỏng lượt crawl
+     */
+    public void append(String segment, UniversityInfo info, TuyenSinh247CrawlerService.FetchedPage page) {
+        if (!enabled || page.notModified() || page.rawBody() == null) {
+            return;
+        }
+        String safeSegment = safeSegmentName(segment);
+        long fetchedAt = System.currentTimeMillis();
+        try {
+            byte[] record = encodeRecord(info, page, fetchedAt);
+            synchronized (segmentLocks.computeIfAbsent(safeSegment, k -> new Object())) {
+                Path data = root.resolve(safeSegment + SEGMENT_SUFFIX);
+                long offset = Files.exists(data) ? Files.size(data) : 0;
+                Files.write(data, record, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+                ArchiveRef ref = new ArchiveRef(safeSegment, info.getCode(), offset, record.length, fetchedAt);
+                Files.writeString(root.resolve(safeSegment + INDEX_SUFFIX), ref.toIndexLine() + "\n",
+                        StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                latestByCode.merge(info.getCode(), ref, (old, current) -> current.fetchedAt() >= old.fetchedAt() ? current : old);
+            }
+        } catch (IOException e) {
+            log.warn("Không ghi được archive cho {}: {}", info.getCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * Đọc lại 1 bản ghi theo offset trong segment
+     */
+    public ArchivedPage read(ArchiveRef ref) throws IOException {
+        byte[] compressed = new byte[ref.length()];
+        try (RandomAccessFile file = new RandomAccessFile(root.resolve(ref.segment() + SEGMENT_SUFFIX).toFile(), "r")) {
+            file.seek(ref.offset());
+            file.readFully(compressed);
+        }
+
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(compressed)))) {
+            Map<String, String> headers = new HashMap<>();
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+            }
+            int contentLength = Integer.parseInt(headers.getOrDefault("Content-Length", "0"));
+            byte[] body = in.readNBytes(contentLength);
+
+            UniversityInfo info = new UniversityInfo();
+            info.setCode(headers.get("X-University-Code"));
+            info.setName(headers.get("X-University-Name"));
+            info.setUrl(headers.get("WARC-Target-URI"));
+            return new ArchivedPage(info, body, emptyToNull(headers.get("X-Charset")),
+                    emptyToNull(headers.get("X-ETag")), emptyToNull(headers.get("X-Last-Modified")), ref.fetchedAt());
+        }
+    }
+
+    /**
+     * Bản ghi cần parse lại: cả segment (bản cuối của mỗi trường trong segment) hoặc bản mới nhất của mọi trường
+     */
+    public List<ArchiveRef> findRefs(String segment, Collection<String> codes) throws IOException {
+        Map<String, ArchiveRef> refs;
+        if (segment != null && !segment.isBlank()) {
+            refs = new HashMap<>();
+            for (ArchiveRef ref : readIndex(root.resolve(safeSegmentName(segment) + INDEX_SUFFIX))) {
+                refs.put(ref.code(), ref);
+            }
+        } else {
+            refs = new HashMap<>(latestByCode);
+        }
+        if (codes != null && !codes.isEmpty()) {
+            Set<String> wanted = new HashSet<>();
+            codes.forEach(code -> wanted.add(code.toUpperCase()));
+            refs.keySet().retainAll(wanted);
+        }
+        return new ArrayList<>(refs.values());
+    }
+
+    /**
+     * ♻️ Parse lại từ archive và ghi DB theo diff. Chạy nền; parse song song trên archiveReparseExecutor.
+     */
+    public synchronized Map<String, Object> startReparse(String segment, List<String> codes) throws IOException {
+        if (reparseInProgress) {
+            throw new IllegalStateException("Reparse from archive is already running");
+        }
+        List<ArchiveRef> refs = findRefs(segment, codes);
+        reparseInProgress = true;
+        CompletableFuture.supplyAsync(() -> reparse(refs, segment), taskExecutor)
+                .whenComplete((result, throwable) -> {
+                    reparseInProgress = false;
+                    if (throwable != null) {
+                        log.error("❌ Reparse from archive failed", throwable);
+                        lastReparseResult = Map.of("status", "failed", "error", String.valueOf(throwable.getMessage()));
+                    } else {
+                        lastReparseResult = result;
+                    }
+                });
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "started");
+        response.put("segment", segment != null ? segment : "latest");
+        response.put("pages", refs.size());
+        return response;
+    }
+
+    public Map<String, Object> getReparseStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("in_progress", reparseInProgress);
+        status.put("last_result", lastReparseResult);
+        return status;
+    }
+
+    public Map<String, Object> getStats() throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("dir", root.toAbsolutePath().toString());
+        stats.put("indexed_universities", latestByCode.size());
+
+        List<Map<String, Object>> segments = new ArrayList<>();
+        if (enabled && Files.isDirectory(root)) {
+            try (Stream<Path> files = Files.list(root)) {
+                for (Path index : files.filter(p -> p.toString().endsWith(INDEX_SUFFIX)).sorted().toList()) {
+                    String name = index.getFileName().toString().replace(INDEX_SUFFIX, "");
+                    Path data = root.resolve(name + SEGMENT_SUFFIX);
+                    Map<String, Object> segment = new LinkedHashMap<>();
+                    segment.put("segment", name);
+                    segment.put("records", readIndex(index).size());
+                    segment.put("size_bytes", Files.exists(data) ? Files.size(data) : 0);
+                    segments.add(segment);
+                }
+            }
+        }
+        stats.put("segments", segments);
+        return stats;
+    }
+
+    // ====== HELPER METHODS ======
+
+    private Map<String, Object> reparse(List<ArchiveRef> refs, String segment) {
+        long start = System.currentTimeMillis();
+        Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+        CompletionService<String> completion = new ExecutorCompletionService<>(reparseExecutor);
+        Map<String, TuyenSinh247CrawlerService.CrawlMetadata> metadataByCode = crawlerService.loadCrawlMetadata();
+
+        for (ArchiveRef ref : refs) {
+            completion.submit(() -> {
+                try {
+                    ArchivedPage archived = read(ref);
+                    Document doc = Jsoup.parse(new ByteArrayInputStream(archived.body()), archived.charset(), archived.info().getUrl());
+                    String contentHash = crawlerService.contentHash(doc);
+                    if (isOlderThanStored(archived, contentHash, metadataByCode.get(ref.code()))) {
+                        return "skipped_stale";
+                    }
+                    University university = crawlerService.parseUniversityDetails(archived.info(), doc);
+                    university.setPageEtag(archived.etag());
+                    university.setPageLastModified(archived.lastModified());
+                    university.setPageContentHash(contentHash);
+                    return crawlerService.saveCrawledUniversity(university).action();
+                } catch (Exception e) {
+                    log.error("❌ Reparse failed for {}: {}", ref.code(), e.getMessage());
+                    return "failed";
+                }
+            });
+        }
+
+        for (int i = 0; i < refs.size(); i++) {
+            try {
+                String outcome = completion.take().get();
+                outcomes.computeIfAbsent(outcome, k -> new AtomicInteger()).incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                outcomes.computeIfAbsent("failed", k -> new AtomicInteger()).incrementAndGet();
+            }
+        }
+
+        Map<String, Object> outcomeCounts = new TreeMap<>();
+        outcomes.forEach((k, v) -> outcomeCounts.put(k, v.get()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", "completed");
+        result.put("segment", segment != null ? segment : "latest");
+        result.put("pages", refs.size());
+        result.put("outcomes", outcomeCounts);
+        result.put("duration_ms", System.currentTimeMillis() - start);
+        result.put("completed_at", System.currentTimeMillis());
+        log.info("✅ Reparsed {} archived pages: {}", refs.size(), outcomeCounts);
+        return result;
+    }
+
+    /**
+     * DB đã có dữ liệu mới hơn bản lưu (trang đổi sau lần fetch này, bản mới chưa vào archive):
+     * parse lại sẽ ghi đè chương trình và đưa validator/hash về giá trị cũ.
+     * Cùng content hash nghĩa là DB đang phản ánh đúng trang này (vd. lần reparse trước) nên vẫn parse lại được.
+     */
+    private static boolean isOlderThanStored(ArchivedPage archived, String contentHash,
+                                             TuyenSinh247CrawlerService.CrawlMetadata stored) {
+        if (stored == null || stored.updatedAt() == null || contentHash.equals(stored.contentHash())) {
+            return false;
+        }
+        return archived.fetchedAt() < toEpochMillis(stored.updatedAt());
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        // updated_at được ghi bằng LocalDateTime.now() theo múi giờ của server
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private byte[] encodeRecord(UniversityInfo info, TuyenSinh247CrawlerService.FetchedPage page, long fetchedAt) throws IOException {
+        StringBuilder header = new StringBuilder();
+        header.append("WARC/1.0\r\n");
+        header.append("WARC-Type: resource\r\n");
+        header.append("WARC-Record-ID: <urn:uuid:").append(UUID.randomUUID()).append(">\r\n");
+        header.append("WARC-Date: ").append(Instant.ofEpochMilli(fetchedAt)).append("\r\n");
+        header.append("WARC-Target-URI: ").append(info.getUrl()).append("\r\n");
+        header.append("X-University-Code: ").append(info.getCode()).append("\r\n");
+        header.append("X-University-Name: ").append(headerValue(info.getName())).append("\r\n");
+        header.append("X-Charset: ").append(headerValue(page.charset())).append("\r\n");
+        header.append("X-ETag: ").append(headerValue(page.etag())).append("\r\n");
+        header.append("X-Last-Modified: ").append(headerValue(page.lastModified())).append("\r\n");
+        header.append("Content-Type: text/html\r\n");
+        header.append("Content-Length: ").append(page.rawBody().length).append("\r\n");
+        header.append("\r\n");
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(page.rawBody().length / 4 + 512);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(buffer)) {
+            gzip.write(header.toString().getBytes(StandardCharsets.UTF_8));
+            gzip.write(page.rawBody());
+            gzip.write("\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+        }
+        return buffer.toByteArray();
+    }
+
+    private void loadIndexes() throws IOException {
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path index : files.filter(p -> p.toString().endsWith(INDEX_SUFFIX)).toList()) {
+                for (ArchiveRef ref : readIndex(index)) {
+                    latestByCode.merge(ref.code(), ref, (old, current) -> current.fetchedAt() >= old.fetchedAt() ? current : old);
+                }
+            }
+        }
+        log.info("📦 Crawl archive: {} universities indexed in {}", latestByCode.size(), root.toAbsolutePath());
+    }
+
+    private List<ArchiveRef> readIndex(Path index) throws IOException {
+        if (!Files.exists(index)) {
+            return List.of();
+        }
+        String segment = index.getFileName().toString().replace(INDEX_SUFFIX, "");
+        List<ArchiveRef> refs = new ArrayList<>();
+        for (String line : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t");
+            if (parts.length >= 4) {
+                refs.add(new ArchiveRef(segment, parts[0], Long.parseLong(parts[1]),
+                        Integer.parseInt(parts[2]), Long.parseLong(parts[3])));
+            }
+        }
+        return refs;
+    }
+
+    private static String safeSegmentName(String segment) {
+        return segment.replaceAll("[^A-Za-z0-9_-]", "_");
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private static String headerValue(String value) {
+        return value != null ? value.replaceAll("[\\r\\n]+", " ") : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Vị trí 1 bản ghi: segment, offset + độ dài gzip member
+     */
+    public record ArchiveRef(String segment, String code, long offset, int length, long fetchedAt) {
+        String toIndexLine() {
+            return code + "\t" + offset + "\t" + length + "\t" + fetchedAt;
+        }
+    }
+
+    public record ArchivedPage(UniversityInfo info, byte[] body, String charset, String etag,
+                               String lastModified, long fetchedAt) {}
+}
@@ -0,0 +1,620 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.dto.UniversityInfo;
+import com.khoipd8.educationchatbot.entity.CrawlJob;
+import com.khoipd8.educationchatbot.entity.CrawlJobItem;
+import com.khoipd8.educationchatbot.repository.CrawlJobItemRepository;
+import com.khoipd8.educationchatbot.repository.CrawlJobRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Crawl job bền vững: frontier (danh sách trường) và trạng thái từng item được lưu DB,
+ * nên khi JVM restart giữa chừng thì job đang chạy được chạy tiếp từ các item còn pending.
+ * Job chạy nền trên crawl executor của CrawlScheduler; kết quả từng mã được phát qua SSE.
+ * Không job nào giữ thread trong lúc chờ: xử lý kết thúc được nối vào future của CrawlRun.
+ * Mỗi job có node chủ + heartbeat (lease): node khác chỉ chạy tiếp / kết thúc job khi lease đã hết hạn.
+ */
+@Service
+@Slf4j
+public class CrawlJobService {
+
+    public static final String JOB_CRAWL_ALL = "crawl_all";
+    public static final String JOB_CRAWL_BATCH = "crawl_batch";
+
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_CANCELLED = "cancelled";
+    public static final String STATUS_FAILED = "failed";
+
+    public static final String ITEM_PENDING = "pending";
+    public static final String ITEM_DONE = "done";
+    public static final String ITEM_FAILED = "failed";
+    public static final String ITEM_CANCELLED = "cancelled";
+
+    @Autowired
+    private CrawlJobRepository jobRepository;
+
+    @Autowired
+    private CrawlJobItemRepository itemRepository;
+
+    @Autowired
+    private TuyenSinh247CrawlerService crawlerService;
+
+    @Autowired
+    private CrawlScheduler crawlScheduler;
+
+    @Autowired
+    private CrawlArchiveService archiveService;
+
+    @Value("${crawler.jobs.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    @Value("${crawler.jobs.event-timeout-ms:1800000}")
+    private long eventTimeoutMs;
+
+    @Value("${crawler.jobs.lease-ms:120000}")
+    private long leaseMs;
+
+    // Để trống: dùng "pid@host" của JVM (mỗi lần khởi động là 1 node mới)
+    @Value("${crawler.jobs.node-id:}")
+    private String configuredNodeId;
+
+    private String nodeId;
+
+    // Job đang chạy trên node này -> lượt crawl của scheduler
+    // Đăng ký từ launch() (run còn null) để cancel giữa launch và lúc CrawlRun được tạo không bị lọt
+    private final Map<Long, AtomicReference<CrawlScheduler.CrawlRun>> activeRuns = new ConcurrentHashMap<>();
+    private final Set<Long> cancelRequested = ConcurrentHashMap.newKeySet();
+    // Client đang nghe SSE theo job
+    private final Map<Long, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId.isBlank() ? ManagementFactory.getRuntimeMXBean().getName() : configuredNodeId;
+        log.info("Crawl job node id: {}", nodeId);
+    }
+
+    /**
+     * 🚀 Tạo job crawl toàn bộ trường: discover, lưu frontier, rồi chạy nền
+     */
+    public synchronized CrawlJob startCrawlAll(boolean forceUpdate, boolean skipExisting) throws Exception {
+        Optional<CrawlJob> running = findRunningJob(JOB_CRAWL_ALL);
+        if (running.isPresent()) {
+            throw new IllegalStateException("Crawl job " + running.get().getId() + " is already running");
+        }
+
+        List<UniversityInfo> universityInfos = crawlerService.discoverUniversities();
+        Map<String, TuyenSinh247CrawlerService.CrawlMetadata> metadataByCode = crawlerService.loadCrawlMetadata();
+
+        List<CrawlJobItem> items = new ArrayList<>();
+        int skipped = 0;
+        for (UniversityInfo info : universityInfos) {
+            TuyenSinh247CrawlerService.CrawlMetadata metadata = metadataByCode.get(info.getCode());
+            boolean exists = metadata != null;
+            if (exists && skipExisting && !forceUpdate) {
+                skipped++;
+                continue;
+            }
+            // Trường mới trước, sau đó trường cập nhật lâu nhất
+            CrawlJobItem item = new CrawlJobItem();
+            item.setUniversityCode(info.getCode());
+            item.setUniversityName(info.getName());
+            item.setUrl(info.getUrl());
+            item.setPriority(exists ? 1 : 0);
+            item.setOrderKey(exists && metadata.updatedAt() != null
+                    ? metadata.updatedAt().toEpochSecond(ZoneOffset.UTC) : items.size());
+            item.setStatus(ITEM_PENDING);
+            items.add(item);
+        }
+
+        CrawlJob job = new CrawlJob();
+        job.setJobType(JOB_CRAWL_ALL);
+        job.setStatus(STATUS_RUNNING);
+        job.setForceUpdate(forceUpdate);
+        job.setSkipExisting(skipExisting);
+        job.setTotalItems(items.size());
+        job.setSkippedItems(skipped);
+        job.setStartedAt(LocalDateTime.now());
+        job.setOwnerId(nodeId);
+        job.setHeartbeatAt(job.getStartedAt());
+        job = jobRepository.save(job);
+
+        Long jobId = job.getId();
+        items.forEach(item -> item.setJobId(jobId));
+        itemRepository.saveAll(items);
+
+        log.info("🚀 Created crawl job {} with {} items ({} skipped)", jobId, items.size(), skipped);
+        launch(job);
+        return job;
+    }
+
+    /**
+     * 🔄 Tạo job crawl theo danh sách mã trường, trả về ngay; URL lấy từ discovery cache.
+     * Mã không tìm thấy / đã có (khi không force) được ghi luôn thành item đã xong.
+     */
+    public CrawlJob startCrawlBatch(List<String> codes, boolean forceUpdate) {
+        Map<String, TuyenSinh247CrawlerService.CrawlMetadata> metadataByCode = crawlerService.loadCrawlMetadata();
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<String, CrawlJobItem> itemsByCode = new LinkedHashMap<>();
+        for (String code : codes) {
+            String upperCode = code.trim().toUpperCase();
+            if (upperCode.isEmpty() || itemsByCode.containsKey(upperCode)) {
+                continue;
+            }
+            CrawlJobItem item = new CrawlJobItem();
+            item.setUniversityCode(upperCode);
+            item.setOrderKey((long) itemsByCode.size());
+            item.setUrl("");
+            itemsByCode.put(upperCode, item);
+
+            if (metadataByCode.containsKey(upperCode) && !forceUpdate) {
+                item.setStatus(ITEM_DONE);
+                item.setOutcome("skipped");
+                item.setLastError("Already exists and force_update=false");
+                item.setCompletedAt(now);
+                continue;
+            }
+            try {
+                UniversityInfo info = crawlerService.resolveUniversity(upperCode);
+                item.setUniversityName(info.getName());
+                item.setUrl(info.getUrl());
+                item.setStatus(ITEM_PENDING);
+            } catch (Exception e) {
+                item.setStatus(ITEM_FAILED);
+                item.setOutcome("not_found");
+                item.setLastError(truncate(e.getMessage()));
+                item.setCompletedAt(now);
+            }
+        }
+
+        CrawlJob job = new CrawlJob();
+        job.setJobType(JOB_CRAWL_BATCH);
+        job.setStatus(STATUS_RUNNING);
+        job.setForceUpdate(forceUpdate);
+        job.setTotalItems(itemsByCode.size());
+        job.setStartedAt(now);
+        job.setOwnerId(nodeId);
+        job.setHeartbeatAt(now);
+        job = jobRepository.save(job);
+
+        Long jobId = job.getId();
+        itemsByCode.values().forEach(item -> item.setJobId(jobId));
+        itemRepository.saveAll(itemsByCode.values());
+
+        log.info("🔄 Created batch crawl job {} for {} codes", jobId, itemsByCode.size());
+        launch(job);
+        return job;
+    }
+
+    /**
+     * Kết quả từng mã đã xử lý xong (bền vững, dùng để poll)
+     */
+    public List<Map<String, Object>> getFinishedItems(Long jobId) {
+        return itemRepository.findByJobIdAndStatusNotOrderByCompletedAtAsc(jobId, ITEM_PENDING).stream()
+                .map(this::toItemResult)
+                .toList();
+    }
+
+    /**
+     * 📡 Đăng ký nhận sự kiện SSE của job: "item" cho từng mã xong, "job" khi job kết thúc.
+     * Các item đã xong được phát lại trước; client khử trùng theo code nếu item xong đúng lúc đăng ký.
+     */
+    public SseEmitter subscribe(Long jobId) {
+        SseEmitter emitter = new SseEmitter(eventTimeoutMs);
+        Optional<CrawlJob> job = jobRepository.findById(jobId);
+        if (job.isEmpty()) {
+            emitter.completeWithError(new IllegalArgumentException("Crawl job " + jobId + " not found"));
+            return emitter;
+        }
+
+        List<SseEmitter> jobSubscribers = subscribers.computeIfAbsent(jobId, k -> new CopyOnWriteArrayList<>());
+        jobSubscribers.add(emitter);
+        emitter.onCompletion(() -> jobSubscribers.remove(emitter));
+        emitter.onTimeout(() -> jobSubscribers.remove(emitter));
+        emitter.onError(e -> jobSubscribers.remove(emitter));
+
+        try {
+            for (Map<String, Object> item : getFinishedItems(jobId)) {
+                emitter.send(SseEmitter.event().name("item").data(item));
+            }
+            // Đọc lại trạng thái sau khi đã đăng ký để không lỡ sự kiện kết thúc
+            CrawlJob current = jobRepository.findById(jobId).orElse(job.get());
+            if (!STATUS_RUNNING.equals(current.getStatus())) {
+                emitter.send(SseEmitter.event().name("job").data(buildProgress(current)));
+                emitter.complete();
+            }
+        } catch (Exception e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * ⏹️ Hủy job: item chưa xử lý chuyển sang cancelled, trang đang fetch/ghi vẫn hoàn tất.
+     * Job do node khác chạy (lease còn hạn) chỉ được đánh dấu, node chủ tự hủy ở lần heartbeat kế tiếp.
+     */
+    public boolean cancelJob(Long jobId) {
+        Optional<CrawlJob> found = jobRepository.findById(jobId);
+        if (found.isEmpty() || !STATUS_RUNNING.equals(found.get().getStatus())) {
+            return false;
+        }
+        AtomicReference<CrawlScheduler.CrawlRun> slot = activeRuns.get(jobId);
+        if (slot != null) {
+            cancelRequested.add(jobId);
+            // Run chưa tạo xong: startRun thấy cancelRequested sau khi gán run và tự hủy
+            CrawlScheduler.CrawlRun run = slot.get();
+            if (run != null) {
+                run.cancel();
+            }
+        } else if (claimLease(jobId)) {
+            // Không node nào đang chạy job (lease hết hạn, chưa ai resume): kết thúc luôn
+            finishJob(jobId, false);
+        } else {
+            jobRepository.requestCancel(jobId, STATUS_RUNNING);
+            log.info("⏹️ Crawl job {} is owned by {}, cancel requested", jobId, found.get().getOwnerId());
+        }
+        return true;
+    }
+
+    public int cancelRunningJobs() {
+        int cancelled = 0;
+        for (CrawlJob job : jobRepository.findByStatus(STATUS_RUNNING)) {
+            if (cancelJob(job.getId())) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    public Optional<CrawlJob> findRunningJob(String jobType) {
+        return jobRepository.findFirstByJobTypeAndStatusOrderByIdDesc(jobType, STATUS_RUNNING);
+    }
+
+    public Optional<CrawlJob> findLatestJob() {
+        return jobRepository.findFirstByOrderByIdDesc();
+    }
+
+    public Optional<Map<String, Object>> getJobProgress(Long jobId) {
+        return jobRepository.findById(jobId).map(this::buildProgress);
+    }
+
+    /**
+     * 📊 Tiến độ job từ aggregate trên index (job_id, status): không load item / university
+     */
+    public Map<String, Object> buildProgress(CrawlJob job) {
+        Map<String, Long> byStatus = toCountMap(itemRepository.countByStatus(job.getId()));
+        long pending = byStatus.getOrDefault(ITEM_PENDING, 0L);
+        long total = job.getTotalItems();
+        long processed = total - pending;
+
+        Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("job_id", job.getId());
+        progress.put("job_type", job.getJobType());
+        progress.put("status", job.getStatus());
+        progress.put("total", total);
+        progress.put("pending", pending);
+        progress.put("done", byStatus.getOrDefault(ITEM_DONE, 0L));
+        progress.put("failed", byStatus.getOrDefault(ITEM_FAILED, 0L));
+        progress.put("cancelled", byStatus.getOrDefault(ITEM_CANCELLED, 0L));
+        progress.put("skipped", job.getSkippedItems());
+        progress.put("outcomes", toCountMap(itemRepository.countByOutcome(job.getId())));
+        progress.put("percent", total > 0 ? Math.round(processed * 1000.0 / total) / 10.0 : 100.0);
+        progress.put("options", Map.of(
+            "force_update", job.getForceUpdate(),
+            "skip_existing", job.getSkipExisting()
+        ));
+        progress.put("resume_count", job.getResumeCount());
+        progress.put("owner", job.getOwnerId());
+        progress.put("started_at", job.getStartedAt());
+        progress.put("finished_at", job.getFinishedAt());
+
+        // Throughput tính từ lần chạy (hoặc resume) gần nhất
+        if (job.getResumedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            double minutes = Math.max(1, Duration.between(job.getResumedAt(), end).toMillis()) / 60_000.0;
+            long recent = itemRepository.countByJobIdAndCompletedAtAfter(job.getId(), job.getResumedAt());
+            double perMinute = recent / minutes;
+            progress.put("throughput_per_minute", Math.round(perMinute * 10.0) / 10.0);
+            progress.put("eta_seconds", STATUS_RUNNING.equals(job.getStatus()) && perMinute > 0
+                    ? Math.round(pending / perMinute * 60) : null);
+        }
+
+        AtomicReference<CrawlScheduler.CrawlRun> slot = activeRuns.get(job.getId());
+        CrawlScheduler.CrawlRun run = slot != null ? slot.get() : null;
+        if (run != null) {
+            progress.put("live_run", run.getProgress());
+        }
+        if (job.getLastError() != null) {
+            progress.put("last_error", job.getLastError());
+        }
+        return progress;
+    }
+
+    /**
+     * 🔁 Chạy tiếp các job còn running sau khi restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeAfterRestart() {
+        if (resumeOnStartup) {
+            resumeExpiredJobs();
+        }
+    }
+
+    /**
+     * 💓 Gia hạn lease của các job đang chạy trên node này, xử lý yêu cầu hủy từ node khác,
+     * rồi nhận các job mà node chủ đã ngừng heartbeat (node chết / restart với node id mới)
+     */
+    @Scheduled(fixedDelayString = "${crawler.jobs.heartbeat-interval-ms:30000}",
+               initialDelayString = "${crawler.jobs.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Long jobId : List.copyOf(activeRuns.keySet())) {
+            if (jobRepository.renewLease(jobId, nodeId, STATUS_RUNNING, now) == 0) {
+                AtomicReference<CrawlScheduler.CrawlRun> slot = activeRuns.get(jobId);
+                CrawlScheduler.CrawlRun run = slot != null ? slot.get() : null;
+                if (run != null && !run.isDone()) {
+                    // Mất lease (node này bị treo quá lâu, node khác đã nhận job): dừng mà không ghi trạng thái job
+                    log.warn("⚠️ Lost lease on crawl job {}, stopping local run", jobId);
+                    run.cancel();
+                }
+            }
+        }
+        if (!activeRuns.isEmpty()) {
+            for (CrawlJob job : jobRepository.findAllById(List.copyOf(activeRuns.keySet()))) {
+                if (Boolean.TRUE.equals(job.getCancelRequested()) && STATUS_RUNNING.equals(job.getStatus())) {
+                    cancelJob(job.getId());
+                }
+            }
+        }
+        if (resumeOnStartup) {
+            resumeExpiredJobs();
+        }
+    }
+
+    // synchronized: khởi động và heartbeat không cùng nhận 1 job rồi launch 2 lần
+    private synchronized void resumeExpiredJobs() {
+        for (CrawlJob job : jobRepository.findByStatus(STATUS_RUNNING)) {
+            if (activeRuns.containsKey(job.getId()) || !claimLease(job.getId())) {
+                continue; // Đang chạy ở đây, hoặc node khác vẫn giữ lease
+            }
+            if (Boolean.TRUE.equals(job.getCancelRequested())) {
+                finishJob(job.getId(), false);
+                continue;
+            }
+            log.info("🔁 Resuming crawl job {} ({}) from owner {}", job.getId(), job.getJobType(), job.getOwnerId());
+            // claim() là UPDATE trực tiếp: cập nhật entity để lần save dưới không ghi đè chủ cũ
+            job.setOwnerId(nodeId);
+            job.setHeartbeatAt(LocalDateTime.now());
+            job.setResumeCount(job.getResumeCount() + 1);
+            launch(jobRepository.save(job));
+        }
+    }
+
+    private boolean claimLease(Long jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        return jobRepository.claim(jobId, nodeId, STATUS_RUNNING, now, now.minus(Duration.ofMillis(leaseMs))) > 0;
+    }
+
+    // ====== HELPER METHODS ======
+
+    private void launch(CrawlJob job) {
+        Long jobId = job.getId();
+        job.setResumedAt(LocalDateTime.now());
+        jobRepository.save(job);
+
+        AtomicReference<CrawlScheduler.CrawlRun> slot = new AtomicReference<>();
+        activeRuns.put(jobId, slot);
+        CrawlScheduler.CrawlRun run;
+        try {
+            run = startRun(job, slot);
+        } catch (RuntimeException e) {
+            activeRuns.remove(jobId, slot);
+            failJob(jobId, e);
+            return;
+        }
+        if (run == null) {
+            activeRuns.remove(jobId, slot);
+            return;
+        }
+        // Chạy trên thread hoàn tất task cuối cùng, không chiếm thread của pool dùng chung
+        run.completion().whenComplete((ignored, throwable) -> {
+            activeRuns.remove(jobId, slot);
+            if (throwable != null) {
+                failJob(jobId, throwable);
+            } else {
+                onRunFinished(jobId, run);
+            }
+        });
+    }
+
+    private void failJob(Long jobId, Throwable throwable) {
+        cancelRequested.remove(jobId);
+        log.error("❌ Crawl job {} failed", jobId, throwable);
+        jobRepository.findById(jobId).ifPresent(failed -> {
+            failed.setStatus(STATUS_FAILED);
+            failed.setLastError(truncate(throwable.getMessage()));
+            failed.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(failed);
+        });
+    }
+
+    // 1 segment archive cho mỗi job; job resume sau restart ghi tiếp vào segment cũ
+    private String archiveSegment(CrawlJob job) {
+        return "job-" + job.getId() + "-" + job.getJobType();
+    }
+
+    // Tạo CrawlRun cho các item còn pending (không chặn); null nếu job bị hủy trước khi bắt đầu
+    private CrawlScheduler.CrawlRun startRun(CrawlJob job, AtomicReference<CrawlScheduler.CrawlRun> slot) {
+        Long jobId = job.getId();
+        if (cancelRequested.contains(jobId)) {
+            finishJob(jobId, false);
+            return null;
+        }
+        List<CrawlJobItem> pending = itemRepository.findByJobIdAndStatus(jobId, ITEM_PENDING);
+        Map<String, TuyenSinh247CrawlerService.CrawlMetadata> metadataByCode =
+                job.getForceUpdate() ? Map.of() : crawlerService.loadCrawlMetadata();
+
+        Map<String, UniversityInfo> infoByCode = new HashMap<>();
+        List<CrawlScheduler.CrawlTask> tasks = new ArrayList<>();
+        for (CrawlJobItem item : pending) {
+            UniversityInfo info = new UniversityInfo();
+            info.setCode(item.getUniversityCode());
+            info.setName(item.getUniversityName());
+            info.setUrl(item.getUrl());
+            infoByCode.put(info.getCode(), info);
+            tasks.add(new CrawlScheduler.CrawlTask(info.getCode(), info.getUrl(), item.getPriority(), item.getOrderKey()));
+        }
+
+        CrawlScheduler.CrawlRun run = crawlScheduler.start(job.getJobType() + "#" + jobId, tasks,
+                task -> {
+                    TuyenSinh247CrawlerService.CrawlMetadata known =
+                            metadataByCode.getOrDefault(task.key(), TuyenSinh247CrawlerService.CrawlMetadata.NONE);
+                    UniversityInfo info = infoByCode.get(task.key());
+                    TuyenSinh247CrawlerService.FetchedPage page =
+                            crawlerService.fetchUniversityPage(info, known.etag(), known.lastModified());
+                    archiveService.append(archiveSegment(job), info, page);
+                    return page;
+                },
+                (task, page) -> crawlerService.processFetchedPage(infoByCode.get(task.key()), page,
+                        metadataByCode.getOrDefault(task.key(), TuyenSinh247CrawlerService.CrawlMetadata.NONE)),
+                new ItemRecorder(jobId));
+        slot.set(run);
+        if (cancelRequested.contains(jobId)) {
+            run.cancel(); // cancelJob chạy trước khi run được gán vào slot
+        }
+        return run;
+    }
+
+    private void onRunFinished(Long jobId, CrawlScheduler.CrawlRun run) {
+        if (cancelRequested.remove(jobId)) {
+            finishJob(jobId, false);
+        } else if (!run.isCancelled()) {
+            finishJob(jobId, true);
+        }
+        // run bị hủy do shutdown (worker bị interrupt): giữ nguyên running, item vẫn pending -> resume lần sau
+    }
+
+    private void finishJob(Long jobId, boolean completed) {
+        cancelRequested.remove(jobId);
+        if (!completed) {
+            itemRepository.updateStatus(jobId, ITEM_PENDING, ITEM_CANCELLED);
+        }
+        jobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(completed ? STATUS_COMPLETED : STATUS_CANCELLED);
+            job.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(job);
+            Map<String, Object> progress = buildProgress(job);
+            log.info("✅ Crawl job {} {}: {}", jobId, job.getStatus(), progress.get("outcomes"));
+
+            List<SseEmitter> jobSubscribers = subscribers.remove(jobId);
+            if (jobSubscribers != null) {
+                for (SseEmitter emitter : jobSubscribers) {
+                    try {
+                        emitter.send(SseEmitter.event().name("job").data(progress));
+                        emitter.complete();
+                    } catch (Exception e) {
+                        emitter.completeWithError(e);
+                    }
+                }
+            }
+        });
+    }
+
+    private void publishItem(Long jobId, Map<String, Object> item) {
+        List<SseEmitter> jobSubscribers = subscribers.get(jobId);
+        if (jobSubscribers == null) {
+            return;
+        }
+        for (SseEmitter emitter : jobSubscribers) {
+            try {
+                emitter.send(SseEmitter.event().name("item").data(item));
+            } catch (Exception e) {
+                jobSubscribers.remove(emitter);
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private Map<String, Object> toItemResult(CrawlJobItem item) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("code", item.getUniversityCode());
+        result.put("name", item.getUniversityName());
+        result.put("status", item.getStatus());
+        result.put("outcome", item.getOutcome());
+        result.put("attempts", item.getAttempts());
+        if (item.getLastError() != null) {
+            result.put("error", item.getLastError());
+        }
+        return result;
+    }
+
+    private Map<String, Long> toCountMap(List<Object[]> rows) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Object[] row : rows) {
+            counts.put((String) row[0], ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+
+    /**
+     * Ghi kết quả từng item xuống DB ngay khi xong (1 UPDATE / item).
+     * Item bị hủy không được ghi: khi shutdown chúng vẫn pending để resume, khi hủy thủ công finishJob chuyển cả loạt.
+     */
+    private class ItemRecorder implements CrawlScheduler.CrawlListener {
+        private final Long jobId;
+
+        ItemRecorder(Long jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void onRetry(CrawlScheduler.CrawlTask task, int failedAttempt, String error) {
+            itemRepository.recordFailedAttempt(jobId, task.key(), truncate(error));
+        }
+
+        @Override
+        public void onFinished(CrawlScheduler.CrawlTask task, String outcome, int attempts, String error) {
+            if ("cancelled".equals(outcome)) {
+                return;
+            }
+            boolean failed = "failed".equals(outcome);
+            itemRepository.markFinished(jobId, task.key(), failed ? ITEM_FAILED : ITEM_DONE,
+                    outcome, truncate(error), LocalDateTime.now());
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("code", task.key());
+            item.put("status", failed ? ITEM_FAILED : ITEM_DONE);
+            item.put("outcome", outcome);
+            item.put("attempts", attempts);
+            if (error != null) {
+                item.put("error", error);
+            }
+            publishItem(jobId, item);
+        }
+    }
+}
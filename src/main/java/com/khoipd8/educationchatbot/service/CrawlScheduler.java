@@ -0,0 +1,454 @@
+package com.khoipd8.educationchatbot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.HttpStatusException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bộ lập lịch crawl: frontier có độ ưu tiên, pool worker fetch có giới hạn, lịch sự theo từng host
+ * (token bucket + backoff tăng dần khi gặp 429/5xx/timeout, giảm dần khi thành công).
+ * Mọi lượt crawl dùng chung 1 nhóm worker: mỗi worker lấy task lần lượt từ frontier của từng lượt (round-robin)
+ * nên lượt nhỏ bắt đầu ngay cả khi đang có lượt crawl toàn bộ.
+ * Trang fetch xong được đẩy sang persist executor để parse + ghi DB song song với việc fetch tiếp.
+ */
+@Service
+@Slf4j
+public class CrawlScheduler {
+
+    @Autowired
+    @Qualifier("crawlExecutor")
+    private Executor crawlExecutor;
+
+    @Autowired
+    @Qualifier("crawlPersistExecutor")
+    private Executor persistExecutor;
+
+    @Value("${crawler.scheduler.fetch-concurrency:6}")
+    private int fetchConcurrency;
+
+    @Value("${crawler.scheduler.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${crawler.politeness.requests-per-second:2.0}")
+    private double hostRequestsPerSecond;
+
+    @Value("${crawler.politeness.burst:2}")
+    private int hostBurst;
+
+    @Value("${crawler.politeness.min-backoff-ms:2000}")
+    private long minBackoffMs;
+
+    @Value("${crawler.politeness.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    private final Map<String, HostPoliteness> hosts = new ConcurrentHashMap<>();
+    // Các lượt đang chạy, worker lấy task xoay vòng qua từng lượt
+    private final List<CrawlRun> runs = new CopyOnWriteArrayList<>();
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private final Object workSignal = new Object();
+    private int workers = 0; // Số worker đang sống, đổi dưới lock của scheduler
+
+    /**
+     * Bắt đầu 1 lượt crawl (không chặn). Dùng CrawlRun.completion() (hoặc await()) để biết khi kết thúc.
+     */
+    public <P> CrawlRun start(String name, List<CrawlTask> tasks, PageFetcher<P> fetcher, PageProcessor<P> processor) {
+        return start(name, tasks, fetcher, processor, null);
+    }
+
+    /**
+     * Như start(), kèm listener nhận từng lần thử lại và kết quả cuối của mỗi task
+     */
+    public <P> CrawlRun start(String name, List<CrawlTask> tasks, PageFetcher<P> fetcher,
+                              PageProcessor<P> processor, CrawlListener listener) {
+        CrawlRun run = new CrawlRun(name, tasks.size(), listener, fetcher, processor);
+        long seq = 0;
+        for (CrawlTask task : tasks) {
+            run.frontier.offer(new QueuedTask(task, 1, seq++));
+        }
+
+        if (tasks.isEmpty()) {
+            run.completion.complete(null);
+            return run;
+        }
+
+        runs.add(run);
+        log.info("🕸️ Crawl run {} ({}): {} tasks, sharing {} fetch workers with {} other runs",
+                run.getId(), name, tasks.size(), fetchConcurrency, runs.size() - 1);
+        ensureWorkers();
+        signalWork();
+        return run;
+    }
+
+    public Map<String, Object> getHostStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        hosts.forEach((host, politeness) -> stats.put(host, politeness.snapshot()));
+        return stats;
+    }
+
+    // ====== WORKER ======
+
+    // Số worker cố định = fetch-concurrency (bằng kích thước crawlExecutor), không phụ thuộc số lượt đang chạy
+    private synchronized void ensureWorkers() {
+        while (workers < fetchConcurrency) {
+            try {
+                crawlExecutor.execute(this::workerLoop);
+                workers++;
+            } catch (RejectedExecutionException e) {
+                log.warn("Crawl executor rejected a fetch worker ({} running): {}", workers, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    // Worker chỉ thoát khi không còn lượt nào; start() sau đó tạo lại worker
+    private synchronized boolean retireIfIdle() {
+        runs.removeIf(CrawlRun::isDone);
+        if (!runs.isEmpty()) {
+            return false;
+        }
+        workers--;
+        return true;
+    }
+
+    private synchronized void retire() {
+        workers--;
+    }
+
+    private void signalWork() {
+        synchronized (workSignal) {
+            workSignal.notifyAll();
+        }
+    }
+
+    private void workerLoop() {
+        while (true) {
+            CrawlRun run = null;
+            QueuedTask queued = null;
+            try {
+                runs.removeIf(CrawlRun::isDone);
+                Object[] active = runs.toArray();
+                int start = active.length > 0 ? Math.floorMod(roundRobin.getAndIncrement(), active.length) : 0;
+                for (int i = 0; i < active.length && queued == null; i++) {
+                    run = (CrawlRun) active[(start + i) % active.length];
+                    queued = run.frontier.poll();
+                }
+                if (queued == null) {
+                    if (retireIfIdle()) {
+                        return;
+                    }
+                    synchronized (workSignal) {
+                        workSignal.wait(200);
+                    }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                // Shutdown: hủy mọi lượt, job giữ item pending để resume
+                Thread.currentThread().interrupt();
+                runs.forEach(CrawlRun::cancel);
+                retire();
+                return;
+            }
+
+            if (!runTask(run, queued)) {
+                runs.forEach(CrawlRun::cancel);
+                retire();
+                return;
+            }
+        }
+    }
+
+    // false nếu worker bị interrupt (shutdown)
+    private boolean runTask(CrawlRun run, QueuedTask queued) {
+        if (run.isCancelled()) {
+            run.finish(queued.task(), "cancelled", queued.attempt() - 1, null);
+            return true;
+        }
+
+        HostPoliteness host = hostFor(queued.task().url());
+        try {
+            host.acquire();
+            Object page = run.fetcher.fetch(queued.task());
+            host.onSuccess();
+            run.fetched.incrementAndGet();
+            // Parse + ghi DB chạy song song; pool persist đầy thì worker tự chạy (backpressure)
+            persistExecutor.execute(() -> process(run, queued, page, run.processor));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish(queued.task(), "cancelled", queued.attempt() - 1, null);
+            return false;
+        } catch (HttpStatusException e) {
+            if (isRetryableStatus(e.getStatusCode())) {
+                host.onThrottled(minBackoffMs, maxBackoffMs);
+                retryOrFail(run, queued, "HTTP " + e.getStatusCode());
+            } else {
+                fail(run, queued, "HTTP " + e.getStatusCode());
+            }
+        } catch (IOException e) {
+            // Timeout / lỗi mạng: coi như host đang quá tải
+            host.onThrottled(minBackoffMs, maxBackoffMs);
+            retryOrFail(run, queued, e.getMessage());
+        } catch (Exception e) {
+            fail(run, queued, e.getMessage());
+        }
+        return true;
+    }
+
+    private <P> void process(CrawlRun run, QueuedTask queued, P page, PageProcessor<P> processor) {
+        try {
+            String outcome = processor.process(queued.task(), page);
+            run.finish(queued.task(), outcome != null ? outcome : "processed", queued.attempt(), null);
+        } catch (Exception e) {
+            fail(run, queued, e.getMessage());
+        }
+    }
+
+    private void retryOrFail(CrawlRun run, QueuedTask queued, String error) {
+        if (queued.attempt() < maxAttempts && !run.isCancelled()) {
+            run.retries.incrementAndGet();
+            log.debug("Retrying {} (attempt {}): {}", queued.task().key(), queued.attempt() + 1, error);
+            run.notifyRetry(queued.task(), queued.attempt(), error);
+            // Lần thử lại xếp sau các task chưa thử ở cùng mức ưu tiên
+            run.frontier.offer(new QueuedTask(queued.task(), queued.attempt() + 1, queued.seq()));
+            signalWork();
+        } else {
+            fail(run, queued, error);
+        }
+    }
+
+    private void fail(CrawlRun run, QueuedTask queued, String error) {
+        log.error("❌ Error crawling {}: {}", queued.task().key(), error);
+        run.finish(queued.task(), "failed", queued.attempt(), error);
+    }
+
+    private boolean isRetryableStatus(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    private HostPoliteness hostFor(String url) {
+        String host;
+        try {
+            host = Optional.ofNullable(URI.create(url).getHost()).orElse("unknown");
+        } catch (IllegalArgumentException e) {
+            host = "unknown";
+        }
+        return hosts.computeIfAbsent(host, h -> new HostPoliteness(hostRequestsPerSecond, hostBurst));
+    }
+
+    // ====== TYPES ======
+
+    /**
+     * priority nhỏ chạy trước; order phân định trong cùng priority (ví dụ thời điểm cập nhật cũ nhất trước)
+     */
+    public record CrawlTask(String key, String url, int priority, long order) {}
+
+    @FunctionalInterface
+    public interface PageFetcher<P> {
+        P fetch(CrawlTask task) throws Exception;
+    }
+
+    /**
+     * Parse + ghi DB cho 1 trang; trả về kết quả (created, updated, ...) để thống kê
+     */
+    @FunctionalInterface
+    public interface PageProcessor<P> {
+        String process(CrawlTask task, P page) throws Exception;
+    }
+
+    /**
+     * Nhận sự kiện của từng task (gọi trên thread worker / persist, không được ném exception)
+     */
+    public interface CrawlListener {
+        default void onRetry(CrawlTask task, int failedAttempt, String error) {}
+
+        // outcome = kết quả của PageProcessor, "failed" hoặc "cancelled"; attempts = số lần fetch trong lượt này
+        void onFinished(CrawlTask task, String outcome, int attempts, String error);
+    }
+
+    private record QueuedTask(CrawlTask task, int attempt, long seq) implements Comparable<QueuedTask> {
+        @Override
+        public int compareTo(QueuedTask other) {
+            int byPriority = Integer.compare(task.priority(), other.task.priority());
+            if (byPriority != 0) return byPriority;
+            int byAttempt = Integer.compare(attempt, other.attempt);
+            if (byAttempt != 0) return byAttempt;
+            int byOrder = Long.compare(task.order(), other.task.order());
+            return byOrder != 0 ? byOrder : Long.compare(seq, other.seq);
+        }
+    }
+
+    /**
+     * Trạng thái 1 lượt crawl: tiến độ, kết quả theo loại, hủy hợp tác
+     */
+    public static class CrawlRun {
+        private final String id = UUID.randomUUID().toString().substring(0, 8);
+        private final String name;
+        private final int total;
+        private final long startedAt = System.currentTimeMillis();
+        private final PriorityBlockingQueue<QueuedTask> frontier = new PriorityBlockingQueue<>();
+        private final AtomicInteger remaining;
+        private final AtomicInteger fetched = new AtomicInteger();
+        private final AtomicInteger retries = new AtomicInteger();
+        private final Map<String, AtomicInteger> outcomes = new ConcurrentHashMap<>();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final AtomicLong finishedAt = new AtomicLong();
+        private final CrawlListener listener;
+        private final PageFetcher<Object> fetcher;
+        private final PageProcessor<Object> processor;
+        private volatile boolean cancelled = false;
+
+        @SuppressWarnings("unchecked")
+        <P> CrawlRun(String name, int total, CrawlListener listener, PageFetcher<P> fetcher, PageProcessor<P> processor) {
+            this.name = name;
+            this.total = total;
+            this.remaining = new AtomicInteger(total);
+            this.listener = listener;
+            // Trang chỉ đi từ fetcher của lượt sang processor của cùng lượt nên ép kiểu là an toàn
+            this.fetcher = (PageFetcher<Object>) (PageFetcher<?>) fetcher;
+            this.processor = (PageProcessor<Object>) (PageProcessor<?>) processor;
+        }
+
+        void notifyRetry(CrawlTask task, int failedAttempt, String error) {
+            if (listener != null) {
+                try {
+                    listener.onRetry(task, failedAttempt, error);
+                } catch (Exception e) {
+                    log.warn("Crawl listener failed on retry of {}: {}", task.key(), e.getMessage());
+                }
+            }
+        }
+
+        void finish(CrawlTask task, String outcome, int attempts, String error) {
+            if (listener != null) {
+                try {
+                    listener.onFinished(task, outcome, attempts, error);
+                } catch (Exception e) {
+                    log.warn("Crawl listener failed on {}: {}", task.key(), e.getMessage());
+                }
+            }
+            outcomes.computeIfAbsent(outcome, k -> new AtomicInteger()).incrementAndGet();
+            if (remaining.decrementAndGet() == 0) {
+                finishedAt.set(System.currentTimeMillis());
+                completion.complete(null);
+            }
+        }
+
+        /**
+         * Hủy hợp tác: task còn trong frontier được đánh dấu cancelled, trang đang fetch/ghi vẫn hoàn tất
+         */
+        public void cancel() {
+            cancelled = true;
+            QueuedTask queued;
+            while ((queued = frontier.poll()) != null) {
+                finish(queued.task(), "cancelled", queued.attempt() - 1, null);
+            }
+        }
+
+        /**
+         * Future hoàn tất khi mọi task đã xong (kể cả bị hủy) - để nối xử lý kết thúc mà không giữ thread chờ
+         */
+        public CompletableFuture<Void> completion() {
+            return completion.copy();
+        }
+
+        public void await() throws InterruptedException {
+            try {
+                completion.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public String getId() { return id; }
+        public boolean isDone() { return completion.isDone(); }
+        public boolean isCancelled() { return cancelled; }
+        public int getTotal() { return total; }
+
+        public int count(String outcome) {
+            AtomicInteger counter = outcomes.get(outcome);
+            return counter != null ? counter.get() : 0;
+        }
+
+        public Map<String, Object> getProgress() {
+            int completed = total - remaining.get();
+            long end = isDone() ? finishedAt.get() : System.currentTimeMillis();
+            long elapsedMs = Math.max(1, end - startedAt);
+
+            Map<String, Object> outcomeCounts = new TreeMap<>();
+            outcomes.forEach((k, v) -> outcomeCounts.put(k, v.get()));
+
+            Map<String, Object> progress = new LinkedHashMap<>();
+            progress.put("run_id", id);
+            progress.put("name", name);
+            progress.put("status", isDone() ? (cancelled ? "cancelled" : "completed") : (cancelled ? "cancelling" : "running"));
+            progress.put("total", total);
+            progress.put("completed", completed);
+            progress.put("remaining", total - completed);
+            progress.put("fetched", fetched.get());
+            progress.put("retries", retries.get());
+            progress.put("outcomes", outcomeCounts);
+            progress.put("elapsed_ms", elapsedMs);
+            progress.put("pages_per_minute", Math.round(completed * 60_000.0 / elapsedMs * 10.0) / 10.0);
+            return progress;
+        }
+    }
+
+    /**
+     * Lịch sự theo host: token bucket cho tốc độ nền, backoff nhân đôi khi host báo quá tải
+     */
+    private static class HostPoliteness {
+        private final TokenBucketRateLimiter limiter;
+        private long backoffMs;
+        private long blockedUntil;
+        private long requests;
+        private long throttled;
+
+        HostPoliteness(double requestsPerSecond, int burst) {
+            this.limiter = new TokenBucketRateLimiter(requestsPerSecond, burst);
+        }
+
+        void acquire() throws InterruptedException {
+            long waitMs;
+            while ((waitMs = blockedUntil() - System.currentTimeMillis()) > 0) {
+                Thread.sleep(waitMs);
+            }
+            limiter.acquire();
+            synchronized (this) {
+                requests++;
+            }
+        }
+
+        synchronized void onSuccess() {
+            backoffMs = backoffMs / 2;
+        }
+
+        synchronized void onThrottled(long minBackoffMs, long maxBackoffMs) {
+            throttled++;
+            backoffMs = Math.min(maxBackoffMs, Math.max(minBackoffMs, backoffMs * 2));
+            blockedUntil = Math.max(blockedUntil, System.currentTimeMillis() + backoffMs);
+        }
+
+        private synchronized long blockedUntil() {
+            return blockedUntil;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("requests_per_second", limiter.getPermitsPerSecond());
+            entry.put("requests", requests);
+            entry.put("throttled", throttled);
+            entry.put("current_backoff_ms", backoffMs);
+            entry.put("blocked_for_ms", Math.max(0, blockedUntil - System.currentTimeMillis()));
+            return entry;
+        }
+    }
+}
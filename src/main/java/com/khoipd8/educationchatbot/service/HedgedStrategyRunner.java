@@ -0,0 +1,219 @@
+package com.khoipd8.educationchatbot.service;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Chạy đua nhiều chiến lược lấy cùng một dữ liệu: chiến lược có "thời gian kỳ vọng tới thành công"
+ * thấp nhất chạy trước, nếu sau một khoảng hedge (theo độ trễ thực tế của nó) chưa xong thì khởi động
+ * chiến lược kế tiếp. Kết quả hợp lệ đầu tiên thắng, các chiến lược còn lại bị hủy.
+ * Chiến lược thất bại thì chiến lược kế tiếp được khởi động ngay, không chờ hedge.
+ */
+public class HedgedStrategyRunner<T> {
+
+    // Trọng số EWMA cho độ trễ mới nhất
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final double HEDGE_FACTOR = 1.5;
+
+    private final Executor executor;
+    private final long minHedgeDelayMs;
+    private final long maxHedgeDelayMs;
+    private final Map<String, StrategyStats> stats = new ConcurrentHashMap<>();
+
+    public HedgedStrategyRunner(Executor executor, long minHedgeDelayMs, long maxHedgeDelayMs) {
+        this.executor = executor;
+        this.minHedgeDelayMs = minHedgeDelayMs;
+        this.maxHedgeDelayMs = Math.max(minHedgeDelayMs, maxHedgeDelayMs);
+    }
+
+    /**
+     * Chạy đua các chiến lược (tên -> tác vụ). isWinner quyết định kết quả nào được chấp nhận.
+     * Executor hết chỗ thì bỏ qua hedge (chờ chiến lược đang chạy), không chạy trên thread gọi;
+     * nếu ngay chiến lược đầu tiên cũng bị từ chối thì ném RejectedExecutionException.
+     */
+    public RaceResult<T> race(Map<String, Callable<T>> strategies, Predicate<T> isWinner) throws InterruptedException {
+        List<String> order = order(strategies.keySet());
+        CompletionService<Attempt<T>> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Attempt<T>>> launched = new ArrayList<>();
+        List<T> completedResults = new ArrayList<>();
+        int next = 0;
+        int pending = 0;
+        boolean hedging = true;
+
+        try {
+            launched.add(completion.submit(timed(order.get(next), strategies.get(order.get(next)), isWinner)));
+            next++;
+            pending++;
+
+            while (pending > 0) {
+                Future<Attempt<T>> done;
+                if (hedging && next < order.size()) {
+                    done = completion.poll(hedgeDelayMs(order.get(next - 1)), TimeUnit.MILLISECONDS);
+                    if (done == null) {
+                        // Hedge: chiến lược đang chạy chậm hơn thường lệ
+                        if (launch(completion, launched, order.get(next), strategies, isWinner)) {
+                            next++;
+                            pending++;
+                        } else {
+                            hedging = false;
+                        }
+                        continue;
+                    }
+                } else {
+                    done = completion.take();
+                }
+                pending--;
+
+                try {
+                    Attempt<T> attempt = done.get();
+                    if (attempt.won()) {
+                        return new RaceResult<>(attempt.strategy(), attempt.value(), completedResults, List.copyOf(order.subList(0, next)));
+                    }
+                    if (attempt.value() != null) {
+                        completedResults.add(attempt.value());
+                    }
+                } catch (ExecutionException e) {
+                    // timed() đã ghi nhận thất bại
+                }
+
+                // Chiến lược vừa xong mà không thắng: khởi động chiến lược kế tiếp ngay
+                if (next < order.size() && launch(completion, launched, order.get(next), strategies, isWinner)) {
+                    next++;
+                    pending++;
+                }
+            }
+            return new RaceResult<>(null, null, completedResults, List.copyOf(order.subList(0, next)));
+        } finally {
+            launched.forEach(future -> future.cancel(true));
+        }
+    }
+
+    // false nếu executor đã đầy (thread + hàng đợi)
+    private boolean launch(CompletionService<Attempt<T>> completion, List<Future<Attempt<T>>> launched, String name,
+                           Map<String, Callable<T>> strategies, Predicate<T> isWinner) {
+        try {
+            launched.add(completion.submit(timed(name, strategies.get(name), isWinner)));
+            return true;
+        } catch (RejectedExecutionException e) {
+            statsFor(name).recordRejected();
+            return false;
+        }
+    }
+
+    /**
+     * Thứ tự chiến lược: thời gian kỳ vọng tới lần thành công (độ trễ / tỉ lệ thành công) tăng dần
+     */
+    public List<String> order(Collection<String> names) {
+        List<String> ordered = new ArrayList<>(names);
+        ordered.sort(Comparator.comparingDouble(name -> statsFor(name).expectedCostMs(maxHedgeDelayMs)));
+        return ordered;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String name : order(stats.keySet())) {
+            Map<String, Object> entry = stats.get(name).snapshot();
+            entry.put("hedge_delay_ms", hedgeDelayMs(name));
+            result.put(name, entry);
+        }
+        return result;
+    }
+
+    private long hedgeDelayMs(String name) {
+        StrategyStats s = statsFor(name);
+        if (s.completed() == 0) {
+            return maxHedgeDelayMs;
+        }
+        long delay = Math.round(s.latencyMs() * HEDGE_FACTOR);
+        return Math.max(minHedgeDelayMs, Math.min(maxHedgeDelayMs, delay));
+    }
+
+    private Callable<Attempt<T>> timed(String name, Callable<T> strategy, Predicate<T> isWinner) {
+        StrategyStats s = statsFor(name);
+        return () -> {
+            long start = System.nanoTime();
+            s.recordAttempt();
+            try {
+                T value = strategy.call();
+                boolean won = value != null && isWinner.test(value);
+                s.recordCompletion((System.nanoTime() - start) / 1_000_000.0, won);
+                return new Attempt<>(name, value, won);
+            } catch (InterruptedException e) {
+                s.recordCancelled();
+                Thread.currentThread().interrupt();
+                throw e;
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    s.recordCancelled();
+                } else {
+                    s.recordCompletion((System.nanoTime() - start) / 1_000_000.0, false);
+                }
+                throw e;
+            }
+        };
+    }
+
+    private StrategyStats statsFor(String name) {
+        return stats.computeIfAbsent(name, k -> new StrategyStats());
+    }
+
+    private record Attempt<T>(String strategy, T value, boolean won) {}
+
+    /**
+     * winner = null nếu không chiến lược nào thắng; completedResults = kết quả không thắng đã hoàn tất
+     */
+    public record RaceResult<T>(String winner, T value, List<T> completedResults, List<String> launched) {}
+
+    private static class StrategyStats {
+        private long attempts;
+        private long successes;
+        private long failures;
+        private long cancelled;
+        private long rejected;
+        private double ewmaLatencyMs;
+
+        synchronized void recordAttempt() {
+            attempts++;
+        }
+
+        synchronized void recordCompletion(double latencyMs, boolean success) {
+            if (success) successes++; else failures++;
+            ewmaLatencyMs = completed() == 1 ? latencyMs : LATENCY_ALPHA * latencyMs + (1 - LATENCY_ALPHA) * ewmaLatencyMs;
+        }
+
+        synchronized void recordCancelled() {
+            cancelled++;
+        }
+
+        synchronized void recordRejected() {
+            rejected++;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("attempts", attempts);
+            entry.put("successes", successes);
+            entry.put("failures", failures);
+            entry.put("cancelled", cancelled);
+            entry.put("rejected", rejected);
+            entry.put("ewma_latency_ms", Math.round(ewmaLatencyMs));
+            return entry;
+        }
+
+        synchronized double latencyMs() {
+            return ewmaLatencyMs;
+        }
+
+        synchronized long completed() {
+            return successes + failures;
+        }
+
+        // Chưa có dữ liệu: coi như độ trễ = maxHedgeDelay, tỉ lệ thành công 50% (làm trơn Laplace)
+        synchronized double expectedCostMs(long defaultLatencyMs) {
+            double latency = completed() == 0 ? defaultLatencyMs : ewmaLatencyMs;
+            double successRate = (successes + 1.0) / (completed() + 2.0);
+            return latency / successRate;
+        }
+    }
+}
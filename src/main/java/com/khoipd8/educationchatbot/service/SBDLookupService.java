@@ -4,24 +4,28 @@ import com.khoipd8.educationchatbot.entity.StudentScore;
 import com.khoipd8.educationchatbot.entity.CombinationScore;
 import com.khoipd8.educationchatbot.repository.StudentScoreRepository;
 import com.khoipd8.educationchatbot.repository.CombinationScoreRepository;
+import com.khoipd8.educationchatbot.repository.ScoreBatchRepository;
+import com.khoipd8.educationchatbot.service.StudentScoreReadModel.StudentScoreAggregate;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.jsoup.Connection;
 
+import jakarta.annotation.PostConstruct;
+
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.URI;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Service
 @Slf4j
@@ -35,35 +39,88 @@ public class SBDLookupService {
     @Autowired
     private CombinationScoreRepository combinationScoreRepository;
 
+    @Autowired
+    private ScoreBatchRepository scoreBatchRepository;
+
+    @Autowired
+    private StudentScoreReadModel studentScoreReadModel;
+
+    @Autowired
+    private ScoreDistributionService scoreDistributionService;
+
+    @Autowired
+    @Qualifier("webCrawlExecutor")
+    private Executor webCrawlExecutor;
+
+    @Value("${sbd.web-crawl.min-hedge-delay-ms:300}")
+    private long minHedgeDelayMs;
+
+    @Value("${sbd.web-crawl.max-hedge-delay-ms:5000}")
+    private long maxHedgeDelayMs;
+
+    private HedgedStrategyRunner<WebCrawlResult> webCrawlRunner;
     
+    @Autowired
+    private ThptScoreApiClient thptScoreApiClient;
     
-    // Main lookup method - FIXED LOGIC
+    @Autowired
+    private SBDNegativeCache negativeCache;
+
+    @Autowired
+    private SBDSingleFlight singleFlight;
+
+    @PostConstruct
+    void initWebCrawlRunner() {
+        webCrawlRunner = new HedgedStrategyRunner<>(webCrawlExecutor, minHedgeDelayMs, maxHedgeDelayMs);
+    }
+
+    // Thống kê thành công / độ trễ của từng cách crawl website
+    public Map<String, Object> getWebCrawlStrategyStats() {
+        return webCrawlRunner.getStats();
+    }
+
+    
+    
+    // Main lookup method - FIXED LOGIC (request đồng thời cho cùng SBD dùng chung 1 lần tra cứu)
     public Map<String, Object> lookupStudentScore(String sbd, String region) {
+        return singleFlight.execute("lookup", sbd, region, () -> doLookupStudentScore(sbd, region));
+    }
+    
+    private Map<String, Object> doLookupStudentScore(String sbd, String region) {
         Map<String, Object> result = new HashMap<>();
         
         try {
             log.info("Looking up SBD: {} in region: {}", sbd, region);
             
-            // Check if we have COMPLETE data in database
-            Optional<StudentScore> existingScore = studentScoreRepository.findBySbd(sbd);
+            // SBD đã được xác nhận không tồn tại gần đây - trả lời ngay, không chạm DB/upstream
+            if (negativeCache.isKnownMissing(sbd, region)) {
+                return knownMissingResult(sbd, region);
+            }
+            
+            // Check if we have COMPLETE data in database (1 query join, hoặc 0 nếu cache hit)
+            Optional<StudentScoreAggregate> existing = studentScoreReadModel.findBySbd(sbd);
             
-            if (existingScore.isPresent() && hasCompleteData(existingScore.get())) {
+            if (existing.isPresent() && existing.get().isComplete()) {
                 log.info("Found complete existing data for SBD: {}", sbd);
-                result = formatExistingData(existingScore.get());
+                result = formatExistingData(existing.get().student(), existing.get().combinations());
             } else {
                 log.info("No complete data for SBD: {}, attempting to crawl from website", sbd);
                 
                 // Delete incomplete data first
-                if (existingScore.isPresent()) {
+                if (existing.isPresent()) {
                     log.info("Deleting incomplete data for SBD: {}", sbd);
                     combinationScoreRepository.deleteBySbd(sbd);
-                    studentScoreRepository.delete(existingScore.get());
+                    studentScoreRepository.delete(existing.get().student());
+                    studentScoreReadModel.evict(sbd);
                 }
                 
                 // Try to crawl from website
                 result = crawlStudentScoreFromWeb(sbd, region);
+                studentScoreReadModel.evict(sbd);
                 
                 // If crawling failed, return not found
+                // Không negative-cache ở đây: "không tìm thấy" của website chỉ là so khớp chuỗi trong HTML
+                // (trang soft-404, footer...) - chỉ API có tín hiệu có cấu trúc (xem fetchStudentScoreFromAPI)
                 if (!"found".equals(result.get("status"))) {
                     result.put("status", "not_found");
                     result.put("sbd", sbd);
@@ -90,77 +147,48 @@ public class SBDLookupService {
         return result;
     }
     
-    // Check if existing data is complete
-    private boolean hasCompleteData(StudentScore studentScore) {
-        // Check if we have at least basic subject scores
-        boolean hasBasicScores = studentScore.getScoreMath() != null || 
-                                studentScore.getScoreLiterature() != null ||
-                                studentScore.getScorePhysics() != null ||
-                                studentScore.getScoreChemistry() != null;
-        
-        // Check if we have combination data
-        List<CombinationScore> combinations = combinationScoreRepository.findBySbd(studentScore.getSbd());
-        boolean hasCombinations = !combinations.isEmpty();
-        
-        return hasBasicScores && hasCombinations;
-    }
-    
     private Map<String, Object> crawlStudentScoreFromWeb(String sbd, String region) {
         Map<String, Object> result = new HashMap<>();
         
         try {
             log.info("Attempting to crawl SBD {} from website", sbd);
             
-            // Try multiple approaches to get the data
-            Map<String, Object> webResult = null;
-            
-            // Approach 1: Try direct form submission
-            try {
-                webResult = tryFormSubmission(sbd, region);
-                if (webResult != null && "found".equals(webResult.get("status"))) {
-                    log.info("Successfully crawled data via form submission");
-                    return webResult;
-                }
-            } catch (Exception e) {
-                log.warn("Form submission failed: {}", e.getMessage());
+            // Chạy đua các cách lấy dữ liệu: cách nhanh nhất (theo thống kê) chạy trước,
+            // cách kế tiếp được hedge nếu cách trước chậm hơn thường lệ
+            // Các chiến lược chỉ fetch + parse, không ghi DB: chỉ kết quả thắng mới được lưu
+            Map<String, Callable<WebCrawlResult>> strategies = new LinkedHashMap<>();
+            strategies.put("form_submission", () -> tryFormSubmission(sbd, region));
+            strategies.put("get_request", () -> tryGetRequest(sbd, region));
+            strategies.put("alternative_urls", () -> tryAlternativeUrls(sbd, region));
+            
+            HedgedStrategyRunner.RaceResult<WebCrawlResult> race =
+                    webCrawlRunner.race(strategies, webResult -> webResult.found());
+            if (race.winner() != null) {
+                log.info("Successfully crawled data via {}", race.winner());
+                return saveCrawledResult(race.value());
             }
-            
-            // Approach 2: Try GET request with parameters
-            try {
-                webResult = tryGetRequest(sbd, region);
-                if (webResult != null && "found".equals(webResult.get("status"))) {
-                    log.info("Successfully crawled data via GET request");
-                    return webResult;
-                }
-            } catch (Exception e) {
-                log.warn("GET request failed: {}", e.getMessage());
-            }
-            
-            // Approach 3: Try alternative URLs
-            try {
-                webResult = tryAlternativeUrls(sbd, region);
-                if (webResult != null && "found".equals(webResult.get("status"))) {
-                    log.info("Successfully crawled data via alternative URL");
-                    return webResult;
-                }
-            } catch (Exception e) {
-                log.warn("Alternative URLs failed: {}", e.getMessage());
-            }
-            
             // All approaches failed - KHÔNG TẠO DATA GIẢ
             log.warn("All crawling approaches failed for SBD: {}", sbd);
             result.put("status", "crawl_failed");
             result.put("sbd", sbd);
             result.put("message", "Không thể lấy dữ liệu từ website cho SBD: " + sbd);
             result.put("details", "Đã thử tất cả các phương pháp crawling nhưng đều thất bại");
-            result.put("attempted_methods", Arrays.asList(
-                "form_submission", 
-                "get_request", 
-                "alternative_urls"
-            ));
+            result.put("attempted_methods", race.launched());
             
             return result;
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.put("status", "error");
+            result.put("sbd", sbd);
+            result.put("message", "Crawl bị gián đoạn cho SBD: " + sbd);
+            return result;
+        } catch (RejectedExecutionException e) {
+            log.warn("Web crawl executor is saturated, skipping crawl for SBD: {}", sbd);
+            result.put("status", "error");
+            result.put("sbd", sbd);
+            result.put("message", "Hệ thống đang quá tải, vui lòng thử lại sau cho SBD: " + sbd);
+            return result;
         } catch (Exception e) {
             log.error("Fatal error in web crawling for SBD: {}", sbd, e);
             result.put("status", "error");
@@ -171,9 +199,40 @@ public class SBDLookupService {
         }
     }
     
+    // Lưu kết quả của chiến lược thắng (chiến lược thua có thể vẫn đang chạy IO nhưng không ghi gì)
+    private Map<String, Object> saveCrawledResult(WebCrawlResult crawled) {
+        StudentScore studentScore = studentScoreRepository.save(crawled.studentScore());
+        List<CombinationScore> combinationScores = crawled.combinationScores();
+        if (!combinationScores.isEmpty()) {
+            combinationScores.forEach(combScore -> combScore.setStudentScore(studentScore));
+            combinationScoreRepository.saveAll(combinationScores);
+        }
+        
+        Map<String, Object> result = formatCrawledData(studentScore, combinationScores);
+        result.put("source", crawled.source());
+        result.put("crawl_success", true);
+        if (crawled.method() != null) {
+            result.put("website_method", crawled.method());
+        }
+        
+        log.info("Saved crawled data for SBD: {} - {} scores found", studentScore.getSbd(), combinationScores.size());
+        return result;
+    }
+    
+    private Map<String, Object> knownMissingResult(String sbd, String region) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "not_found");
+        result.put("sbd", sbd);
+        result.put("region", region);
+        result.put("cached", true);
+        result.put("message", "Không tìm thấy thông tin điểm thi cho SBD: " + sbd);
+        result.put("suggestion", "Vui lòng kiểm tra lại SBD hoặc thử lại sau");
+        return result;
+    }
+    
     // Try form submission approach
 
-    private Map<String, Object> tryFormSubmission(String sbd, String region) throws IOException {
+    private WebCrawlResult tryFormSubmission(String sbd, String region) throws IOException {
         log.debug("Trying FIXED form submission with session for SBD: {}", sbd);
         
         try {
@@ -285,7 +344,7 @@ public class SBDLookupService {
         return "Toàn quốc"; // Default
     }
 
-    private Map<String, Object> tryAjaxSubmission(String sbd, String region, Document formPage) throws IOException {
+    private WebCrawlResult tryAjaxSubmission(String sbd, String region, Document formPage) throws IOException {
         log.debug("Trying AJAX submission for SBD: {}", sbd);
         
         try {
@@ -304,8 +363,8 @@ public class SBDLookupService {
                 
                 for (String endpoint : possibleEndpoints) {
                     try {
-                        Map<String, Object> result = tryAjaxEndpoint(endpoint, sbd, region);
-                        if (result != null && "found".equals(result.get("status"))) {
+                        WebCrawlResult result = tryAjaxEndpoint(endpoint, sbd, region);
+                        if (result != null && result.found()) {
                             return result;
                         }
                     } catch (Exception e) {
@@ -323,7 +382,7 @@ public class SBDLookupService {
         return null;
     }
 
-    private Map<String, Object> tryAjaxEndpoint(String endpoint, String sbd, String region) throws IOException {
+    private WebCrawlResult tryAjaxEndpoint(String endpoint, String sbd, String region) throws IOException {
         log.debug("Trying AJAX endpoint: {}", endpoint);
         
         // Prepare JSON payload
@@ -375,17 +434,13 @@ public class SBDLookupService {
     }
     
     // 4. PARSE JSON RESPONSE
-    private Map<String, Object> parseJsonResponse(String jsonText, String sbd, String region) {
+    private WebCrawlResult parseJsonResponse(String jsonText, String sbd, String region) {
         try {
             log.debug("Parsing JSON response: {}", jsonText.substring(0, Math.min(200, jsonText.length())));
             
             // Check for error messages first
             if (jsonText.contains("Không tìm thấy") || jsonText.contains("không có dữ liệu")) {
-                Map<String, Object> result = new HashMap<>();
-                result.put("status", "not_found_on_website");
-                result.put("sbd", sbd);
-                result.put("message", "Website xác nhận không có dữ liệu cho SBD: " + sbd);
-                return result;
+                return WebCrawlResult.notFoundOnWebsite();
             }
             
             // Parse JSON and extract score data
@@ -395,18 +450,8 @@ public class SBDLookupService {
             // Extract scores from JSON structure
             StudentScore studentScore = extractScoresFromJson(jsonData, sbd, region);
             if (studentScore != null && hasAnyScores(studentScore)) {
-                studentScore = studentScoreRepository.save(studentScore);
-                
                 List<CombinationScore> combinationScores = parseCombinationScoresReal(null, studentScore);
-                if (!combinationScores.isEmpty()) {
-                    combinationScoreRepository.saveAll(combinationScores);
-                }
-                
-                Map<String, Object> result = formatCrawledData(studentScore, combinationScores);
-                result.put("source", "crawled_ajax_json");
-                result.put("crawl_success", true);
-                
-                return result;
+                return WebCrawlResult.found(studentScore, combinationScores, "crawled_ajax_json", null);
             }
             
         } catch (Exception e) {
@@ -515,7 +560,7 @@ public class SBDLookupService {
     }
     
     // Try GET request approach
-    private Map<String, Object> tryGetRequest(String sbd, String region) throws IOException {
+    private WebCrawlResult tryGetRequest(String sbd, String region) throws IOException {
         log.debug("Trying GET request for SBD: {}", sbd);
         
         try {
@@ -535,7 +580,7 @@ public class SBDLookupService {
     }
     
     // Parse web response - ENHANCED
-    private Map<String, Object> parseWebResponse(Document doc, String sbd, String region, String method) {
+    private WebCrawlResult parseWebResponse(Document doc, String sbd, String region, String method) {
         try {
             String pageText = doc.text();
             log.debug("Parsing web response using method: {}, page length: {}", method, pageText.length());
@@ -547,11 +592,7 @@ public class SBDLookupService {
                 pageText.toLowerCase().contains("not found")) {
                 
                 log.debug("Website returned 'not found' for SBD: {}", sbd);
-                Map<String, Object> result = new HashMap<>();
-                result.put("status", "not_found_on_website");
-                result.put("sbd", sbd);
-                result.put("message", "Website xác nhận không có dữ liệu cho SBD: " + sbd);
-                return result;
+                return WebCrawlResult.notFoundOnWebsite();
             }
             
             // Check if page contains actual score data
@@ -577,24 +618,12 @@ public class SBDLookupService {
                 return null;
             }
             
-            // Save student score
-            studentScore = studentScoreRepository.save(studentScore);
-            
-            // Parse combination scores
+            // Parse combination scores (chưa lưu - chỉ kết quả thắng cuộc đua mới được lưu)
             List<CombinationScore> combinationScores = parseCombinationScoresReal(doc, studentScore);
-            if (!combinationScores.isEmpty()) {
-                combinationScoreRepository.saveAll(combinationScores);
-            }
-            
-            // Format response
-            Map<String, Object> result = formatCrawledData(studentScore, combinationScores);
-            result.put("source", "crawled_" + method);
-            result.put("crawl_success", true);
-            result.put("website_method", method);
             
             log.info("Successfully parsed real data for SBD: {} - {} scores found", 
                     sbd, combinationScores.size());
-            return result;
+            return WebCrawlResult.found(studentScore, combinationScores, "crawled_" + method, method);
             
         } catch (Exception e) {
             log.error("Error parsing web response: {}", e.getMessage(), e);
@@ -631,8 +660,8 @@ public class SBDLookupService {
                studentScore.getScoreGeography() != null;
     }
     
-    // Enhanced text parsing for student scores
-    private StudentScore parseStudentScoreFromText(String text, String sbd, String region) {
+    // Enhanced text parsing for student scores (package-private: benchmarks/ gọi trực tiếp)
+    StudentScore parseStudentScoreFromText(String text, String sbd, String region) {
         try {
             StudentScore studentScore = new StudentScore();
             studentScore.setSbd(sbd);
@@ -732,7 +761,7 @@ public class SBDLookupService {
                 CombinationScore combScore = new CombinationScore();
                 combScore.setSbd(studentScore.getSbd());
                 combScore.setCombinationCode(combinationCode);
-                combScore.setCombinationName(getCombinationName(combinationCode));
+                combScore.setCombinationName(CombinationTable.nameOf(combinationCode));
                 combScore.setTotalScore(totalScore);
                 combScore.setStudentScore(studentScore);
                 combScore.setRegion(studentScore.getRegion());
@@ -825,26 +854,8 @@ public class SBDLookupService {
         return null;
     }
     
-    // Get combination name
-    private String getCombinationName(String combinationCode) {
-        switch (combinationCode) {
-            case "A00": return "Toán, Vật lí, Hóa học";
-            case "A01": return "Toán, Vật lí, Tiếng Anh";
-            case "B00": return "Toán, Hóa học, Sinh học";
-            case "C00": return "Ngữ văn, Lịch sử, Địa lí";
-            case "C01": return "Ngữ văn, Toán, Vật lí";
-            case "C02": return "Ngữ văn, Toán, Hóa học";
-            case "C05": return "Ngữ văn, Vật lí, Hóa học";
-            case "D01": return "Ngữ văn, Toán, Tiếng Anh";
-            case "D07": return "Toán, Hóa học, Tiếng Anh";
-            default: return combinationCode;
-        }
-    }
-    
-    // Format existing data
-    private Map<String, Object> formatExistingData(StudentScore studentScore) {
-        List<CombinationScore> combinationScores = combinationScoreRepository.findBySbd(studentScore.getSbd());
-        
+    // Format existing data khi đã có sẵn combinations (read model / bulk lookup)
+    public Map<String, Object> formatExistingData(StudentScore studentScore, List<CombinationScore> combinationScores) {
         Map<String, Object> result = formatCrawledData(studentScore, combinationScores);
         result.put("source", "database");
         
@@ -907,7 +918,7 @@ public class SBDLookupService {
         return result;
     }
 
-    private Map<String, Object> tryAlternativeUrls(String sbd, String region) throws IOException {
+    private WebCrawlResult tryAlternativeUrls(String sbd, String region) throws IOException {
         log.debug("Trying alternative URLs for SBD: {}", sbd);
         
         // List of possible URLs for score lookup
@@ -951,21 +962,22 @@ public class SBDLookupService {
         
         try {
             // First, determine eligible combinations based on actual scores
-            List<String> eligibleCombinations = determineEligibleCombinations(studentScore);
+            SubjectVector subjects = SubjectVector.of(studentScore);
+            List<String> eligibleCombinations = CombinationTable.eligibleCodes(subjects);
             
             if (eligibleCombinations.isEmpty()) {
                 log.debug("No eligible combinations found for SBD: {}", studentScore.getSbd());
                 return combinationScores;
             }
             
-            // Look for combination data in the document
-            String pageText = doc.text();
+            // Look for combination data in the document (JSON response thì không có document)
+            String pageText = doc != null ? doc.text() : "";
             
             // Try to find combination sections in the page
             for (String combCode : eligibleCombinations) {
                 try {
                     CombinationScore combScore = parseSingleCombinationFromPage(
-                        doc, studentScore, combCode, pageText);
+                        studentScore, subjects, combCode, pageText);
                     
                     if (combScore != null) {
                         combinationScores.add(combScore);
@@ -977,7 +989,7 @@ public class SBDLookupService {
             
             // If no combinations found in page text, create basic ones
             if (combinationScores.isEmpty()) {
-                combinationScores = createBasicCombinationScores(studentScore, eligibleCombinations);
+                combinationScores = createBasicCombinationScores(studentScore, subjects, eligibleCombinations);
             }
             
             log.debug("Parsed {} combination scores for SBD: {}", 
@@ -993,18 +1005,18 @@ public class SBDLookupService {
     /**
      * Parse single combination from page content
      */
-    private CombinationScore parseSingleCombinationFromPage(Document doc, StudentScore studentScore, 
+    private CombinationScore parseSingleCombinationFromPage(StudentScore studentScore, SubjectVector subjects,
                                                            String combCode, String pageText) {
         try {
             CombinationScore combScore = new CombinationScore();
             combScore.setSbd(studentScore.getSbd());
             combScore.setCombinationCode(combCode);
-            combScore.setCombinationName(getCombinationName(combCode));
+            combScore.setCombinationName(CombinationTable.nameOf(combCode));
             combScore.setStudentScore(studentScore);
             combScore.setRegion(studentScore.getRegion());
             
             // Calculate total score from individual subject scores
-            Double totalScore = calculateCombinationScore(studentScore, combCode);
+            Double totalScore = CombinationTable.total(combCode, subjects);
             combScore.setTotalScore(totalScore);
             
             if (totalScore == null) {
@@ -1014,9 +1026,9 @@ public class SBDLookupService {
             // Try to extract ranking information from page text
             extractRankingFromPageText(pageText, combScore, combCode);
             
-            // If no ranking found, estimate based on score
+            // If no ranking found, estimate from the score distribution
             if (combScore.getStudentsWithHigherScore() == null) {
-                estimateRankingData(combScore, totalScore, combCode);
+                scoreDistributionService.applyEstimate(combScore, studentScore.getExamYear());
             }
             
             return combScore;
@@ -1093,7 +1105,7 @@ public class SBDLookupService {
     /**
      * Create basic combination scores when detailed data is not available
      */
-    private List<CombinationScore> createBasicCombinationScores(StudentScore studentScore, 
+    private List<CombinationScore> createBasicCombinationScores(StudentScore studentScore, SubjectVector subjects,
                                                               List<String> eligibleCombinations) {
         List<CombinationScore> basicScores = new ArrayList<>();
         
@@ -1102,17 +1114,17 @@ public class SBDLookupService {
                 CombinationScore combScore = new CombinationScore();
                 combScore.setSbd(studentScore.getSbd());
                 combScore.setCombinationCode(combCode);
-                combScore.setCombinationName(getCombinationName(combCode));
+                combScore.setCombinationName(CombinationTable.nameOf(combCode));
                 combScore.setStudentScore(studentScore);
                 combScore.setRegion(studentScore.getRegion());
                 
                 // Calculate total score
-                Double totalScore = calculateCombinationScore(studentScore, combCode);
+                Double totalScore = CombinationTable.total(combCode, subjects);
                 combScore.setTotalScore(totalScore);
                 
                 if (totalScore != null) {
-                    // Estimate ranking data based on statistical models
-                    estimateRankingData(combScore, totalScore, combCode);
+                    // Estimate ranking data from the score distribution
+                    scoreDistributionService.applyEstimate(combScore, studentScore.getExamYear());
                     basicScores.add(combScore);
                 }
                 
@@ -1124,133 +1136,6 @@ public class SBDLookupService {
         return basicScores;
     }
 
-    /**
-     * Estimate ranking data based on score and combination
-     */
-    private void estimateRankingData(CombinationScore combScore, Double totalScore, String combCode) {
-        try {
-            // Get statistical parameters for this combination
-            double meanScore = getMeanScore(combCode);
-            double stdDev = getStandardDeviation(combCode);
-            int totalCandidates = getTotalCandidatesForCombination(combCode);
-            
-            // Calculate z-score and percentile
-            double zScore = (totalScore - meanScore) / stdDev;
-            double percentile = Math.max(0.1, Math.min(99.9, 50 + 34.1 * zScore));
-            
-            // Estimate ranking position
-            int higherStudents = (int) ((100 - percentile) / 100.0 * totalCandidates);
-            
-            combScore.setStudentsWithHigherScore(Math.max(0, higherStudents));
-            combScore.setTotalStudentsInCombination(totalCandidates);
-            
-            // Estimate students with same score (rough approximation)
-            int sameScoreStudents = (int) (totalCandidates * 0.002); // ~0.2% have same score
-            combScore.setStudentsWithSameScore(Math.max(1, sameScoreStudents));
-            
-            // Estimate equivalent 2024 score (with some variation)
-            combScore.setEquivalentScore2024(totalScore + (Math.random() - 0.5) * 1.0);
-            
-            log.debug("Estimated ranking for {} - Score: {}, Percentile: {:.1f}, Rank: {}", 
-                     combCode, totalScore, percentile, higherStudents + 1);
-            
-        } catch (Exception e) {
-            log.debug("Error estimating ranking data: {}", e.getMessage());
-        }
-    }
-
-    /**
-     * Determine eligible combinations based on actual scores
-     */
-    private List<String> determineEligibleCombinations(StudentScore score) {
-        List<String> combinations = new ArrayList<>();
-        
-        // A00: Toán, Lý, Hóa
-        if (hasScores(score.getScoreMath(), score.getScorePhysics(), score.getScoreChemistry())) {
-            combinations.add("A00");
-        }
-        
-        // A01: Toán, Lý, Anh
-        if (hasScores(score.getScoreMath(), score.getScorePhysics(), score.getScoreEnglish())) {
-            combinations.add("A01");
-        }
-        
-        // B00: Toán, Hóa, Sinh
-        if (hasScores(score.getScoreMath(), score.getScoreChemistry(), score.getScoreBiology())) {
-            combinations.add("B00");
-        }
-        
-        // C00: Văn, Sử, Địa
-        if (hasScores(score.getScoreLiterature(), score.getScoreHistory(), score.getScoreGeography())) {
-            combinations.add("C00");
-        }
-        
-        // C01: Văn, Toán, Lý
-        if (hasScores(score.getScoreLiterature(), score.getScoreMath(), score.getScorePhysics())) {
-            combinations.add("C01");
-        }
-        
-        // C02: Văn, Toán, Hóa
-        if (hasScores(score.getScoreLiterature(), score.getScoreMath(), score.getScoreChemistry())) {
-            combinations.add("C02");
-        }
-        
-        // D01: Văn, Toán, Anh
-        if (hasScores(score.getScoreLiterature(), score.getScoreMath(), score.getScoreEnglish())) {
-            combinations.add("D01");
-        }
-        
-        // D07: Toán, Hóa, Anh
-        if (hasScores(score.getScoreMath(), score.getScoreChemistry(), score.getScoreEnglish())) {
-            combinations.add("D07");
-        }
-        
-        return combinations;
-    }
-
-    /**
-     * Check if all required scores are present
-     */
-    private boolean hasScores(Double... scores) {
-        return Arrays.stream(scores).allMatch(Objects::nonNull);
-    }
-
-    /**
-     * Calculate combination total score
-     */
-    private Double calculateCombinationScore(StudentScore score, String combCode) {
-        switch (combCode) {
-            case "A00": // Toán, Lý, Hóa
-                return safeAdd(score.getScoreMath(), score.getScorePhysics(), score.getScoreChemistry());
-            case "A01": // Toán, Lý, Anh
-                return safeAdd(score.getScoreMath(), score.getScorePhysics(), score.getScoreEnglish());
-            case "B00": // Toán, Hóa, Sinh
-                return safeAdd(score.getScoreMath(), score.getScoreChemistry(), score.getScoreBiology());
-            case "C00": // Văn, Sử, Địa
-                return safeAdd(score.getScoreLiterature(), score.getScoreHistory(), score.getScoreGeography());
-            case "C01": // Văn, Toán, Lý
-                return safeAdd(score.getScoreLiterature(), score.getScoreMath(), score.getScorePhysics());
-            case "C02": // Văn, Toán, Hóa
-                return safeAdd(score.getScoreLiterature(), score.getScoreMath(), score.getScoreChemistry());
-            case "D01": // Văn, Toán, Anh
-                return safeAdd(score.getScoreLiterature(), score.getScoreMath(), score.getScoreEnglish());
-            case "D07": // Toán, Hóa, Anh
-                return safeAdd(score.getScoreMath(), score.getScoreChemistry(), score.getScoreEnglish());
-            default:
-                return null;
-        }
-    }
-
-    /**
-     * Safely add scores (return null if any is null)
-     */
-    private Double safeAdd(Double... scores) {
-        if (Arrays.stream(scores).anyMatch(Objects::isNull)) {
-            return null;
-        }
-        return Arrays.stream(scores).mapToDouble(Double::doubleValue).sum();
-    }
-
     /**
      * Parse score table from real HTML
      */
@@ -1348,69 +1233,44 @@ public class SBDLookupService {
         return null;
     }
 
-    /**
-     * Get statistical parameters for combinations
-     */
-    private double getMeanScore(String combination) {
-        // Mean scores based on historical Vietnam exam data
-        switch (combination) {
-            case "A00": return 22.5;
-            case "A01": return 23.0;
-            case "B00": return 21.8;
-            case "C00": return 20.5;
-            case "C01": return 22.2;
-            case "C02": return 21.5;
-            case "D01": return 22.8;
-            case "D07": return 21.2;
-            default: return 21.0;
-        }
-    }
-
-    private double getStandardDeviation(String combination) {
-        return 3.5; // Typical standard deviation for university entrance exams
+    // NEW: Gọi trực tiếp API AJAX của tuyensinh247 để lấy điểm số
+    public Map<String, Object> getStudentScoreFromAPI(String sbd, String region) {
+        return getStudentScoreFromAPI(sbd, region, false);
     }
 
-    private int getTotalCandidatesForCombination(String combination) {
-        // Realistic candidate numbers for Vietnam based on 2024 data
-        switch (combination) {
-            case "A00": return 180000;
-            case "A01": return 160000;
-            case "B00": return 140000;
-            case "C00": return 120000;
-            case "C01": return 100000;
-            case "C02": return 110000;
-            case "D01": return 200000;
-            case "D07": return 90000;
-            default: return 100000;
+    // background = true: đi qua concurrency cap + rate limiter (bulk lookup, sweeper)
+    public Map<String, Object> getStudentScoreFromAPI(String sbd, String region, boolean background) {
+        if (negativeCache.isKnownMissing(sbd, region)) {
+            return knownMissingResult(sbd, region);
         }
+        return singleFlight.execute("api", sbd, region, () -> fetchStudentScoreFromAPI(sbd, region, background));
     }
 
-    // NEW: Gọi trực tiếp API AJAX của tuyensinh247 để lấy điểm số
-    public Map<String, Object> getStudentScoreFromAPI(String sbd, String region) {
+    private Map<String, Object> fetchStudentScoreFromAPI(String sbd, String region, boolean background) {
         Map<String, Object> result = new HashMap<>();
         try {
-            HttpClient client = HttpClient.newHttpClient();
             // region: "CN" cho Toàn quốc, "MB" cho Miền Bắc, "MN" cho Miền Nam
-            String regionCode = (region == null || region.toLowerCase().contains("toàn")) ? "CN" : region;
-            String payload = String.format("{\"region\":\"%s\",\"userNumber\":\"%s\"}", regionCode, sbd);
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create("https://diemthi.tuyensinh247.com/api/user/thpt-get-block"))
-                .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(payload))
-                .build();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            ObjectMapper mapper = new ObjectMapper();
-            Map<String, Object> json = mapper.readValue(response.body(), Map.class);
+            String regionCode = ThptScoreApiClient.toRegionCode(region);
+            Map<String, Object> json = background
+                    ? thptScoreApiClient.fetchBlockThrottled(sbd, regionCode)
+                    : thptScoreApiClient.fetchBlock(sbd, regionCode);
             if (Boolean.TRUE.equals(json.get("success")) && json.get("data") != null) {
                 result.put("status", "found");
                 result.put("sbd", sbd);
                 result.put("region", region);
                 result.put("data", json.get("data"));
-            } else {
+            } else if (ThptScoreApiClient.isNotFound(json)) {
                 result.put("status", "not_found");
                 result.put("sbd", sbd);
                 result.put("region", region);
                 result.put("message", "Không tìm thấy dữ liệu trên API tuyensinh247");
+                // Chỉ cache khi API xác nhận không có thí sinh (success = false), không cache lỗi / throttle
+                negativeCache.recordMissing(sbd, region);
+            } else {
+                result.put("status", "error");
+                result.put("sbd", sbd);
+                result.put("region", region);
+                result.put("message", "Phản hồi không hợp lệ từ API tuyensinh247");
             }
         } catch (Exception e) {
             result.put("status", "error");
@@ -1421,69 +1281,149 @@ public class SBDLookupService {
         return result;
     }
 
-    // Lưu dữ liệu điểm thi từ API vào database
+    // Lưu nhiều kết quả API cùng lúc (bulk lookup / sweeper): 1 batch upsert cho cả danh sách
+    public int saveStudentScoresFromAPIData(List<Map<String, Object>> dataList, String region) {
+        Map<String, StudentScore> students = new LinkedHashMap<>();
+        Map<String, List<CombinationScore>> combinationsBySbd = new HashMap<>();
+        // Dùng lại 1 vector + 1 buffer tổng điểm cho cả batch, không cấp phát theo từng thí sinh
+        SubjectVector subjects = new SubjectVector();
+        double[] totals = new double[CombinationTable.size()];
+        for (Map<String, Object> data : dataList) {
+            if (data == null) continue;
+            try {
+                StudentScore studentScore = buildStudentScoreFromAPIData(data, region);
+                if (studentScore.getSbd() == null) continue;
+                CombinationTable.computeTotals(subjects.load(studentScore), totals);
+                studentScore.setEligibleCombinations(eligibleCombinations(totals));
+                students.put(studentScore.getSbd(), studentScore);
+                combinationsBySbd.put(studentScore.getSbd(),
+                        buildCombinationScoresFromAPIData(data, studentScore.getSbd(), region, totals));
+            } catch (Exception e) {
+                log.error("Error parsing StudentScore from API data", e);
+            }
+        }
+        if (students.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            int saved = scoreBatchRepository.upsertAll(new ArrayList<>(students.values()), combinationsBySbd);
+            students.keySet().forEach(negativeCache::invalidate);
+            students.keySet().forEach(studentScoreReadModel::evict);
+            return saved;
+        } catch (Exception e) {
+            log.error("Error saving {} StudentScores from API data", students.size(), e);
+            return 0;
+        }
+    }
+
+    // Lưu dữ liệu điểm thi từ API vào database (upsert, không xóa rồi insert lại)
     public void saveStudentScoreFromAPIData(Map<String, Object> data, String region) {
         if (data == null) return;
-        try {
-            String sbd = (String) data.get("candidate_number");
-            // Xóa tất cả bản ghi cũ theo SBD (nếu có)
-            combinationScoreRepository.deleteBySbd(sbd);
-            studentScoreRepository.deleteBySbd(sbd);
+        saveStudentScoresFromAPIData(Collections.singletonList(data), region);
+    }
 
-            Integer year = data.get("data_year") instanceof Integer ? (Integer) data.get("data_year") : 2025;
-            List<Map<String, Object>> markInfo = (List<Map<String, Object>>) data.get("mark_info");
-            StudentScore studentScore = new StudentScore();
-            studentScore.setSbd(sbd);
-            studentScore.setExamYear(year);
-            studentScore.setRegion(region);
+    @SuppressWarnings("unchecked")
+    StudentScore buildStudentScoreFromAPIData(Map<String, Object> data, String region) {
+        String sbd = (String) data.get("candidate_number");
+        Integer year = data.get("data_year") instanceof Integer ? (Integer) data.get("data_year") : 2025;
+        List<Map<String, Object>> markInfo = (List<Map<String, Object>>) data.get("mark_info");
+        StudentScore studentScore = new StudentScore();
+        studentScore.setSbd(sbd != null ? sbd.trim() : null);
+        studentScore.setExamYear(year);
+        studentScore.setRegion(region);
 
-            if (markInfo != null) {
-                for (Map<String, Object> m : markInfo) {
-                    String name = (String) m.get("name");
-                    String scoreStr = String.valueOf(m.get("score"));
-                    Double score = null;
-                    try { score = Double.parseDouble(scoreStr); } catch (Exception ignore) {}
-                    if (name.contains("Toán")) studentScore.setScoreMath(score);
-                    else if (name.contains("Văn")) studentScore.setScoreLiterature(score);
-                    else if (name.contains("Lý")) studentScore.setScorePhysics(score);
-                    else if (name.contains("Hóa")) studentScore.setScoreChemistry(score);
-                    else if (name.contains("Anh") || name.contains("Ngoại ngữ")) studentScore.setScoreEnglish(score);
-                    else if (name.contains("Sinh")) studentScore.setScoreBiology(score);
-                    else if (name.contains("Sử")) studentScore.setScoreHistory(score);
-                    else if (name.contains("Địa")) studentScore.setScoreGeography(score);
-                    else if (name.contains("GDCD")) studentScore.setScoreCivicEducation(score);
-                    // Bổ sung thêm các môn khác nếu cần
-                }
+        if (markInfo != null) {
+            for (Map<String, Object> m : markInfo) {
+                String name = (String) m.get("name");
+                if (name == null) continue;
+                String scoreStr = String.valueOf(m.get("score"));
+                Double score = null;
+                try { score = Double.parseDouble(scoreStr); } catch (Exception ignore) {}
+                if (name.contains("Toán")) studentScore.setScoreMath(score);
+                else if (name.contains("Văn")) studentScore.setScoreLiterature(score);
+                else if (name.contains("Lý")) studentScore.setScorePhysics(score);
+                else if (name.contains("Hóa")) studentScore.setScoreChemistry(score);
+                else if (name.contains("Anh") || name.contains("Ngoại ngữ")) studentScore.setScoreEnglish(score);
+                else if (name.contains("Sinh")) studentScore.setScoreBiology(score);
+                else if (name.contains("Sử")) studentScore.setScoreHistory(score);
+                else if (name.contains("Địa")) studentScore.setScoreGeography(score);
+                else if (name.contains("GDCD")) studentScore.setScoreCivicEducation(score);
+                // Bổ sung thêm các môn khác nếu cần
             }
-            studentScoreRepository.save(studentScore);
+        }
+        return studentScore;
+    }
 
-            // Parse blocks (tổ hợp)
-            List<Map<String, Object>> blocks = (List<Map<String, Object>>) data.get("blocks");
-            if (blocks != null) {
-                for (Map<String, Object> b : blocks) {
-                    CombinationScore comb = new CombinationScore();
-                    comb.setSbd(sbd);
-                    comb.setCombinationCode((String) b.get("value"));
-                    comb.setCombinationName((String) b.get("label"));
-                    comb.setStudentScore(studentScore);
-                    comb.setRegion(region);
-                    comb.setTotalScore(b.get("point") != null ? Double.valueOf(b.get("point").toString()) : null);
-                    // Ranking
-                    Map<String, Object> ranking = (Map<String, Object>) b.get("ranking");
-                    if (ranking != null) {
-                        comb.setStudentsWithSameScore(ranking.get("equal") != null ? Integer.valueOf(ranking.get("equal").toString()) : null);
-                        comb.setStudentsWithHigherScore(ranking.get("higher") != null ? Integer.valueOf(ranking.get("higher").toString()) : null);
-                        comb.setTotalStudentsInCombination(ranking.get("total") != null ? Integer.valueOf(ranking.get("total").toString()) : null);
-                    }
-                    // same2024
-                    if (b.get("same2024") != null) {
-                        try { comb.setEquivalentScore2024(Double.valueOf(b.get("same2024").toString())); } catch (Exception ignore) {}
-                    }
-                    combinationScoreRepository.save(comb);
-                }
+    // "A00,A01,..." theo thứ tự bảng tổ hợp, từ buffer computeTotals (NaN = thiếu môn)
+    private static String eligibleCombinations(double[] totals) {
+        StringJoiner codes = new StringJoiner(",");
+        for (int i = 0; i < CombinationTable.size(); i++) {
+            if (!Double.isNaN(totals[i])) {
+                codes.add(CombinationTable.code(i));
             }
-        } catch (Exception e) {
-            log.error("Error saving StudentScore from API data", e);
+        }
+        return codes.toString();
+    }
+
+    // Parse blocks (tổ hợp); block thiếu điểm thì lấy tổng tính từ điểm môn, không tính được thì bỏ qua (total_score NOT NULL)
+    @SuppressWarnings("unchecked")
+    List<CombinationScore> buildCombinationScoresFromAPIData(Map<String, Object> data, String sbd, String region,
+                                                             double[] totals) {
+        List<CombinationScore> combinations = new ArrayList<>();
+        List<Map<String, Object>> blocks = (List<Map<String, Object>>) data.get("blocks");
+        if (blocks == null) {
+            return combinations;
+        }
+        Set<String> seenCodes = new HashSet<>();
+        for (Map<String, Object> b : blocks) {
+            String code = (String) b.get("value");
+            if (code == null) continue;
+            int index = CombinationTable.indexOf(code);
+            Double totalScore = b.get("point") != null
+                    ? Double.valueOf(b.get("point").toString())
+                    : index >= 0 && !Double.isNaN(totals[index]) ? totals[index] : null;
+            if (totalScore == null || !seenCodes.add(code)) continue;
+            CombinationScore comb = new CombinationScore();
+            comb.setSbd(sbd);
+            comb.setCombinationCode(code);
+            comb.setCombinationName(b.get("label") != null ? (String) b.get("label") : CombinationTable.nameOf(code));
+            comb.setRegion(region);
+            comb.setTotalScore(totalScore);
+            // Ranking
+            Map<String, Object> ranking = (Map<String, Object>) b.get("ranking");
+            if (ranking != null) {
+                comb.setStudentsWithSameScore(ranking.get("equal") != null ? Integer.valueOf(ranking.get("equal").toString()) : null);
+                comb.setStudentsWithHigherScore(ranking.get("higher") != null ? Integer.valueOf(ranking.get("higher").toString()) : null);
+                comb.setTotalStudentsInCombination(ranking.get("total") != null ? Integer.valueOf(ranking.get("total").toString()) : null);
+            }
+            // same2024
+            if (b.get("same2024") != null) {
+                try { comb.setEquivalentScore2024(Double.valueOf(b.get("same2024").toString())); } catch (Exception ignore) {}
+            }
+            combinations.add(comb);
+        }
+        return combinations;
+    }
+
+    /**
+     * Kết quả fetch + parse của 1 chiến lược crawl website, chưa ghi DB.
+     * status: "found" hoặc "not_found_on_website"
+     */
+    record WebCrawlResult(String status, StudentScore studentScore, List<CombinationScore> combinationScores,
+                          String source, String method) {
+
+        static WebCrawlResult found(StudentScore studentScore, List<CombinationScore> combinationScores,
+                                    String source, String method) {
+            return new WebCrawlResult("found", studentScore, combinationScores, source, method);
+        }
+
+        static WebCrawlResult notFoundOnWebsite() {
+            return new WebCrawlResult("not_found_on_website", null, List.of(), null, null);
+        }
+
+        boolean found() {
+            return "found".equals(status);
         }
     }
-}
\ No newline at end of file
+}
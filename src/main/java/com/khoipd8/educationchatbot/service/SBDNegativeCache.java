@@ -0,0 +1,207 @@
+package com.khoipd8.educationchatbot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache kết quả "không tìm thấy" của upstream theo SBD + khu vực, có TTL.
+ * Phía trước là Bloom filter: SBD chưa từng bị ghi nhận "not found" được loại ngay
+ * mà không cần tra map. Filter được dựng lại định kỳ từ các entry còn hạn.
+ */
+@Service
+@Slf4j
+public class SBDNegativeCache {
+
+    private static final int HASH_FUNCTIONS = 4;
+
+    @Value("${sbd.negative-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sbd.negative-cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Value("${sbd.negative-cache.max-entries:500000}")
+    private int maxEntries;
+
+    // Số bit của Bloom filter (làm tròn lên bội số của 64)
+    @Value("${sbd.negative-cache.filter-bits:8388608}")
+    private int filterBits;
+
+    // sbd -> (mã khu vực -> thời điểm hết hạn); map con nhỏ, copy-on-write
+    private final Map<String, Map<String, Long>> expiryBySbd = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong filterRejections = new AtomicLong();
+    private final AtomicLong recorded = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        filter = new BloomFilter(filterBits);
+    }
+
+    /**
+     * SBD đã được xác nhận không tồn tại (và còn trong TTL)?
+     */
+    public boolean isKnownMissing(String sbd, String region) {
+        if (!enabled || sbd == null) {
+            return false;
+        }
+        String key = sbd.trim();
+        if (!filter.mightContain(key)) {
+            filterRejections.incrementAndGet();
+            return false;
+        }
+
+        Map<String, Long> byRegion = expiryBySbd.get(key);
+        Long expiresAt = byRegion != null ? byRegion.get(regionKey(region)) : null;
+        if (expiresAt == null || expiresAt < System.currentTimeMillis()) {
+            return false;
+        }
+        hits.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Ghi nhận upstream trả về "không tìm thấy"
+     */
+    public void recordMissing(String sbd, String region) {
+        if (!enabled || sbd == null) {
+            return;
+        }
+        if (expiryBySbd.size() >= maxEntries) {
+            return; // Cache đầy - bỏ qua, không ảnh hưởng tính đúng
+        }
+        String key = sbd.trim();
+        String regionKey = regionKey(region);
+        long expiresAt = System.currentTimeMillis() + ttlMinutes * 60_000L;
+        expiryBySbd.compute(key, (k, byRegion) -> {
+            Map<String, Long> updated = byRegion != null ? new HashMap<>(byRegion) : new HashMap<>(2);
+            updated.put(regionKey, expiresAt);
+            return updated;
+        });
+        filter.put(key);
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * Xóa ghi nhận của SBD ở mọi khu vực (khi đã có dữ liệu hoặc refresh thủ công)
+     */
+    public void invalidate(String sbd) {
+        if (sbd == null) {
+            return;
+        }
+        expiryBySbd.remove(sbd.trim());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entries", expiryBySbd.size());
+        stats.put("ttl_minutes", ttlMinutes);
+        stats.put("hits", hits.get());
+        stats.put("filter_rejections", filterRejections.get());
+        stats.put("recorded", recorded.get());
+        stats.put("filter_bits", filter.bitCount());
+        return stats;
+    }
+
+    /**
+     * Dọn entry hết hạn và dựng lại Bloom filter (Bloom filter không xóa được phần tử)
+     */
+    @Scheduled(fixedDelayString = "${sbd.negative-cache.rebuild-interval-ms:300000}")
+    public void rebuildFilter() {
+        evictExpired();
+        BloomFilter rebuilt = new BloomFilter(filterBits);
+        expiryBySbd.keySet().forEach(rebuilt::put);
+        filter = rebuilt;
+        log.debug("Rebuilt SBD negative cache filter with {} entries", expiryBySbd.size());
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        for (String sbd : expiryBySbd.keySet()) {
+            expiryBySbd.computeIfPresent(sbd, (k, byRegion) -> {
+                Map<String, Long> alive = new HashMap<>(byRegion);
+                alive.values().removeIf(expiresAt -> expiresAt < now);
+                return alive.isEmpty() ? null : alive;
+            });
+        }
+    }
+
+    private String regionKey(String region) {
+        return ThptScoreApiClient.toRegionCode(region);
+    }
+
+    /**
+     * Bloom filter trên AtomicLongArray, dùng double hashing cho k hàm băm
+     */
+    static class BloomFilter {
+        private final AtomicLongArray words;
+        private final int bits;
+
+        BloomFilter(int requestedBits) {
+            int wordCount = Math.max(1, (requestedBits + 63) / 64);
+            this.words = new AtomicLongArray(wordCount);
+            this.bits = wordCount * 64;
+        }
+
+        void put(String key) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                    if ((current & mask) != 0) break;
+                } while (!words.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = mix(key);
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < HASH_FUNCTIONS; i++) {
+                int bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int bitCount() {
+            return bits;
+        }
+
+        // 64-bit FNV-1a + finalizer của MurmurHash3
+        private static long mix(String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < key.length(); i++) {
+                hash ^= key.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.SBDSweepCheckpoint;
+import com.khoipd8.educationchatbot.repository.SBDSweepCheckpointRepository;
+import com.khoipd8.educationchatbot.repository.StudentScoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Quét trước dải SBD theo mã tỉnh (2 chữ số đầu) để nạp sẵn điểm vào database trước giờ cao điểm.
+ * Tiến độ được lưu checkpoint sau mỗi batch nên khi restart sẽ chạy tiếp từ batch chưa xong.
+ */
+@Service
+@Slf4j
+public class SBDRangeSweeperService {
+    
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_PAUSED = "paused";
+    public static final String STATUS_COMPLETED = "completed";
+    
+    private static final int SEQUENCE_DIGITS = 6;
+    
+    @Autowired
+    private SBDSweepCheckpointRepository checkpointRepository;
+    
+    @Autowired
+    private StudentScoreRepository studentScoreRepository;
+    
+    @Autowired
+    private SBDLookupService sbdLookupService;
+    
+    @Autowired
+    @Qualifier("sbdLookupExecutor")
+    private Executor sbdLookupExecutor;
+    
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+    
+    @Value("${sbd.sweeper.batch-size:50}")
+    private int batchSize;
+    
+    // Dừng 1 tỉnh khi gặp liên tiếp nhiều SBD không tồn tại
+    @Value("${sbd.sweeper.max-consecutive-misses:500}")
+    private int maxConsecutiveMisses;
+    
+    @Value("${sbd.sweeper.max-sequence:999999}")
+    private int maxSequence;
+    
+    // Quét lại từ SBD lỗi đầu tiên tối đa N lần liên tiếp rồi mới tạm dừng tỉnh
+    @Value("${sbd.sweeper.max-error-retries:3}")
+    private int maxErrorRetries;
+    
+    @Value("${sbd.sweeper.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+    
+    private volatile boolean sweepInProgress = false;
+    private volatile boolean stopRequested = false;
+    private volatile long runStartedAt;
+    // Checkpoint sweepPrefix đang giữ (và ghi sau mỗi batch); chỉ đổi dưới lock của service
+    private Long sweepingCheckpointId;
+    private final AtomicLong sweptThisRun = new AtomicLong();
+    private final AtomicLong foundThisRun = new AtomicLong();
+    
+    /**
+     * ▶️ Bắt đầu (hoặc tiếp tục) quét các mã tỉnh
+     */
+    public synchronized Map<String, Object> startSweep(List<String> prefixes, String region, boolean restart) {
+        Map<String, Object> response = new HashMap<>();
+        for (String prefix : prefixes) {
+            if (!prefix.matches("^\\d{2}$")) {
+                throw new IllegalArgumentException("Mã tỉnh phải gồm 2 chữ số: " + prefix);
+            }
+        }
+        
+        List<String> restartRejected = new ArrayList<>();
+        for (String prefix : prefixes) {
+            SBDSweepCheckpoint checkpoint = checkpointRepository.findByProvincePrefixAndRegion(prefix, region)
+                    .orElseGet(() -> newCheckpoint(prefix, region));
+            
+            if (checkpoint.getId() != null && checkpoint.getId().equals(sweepingCheckpointId)) {
+                // sweepPrefix đang ghi checkpoint của chính nó sau mỗi batch - ghi/reset lúc này sẽ bị ghi đè
+                if (restart) {
+                    restartRejected.add(prefix);
+                }
+                continue;
+            }
+            if (restart) {
+                resetCheckpoint(checkpoint);
+            } else if (STATUS_COMPLETED.equals(checkpoint.getStatus())) {
+                continue; // Đã quét xong, không chạy lại
+            }
+            if (!STATUS_RUNNING.equals(checkpoint.getStatus())) {
+                checkpoint.setStatus(STATUS_PENDING);
+            }
+            checkpointRepository.save(checkpoint);
+        }
+        
+        if (sweepInProgress) {
+            // runSweep quyết định kết thúc dưới cùng lock này nên sẽ thấy các mã tỉnh vừa thêm;
+            // start mới cũng hủy yêu cầu dừng chưa có hiệu lực
+            stopRequested = false;
+            response.put("status", "already_running");
+            response.put("message", "Sweeper đang chạy, các mã tỉnh mới đã được thêm vào hàng đợi");
+        } else {
+            launchSweep();
+            response.put("status", "started");
+            response.put("message", "Sweeper đã bắt đầu chạy nền");
+        }
+        response.put("prefixes", prefixes);
+        response.put("region", region);
+        if (!restartRejected.isEmpty()) {
+            response.put("restart_rejected", restartRejected);
+            response.put("restart_rejected_reason", "Mã tỉnh đang được quét - dừng sweeper rồi restart lại");
+        }
+        return response;
+    }
+    
+    /**
+     * ⏹️ Dừng sweeper - batch đang chạy sẽ hoàn thành và lưu checkpoint
+     */
+    public synchronized Map<String, Object> stopSweep() {
+        Map<String, Object> response = new HashMap<>();
+        if (!sweepInProgress) {
+            response.put("status", "not_running");
+            return response;
+        }
+        stopRequested = true;
+        response.put("status", "stopping");
+        response.put("message", "Sweeper sẽ dừng sau batch hiện tại");
+        return response;
+    }
+    
+    /**
+     * 📊 Trạng thái sweeper và checkpoint từng tỉnh
+     */
+    public Map<String, Object> getSweepStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("sweep_in_progress", sweepInProgress);
+        status.put("stop_requested", stopRequested);
+        status.put("swept_this_run", sweptThisRun.get());
+        status.put("found_this_run", foundThisRun.get());
+        
+        if (sweepInProgress && runStartedAt > 0) {
+            double elapsedSeconds = (System.currentTimeMillis() - runStartedAt) / 1000.0;
+            status.put("elapsed_seconds", Math.round(elapsedSeconds));
+            status.put("sbd_per_second", elapsedSeconds > 0
+                    ? Math.round(sweptThisRun.get() / elapsedSeconds * 100.0) / 100.0 : 0);
+        }
+        
+        List<Map<String, Object>> checkpoints = new ArrayList<>();
+        for (SBDSweepCheckpoint checkpoint : checkpointRepository.findAll()) {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("province_prefix", checkpoint.getProvincePrefix());
+            info.put("region", checkpoint.getRegion());
+            info.put("status", checkpoint.getStatus());
+            info.put("next_sequence", checkpoint.getNextSequence());
+            info.put("last_found_sequence", checkpoint.getLastFoundSequence());
+            info.put("consecutive_misses", checkpoint.getConsecutiveMisses());
+            info.put("found_count", checkpoint.getFoundCount());
+            info.put("miss_count", checkpoint.getMissCount());
+            info.put("error_count", checkpoint.getErrorCount());
+            info.put("last_error", checkpoint.getLastError());
+            info.put("updated_at", checkpoint.getUpdatedAt() != null ? checkpoint.getUpdatedAt().toString() : null);
+            checkpoints.add(info);
+        }
+        status.put("checkpoints", checkpoints);
+        return status;
+    }
+    
+    /**
+     * 🔁 Tiếp tục sweep dở dang sau khi restart
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void resumeAfterRestart() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        List<SBDSweepCheckpoint> unfinished = checkpointRepository.findByStatusIn(List.of(STATUS_PENDING, STATUS_RUNNING));
+        if (!unfinished.isEmpty()) {
+            log.info("🔁 Resuming SBD sweep for {} province prefixes", unfinished.size());
+            launchSweep();
+        }
+    }
+    
+    // ====== HELPER METHODS ======
+    
+    private void launchSweep() {
+        sweepInProgress = true;
+        stopRequested = false;
+        runStartedAt = System.currentTimeMillis();
+        sweptThisRun.set(0);
+        foundThisRun.set(0);
+        
+        CompletableFuture.runAsync(this::runSweep, taskExecutor)
+                .whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        // Kết thúc bình thường đã hạ cờ trong finishIfIdle()
+                        synchronized (this) {
+                            sweepInProgress = false;
+                        }
+                        log.error("❌ SBD sweep failed", throwable);
+                    } else {
+                        log.info("✅ SBD sweep finished: {} swept, {} found", sweptThisRun.get(), foundThisRun.get());
+                    }
+                });
+    }
+    
+    private void runSweep() {
+        while (true) {
+            List<SBDSweepCheckpoint> queue = stopRequested ? new ArrayList<>() : new ArrayList<>(
+                    checkpointRepository.findByStatusIn(List.of(STATUS_PENDING, STATUS_RUNNING)));
+            if (queue.isEmpty()) {
+                if (finishIfIdle()) {
+                    return;
+                }
+                continue;
+            }
+            queue.sort(Comparator.comparing(SBDSweepCheckpoint::getProvincePrefix));
+            
+            for (SBDSweepCheckpoint queued : queue) {
+                if (stopRequested) {
+                    break;
+                }
+                SBDSweepCheckpoint checkpoint = beginPrefix(queued.getId());
+                if (checkpoint == null) {
+                    continue;
+                }
+                try {
+                    sweepPrefix(checkpoint);
+                } finally {
+                    endPrefix();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Quyết định kết thúc run dưới cùng lock với startSweep: mã tỉnh được thêm vào hàng đợi
+     * (startSweep trả "already_running") trước khi hạ cờ sẽ luôn được run hiện tại quét.
+     * false nếu còn việc (hoặc yêu cầu dừng đã bị start mới hủy) - runSweep quét tiếp.
+     */
+    private synchronized boolean finishIfIdle() {
+        if (stopRequested) {
+            // Dừng giữa chừng: đánh dấu paused để không tự resume khi restart
+            for (SBDSweepCheckpoint checkpoint : checkpointRepository.findByStatus(STATUS_RUNNING)) {
+                checkpoint.setStatus(STATUS_PAUSED);
+                checkpointRepository.save(checkpoint);
+            }
+        } else if (!checkpointRepository.findByStatusIn(List.of(STATUS_PENDING, STATUS_RUNNING)).isEmpty()) {
+            return false;
+        }
+        sweepInProgress = false;
+        return true;
+    }
+    
+    /**
+     * Đọc lại checkpoint và nhận quyền ghi dưới cùng lock với startSweep: bản trong hàng đợi có thể đã cũ
+     * (restart / đổi trạng thái sau khi runSweep load). null nếu checkpoint không còn cần quét.
+     */
+    private synchronized SBDSweepCheckpoint beginPrefix(Long checkpointId) {
+        SBDSweepCheckpoint checkpoint = checkpointRepository.findById(checkpointId).orElse(null);
+        if (checkpoint == null
+                || !(STATUS_PENDING.equals(checkpoint.getStatus()) || STATUS_RUNNING.equals(checkpoint.getStatus()))) {
+            return null;
+        }
+        checkpoint.setStatus(STATUS_RUNNING);
+        checkpoint = checkpointRepository.save(checkpoint);
+        sweepingCheckpointId = checkpoint.getId();
+        return checkpoint;
+    }
+    
+    private synchronized void endPrefix() {
+        sweepingCheckpointId = null;
+    }
+    
+    private void sweepPrefix(SBDSweepCheckpoint checkpoint) {
+        String prefix = checkpoint.getProvincePrefix();
+        String region = checkpoint.getRegion();
+        log.info("🧹 Sweeping SBD prefix {} from sequence {}", prefix, checkpoint.getNextSequence());
+        int errorStreak = 0;
+        
+        while (!stopRequested
+                && checkpoint.getNextSequence() <= maxSequence
+                && checkpoint.getConsecutiveMisses() < maxConsecutiveMisses) {
+            
+            int from = checkpoint.getNextSequence();
+            int to = Math.min(from + batchSize - 1, maxSequence);
+            
+            List<String> sbds = new ArrayList<>(to - from + 1);
+            for (int sequence = from; sequence <= to; sequence++) {
+                sbds.add(toSbd(prefix, sequence));
+            }
+            
+            try {
+                if (sweepBatch(checkpoint, sbds, from, region)) {
+                    errorStreak = 0;
+                } else if (++errorStreak > maxErrorRetries) {
+                    // SBD lỗi liên tục: tạm dừng tỉnh, checkpoint vẫn đứng trước SBD lỗi
+                    log.warn("⏸️ Pausing SBD prefix {} at sequence {} after {} failed retries",
+                            prefix, checkpoint.getNextSequence(), maxErrorRetries);
+                    checkpoint.setStatus(STATUS_PAUSED);
+                    checkpointRepository.save(checkpoint);
+                    return;
+                } else {
+                    Thread.sleep(1000L * errorStreak); // Backoff trước khi quét lại từ SBD lỗi
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopRequested = true;
+                return;
+            } catch (Exception e) {
+                // Không tiến checkpoint - batch sẽ được quét lại khi start tiếp
+                log.error("❌ Error sweeping SBD batch {}-{}: {}", toSbd(prefix, from), toSbd(prefix, to), e.getMessage());
+                checkpoint.setStatus(STATUS_PAUSED);
+                checkpoint.setErrorCount(checkpoint.getErrorCount() + 1);
+                checkpoint.setLastError(truncate(e.getMessage()));
+                checkpointRepository.save(checkpoint);
+                return;
+            }
+        }
+        
+        if (!stopRequested) {
+            checkpoint.setStatus(STATUS_COMPLETED);
+            checkpointRepository.save(checkpoint);
+            log.info("✅ Completed SBD prefix {}: {} found, last found sequence {}",
+                    prefix, checkpoint.getFoundCount(), checkpoint.getLastFoundSequence());
+        }
+    }
+    
+    /**
+     * Quét 1 batch và tiến checkpoint tới ngay trước SBD lỗi đầu tiên (nếu có).
+     * Trả về false nếu có SBD lỗi - các SBD từ đó trở đi sẽ được quét lại.
+     */
+    private boolean sweepBatch(SBDSweepCheckpoint checkpoint, List<String> sbds, int fromSequence, String region)
+            throws InterruptedException, ExecutionException {
+        
+        // SBD đã có trong database thì không gọi upstream
+        Set<String> existing = new HashSet<>(studentScoreRepository.findExistingSbds(sbds));
+        
+        CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(sbdLookupExecutor);
+        int submitted = 0;
+        for (String sbd : sbds) {
+            if (!existing.contains(sbd)) {
+                completion.submit(() -> sbdLookupService.getStudentScoreFromAPI(sbd, region, true));
+                submitted++;
+            }
+        }
+        
+        Map<String, Map<String, Object>> resultBySbd = new HashMap<>();
+        List<Map<String, Object>> toSave = new ArrayList<>();
+        for (int i = 0; i < submitted; i++) {
+            Map<String, Object> result = completion.take().get();
+            resultBySbd.put((String) result.get("sbd"), result);
+            if ("found".equals(result.get("status")) && result.get("data") != null) {
+                toSave.add(castData(result.get("data")));
+            }
+        }
+        
+        if (!toSave.isEmpty()) {
+            sbdLookupService.saveStudentScoresFromAPIData(toSave, region);
+        }
+        
+        // Cập nhật checkpoint theo thứ tự SBD để đếm số miss liên tiếp chính xác.
+        // Dừng ở SBD lỗi đầu tiên: phần sau chưa được tính, lần quét lại sẽ đếm (SBD đã lưu thành "existing")
+        int processed = 0;
+        for (; processed < sbds.size(); processed++) {
+            String sbd = sbds.get(processed);
+            Map<String, Object> result = resultBySbd.get(sbd);
+            String status = existing.contains(sbd) ? "found" : result != null ? (String) result.get("status") : null;
+            if ("found".equals(status)) {
+                checkpoint.setConsecutiveMisses(0);
+                checkpoint.setLastFoundSequence(fromSequence + processed);
+                checkpoint.setFoundCount(checkpoint.getFoundCount() + 1);
+                foundThisRun.incrementAndGet();
+            } else if ("not_found".equals(status)) {
+                checkpoint.setConsecutiveMisses(checkpoint.getConsecutiveMisses() + 1);
+                checkpoint.setMissCount(checkpoint.getMissCount() + 1);
+            } else {
+                checkpoint.setErrorCount(checkpoint.getErrorCount() + 1);
+                checkpoint.setLastError(truncate(sbd + ": " + (result != null ? result.get("message") : "no result")));
+                break;
+            }
+        }
+        
+        sweptThisRun.addAndGet(processed);
+        checkpoint.setNextSequence(fromSequence + processed);
+        checkpointRepository.save(checkpoint);
+        return processed == sbds.size();
+    }
+    
+    private SBDSweepCheckpoint newCheckpoint(String prefix, String region) {
+        SBDSweepCheckpoint checkpoint = new SBDSweepCheckpoint();
+        checkpoint.setProvincePrefix(prefix);
+        checkpoint.setRegion(region);
+        resetCheckpoint(checkpoint);
+        return checkpoint;
+    }
+    
+    private void resetCheckpoint(SBDSweepCheckpoint checkpoint) {
+        checkpoint.setNextSequence(1);
+        checkpoint.setLastFoundSequence(null);
+        checkpoint.setConsecutiveMisses(0);
+        checkpoint.setFoundCount(0);
+        checkpoint.setMissCount(0);
+        checkpoint.setErrorCount(0);
+        checkpoint.setLastError(null);
+        checkpoint.setStatus(STATUS_PENDING);
+    }
+    
+    private String toSbd(String prefix, int sequence) {
+        return prefix + String.format("%0" + SEQUENCE_DIGITS + "d", sequence);
+    }
+    
+    private String truncate(String message) {
+        if (message == null) return null;
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> castData(Object data) {
+        return (Map<String, Object>) data;
+    }
+}
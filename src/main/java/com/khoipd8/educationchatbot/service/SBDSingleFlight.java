@@ -0,0 +1,170 @@
+package com.khoipd8.educationchatbot.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các request đồng thời cho cùng 1 SBD: request đầu tiên (leader) thực sự gọi upstream / ghi DB,
+ * các request đến trong lúc đó chờ và nhận bản sao kết quả của leader.
+ * Leader công bố 1 snapshot bất biến; mỗi người nhận (kể cả leader) được 1 bản sao riêng có thể sửa.
+ * Request chỉ gộp trong cùng operation (các operation trả về response khác nhau), nhưng leader của
+ * các operation khác nhau cho cùng SBD chạy tuần tự để không ghi DB chồng lên nhau.
+ */
+@Service
+@Slf4j
+public class SBDSingleFlight {
+
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+    // sbd|region -> leader đang giữ lượt (bất kể operation)
+    private final Map<String, CompletableFuture<Map<String, Object>>> turns = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+
+    @Value("${sbd.single-flight.wait-timeout-ms:120000}")
+    private long waitTimeoutMs;
+
+    /**
+     * Chạy work cho (operation, sbd, region), hoặc chờ lần chạy đang diễn ra với cùng key.
+     * Không gọi lồng nhau cho cùng SBD từ trong work (sẽ chờ chính mình tới hết thời gian).
+     */
+    public Map<String, Object> execute(String operation, String sbd, String region, Supplier<Map<String, Object>> work) {
+        if (sbd == null) {
+            return work.get();
+        }
+        String sbdKey = sbd.trim() + "|" + ThptScoreApiClient.toRegionCode(region);
+        String key = operation + "|" + sbdKey;
+
+        CompletableFuture<Map<String, Object>> mine = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            log.debug("Coalesced {} request for SBD {} into in-flight call", operation, sbd);
+            return awaitCopy(existing, sbd);
+        }
+
+        executions.incrementAndGet();
+        Map<String, Object> snapshot = null;
+        Throwable failure = null;
+        try {
+            if (!awaitTurn(sbdKey, mine)) {
+                snapshot = snapshot(errorResult(sbd, "Đang có tra cứu khác cho SBD: " + sbd + ", vui lòng thử lại sau"));
+                return mutableCopy(snapshot);
+            }
+            snapshot = snapshot(work.get());
+            return mutableCopy(snapshot);
+        } catch (Throwable t) {
+            // Cả Error cũng phải hoàn tất future, nếu không người chờ bị treo
+            failure = t;
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+            turns.remove(sbdKey, mine);
+            if (failure != null) {
+                mine.completeExceptionally(failure);
+            } else {
+                mine.complete(snapshot);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("in_flight", inFlight.size());
+        stats.put("sbd_turns_held", turns.size());
+        stats.put("executions", executions.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("wait_timeouts", waitTimeouts.get());
+        return stats;
+    }
+
+    // Chờ leader của operation khác cho cùng SBD xong rồi mới giữ lượt; false nếu quá thời gian / bị ngắt
+    private boolean awaitTurn(String sbdKey, CompletableFuture<Map<String, Object>> mine) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        while (true) {
+            CompletableFuture<Map<String, Object>> current = turns.putIfAbsent(sbdKey, mine);
+            if (current == null) {
+                return true;
+            }
+            try {
+                current.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (TimeoutException e) {
+                waitTimeouts.incrementAndGet();
+                return false;
+            } catch (ExecutionException e) {
+                // Leader trước lỗi: vẫn đến lượt mình
+            }
+        }
+    }
+
+    // Mỗi người chờ nhận 1 bản sao để có thể tự thêm field vào response
+    private Map<String, Object> awaitCopy(CompletableFuture<Map<String, Object>> future, String sbd) {
+        try {
+            return mutableCopy(future.get(waitTimeoutMs, TimeUnit.MILLISECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorResult(sbd, "Request bị gián đoạn khi chờ tra cứu SBD: " + sbd);
+        } catch (TimeoutException e) {
+            waitTimeouts.incrementAndGet();
+            return errorResult(sbd, "Quá thời gian chờ tra cứu SBD: " + sbd);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            return errorResult(sbd, cause != null ? cause.getMessage() : e.getMessage());
+        }
+    }
+
+    // Bản sao sâu bất biến (giữ được giá trị null, khác Map.copyOf)
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> snapshot(Map<String, Object> result) {
+        return result != null ? (Map<String, Object>) deepCopy(result, false) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> mutableCopy(Map<String, Object> snapshot) {
+        return snapshot != null ? (Map<String, Object>) deepCopy(snapshot, true) : null;
+    }
+
+    private static Object deepCopy(Object value, boolean mutable) {
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copy = new LinkedHashMap<>(map.size() * 2);
+            map.forEach((k, v) -> copy.put(k, deepCopy(v, mutable)));
+            return mutable ? copy : Collections.unmodifiableMap(copy);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(v -> copy.add(deepCopy(v, mutable)));
+            return mutable ? copy : Collections.unmodifiableList(copy);
+        }
+        return value;
+    }
+
+    private Map<String, Object> errorResult(String sbd, String message) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "error");
+        result.put("sbd", sbd);
+        result.put("message", message);
+        return result;
+    }
+}
@@ -0,0 +1,379 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.repository.CombinationScoreRepository;
+import com.khoipd8.educationchatbot.repository.ScoreRankingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Phân bố điểm thực nghiệm theo năm + tổ hợp + khu vực, độ phân giải 0.05 điểm.
+ * Mỗi phân bố là mảng tích lũy "số thí sinh đạt >= điểm" nên tra hạng / percentile là O(1).
+ *
+ * Nguồn dữ liệu theo thứ tự ưu tiên:
+ *  1. thứ hạng upstream lưu trong combination_scores (higher / same / total)
+ *  2. score_rankings (bảng xếp hạng đã crawl)
+ *  3. phân bố mẫu của combination_scores, co giãn theo tổng thí sinh ước lượng
+ *  4. mô hình chuẩn dựa trên số liệu các năm trước (chỉ khi chưa có dữ liệu)
+ */
+@Service
+@Slf4j
+public class ScoreDistributionService {
+
+    static final double BIN_WIDTH = 0.05;
+    static final double MAX_SCORE = 30.0;
+    static final int MAX_BIN = (int) Math.round(MAX_SCORE / BIN_WIDTH);
+    static final String RANK_SOURCE_ESTIMATED = "estimated";
+    static final String RANKING_SOURCE_CRAWLED = "crawled";
+
+    @Autowired
+    private CombinationScoreRepository combinationScoreRepository;
+
+    @Autowired
+    private ScoreRankingRepository scoreRankingRepository;
+
+    // Số bản ghi tối thiểu để dùng phân bố mẫu thay cho mô hình chuẩn
+    @Value("${sbd.distribution.min-sample:200}")
+    private int minSample;
+
+    private volatile Map<String, ScoreDistribution> distributions = Map.of();
+    private final Map<String, ScoreDistribution> priorDistributions = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Không dựng được phân bố điểm lúc khởi động: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ phân bố từ database (query đã group, không load entity)
+     */
+    @Scheduled(fixedDelayString = "${sbd.distribution.rebuild-interval-ms:600000}",
+               initialDelayString = "${sbd.distribution.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<String, DistributionBuilder> builders = new HashMap<>();
+
+        // score_rankings: mỗi dòng là 1 điểm neo (hạng, số cùng điểm, tổng).
+        // Chỉ dùng bảng xếp hạng crawl được - dòng sinh từ mô hình không được làm neo cho chính nó
+        for (Object[] row : scoreRankingRepository.findRankingPoints()) {
+            if (!RANKING_SOURCE_CRAWLED.equals(row[7])) continue;
+            Integer year = (Integer) row[0];
+            Double score = (Double) row[3];
+            Integer position = (Integer) row[4];
+            if (year == null || score == null || position == null) continue;
+            builders.computeIfAbsent(key(year, (String) row[1], (String) row[2]), k -> new DistributionBuilder())
+                    .addRankingAnchor(score, position - 1L, toLong(row[5]), toLong(row[6]));
+        }
+
+        // combination_scores: thứ hạng upstream + phân bố mẫu
+        for (Object[] row : combinationScoreRepository.aggregateScoreDistribution()) {
+            Integer year = (Integer) row[0];
+            Double score = (Double) row[3];
+            if (year == null || score == null) continue;
+            builders.computeIfAbsent(key(year, (String) row[1], (String) row[2]), k -> new DistributionBuilder())
+                    .addObserved(score, toLong(row[4]), toLong(row[5]), toLong(row[6]), toLong(row[7]));
+        }
+
+        Map<String, ScoreDistribution> rebuilt = new HashMap<>(builders.size() * 2);
+        builders.forEach((key, builder) -> {
+            String[] parts = key.split("\\|", 3);
+            ScoreDistribution distribution = builder.build(minSample,
+                    () -> prior(parts[1], parts[2]));
+            if (distribution != null) {
+                rebuilt.put(key, distribution);
+            }
+        });
+        distributions = rebuilt;
+
+        log.info("📊 Rebuilt {} score distributions in {} ms", rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Ước lượng thứ hạng cho 1 điểm tổ hợp
+     */
+    public RankEstimate estimate(Integer year, String combination, String region, double score) {
+        ScoreDistribution distribution = getDistribution(year, combination, region);
+        int bin = toBin(score);
+        long higher = distribution.atOrAbove[bin + 1];
+        long same = distribution.atOrAbove[bin] - higher;
+        long total = distribution.total();
+        double percentile = total > 0 ? 100.0 * (total - higher) / total : 0.0;
+        return new RankEstimate(higher, same, total, Math.round(percentile * 100.0) / 100.0, distribution.source());
+    }
+
+    /**
+     * Điền thứ hạng ước lượng vào CombinationScore (khi upstream không trả về hạng).
+     * Điểm tương đương năm trước = điểm có cùng thứ hạng tương đối trong phân bố năm trước.
+     */
+    public void applyEstimate(CombinationScore combScore, Integer year) {
+        if (combScore.getTotalScore() == null) {
+            return;
+        }
+        int examYear = year != null ? year : 2025;
+        RankEstimate estimate = estimate(examYear, combScore.getCombinationCode(), combScore.getRegion(), combScore.getTotalScore());
+
+        combScore.setStudentsWithHigherScore((int) estimate.higher());
+        combScore.setStudentsWithSameScore((int) Math.max(1, estimate.same()));
+        combScore.setTotalStudentsInCombination((int) estimate.total());
+        combScore.setRankSource(RANK_SOURCE_ESTIMATED);
+        combScore.setEquivalentScore2024(equivalentScore(examYear, examYear - 1,
+                combScore.getCombinationCode(), combScore.getRegion(), combScore.getTotalScore()));
+    }
+
+    /**
+     * Điểm ở năm toYear có cùng percentile với score ở năm fromYear; null nếu năm toYear chưa có dữ liệu thật
+     */
+    public Double equivalentScore(int fromYear, int toYear, String combination, String region, double score) {
+        ScoreDistribution target = distributions.get(key(toYear, combination, region));
+        if (target == null || target.total() == 0) {
+            return null;
+        }
+        RankEstimate estimate = estimate(fromYear, combination, region, score);
+        if (estimate.total() == 0) {
+            return null;
+        }
+        double share = (double) estimate.higher() / estimate.total();
+        return target.scoreAtHigherCount(Math.round(share * target.total()));
+    }
+
+    public ScoreDistribution getDistribution(Integer year, String combination, String region) {
+        int examYear = year != null ? year : 2025;
+        String key = key(examYear, combination, region);
+        ScoreDistribution distribution = distributions.get(key);
+        if (distribution != null) {
+            return distribution;
+        }
+        // Prior không phụ thuộc năm; tổ hợp ngoài CombinationTable dùng chung tham số mặc định
+        // nên số key tối đa = (số tổ hợp + 1) x 3 khu vực, tham số từ request không làm phình cache
+        String priorCombination = CombinationTable.indexOf(combination) >= 0 ? combination.trim().toUpperCase() : "";
+        String regionCode = regionCode(region);
+        return priorDistributions.computeIfAbsent(priorCombination + "|" + regionCode,
+                k -> prior(priorCombination, regionCode));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Integer> bySource = new TreeMap<>();
+        distributions.values().forEach(d -> bySource.merge(d.source(), 1, Integer::sum));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("distributions", distributions.size());
+        stats.put("by_source", bySource);
+        stats.put("prior_only_keys", priorDistributions.size());
+        stats.put("bin_width", BIN_WIDTH);
+        return stats;
+    }
+
+    // ====== HELPER METHODS ======
+
+    static int toBin(double score) {
+        return (int) Math.max(0, Math.min(MAX_BIN, Math.round(score / BIN_WIDTH)));
+    }
+
+    static String regionCode(String region) {
+        if (region == null) return "CN";
+        String normalized = region.trim().toLowerCase();
+        if (normalized.equals("mb") || normalized.contains("bắc")) return "MB";
+        if (normalized.equals("mn") || normalized.contains("nam")) return "MN";
+        return "CN"; // Toàn quốc / Cả nước
+    }
+
+    private static String key(int year, String combination, String region) {
+        return year + "|" + (combination != null ? combination.trim().toUpperCase() : "") + "|" + regionCode(region);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : -1L;
+    }
+
+    /**
+     * Mô hình chuẩn từ số liệu các năm trước - chỉ dùng khi chưa có dữ liệu thực nghiệm
+     */
+    private ScoreDistribution prior(String combination, String regionCode) {
+        double mean = switch (combination) {
+            case "A00" -> 22.5;
+            case "A01" -> 23.0;
+            case "B00" -> 21.8;
+            case "C00" -> 20.5;
+            case "C01" -> 22.2;
+            case "C02" -> 21.5;
+            case "D01" -> 22.8;
+            case "D07" -> 21.2;
+            default -> 21.0;
+        };
+        double stdDev = 3.5;
+        long total = Math.round(priorTotal(combination, regionCode));
+
+        long[] atOrAbove = new long[MAX_BIN + 2];
+        atOrAbove[0] = total;
+        for (int bin = 1; bin <= MAX_BIN; bin++) {
+            double lowerEdge = (bin - 0.5) * BIN_WIDTH;
+            atOrAbove[bin] = Math.round(total * (1.0 - normalCdf((lowerEdge - mean) / stdDev)));
+        }
+        return new ScoreDistribution(atOrAbove, "prior");
+    }
+
+    private static double priorTotal(String combination, String regionCode) {
+        // Số thí sinh theo tổ hợp (toàn quốc, số liệu 2024)
+        double national = switch (combination) {
+            case "A00" -> 180000;
+            case "A01" -> 160000;
+            case "B00" -> 140000;
+            case "C00" -> 120000;
+            case "C01" -> 100000;
+            case "C02" -> 110000;
+            case "D01" -> 200000;
+            case "D07" -> 90000;
+            default -> 100000;
+        };
+        return switch (regionCode) {
+            case "MB" -> national * 0.40;
+            case "MN" -> national * 0.35;
+            default -> national;
+        };
+    }
+
+    // Xấp xỉ Abramowitz-Stegun 26.2.17, sai số < 7.5e-8
+    private static double normalCdf(double z) {
+        double t = 1.0 / (1.0 + 0.2316419 * Math.abs(z));
+        double poly = t * (0.319381530 + t * (-0.356563782 + t * (1.781477937 + t * (-1.821255978 + t * 1.330274429))));
+        double upper = Math.exp(-z * z / 2.0) / Math.sqrt(2.0 * Math.PI) * poly;
+        return z >= 0 ? 1.0 - upper : upper;
+    }
+
+    /**
+     * Phân bố bất biến: atOrAbove[i] = số thí sinh có điểm >= i * 0.05 (atOrAbove[MAX_BIN + 1] = 0)
+     */
+    public record ScoreDistribution(long[] atOrAbove, String source) {
+
+        public long total() {
+            return atOrAbove[0];
+        }
+
+        // Điểm cao nhất mà số thí sinh đạt cao hơn không vượt quá higherCount (binary search trên mảng giảm dần)
+        Double scoreAtHigherCount(long higherCount) {
+            int lo = 0;
+            int hi = MAX_BIN;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (atOrAbove[mid + 1] <= higherCount) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            return Math.round(lo * BIN_WIDTH * 100.0) / 100.0;
+        }
+    }
+
+    public record RankEstimate(long higher, long same, long total, double percentile, String source) {}
+
+    /**
+     * Gom dữ liệu của 1 (năm, tổ hợp, khu vực) rồi dựng mảng tích lũy
+     */
+    static class DistributionBuilder {
+        // Điểm neo: atOrAbove đã biết tại một số bin (-1 = chưa biết)
+        private final long[] rankingAnchors = newUnknown();
+        private final long[] observedAnchors = newUnknown();
+        private final long[] sampleCounts = new long[MAX_BIN + 1];
+        private long rankingTotal = -1;
+        private long observedTotal = -1;
+        private long sampleSize = 0;
+
+        private static long[] newUnknown() {
+            long[] anchors = new long[MAX_BIN + 2];
+            Arrays.fill(anchors, -1L);
+            return anchors;
+        }
+
+        void addRankingAnchor(double score, long higher, long same, long total) {
+            int bin = toBin(score);
+            rankingAnchors[bin + 1] = Math.max(rankingAnchors[bin + 1], higher);
+            if (same >= 0) {
+                rankingAnchors[bin] = Math.max(rankingAnchors[bin], higher + same);
+            }
+            rankingTotal = Math.max(rankingTotal, total);
+        }
+
+        void addObserved(double score, long count, long higher, long same, long total) {
+            int bin = toBin(score);
+            sampleCounts[bin] += Math.max(0, count);
+            sampleSize += Math.max(0, count);
+            if (higher >= 0) {
+                observedAnchors[bin + 1] = Math.max(observedAnchors[bin + 1], higher);
+                if (same >= 0) {
+                    observedAnchors[bin] = Math.max(observedAnchors[bin], higher + same);
+                }
+                observedTotal = Math.max(observedTotal, total);
+            }
+        }
+
+        ScoreDistribution build(int minSample, Supplier<ScoreDistribution> prior) {
+            // Thứ hạng upstream ưu tiên hơn bảng xếp hạng crawl (score_rankings)
+            if (hasAnchors(observedAnchors)) {
+                return new ScoreDistribution(interpolate(observedAnchors, observedTotal), "upstream_rankings");
+            }
+            if (hasAnchors(rankingAnchors)) {
+                return new ScoreDistribution(interpolate(rankingAnchors, rankingTotal), "score_rankings");
+            }
+            if (sampleSize >= minSample) {
+                return new ScoreDistribution(scaleSample(prior.get().total()), "sample");
+            }
+            return null; // Không đủ dữ liệu - dùng prior khi tra cứu
+        }
+
+        private static boolean hasAnchors(long[] anchors) {
+            for (int bin = 1; bin <= MAX_BIN; bin++) {
+                if (anchors[bin] >= 0) return true;
+            }
+            return false;
+        }
+
+        // Nội suy tuyến tính giữa các điểm neo, đảm bảo mảng không tăng
+        private static long[] interpolate(long[] anchors, long knownTotal) {
+            long[] atOrAbove = anchors.clone();
+            long maxAnchor = 0;
+            for (long value : atOrAbove) maxAnchor = Math.max(maxAnchor, value);
+            atOrAbove[0] = Math.max(Math.max(atOrAbove[0], knownTotal), maxAnchor);
+            atOrAbove[MAX_BIN + 1] = 0;
+
+            int previous = 0;
+            for (int bin = 1; bin <= MAX_BIN + 1; bin++) {
+                if (atOrAbove[bin] < 0) continue;
+                long from = atOrAbove[previous];
+                long to = atOrAbove[bin];
+                for (int gap = previous + 1; gap < bin; gap++) {
+                    atOrAbove[gap] = from + (to - from) * (gap - previous) / (bin - previous);
+                }
+                previous = bin;
+            }
+            for (int bin = 1; bin <= MAX_BIN + 1; bin++) {
+                atOrAbove[bin] = Math.min(atOrAbove[bin], atOrAbove[bin - 1]);
+            }
+            return atOrAbove;
+        }
+
+        // Hình dạng phân bố lấy từ mẫu, quy mô lấy từ tổng thí sinh ước lượng
+        private long[] scaleSample(long estimatedTotal) {
+            long[] atOrAbove = new long[MAX_BIN + 2];
+            long running = 0;
+            for (int bin = MAX_BIN; bin >= 0; bin--) {
+                running += sampleCounts[bin];
+                atOrAbove[bin] = Math.round((double) running / sampleSize * estimatedTotal);
+            }
+            return atOrAbove;
+        }
+    }
+}
@@ -48,7 +48,9 @@ public class ScoreRankingCrawlerService {
                         List<ScoreRanking> rankings = crawlRankingData(year, combination, region);
                         
                         // Save to database
-                        scoreRankingRepository.saveAll(rankings);
+                        if (!rankings.isEmpty()) {
+                            scoreRankingRepository.saveAll(rankings);
+                        }
                         totalCrawled += rankings.size();
                         
                         log.info("Crawled {} rankings for {} - {}", rankings.size(), combination, region);
@@ -99,8 +101,9 @@ public class ScoreRankingCrawlerService {
             
             rankings = parseRankingTable(doc, year, combination, region);
         } else {
-            // Generate synthetic data based on statistical models
-            rankings = generateSyntheticRankingData(year, combination, region);
+            // Không lưu dữ liệu sinh: ScoreDistributionService đã ước lượng thứ hạng trực tiếp,
+            // lưu lại sẽ biến kết quả ước lượng thành điểm neo cho chính nó
+            log.info("No ranking source found for {} - {} - {}", year, combination, region);
         }
         
         return rankings;
@@ -166,6 +169,7 @@ public class ScoreRankingCrawlerService {
                             ranking.setRankingPosition(rank);
                             ranking.setScoreFrequency(frequency);
                             ranking.setPercentile(percentile);
+                            ranking.setDataSource(ScoreDistributionService.RANKING_SOURCE_CRAWLED);
                             
                             rankings.add(ranking);
                         }
@@ -180,92 +184,6 @@ public class ScoreRankingCrawlerService {
         return rankings;
     }
     
-    // Generate synthetic ranking data based on statistical models
-    private List<ScoreRanking> generateSyntheticRankingData(Integer year, String combination, String region) {
-        List<ScoreRanking> rankings = new ArrayList<>();
-        
-        // Statistical parameters based on real exam data
-        double meanScore = getMeanScore(combination);
-        double stdDev = getStandardDeviation(combination);
-        int totalCandidates = getTotalCandidates(year, combination, region);
-        
-        // Generate rankings for score ranges
-        for (double score = 30.0; score >= 0.0; score -= 0.25) {
-            try {
-                ScoreRanking ranking = new ScoreRanking();
-                ranking.setExamYear(year);
-                ranking.setSubjectCombination(combination);
-                ranking.setRegion(region);
-                ranking.setTotalScore(score);
-                
-                // Calculate statistical position
-                double zScore = (score - meanScore) / stdDev;
-                double percentile = calculatePercentile(zScore);
-                int position = (int) ((1.0 - percentile / 100.0) * totalCandidates);
-                
-                ranking.setRankingPosition(Math.max(1, position));
-                ranking.setPercentile(percentile);
-                ranking.setTotalCandidates(totalCandidates);
-                
-                // Estimate frequency (students with this exact score)
-                int frequency = (int) (totalCandidates * 0.001); // Rough estimate
-                ranking.setScoreFrequency(frequency);
-                
-                rankings.add(ranking);
-                
-            } catch (Exception e) {
-                log.debug("Error generating synthetic data for score {}: {}", score, e.getMessage());
-            }
-        }
-        
-        log.info("Generated {} synthetic rankings for {} - {} - {}", rankings.size(), year, combination, region);
-        return rankings;
-    }
-    
-    // Statistical helper methods
-    private double getMeanScore(String combination) {
-        // Approximate mean scores based on historical data
-        switch (combination) {
-            case "A00": return 22.5;  // Math, Physics, Chemistry
-            case "A01": return 23.0;  // Math, Physics, English
-            case "B00": return 21.8;  // Math, Chemistry, Biology
-            case "C00": return 20.5;  // Literature, History, Geography
-            case "D01": return 22.2;  // Math, Literature, English
-            case "D07": return 21.5;  // Math, Chemistry, English
-            default: return 21.0;
-        }
-    }
-    
-    private double getStandardDeviation(String combination) {
-        // Typical standard deviation for university entrance exams
-        return 3.5;
-    }
-    
-    private int getTotalCandidates(Integer year, String combination, String region) {
-        // Estimate based on region and combination popularity
-        int baseNumber = switch (region) {
-            case "Cả nước" -> 1000000;
-            case "Miền Bắc" -> 400000;
-            case "Miền Nam" -> 350000;
-            default -> 250000;
-        };
-        
-        // Adjust for combination popularity
-        double factor = switch (combination) {
-            case "A00", "A01" -> 0.25;  // Popular combinations
-            case "B00", "D01" -> 0.20;
-            case "C00", "D07" -> 0.15;
-            default -> 0.10;
-        };
-        
-        return (int) (baseNumber * factor);
-    }
-    
-    private double calculatePercentile(double zScore) {
-        // Approximate normal distribution percentile
-        return Math.max(0, Math.min(100, 50 + 34.13 * zScore));
-    }
-    
     // Utility methods
     private Double parseScore(String text) {
         try {
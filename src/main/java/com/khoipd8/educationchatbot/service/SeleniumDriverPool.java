@@ -0,0 +1,231 @@
+package com.khoipd8.educationchatbot.service;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool Chrome headless đã khởi động sẵn cho SeleniumSBDService.
+ * Driver được tái sử dụng (kèm trang tra cứu đã load), kiểm tra sức khỏe khi lấy ra,
+ * và được thay mới sau N lần dùng hoặc khi gặp lỗi.
+ */
+@Service
+@Slf4j
+public class SeleniumDriverPool {
+
+    // Chặn ảnh, font, CSS để giảm thời gian load và RAM của Chrome
+    private static final List<String> BLOCKED_URL_PATTERNS = List.of(
+        "*.png", "*.jpg", "*.jpeg", "*.gif", "*.webp", "*.svg", "*.ico",
+        "*.woff", "*.woff2", "*.ttf", "*.otf", "*.eot",
+        "*.css"
+    );
+
+    @Value("${selenium.pool.size:2}")
+    private int poolSize;
+
+    @Value("${selenium.pool.max-uses:50}")
+    private int maxUsesPerDriver;
+
+    @Value("${selenium.pool.acquire-timeout-ms:30000}")
+    private long acquireTimeoutMs;
+
+    @Value("${selenium.pool.block-resources:true}")
+    private boolean blockResources;
+
+    private final ConcurrentLinkedQueue<PooledDriver> idleDrivers = new ConcurrentLinkedQueue<>();
+    private final Set<PooledDriver> allDrivers = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Semaphore permits;
+    private volatile boolean driverBinaryReady = false;
+    private volatile boolean shutdown = false;
+
+    private final AtomicLong driversCreated = new AtomicLong();
+    private final AtomicLong driversRecycled = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        permits = new Semaphore(poolSize, true);
+    }
+
+    /**
+     * Lấy 1 driver từ pool (tạo mới nếu chưa đủ pool size), chờ tối đa acquire-timeout-ms
+     */
+    public PooledDriver acquire() throws InterruptedException {
+        if (shutdown) {
+            throw new IllegalStateException("Selenium driver pool is shut down");
+        }
+        if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Hết Chrome driver trong pool sau " + acquireTimeoutMs + " ms");
+        }
+
+        try {
+            PooledDriver pooled;
+            while ((pooled = idleDrivers.poll()) != null) {
+                if (isHealthy(pooled)) {
+                    return pooled;
+                }
+                log.info("♻️ Chrome driver không còn hoạt động, thay mới");
+                discard(pooled);
+            }
+            return createDriver();
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Trả driver về pool. broken = true hoặc đã dùng quá max-uses thì đóng driver.
+     */
+    public void release(PooledDriver pooled, boolean broken) {
+        if (pooled == null) {
+            return;
+        }
+        try {
+            pooled.uses++;
+            if (broken || shutdown || pooled.uses >= maxUsesPerDriver) {
+                discard(pooled);
+            } else {
+                idleDrivers.offer(pooled);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pool_size", poolSize);
+        stats.put("idle_drivers", idleDrivers.size());
+        synchronized (allDrivers) {
+            stats.put("live_drivers", allDrivers.size());
+        }
+        stats.put("available_permits", permits.availablePermits());
+        stats.put("drivers_created", driversCreated.get());
+        stats.put("drivers_recycled", driversRecycled.get());
+        stats.put("max_uses_per_driver", maxUsesPerDriver);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        shutdown = true;
+        List<PooledDriver> drivers;
+        synchronized (allDrivers) {
+            drivers = new ArrayList<>(allDrivers);
+        }
+        drivers.forEach(this::discard);
+        idleDrivers.clear();
+        log.info("✅ Đã đóng {} Chrome driver trong pool", drivers.size());
+    }
+
+    // ====== HELPER METHODS ======
+
+    private PooledDriver createDriver() {
+        if (!driverBinaryReady) {
+            synchronized (this) {
+                if (!driverBinaryReady) {
+                    WebDriverManager.chromedriver().setup();
+                    driverBinaryReady = true;
+                }
+            }
+        }
+
+        ChromeDriver driver = new ChromeDriver(buildChromeOptions());
+        if (blockResources) {
+            try {
+                driver.executeCdpCommand("Network.enable", Map.of());
+                driver.executeCdpCommand("Network.setBlockedURLs", Map.of("urls", BLOCKED_URL_PATTERNS));
+            } catch (Exception e) {
+                log.warn("Không chặn được resource qua CDP: {}", e.getMessage());
+            }
+        }
+
+        PooledDriver pooled = new PooledDriver(driver);
+        synchronized (allDrivers) {
+            allDrivers.add(pooled);
+        }
+        driversCreated.incrementAndGet();
+        log.info("🚀 Khởi động Chrome driver mới cho pool ({} đã tạo)", driversCreated.get());
+        return pooled;
+    }
+
+    private ChromeOptions buildChromeOptions() {
+        ChromeOptions options = new ChromeOptions();
+
+        // Cấu hình ngôn ngữ tiếng Việt
+        options.addArguments("--lang=vi-VN");
+        options.addArguments("--disable-blink-features=AutomationControlled");
+        options.addArguments("--disable-web-security");
+        options.addArguments("--disable-features=VizDisplayCompositor");
+
+        // Cấu hình headless nhưng vẫn functional
+        options.addArguments("--headless=new");
+        options.addArguments("--window-size=1920,1080");
+        options.addArguments("--no-sandbox");
+        options.addArguments("--disable-dev-shm-usage");
+
+        // User agent chuẩn
+        options.addArguments("--user-agent=Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
+
+        // Preferences cho tiếng Việt
+        Map<String, Object> prefs = new HashMap<>();
+        prefs.put("intl.accept_languages", "vi-VN,vi,en-US,en");
+        prefs.put("profile.default_content_setting_values.notifications", 2);
+        if (blockResources) {
+            prefs.put("profile.managed_default_content_settings.images", 2);
+        }
+        options.setExperimentalOption("prefs", prefs);
+
+        // Tắt automation flags
+        options.setExperimentalOption("useAutomationExtension", false);
+        options.addArguments("--disable-extensions");
+
+        return options;
+    }
+
+    private boolean isHealthy(PooledDriver pooled) {
+        try {
+            Object result = ((JavascriptExecutor) pooled.driver).executeScript("return 1");
+            return result != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledDriver pooled) {
+        synchronized (allDrivers) {
+            allDrivers.remove(pooled);
+        }
+        driversRecycled.incrementAndGet();
+        try {
+            pooled.driver.quit();
+        } catch (Exception e) {
+            log.warn("Cảnh báo đóng driver: {}", e.getMessage());
+        }
+    }
+
+    public static class PooledDriver {
+        private final WebDriver driver;
+        private int uses;
+
+        PooledDriver(WebDriver driver) {
+            this.driver = driver;
+        }
+
+        public WebDriver getDriver() { return driver; }
+        public int getUses() { return uses; }
+    }
+}
@@ -9,8 +9,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
-import org.openqa.selenium.chrome.ChromeDriver;
-import org.openqa.selenium.chrome.ChromeOptions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.Select;
@@ -21,7 +19,6 @@ import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.Keys;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import io.github.bonigarcia.wdm.WebDriverManager;
 
 import java.time.Duration;
 import java.util.*;
@@ -36,27 +33,54 @@ public class SeleniumSBDService {
     @Autowired
     private CombinationScoreRepository combinationScoreRepository;
     
+    @Autowired
+    private SeleniumDriverPool seleniumDriverPool;
+    
+    @Autowired
+    private SBDNegativeCache negativeCache;
+
+    @Autowired
+    private StudentScoreReadModel studentScoreReadModel;
+
+    @Autowired
+    private ScoreDistributionService scoreDistributionService;
+
+    @Autowired
+    private SBDSingleFlight singleFlight;
+    
+    private static final String LOOKUP_URL = "https://diemthi.tuyensinh247.com/xep-hang-thi-thptqg.html";
+    
     /**
      * 🚀 MAIN CRAWLING METHOD - FIXED VERSION
      */
     public Map<String, Object> crawlWithSelenium(String sbd, String region) {
-        WebDriver driver = null;
+        // Request đồng thời cho cùng SBD dùng chung 1 lần mở Chrome
+        return singleFlight.execute("selenium", sbd, region, () -> doCrawlWithSelenium(sbd, region));
+    }
+    
+    private Map<String, Object> doCrawlWithSelenium(String sbd, String region) {
+        SeleniumDriverPool.PooledDriver pooled = null;
+        boolean driverBroken = false;
         Map<String, Object> result = new HashMap<>();
         
         try {
             log.info("🚀 Bắt đầu crawl SBD: {} với Selenium đã fix", sbd);
             
-            // 1. SETUP CHROME VỚI TIẾNG VIỆT
-            driver = setupVietnameseChrome();
+            // SBD vừa được xác nhận không tồn tại - không cần mở Chrome
+            if (negativeCache.isKnownMissing(sbd, region)) {
+                Map<String, Object> cached = createErrorResponse("not_found", "Không tìm thấy thông tin điểm thi cho SBD: " + sbd, sbd);
+                cached.put("cached", true);
+                return cached;
+            }
+            
+            // 1. LẤY CHROME ĐÃ KHỞI ĐỘNG SẴN TỪ POOL
+            pooled = seleniumDriverPool.acquire();
+            WebDriver driver = pooled.getDriver();
             WebDriverWait shortWait = new WebDriverWait(driver, Duration.ofSeconds(10));
             WebDriverWait longWait = new WebDriverWait(driver, Duration.ofSeconds(30));
             
-            // 2. MỞ TRANG VÀ ĐỢI LOAD HOÀN TOÀN
-            driver.get("https://diemthi.tuyensinh247.com/xep-hang-thi-thptqg.html");
-            log.info("✅ Đã mở trang: {}", driver.getTitle());
-            
-            // Đợi page load hoàn toàn và jQuery ready
-            waitForPageReady(driver, shortWait);
+            // 2. MỞ TRANG (HOẶC DÙNG LẠI TRANG ĐÃ LOAD CỦA DRIVER)
+            openLookupPage(pooled, shortWait);
             
             // 3. TÌM VÀ ĐIỀN SBD - MULTIPLE FALLBACK
             WebElement sbdInput = findSBDInputWithFallback(driver, shortWait);
@@ -115,55 +139,35 @@ public class SeleniumSBDService {
             
             return result;
             
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return createErrorResponse("selenium_error", "Bị gián đoạn khi chờ Chrome driver", sbd);
+            
         } catch (Exception e) {
             log.error("❌ Lỗi crawl SBD: {}", sbd, e);
+            driverBroken = true; // Driver gặp lỗi - thay mới thay vì trả về pool
             return createErrorResponse("selenium_error", "Lỗi Selenium: " + e.getMessage(), sbd);
             
         } finally {
-            if (driver != null) {
-                try {
-                    driver.quit();
-                    log.info("✅ Đã đóng Chrome driver");
-                } catch (Exception e) {
-                    log.warn("Cảnh báo đóng driver: {}", e.getMessage());
-                }
+            if (pooled != null) {
+                seleniumDriverPool.release(pooled, driverBroken);
             }
         }
     }
     
     /**
-     * 🔧 SETUP CHROME VỚI CẤU HÌNH TIẾNG VIỆT
+     * 🌐 MỞ TRANG TRA CỨU - luôn load lại trang (driver lấy từ pool vẫn dùng lại Chrome đã khởi động).
+     * Không dùng lại DOM của lần trước: waitForResults / extractScoresFromPageSource có thể đọc nhầm
+     * bảng điểm của SBD trước nếu còn sót lại.
      */
-    private WebDriver setupVietnameseChrome() {
-            WebDriverManager.chromedriver().setup();
-            ChromeOptions options = new ChromeOptions();
-            
-        // Cấu hình ngôn ngữ tiếng Việt
-            options.addArguments("--lang=vi-VN");
-        options.addArguments("--disable-blink-features=AutomationControlled");
-        options.addArguments("--disable-web-security");
-        options.addArguments("--disable-features=VizDisplayCompositor");
+    private void openLookupPage(SeleniumDriverPool.PooledDriver pooled, WebDriverWait wait) throws InterruptedException {
+        WebDriver driver = pooled.getDriver();
         
-        // Cấu hình headless nhưng vẫn functional
-        options.addArguments("--headless=new");
-            options.addArguments("--window-size=1920,1080");
-        options.addArguments("--no-sandbox");
-        options.addArguments("--disable-dev-shm-usage");
+        driver.get(LOOKUP_URL);
+        log.info("✅ Đã mở trang: {} (lần dùng driver thứ {})", driver.getTitle(), pooled.getUses() + 1);
         
-        // User agent chuẩn
-            options.addArguments("--user-agent=Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0.0.0 Safari/537.36");
-            
-        // Preferences cho tiếng Việt
-        Map<String, Object> prefs = new HashMap<>();
-        prefs.put("intl.accept_languages", "vi-VN,vi,en-US,en");
-        prefs.put("profile.default_content_setting_values.notifications", 2);
-        options.setExperimentalOption("prefs", prefs);
-        
-        // Tắt automation flags
-        options.setExperimentalOption("useAutomationExtension", false);
-        options.addArguments("--disable-extensions");
-        
-        return new ChromeDriver(options);
+        // Đợi page load hoàn toàn và jQuery ready
+        waitForPageReady(driver, wait);
     }
     
     /**
@@ -631,7 +635,11 @@ public class SeleniumSBDService {
     }
     
     private StudentScore createAndSaveStudentScore(Map<String, Double> scores, String sbd, String region) {
-        StudentScore studentScore = new StudentScore();
+        negativeCache.invalidate(sbd);
+        studentScoreReadModel.evict(sbd);
+        
+        // Cập nhật bản ghi cũ nếu có (sbd là unique) thay vì insert trùng
+        StudentScore studentScore = studentScoreRepository.findBySbd(sbd).orElseGet(StudentScore::new);
         studentScore.setSbd(sbd);
         studentScore.setExamYear(2025);
         studentScore.setRegion(region);
@@ -651,25 +659,26 @@ public class SeleniumSBDService {
     private List<CombinationScore> createAndSaveCombinationScores(WebDriver driver, StudentScore studentScore) {
         List<CombinationScore> combinationScores = new ArrayList<>();
         
-        // Determine eligible combinations từ điểm số
-            List<String> eligibleCombinations = determineEligibleCombinations(studentScore);
+        // Determine eligible combinations từ điểm số (1 lần cho mọi tổ hợp)
+            SubjectVector subjects = SubjectVector.of(studentScore);
+            List<String> eligibleCombinations = CombinationTable.eligibleCodes(subjects);
             
             for (String combCode : eligibleCombinations) {
                 try {
                     CombinationScore combScore = new CombinationScore();
                     combScore.setSbd(studentScore.getSbd());
                     combScore.setCombinationCode(combCode);
-                    combScore.setCombinationName(getCombinationName(combCode));
+                    combScore.setCombinationName(CombinationTable.nameOf(combCode));
                     combScore.setStudentScore(studentScore);
                     combScore.setRegion(studentScore.getRegion());
                     
                     // Calculate total score
-                    Double totalScore = calculateCombinationScore(studentScore, combCode);
+                    Double totalScore = CombinationTable.total(combCode, subjects);
                     combScore.setTotalScore(totalScore);
                     
                     if (totalScore != null) {
-                    // Estimate ranking data
-                            estimateRankingData(combScore, totalScore, combCode);
+                        // Estimate ranking data
+                        scoreDistributionService.applyEstimate(combScore, studentScore.getExamYear());
                         combinationScores.add(combScore);
                     }
                     
@@ -679,8 +688,10 @@ public class SeleniumSBDService {
             }
             
         if (!combinationScores.isEmpty()) {
+            combinationScoreRepository.deleteBySbd(studentScore.getSbd());
             combinationScoreRepository.saveAll(combinationScores);
         }
+        studentScoreReadModel.evict(studentScore.getSbd());
         
         return combinationScores;
     }
@@ -736,114 +747,4 @@ public class SeleniumSBDService {
         
         return result;
     }
-    
-    // ===== COMBINATION HELPER METHODS =====
-    
-    private List<String> determineEligibleCombinations(StudentScore score) {
-        List<String> combinations = new ArrayList<>();
-        
-        // A00: Toán, Lý, Hóa
-        if (hasScores(score.getScoreMath(), score.getScorePhysics(), score.getScoreChemistry())) {
-            combinations.add("A00");
-        }
-        
-        // A01: Toán, Lý, Anh
-        if (hasScores(score.getScoreMath(), score.getScorePhysics(), score.getScoreEnglish())) {
-            combinations.add("A01");
-        }
-        
-        // B00: Toán, Hóa, Sinh
-        if (hasScores(score.getScoreMath(), score.getScoreChemistry(), score.getScoreBiology())) {
-            combinations.add("B00");
-        }
-        
-        // C00: Văn, Sử, Địa
-        if (hasScores(score.getScoreLiterature(), score.getScoreHistory(), score.getScoreGeography())) {
-            combinations.add("C00");
-        }
-        
-        // D01: Văn, Toán, Anh
-        if (hasScores(score.getScoreLiterature(), score.getScoreMath(), score.getScoreEnglish())) {
-            combinations.add("D01");
-        }
-        
-        return combinations;
-    }
-    
-    private boolean hasScores(Double... scores) {
-        return Arrays.stream(scores).allMatch(Objects::nonNull);
-    }
-    
-    private String getCombinationName(String combinationCode) {
-        switch (combinationCode) {
-            case "A00": return "Toán, Vật lí, Hóa học";
-            case "A01": return "Toán, Vật lí, Tiếng Anh";
-            case "B00": return "Toán, Hóa học, Sinh học";
-            case "C00": return "Ngữ văn, Lịch sử, Địa lí";
-            case "D01": return "Ngữ văn, Toán, Tiếng Anh";
-            default: return combinationCode;
-        }
-    }
-    
-    private Double calculateCombinationScore(StudentScore score, String combCode) {
-        switch (combCode) {
-            case "A00": return safeAdd(score.getScoreMath(), score.getScorePhysics(), score.getScoreChemistry());
-            case "A01": return safeAdd(score.getScoreMath(), score.getScorePhysics(), score.getScoreEnglish());
-            case "B00": return safeAdd(score.getScoreMath(), score.getScoreChemistry(), score.getScoreBiology());
-            case "C00": return safeAdd(score.getScoreLiterature(), score.getScoreHistory(), score.getScoreGeography());
-            case "D01": return safeAdd(score.getScoreLiterature(), score.getScoreMath(), score.getScoreEnglish());
-            default: return null;
-        }
-    }
-    
-    private Double safeAdd(Double... scores) {
-        if (Arrays.stream(scores).anyMatch(Objects::isNull)) {
-        return null;
-        }
-        return Arrays.stream(scores).mapToDouble(Double::doubleValue).sum();
-    }
-    
-    private void estimateRankingData(CombinationScore combScore, Double totalScore, String combCode) {
-        try {
-            // Statistical estimation based on Vietnamese exam data
-            double meanScore = getMeanScore(combCode);
-            double stdDev = 3.5;
-            int totalCandidates = getTotalCandidatesForCombination(combCode);
-            
-            double zScore = (totalScore - meanScore) / stdDev;
-            double percentile = Math.max(0.1, Math.min(99.9, 50 + 34.1 * zScore));
-            
-            int higherStudents = (int) ((100 - percentile) / 100.0 * totalCandidates);
-            
-            combScore.setStudentsWithHigherScore(Math.max(0, higherStudents));
-            combScore.setTotalStudentsInCombination(totalCandidates);
-            combScore.setStudentsWithSameScore((int) (totalCandidates * 0.002));
-            combScore.setEquivalentScore2024(totalScore + (Math.random() - 0.5) * 1.0);
-            
-        } catch (Exception e) {
-            log.debug("Lỗi estimate ranking: {}", e.getMessage());
-        }
-    }
-    
-    private double getMeanScore(String combination) {
-        switch (combination) {
-            case "A00": return 22.5;
-            case "A01": return 23.0;
-            case "B00": return 21.8;
-            case "C00": return 20.5;
-            case "D01": return 22.8;
-            default: return 21.0;
-        }
-    }
-    
-    private int getTotalCandidatesForCombination(String combination) {
-        switch (combination) {
-            case "A00": return 180000;
-            case "A01": return 160000;
-            case "B00": return 140000;
-            case "C00": return 120000;
-            case "D01": return 200000;
-            default: return 100000;
-        }
-    }
-}       
\ No newline at end of file
+}
@@ -0,0 +1,155 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.entity.StudentScore;
+import com.khoipd8.educationchatbot.repository.StudentScoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Read model cho điểm thi: học sinh + toàn bộ tổ hợp được load bằng 1 query join,
+ * cache theo SBD (LRU + TTL). Mọi chỗ ghi/xóa điểm theo SBD phải gọi evict(sbd).
+ * Cache giữ bản sao riêng, mỗi lần đọc trả về bản sao mới: người gọi sửa entity không ảnh hưởng cache.
+ */
+@Service
+@Slf4j
+public class StudentScoreReadModel {
+
+    @Autowired
+    private StudentScoreRepository studentScoreRepository;
+
+    @Value("${sbd.read-cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${sbd.read-cache.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private final Map<String, CachedAggregate> cache = Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedAggregate> eldest) {
+                return size() > maxEntries;
+            }
+        });
+
+    // Thế hệ evict theo nhóm SBD (băm): load chỉ được put nếu không có evict nào cho nhóm đó từ lúc bắt đầu load
+    private static final int GENERATION_STRIPES = 64;
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stalePutsSkipped = new AtomicLong();
+
+    /**
+     * Lấy học sinh kèm tổ hợp theo SBD: cache hit không tốn query, miss tốn đúng 1 query
+     */
+    public Optional<StudentScoreAggregate> findBySbd(String sbd) {
+        if (sbd == null) {
+            return Optional.empty();
+        }
+        String key = sbd.trim();
+        long now = System.currentTimeMillis();
+
+        CachedAggregate cached = cache.get(key);
+        if (cached != null && cached.expiresAt() > now) {
+            hits.incrementAndGet();
+            return Optional.of(copyOf(cached.aggregate()));
+        }
+        misses.incrementAndGet();
+
+        int stripe = stripe(key);
+        long generation = generations.get(stripe);
+        Optional<StudentScoreAggregate> loaded = load(key);
+        loaded.ifPresent(aggregate -> {
+            CachedAggregate entry = new CachedAggregate(copyOf(aggregate), now + ttlMinutes * 60_000L);
+            // Cùng lock với evict: evict xảy ra trong lúc load thì dữ liệu vừa đọc có thể đã cũ - không cache
+            synchronized (cache) {
+                if (generations.get(stripe) == generation) {
+                    cache.put(key, entry);
+                } else {
+                    stalePutsSkipped.incrementAndGet();
+                }
+            }
+        });
+        return loaded;
+    }
+
+    public void evict(String sbd) {
+        if (sbd != null) {
+            String key = sbd.trim();
+            synchronized (cache) {
+                generations.incrementAndGet(stripe(key));
+                cache.remove(key);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", cache.size());
+        stats.put("max_entries", maxEntries);
+        stats.put("ttl_minutes", ttlMinutes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("stale_puts_skipped", stalePutsSkipped.get());
+        return stats;
+    }
+
+    private static int stripe(String key) {
+        return (key.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+    }
+
+    // Bản sao tách rời của học sinh + tổ hợp (tổ hợp trỏ về bản sao học sinh)
+    private static StudentScoreAggregate copyOf(StudentScoreAggregate source) {
+        StudentScore student = new StudentScore();
+        BeanUtils.copyProperties(source.student(), student);
+        List<CombinationScore> combinations = new ArrayList<>(source.combinations().size());
+        for (CombinationScore original : source.combinations()) {
+            CombinationScore copy = new CombinationScore();
+            BeanUtils.copyProperties(original, copy, "studentScore");
+            copy.setStudentScore(student);
+            combinations.add(copy);
+        }
+        return new StudentScoreAggregate(student, Collections.unmodifiableList(combinations));
+    }
+
+    private Optional<StudentScoreAggregate> load(String sbd) {
+        List<Object[]> rows = studentScoreRepository.findWithCombinationsBySbd(sbd);
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+
+        StudentScore student = (StudentScore) rows.get(0)[0];
+        List<CombinationScore> combinations = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                combinations.add((CombinationScore) row[1]);
+            }
+        }
+        return Optional.of(new StudentScoreAggregate(student, Collections.unmodifiableList(combinations)));
+    }
+
+    /**
+     * Học sinh + tổ hợp đã load sẵn
+     */
+    public record StudentScoreAggregate(StudentScore student, List<CombinationScore> combinations) {
+
+        // Có ít nhất điểm môn cơ bản và dữ liệu tổ hợp
+        public boolean isComplete() {
+            boolean hasBasicScores = student.getScoreMath() != null ||
+                                     student.getScoreLiterature() != null ||
+                                     student.getScorePhysics() != null ||
+                                     student.getScoreChemistry() != null;
+            return hasBasicScores && !combinations.isEmpty();
+        }
+    }
+
+    private record CachedAggregate(StudentScoreAggregate aggregate, long expiresAt) {}
+}
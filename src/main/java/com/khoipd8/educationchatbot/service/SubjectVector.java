@@ -0,0 +1,71 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.StudentScore;
+
+/**
+ * Điểm các môn của 1 thí sinh dạng mảng float + bitmask môn có điểm.
+ * Có thể tái sử dụng (load lại) khi duyệt hàng loạt để không cấp phát theo từng thí sinh.
+ */
+public final class SubjectVector {
+
+    public static final int MATH = 0;
+    public static final int LITERATURE = 1;
+    public static final int ENGLISH = 2;
+    public static final int PHYSICS = 3;
+    public static final int CHEMISTRY = 4;
+    public static final int BIOLOGY = 5;
+    public static final int HISTORY = 6;
+    public static final int GEOGRAPHY = 7;
+    public static final int CIVIC_EDUCATION = 8;
+    public static final int SUBJECT_COUNT = 9;
+
+    static final String[] SUBJECT_NAMES = {
+        "Toán", "Ngữ văn", "Tiếng Anh", "Vật lí", "Hóa học", "Sinh học", "Lịch sử", "Địa lí", "GDCD"
+    };
+
+    private final float[] scores = new float[SUBJECT_COUNT];
+    private int presentMask;
+
+    public static SubjectVector of(StudentScore studentScore) {
+        return new SubjectVector().load(studentScore);
+    }
+
+    /**
+     * Nạp lại điểm từ StudentScore (ghi đè dữ liệu cũ), trả về chính vector này
+     */
+    public SubjectVector load(StudentScore studentScore) {
+        presentMask = 0;
+        set(MATH, studentScore.getScoreMath());
+        set(LITERATURE, studentScore.getScoreLiterature());
+        set(ENGLISH, studentScore.getScoreEnglish());
+        set(PHYSICS, studentScore.getScorePhysics());
+        set(CHEMISTRY, studentScore.getScoreChemistry());
+        set(BIOLOGY, studentScore.getScoreBiology());
+        set(HISTORY, studentScore.getScoreHistory());
+        set(GEOGRAPHY, studentScore.getScoreGeography());
+        set(CIVIC_EDUCATION, studentScore.getScoreCivicEducation());
+        return this;
+    }
+
+    public void set(int subject, Double score) {
+        if (score != null) {
+            scores[subject] = score.floatValue();
+            presentMask |= 1 << subject;
+        } else {
+            scores[subject] = 0f;
+            presentMask &= ~(1 << subject);
+        }
+    }
+
+    public boolean has(int subject) {
+        return (presentMask & (1 << subject)) != 0;
+    }
+
+    public float get(int subject) {
+        return scores[subject];
+    }
+
+    public int presentMask() {
+        return presentMask;
+    }
+}
@@ -0,0 +1,146 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Client dùng chung cho API thpt-get-block của tuyensinh247.
+ * Một HttpClient duy nhất (HTTP/2, connection pool keep-alive) và ObjectReader/Writer
+ * dùng chung thay vì tạo mới cho mỗi lần tra cứu.
+ */
+@Service
+@Slf4j
+public class ThptScoreApiClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader RESPONSE_READER = MAPPER.readerFor(new TypeReference<Map<String, Object>>() {});
+    private static final ObjectWriter PAYLOAD_WRITER = MAPPER.writerFor(new TypeReference<Map<String, String>>() {});
+
+    @Value("${sbd.api.url:https://diemthi.tuyensinh247.com/api/user/thpt-get-block}")
+    private String apiUrl;
+
+    @Value("${sbd.api.connect-timeout-ms:3000}")
+    private long connectTimeoutMs;
+
+    @Value("${sbd.api.request-timeout-ms:8000}")
+    private long requestTimeoutMs;
+
+    // Giới hạn cho traffic nền (bulk lookup, sweeper) để không dồn dập upstream
+    @Value("${sbd.api.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${sbd.api.requests-per-second:20}")
+    private double requestsPerSecond;
+
+    private Semaphore concurrencyLimit;
+    private TokenBucketRateLimiter rateLimiter;
+
+    private HttpClient httpClient;
+    private URI endpoint;
+    private Duration requestTimeout;
+
+    @PostConstruct
+    void init() {
+        // HttpClient tự giữ connection pool và multiplex các request trên HTTP/2
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        endpoint = URI.create(apiUrl);
+        requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        concurrencyLimit = new Semaphore(maxConcurrency);
+        rateLimiter = new TokenBucketRateLimiter(requestsPerSecond, maxConcurrency);
+
+        log.info("THPT score API client ready: {} (connect {} ms, request {} ms)",
+                apiUrl, connectTimeoutMs, requestTimeoutMs);
+    }
+
+    /**
+     * Gọi thpt-get-block cho 1 SBD, trả về JSON response dạng Map.
+     * regionCode: "CN" (Toàn quốc), "MB" (Miền Bắc), "MN" (Miền Nam)
+     */
+    public Map<String, Object> fetchBlock(String sbd, String regionCode) throws IOException, InterruptedException {
+        Map<String, String> payload = new LinkedHashMap<>();
+        payload.put("region", regionCode);
+        payload.put("userNumber", sbd);
+
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(requestTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(PAYLOAD_WRITER.writeValueAsBytes(payload)))
+                .build();
+
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() == 404) {
+            // API trả 404 kèm JSON {"success": false, ...} cho SBD không tồn tại - vẫn là not found
+            Map<String, Object> notFound = readJsonOrNull(response.body());
+            if (isNotFound(notFound)) {
+                return notFound;
+            }
+        }
+        if (response.statusCode() >= 400) {
+            throw new IOException("thpt-get-block returned HTTP " + response.statusCode() + " for SBD " + sbd);
+        }
+
+        return RESPONSE_READER.readValue(response.body());
+    }
+
+    /**
+     * Như fetchBlock nhưng đi qua concurrency cap + rate limiter dùng chung của upstream.
+     * Dùng cho các luồng gọi hàng loạt.
+     */
+    public Map<String, Object> fetchBlockThrottled(String sbd, String regionCode) throws IOException, InterruptedException {
+        concurrencyLimit.acquire();
+        try {
+            rateLimiter.acquire();
+            return fetchBlock(sbd, regionCode);
+        } finally {
+            concurrencyLimit.release();
+        }
+    }
+
+    // Body không phải JSON (trang lỗi HTML của proxy/CDN...) -> null
+    private static Map<String, Object> readJsonOrNull(byte[] body) {
+        try {
+            return body != null && body.length > 0 ? RESPONSE_READER.readValue(body) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * API xác nhận không có thí sinh: success = false rõ ràng (khác với lỗi HTTP, timeout, phản hồi lạ)
+     */
+    public static boolean isNotFound(Map<String, Object> json) {
+        return json != null && Boolean.FALSE.equals(json.get("success"));
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Map tên khu vực hiển thị sang mã khu vực của API
+     */
+    public static String toRegionCode(String region) {
+        return (region == null || region.toLowerCase().contains("toàn")) ? "CN" : region;
+    }
+}
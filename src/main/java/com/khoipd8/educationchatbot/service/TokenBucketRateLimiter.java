@@ -0,0 +1,58 @@
+package com.khoipd8.educationchatbot.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket đơn giản: tối đa permitsPerSecond request/giây, cho phép burst tới capacity.
+ * acquire() đặt chỗ trước rồi ngủ ngoài lock, nên các thread chờ không chặn nhau.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerSecond;
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucketRateLimiter(double permitsPerSecond, double capacity) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public synchronized boolean tryAcquire() {
+        refill(System.nanoTime());
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    private synchronized long reserve() {
+        refill(System.nanoTime());
+        tokens -= 1;
+        // tokens âm = số permit đã đặt trước, phải chờ tương ứng
+        return tokens >= 0 ? 0 : (long) (-tokens / permitsPerSecond * 1_000_000_000L);
+    }
+
+    private void refill(long nowNanos) {
+        double elapsedSeconds = (nowNanos - lastRefillNanos) / 1_000_000_000.0;
+        tokens = Math.min(capacity, tokens + elapsedSeconds * permitsPerSecond);
+        lastRefillNanos = nowNanos;
+    }
+}
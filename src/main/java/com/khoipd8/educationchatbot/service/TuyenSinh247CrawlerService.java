@@ -3,20 +3,33 @@ package com.khoipd8.educationchatbot.service;
 import com.khoipd8.educationchatbot.dto.UniversityInfo;
 import com.khoipd8.educationchatbot.entity.Program;
 import com.khoipd8.educationchatbot.entity.University;
+import com.khoipd8.educationchatbot.repository.ProgramBatchRepository;
 import com.khoipd8.educationchatbot.repository.UniversityRepository;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -26,18 +39,44 @@ import java.util.stream.Collectors;
 @Slf4j
 public class TuyenSinh247CrawlerService {
     
-    private static final String BASE_URL = "https://diemthi.tuyensinh247.com";
     private static final int TIMEOUT_MS = 15000;
-    private static final int DELAY_MS = 1000;
+    
+    // Trỏ sang stub (loadtest/) khi chạy thử tải
+    @Value("${crawler.base-url:https://diemthi.tuyensinh247.com}")
+    private String baseUrl;
     
     @Autowired
     private UniversityRepository universityRepository;
     
-    // 1. Discover universities (unchanged)
+    @Autowired
+    private ProgramBatchRepository programBatchRepository;
+    
+    // CrawlArchiveService phụ thuộc ngược lại service này (reparse) nên inject lazy
+    @Autowired
+    @Lazy
+    private CrawlArchiveService archiveService;
+    
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+    
+    @Value("${crawler.discovery.ttl-minutes:60}")
+    private long discoveryTtlMinutes;
+    
+    @Value("${crawler.discovery.miss-refresh-interval-ms:60000}")
+    private long discoveryMissRefreshMs;
+    
+    // Discovery cache: mã trường -> UniversityInfo
+    private volatile DiscoveryIndex discoveryIndex;
+    private final AtomicBoolean discoveryRefreshing = new AtomicBoolean(false);
+    private final AtomicLong discoveryBackgroundRefreshes = new AtomicLong();
+    private final AtomicLong discoveryMissRefreshes = new AtomicLong();
+    
+    // 1. Discover universities (luôn fetch trang index, đồng thời làm mới discovery cache)
     public List<UniversityInfo> discoverUniversities() throws IOException {
         log.info("Discovering universities from main page...");
         
-        String mainPageUrl = BASE_URL + "/diem-chuan.html";
+        String mainPageUrl = baseUrl + "/diem-chuan.html";
         Document doc = Jsoup.connect(mainPageUrl)
                 .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
                 .timeout(TIMEOUT_MS)
@@ -56,7 +95,7 @@ public class TuyenSinh247CrawlerService {
                     UniversityInfo info = new UniversityInfo();
                     info.setName(cleanUniversityName(text));
                     info.setCode(code);
-                    info.setUrl(href.startsWith("http") ? href : BASE_URL + href);
+                    info.setUrl(href.startsWith("http") ? href : baseUrl + href);
                     universities.add(info);
                 }
             }
@@ -71,18 +110,150 @@ public class TuyenSinh247CrawlerService {
         List<UniversityInfo> result = new ArrayList<>(uniqueUniversities.values());
         log.info("Discovered {} unique universities", result.size());
         
+        // Mọi lần fetch trang index đều làm mới discovery cache
+        discoveryIndex = new DiscoveryIndex(Map.copyOf(uniqueUniversities), List.copyOf(result), System.currentTimeMillis());
+        
         return result;
     }
     
+    /**
+     * Danh sách trường từ discovery cache. Cache quá TTL vẫn được trả về ngay và làm mới ở nền.
+     */
+    public List<UniversityInfo> getDiscoveredUniversities() throws IOException {
+        return currentDiscoveryIndex().universities();
+    }
+    
+    /**
+     * Tra URL trường theo mã trong O(1). Mã chưa có thì fetch lại index (tối đa 1 lần / miss-refresh-interval).
+     */
+    public UniversityInfo resolveUniversity(String code) throws IOException {
+        String upperCode = code.toUpperCase();
+        DiscoveryIndex index = currentDiscoveryIndex();
+        UniversityInfo info = index.byCode().get(upperCode);
+        if (info == null && System.currentTimeMillis() - index.loadedAt() > discoveryMissRefreshMs) {
+            discoveryMissRefreshes.incrementAndGet();
+            info = refreshDiscoveryIndex().byCode().get(upperCode);
+        }
+        if (info == null) {
+            throw new RuntimeException("University with code " + code + " not found");
+        }
+        return info;
+    }
+    
+    public Map<String, Object> getDiscoveryCacheStats() {
+        DiscoveryIndex index = discoveryIndex;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("loaded", index != null);
+        stats.put("universities", index != null ? index.universities().size() : 0);
+        stats.put("age_ms", index != null ? System.currentTimeMillis() - index.loadedAt() : null);
+        stats.put("ttl_minutes", discoveryTtlMinutes);
+        stats.put("background_refreshes", discoveryBackgroundRefreshes.get());
+        stats.put("miss_refreshes", discoveryMissRefreshes.get());
+        return stats;
+    }
+    
+    private DiscoveryIndex currentDiscoveryIndex() throws IOException {
+        DiscoveryIndex index = discoveryIndex;
+        if (index == null) {
+            return refreshDiscoveryIndex();
+        }
+        if (System.currentTimeMillis() - index.loadedAt() > discoveryTtlMinutes * 60_000L
+                && discoveryRefreshing.compareAndSet(false, true)) {
+            try {
+                taskExecutor.execute(() -> {
+                    try {
+                        discoverUniversities();
+                    } catch (Exception e) {
+                        log.warn("Background discovery refresh failed, keeping stale index: {}", e.getMessage());
+                    } finally {
+                        discoveryRefreshing.set(false);
+                    }
+                });
+                discoveryBackgroundRefreshes.incrementAndGet();
+            } catch (RejectedExecutionException e) {
+                // Pool đầy: mở cờ để request sau thử lại, lần này vẫn trả index cũ
+                discoveryRefreshing.set(false);
+                log.warn("Background discovery refresh rejected, keeping stale index: {}", e.getMessage());
+            }
+        }
+        return index;
+    }
+    
+    // Tải đồng bộ; các thread cùng chờ lần tải đầu tiên thay vì cùng fetch trang index
+    private synchronized DiscoveryIndex refreshDiscoveryIndex() throws IOException {
+        DiscoveryIndex index = discoveryIndex;
+        if (index != null && System.currentTimeMillis() - index.loadedAt() < 1000) {
+            return index;
+        }
+        discoverUniversities();
+        return discoveryIndex;
+    }
+    
     // 2. Fixed crawl university details
     public University crawlUniversityDetails(UniversityInfo info) throws IOException {
+        FetchedPage page = fetchUniversityPage(info, null, null);
+        // Crawl lẻ (/crawl-single) cũng lưu vào archive, gom theo ngày
+        archiveService.append("single-" + LocalDate.now(), info, page);
+        University university = parseUniversityDetails(info, page.document());
+        applyPageMetadata(university, page);
+        return university;
+    }
+    
+    /**
+     * Fetch trang điểm chuẩn; có etag/lastModified thì gửi conditional GET (304 = không đổi, không có body)
+     */
+    public FetchedPage fetchUniversityPage(UniversityInfo info, String etag, String lastModified) throws IOException {
         log.info("Crawling university: {} ({})", info.getName(), info.getCode());
         
-        Document doc = Jsoup.connect(info.getUrl())
+        Connection connection = Jsoup.connect(info.getUrl())
                 .userAgent("Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
                 .timeout(TIMEOUT_MS)
-                .get();
+                .ignoreHttpErrors(true);
+        if (etag != null) {
+            connection.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            connection.header("If-Modified-Since", lastModified);
+        }
+        
+        Connection.Response response = connection.execute();
+        int status = response.statusCode();
+        if (status == 304) {
+            return new FetchedPage(status, null, etag, lastModified, null, null, null);
+        }
+        if (status >= 400) {
+            throw new HttpStatusException("HTTP error fetching URL", status, info.getUrl());
+        }
         
+        // Giữ bytes gốc để CrawlArchiveService lưu lại; parse từ chính bytes đó
+        byte[] rawBody = response.bodyAsBytes();
+        Document doc = Jsoup.parse(new ByteArrayInputStream(rawBody), response.charset(), info.getUrl());
+        return new FetchedPage(status, doc, response.header("ETag"), response.header("Last-Modified"), contentHash(doc),
+                rawBody, response.charset());
+    }
+    
+    /**
+     * SHA-256 của text trang sau khi bỏ script/style/quảng cáo và chuẩn hóa khoảng trắng
+     */
+    public String contentHash(Document doc) {
+        Document normalized = doc.clone();
+        normalized.select("script, style, noscript, iframe, ins, svg").remove();
+        String text = normalized.text().replaceAll("\\s+", " ").trim();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private void applyPageMetadata(University university, FetchedPage page) {
+        university.setPageEtag(page.etag());
+        university.setPageLastModified(page.lastModified());
+        university.setPageContentHash(page.contentHash());
+    }
+    
+    public University parseUniversityDetails(UniversityInfo info, Document doc) {
         University university = new University();
         university.setName(info.getName());
         university.setCode(info.getCode());
@@ -103,8 +274,8 @@ public class TuyenSinh247CrawlerService {
         return university;
     }
     
-    // 3. Fixed program extraction - Parse HTML table correctly
-    private List<Program> crawlProgramsFixed(Document doc, University university) {
+    // 3. Fixed program extraction - Parse HTML table correctly (package-private: benchmarks/ gọi trực tiếp)
+    List<Program> crawlProgramsFixed(Document doc, University university) {
         Map<String, Program> programMap = new HashMap<>();
         
         // Strategy: Look for tables with specific structure
@@ -407,7 +578,7 @@ public class TuyenSinh247CrawlerService {
     }
     
     private String createProgramKey(String name, String note, String method) {
-        return name + "|" + (note != null ? note : "") + "|" + (method != null ? method : "");
+        return ProgramBatchRepository.programKey(name, note, method);
     }
     
     private boolean isHeaderRow(String text) {
@@ -478,123 +649,73 @@ public class TuyenSinh247CrawlerService {
         return null;
     }
     
-    // Async methods and update logic (unchanged)
-    @Async
-    public CompletableFuture<Map<String, Object>> crawlAllUniversities() {
-        Map<String, Object> result = new HashMap<>();
-        
-        try {
-            log.info("Starting full university crawl with fixed parser...");
-            
-            List<UniversityInfo> universityInfos = discoverUniversities();
-            log.info("Discovered {} universities to crawl", universityInfos.size());
-            
-            AtomicInteger processed = new AtomicInteger(0);
-            AtomicInteger errors = new AtomicInteger(0);
-            AtomicInteger updated = new AtomicInteger(0);
-            AtomicInteger created = new AtomicInteger(0);
-            
-            for (UniversityInfo info : universityInfos) {
-                try {
-                    University university = crawlUniversityDetails(info);
-                    
-                    Optional<University> existing = universityRepository.findByCode(university.getCode());
-                    if (existing.isPresent()) {
-                        updateExistingUniversity(existing.get(), university);
-                        updated.incrementAndGet();
-                    } else {
-                        universityRepository.save(university);
-                        created.incrementAndGet();
-                    }
-                    
-                    processed.incrementAndGet();
-                    
-                    if (processed.get() % 10 == 0) {
-                        log.info("Progress: {}/{} universities processed", processed.get(), universityInfos.size());
-                    }
-                    
-                    Thread.sleep(DELAY_MS + (long)(Math.random() * 1000));
-                    
-                } catch (Exception e) {
-                    errors.incrementAndGet();
-                    log.error("Error crawling university {}: {}", info.getName(), e.getMessage());
-                    
-                    try {
-                        Thread.sleep(2000);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-            }
-            
-            result.put("status", "completed");
-            result.put("total_discovered", universityInfos.size());
-            result.put("processed", processed.get());
-            result.put("created", created.get());
-            result.put("updated", updated.get());
-            result.put("errors", errors.get());
-            
-            log.info("Fixed crawl completed. Processed: {}, Created: {}, Updated: {}, Errors: {}", 
-                    processed.get(), created.get(), updated.get(), errors.get());
-            
-        } catch (Exception e) {
-            log.error("Fatal error in crawl process", e);
-            result.put("status", "failed");
-            result.put("error", e.getMessage());
+    // Crawl-all / crawl-batch chạy qua CrawlJobService; các hàm dưới là bước fetch + xử lý từng trang
+    
+    /**
+     * Validator + thời điểm cập nhật của mọi trường, theo mã trường (1 query projection)
+     */
+    public Map<String, CrawlMetadata> loadCrawlMetadata() {
+        Map<String, CrawlMetadata> metadataByCode = new HashMap<>();
+        for (Object[] row : universityRepository.findCrawlMetadata()) {
+            metadataByCode.put((String) row[0], new CrawlMetadata(
+                    (LocalDateTime) row[1], (String) row[2], (String) row[3], (String) row[4]));
         }
-        
-        return CompletableFuture.completedFuture(result);
+        return metadataByCode;
     }
     
-    private void updateExistingUniversity(University existing, University newData) {
-        existing.setName(newData.getName());
-        existing.setFullName(newData.getFullName());
-            existing.setLocation(newData.getLocation());
-        
-        Map<String, Program> existingProgramsMap = new HashMap<>();
-        for (Program p : existing.getPrograms()) {
-            String key = createProgramKey(p.getName(), p.getNote(), p.getAdmissionMethod());
-            existingProgramsMap.put(key, p);
+    /**
+     * Trang không đổi (304 hoặc cùng content hash) thì không parse và không ghi programs
+     */
+    public String processFetchedPage(UniversityInfo info, FetchedPage page, CrawlMetadata known) {
+        if (page.notModified()) {
+            return "unchanged";
         }
-        
-        existing.getPrograms().clear();
-        
-        for (Program newProgram : newData.getPrograms()) {
-            String key = createProgramKey(newProgram.getName(), newProgram.getNote(), newProgram.getAdmissionMethod());
-            Program existingProgram = existingProgramsMap.get(key);
-            
-            if (existingProgram != null) {
-                if (newProgram.getBenchmarkScore2024() != null) {
-                    existingProgram.setBenchmarkScore2024(newProgram.getBenchmarkScore2024());
-                }
-                if (newProgram.getBenchmarkScore2023() != null) {
-                    existingProgram.setBenchmarkScore2023(newProgram.getBenchmarkScore2023());
-                }
-                if (newProgram.getBenchmarkScore2022() != null) {
-                    existingProgram.setBenchmarkScore2022(newProgram.getBenchmarkScore2022());
-                }
-                existing.getPrograms().add(existingProgram);
-            } else {
-                newProgram.setUniversity(existing);
-                existing.getPrograms().add(newProgram);
+        if (page.contentHash() != null && page.contentHash().equals(known.contentHash())) {
+            if (!Objects.equals(page.etag(), known.etag()) || !Objects.equals(page.lastModified(), known.lastModified())) {
+                universityRepository.updatePageValidators(info.getCode(), page.etag(), page.lastModified());
             }
+            return "unchanged";
         }
         
-        universityRepository.save(existing);
+        University university = parseUniversityDetails(info, page.document());
+        applyPageMetadata(university, page);
+        return persistUniversity(university);
+    }
+    
+    private String persistUniversity(University university) {
+        return saveCrawledUniversity(university).action();
+    }
+    
+    /**
+     * Ghi trường vừa crawl: diff chương trình theo createProgramKey, chỉ ghi phần thay đổi (JDBC batch)
+     */
+    public ProgramBatchRepository.SyncResult saveCrawledUniversity(University university) {
+        ProgramBatchRepository.SyncResult result = programBatchRepository.upsertUniversity(university);
+        log.debug("Synced {}: {} (+{} ~{} -{} ={})", university.getCode(), result.action(),
+                result.inserted(), result.updated(), result.deleted(), result.unchanged());
+        return result;
     }
     
     public University crawlSingleUniversity(String code) throws IOException {
-        List<UniversityInfo> allUniversities = discoverUniversities();
-        
-        Optional<UniversityInfo> targetUniversity = allUniversities.stream()
-                .filter(u -> u.getCode().equalsIgnoreCase(code))
-                .findFirst();
-        
-        if (targetUniversity.isPresent()) {
-            return crawlUniversityDetails(targetUniversity.get());
-        } else {
-            throw new RuntimeException("University with code " + code + " not found");
+        return crawlUniversityDetails(resolveUniversity(code));
+    }
+    
+    /**
+     * Kết quả fetch: status 304 thì document = null; rawBody = bytes HTML gốc (charset null = tự nhận từ meta)
+     */
+    public record FetchedPage(int status, Document document, String etag, String lastModified, String contentHash,
+                              byte[] rawBody, String charset) {
+        public boolean notModified() {
+            return status == 304;
         }
     }
-}
\ No newline at end of file
+    
+    private record DiscoveryIndex(Map<String, UniversityInfo> byCode, List<UniversityInfo> universities, long loadedAt) {}
+    
+    /**
+     * Thông tin đã lưu của 1 trường; NONE = chưa có (hoặc forceUpdate: bỏ qua conditional GET + so sánh hash)
+     */
+    public record CrawlMetadata(LocalDateTime updatedAt, String etag, String lastModified, String contentHash) {
+        public static final CrawlMetadata NONE = new CrawlMetadata(null, null, null, null);
+    }
+}
@@ -0,0 +1,110 @@
+package com.khoipd8.educationchatbot.repository;
+
+import com.khoipd8.educationchatbot.entity.Program;
+import com.khoipd8.educationchatbot.repository.ProgramBatchRepository.ProgramDiff;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProgramBatchRepositoryTest {
+
+    @Test
+    void unchangedProgramsProduceNoWrites() {
+        ProgramDiff diff = ProgramBatchRepository.diffPrograms(
+                List.of(existing(1L, "Công nghệ thông tin", null, "THPT", "A00", 27.5)),
+                List.of(crawled("Công nghệ thông tin", null, "THPT", "A00", 27.5)));
+
+        assertFalse(diff.hasWrites());
+        assertEquals(1, diff.unchanged());
+    }
+
+    @Test
+    void changedScoreUpdatesExistingRowInPlace() {
+        Program row = existing(1L, "Công nghệ thông tin", null, "THPT", "A00", 27.5);
+
+        ProgramDiff diff = ProgramBatchRepository.diffPrograms(
+                List.of(row), List.of(crawled("Công nghệ thông tin", null, "THPT", "A00", 28.0)));
+
+        assertEquals(List.of(row), diff.updates());
+        assertEquals(1L, diff.updates().get(0).getId());
+        assertEquals(28.0, row.getBenchmarkScore2024());
+        assertTrue(diff.inserts().isEmpty());
+        assertTrue(diff.deleteIds().isEmpty());
+    }
+
+    @Test
+    void missingCrawledValueDoesNotEraseStoredOne() {
+        Program row = existing(1L, "Kế toán", null, "THPT", "A00", 24.0);
+
+        ProgramDiff diff = ProgramBatchRepository.diffPrograms(
+                List.of(row), List.of(crawled("Kế toán", null, "THPT", null, null)));
+
+        assertFalse(diff.hasWrites());
+        assertEquals("A00", row.getSubjectCombination());
+        assertEquals(24.0, row.getBenchmarkScore2024());
+    }
+
+    @Test
+    void newProgramsAreInsertedAndVanishedOnesDeleted() {
+        ProgramDiff diff = ProgramBatchRepository.diffPrograms(
+                List.of(existing(1L, "Kế toán", null, "THPT", "A00", 24.0)),
+                List.of(crawled("Marketing", null, "THPT", "A01", 25.0)));
+
+        assertEquals(1, diff.inserts().size());
+        assertEquals("Marketing", diff.inserts().get(0).getName());
+        assertEquals(List.of(1L), diff.deleteIds());
+    }
+
+    @Test
+    void keyIncludesNoteAndAdmissionMethod() {
+        ProgramDiff diff = ProgramBatchRepository.diffPrograms(
+                List.of(existing(1L, "Kế toán", null, "THPT", "A00", 24.0)),
+                List.of(crawled("Kế toán", null, "THPT", "A00", 24.0),
+                        crawled("Kế toán", null, "Học bạ", "A00", 26.0),
+                        crawled("Kế toán", "Chất lượng cao", "THPT", "A00", 23.0)));
+
+        assertEquals(1, diff.unchanged());
+        assertEquals(2, diff.inserts().size());
+        assertTrue(diff.deleteIds().isEmpty());
+    }
+
+    @Test
+    void duplicateRowsAreCollapsed() {
+        ProgramDiff diff = ProgramBatchRepository.diffPrograms(
+                List.of(existing(1L, "Luật", null, "THPT", "C00", 26.0),
+                        existing(2L, "Luật", null, "THPT", "C00", 26.0)),
+                List.of(crawled("Luật", null, "THPT", "C00", 26.0),
+                        crawled("Luật", null, "THPT", "C00", 27.0)));
+
+        // Giữ bản ghi đầu trong DB, bỏ bản crawl trùng phía sau
+        assertEquals(List.of(2L), diff.deleteIds());
+        assertEquals(1, diff.unchanged());
+        assertTrue(diff.updates().isEmpty());
+        assertTrue(diff.inserts().isEmpty());
+    }
+
+    @Test
+    void programKeyTreatsNullAsEmpty() {
+        assertEquals("Luật||", ProgramBatchRepository.programKey("Luật", null, null));
+        assertEquals(ProgramBatchRepository.programKey("Luật", "", ""),
+                ProgramBatchRepository.programKey("Luật", null, null));
+    }
+
+    private static Program existing(Long id, String name, String note, String method, String combination, Double score) {
+        Program program = crawled(name, note, method, combination, score);
+        program.setId(id);
+        return program;
+    }
+
+    private static Program crawled(String name, String note, String method, String combination, Double score) {
+        Program program = new Program();
+        program.setName(name);
+        program.setNote(note);
+        program.setAdmissionMethod(method);
+        program.setSubjectCombination(combination);
+        program.setBenchmarkScore2024(score);
+        return program;
+    }
+}
@@ -0,0 +1,90 @@
+package com.khoipd8.educationchatbot.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatSessionServiceTest {
+
+    private ChatSessionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ChatSessionService();
+        ReflectionTestUtils.setField(service, "idleTimeoutMinutes", 120L);
+        ReflectionTestUtils.setField(service, "expiryTickMs", 30_000L);
+        service.initExpiryWheel();
+    }
+
+    @Test
+    void hasMoreIsFalseWhenNoFurtherSessionMatches() {
+        String active = service.createSession();
+        service.addMessage(active, "user", "Điểm chuẩn QSB?");
+        service.createSession();
+        service.createSession();
+
+        Map<String, Object> page = service.getSessionPage(null, 1, null, 1, null);
+
+        assertEquals(1, page.get("page_size"));
+        assertEquals(false, page.get("has_more"), "trang sau rỗng thì không được báo has_more");
+        assertNull(page.get("next_cursor"));
+    }
+
+    @Test
+    void cursorVisitsEveryMatchingSessionOnce() {
+        for (int i = 0; i < 5; i++) {
+            service.addMessage(service.createSession(), "user", "câu hỏi " + i);
+            service.createSession();
+        }
+
+        Set<Object> seen = new HashSet<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Map<String, Object> page = service.getSessionPage(cursor, 2, null, 1, null);
+            for (Map<String, Object> session : sessions(page)) {
+                assertTrue(seen.add(session.get("session_id")), "session bị trả 2 lần");
+            }
+            cursor = (String) page.get("next_cursor");
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(5, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void selectiveFilterStopsAtScanLimitWithCursor() throws InterruptedException {
+        // Session khớp bộ lọc là session cũ nhất, nằm sau MAX_SCANNED_PER_PAGE session không khớp
+        String oldest = service.createSession();
+        service.addMessage(oldest, "user", "Điểm chuẩn QSB?");
+        Thread.sleep(5);
+        for (int i = 0; i < ChatSessionService.MAX_SCANNED_PER_PAGE + 10; i++) {
+            service.createSession();
+        }
+
+        Map<String, Object> first = service.getSessionPage(null, 10, null, 1, null);
+
+        assertEquals(0, first.get("page_size"));
+        assertEquals(true, first.get("scan_limit_reached"));
+        assertEquals(ChatSessionService.MAX_SCANNED_PER_PAGE, first.get("scanned"));
+        assertNotNull(first.get("next_cursor"));
+
+        Map<String, Object> second = service.getSessionPage((String) first.get("next_cursor"), 10, null, 1, null);
+
+        assertEquals(oldest, sessions(second).get(0).get("session_id"));
+        assertEquals(false, second.get("has_more"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> sessions(Map<String, Object> page) {
+        return (List<Map<String, Object>>) page.get("sessions");
+    }
+}
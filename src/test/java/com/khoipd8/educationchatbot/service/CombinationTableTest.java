@@ -0,0 +1,108 @@
+package com.khoipd8.educationchatbot.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.khoipd8.educationchatbot.service.SubjectVector.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CombinationTableTest {
+
+    @Test
+    void lookupIsCaseAndWhitespaceInsensitive() {
+        int index = CombinationTable.indexOf(" a00 ");
+
+        assertEquals(0, index);
+        assertEquals("A00", CombinationTable.code(index));
+        assertEquals(-1, CombinationTable.indexOf("Z99"));
+        assertEquals(-1, CombinationTable.indexOf(null));
+    }
+
+    @Test
+    void nameListsSubjectsInDisplayOrder() {
+        assertEquals("Toán, Vật lí, Hóa học", CombinationTable.nameOf("A00"));
+        assertEquals("Ngữ văn, Lịch sử, Địa lí", CombinationTable.nameOf("C00"));
+        assertEquals("Z99", CombinationTable.nameOf("Z99"));
+    }
+
+    @Test
+    void totalIsRoundedToHundredths() {
+        SubjectVector vector = vector(MATH, 8.2, PHYSICS, 7.15, CHEMISTRY, 6.45);
+
+        // float không biểu diễn chính xác 7.15/6.45 - tổng vẫn phải ra đúng 21.8
+        assertEquals(21.8, CombinationTable.total("A00", vector));
+        assertEquals(21.8, CombinationTable.total(CombinationTable.indexOf("A00"), vector));
+    }
+
+    @Test
+    void missingSubjectMakesCombinationIneligible() {
+        SubjectVector vector = vector(MATH, 8.0, PHYSICS, 7.0);
+
+        assertFalse(CombinationTable.isEligible(CombinationTable.indexOf("A00"), vector));
+        assertTrue(Double.isNaN(CombinationTable.total(CombinationTable.indexOf("A00"), vector)));
+        assertNull(CombinationTable.total("A00", vector));
+        assertNull(CombinationTable.total("Z99", vector));
+    }
+
+    @Test
+    void zeroScoreStillCountsAsPresent() {
+        SubjectVector vector = vector(MATH, 0.0, PHYSICS, 0.0, CHEMISTRY, 0.0);
+
+        assertEquals(0.0, CombinationTable.total("A00", vector));
+    }
+
+    @Test
+    void reloadingSubjectClearsItFromMask() {
+        SubjectVector vector = vector(MATH, 8.0, PHYSICS, 7.0, CHEMISTRY, 6.0);
+        vector.set(CHEMISTRY, null);
+
+        assertFalse(vector.has(CHEMISTRY));
+        assertNull(CombinationTable.total("A00", vector));
+    }
+
+    @Test
+    void computeTotalsMatchesEligibleCodes() {
+        SubjectVector vector = vector(MATH, 8.0, LITERATURE, 7.0, ENGLISH, 9.0, PHYSICS, 6.5);
+        double[] totals = new double[CombinationTable.size()];
+
+        int eligible = CombinationTable.computeTotals(vector, totals);
+        List<String> codes = CombinationTable.eligibleCodes(vector);
+
+        // Toán + Văn + Anh + Lí -> A01, C01, D01, D11
+        assertEquals(List.of("A01", "C01", "D01", "D11"), codes);
+        assertEquals(codes.size(), eligible);
+        for (int i = 0; i < CombinationTable.size(); i++) {
+            boolean listed = codes.contains(CombinationTable.code(i));
+            assertEquals(listed, !Double.isNaN(totals[i]), "totals lệch với eligibleCodes tại " + CombinationTable.code(i));
+        }
+        assertEquals(23.5, totals[CombinationTable.indexOf("A01")]);
+        assertEquals(24.0, totals[CombinationTable.indexOf("D01")]);
+    }
+
+    @Test
+    void computeTotalsOverwritesReusedBuffer() {
+        double[] totals = new double[CombinationTable.size()];
+        CombinationTable.computeTotals(vector(MATH, 8.0, PHYSICS, 7.0, CHEMISTRY, 6.0), totals);
+
+        int eligible = CombinationTable.computeTotals(vector(LITERATURE, 5.0), totals);
+
+        assertEquals(0, eligible);
+        assertTrue(Double.isNaN(totals[CombinationTable.indexOf("A00")]), "buffer dùng lại phải bị ghi đè");
+    }
+
+    @Test
+    void codesAreUnique() {
+        for (int i = 0; i < CombinationTable.size(); i++) {
+            assertEquals(i, CombinationTable.indexOf(CombinationTable.code(i)), "mã trùng: " + CombinationTable.code(i));
+        }
+    }
+
+    private static SubjectVector vector(Object... subjectScores) {
+        SubjectVector vector = new SubjectVector();
+        for (int i = 0; i < subjectScores.length; i += 2) {
+            vector.set((Integer) subjectScores[i], (Double) subjectScores[i + 1]);
+        }
+        return vector;
+    }
+}
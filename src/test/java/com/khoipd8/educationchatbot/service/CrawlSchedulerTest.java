@@ -0,0 +1,116 @@
+package com.khoipd8.educationchatbot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlSchedulerTest {
+
+    private static final int FETCH_CONCURRENCY = 2;
+
+    private ThreadPoolExecutor crawlExecutor;
+    private ExecutorService persistExecutor;
+    private CrawlScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // Giống crawlExecutor thật: kích thước pool = fetch-concurrency
+        crawlExecutor = new ThreadPoolExecutor(FETCH_CONCURRENCY, FETCH_CONCURRENCY, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(100));
+        persistExecutor = Executors.newFixedThreadPool(2);
+        scheduler = new CrawlScheduler();
+        ReflectionTestUtils.setField(scheduler, "crawlExecutor", crawlExecutor);
+        ReflectionTestUtils.setField(scheduler, "persistExecutor", persistExecutor);
+        ReflectionTestUtils.setField(scheduler, "fetchConcurrency", FETCH_CONCURRENCY);
+        ReflectionTestUtils.setField(scheduler, "maxAttempts", 3);
+        ReflectionTestUtils.setField(scheduler, "hostRequestsPerSecond", 10_000.0);
+        ReflectionTestUtils.setField(scheduler, "hostBurst", 10_000);
+        ReflectionTestUtils.setField(scheduler, "minBackoffMs", 1L);
+        ReflectionTestUtils.setField(scheduler, "maxBackoffMs", 1L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        crawlExecutor.shutdownNow();
+        persistExecutor.shutdownNow();
+    }
+
+    @Test
+    void smallRunIsNotQueuedBehindLargeRun() throws Exception {
+        CrawlScheduler.CrawlRun large = scheduler.start("crawl_all", tasks("all", 200), slowFetch(), (task, page) -> "ok");
+        Thread.sleep(50);
+
+        CrawlScheduler.CrawlRun small = scheduler.start("crawl_batch", tasks("batch", 2), slowFetch(), (task, page) -> "ok");
+
+        small.completion().get(5, TimeUnit.SECONDS);
+        assertFalse(large.isDone(), "lượt nhỏ phải xong trước lượt lớn");
+        assertEquals(2, small.count("ok"));
+        large.cancel();
+    }
+
+    @Test
+    void workerCountDoesNotGrowWithRuns() throws Exception {
+        List<CrawlScheduler.CrawlRun> started = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            started.add(scheduler.start("run" + i, tasks("r" + i, 3), slowFetch(), (task, page) -> "ok"));
+        }
+
+        // Trước đây mỗi lượt tạo worker riêng: 150 lượt làm tràn hàng đợi 100 của executor
+        assertTrue(crawlExecutor.getQueue().size() + crawlExecutor.getActiveCount() <= FETCH_CONCURRENCY);
+        started.forEach(CrawlScheduler.CrawlRun::cancel);
+    }
+
+    @Test
+    void retriedTaskCompletesRun() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CrawlScheduler.CrawlRun run = scheduler.start("retry", tasks("retry", 1), task -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IOException("timeout");
+            }
+            return "page";
+        }, (task, page) -> "ok");
+
+        run.completion().get(5, TimeUnit.SECONDS);
+        assertEquals(1, run.count("ok"));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void cancelledRunFinishesQueuedTasksAsCancelled() throws Exception {
+        CrawlScheduler.CrawlRun run = scheduler.start("cancel", tasks("c", 50), slowFetch(), (task, page) -> "ok");
+
+        run.cancel();
+
+        run.completion().get(5, TimeUnit.SECONDS);
+        assertTrue(run.count("cancelled") > 0);
+        assertEquals(50, run.count("cancelled") + run.count("ok"));
+    }
+
+    private static List<CrawlScheduler.CrawlTask> tasks(String prefix, int count) {
+        List<CrawlScheduler.CrawlTask> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new CrawlScheduler.CrawlTask(prefix + i, "https://example.test/" + prefix + i, 0, i));
+        }
+        return tasks;
+    }
+
+    private static CrawlScheduler.PageFetcher<String> slowFetch() {
+        return task -> {
+            Thread.sleep(20);
+            return "page";
+        };
+    }
+}
@@ -0,0 +1,175 @@
+package com.khoipd8.educationchatbot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgedStrategyRunnerTest {
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void fastFirstStrategyWinsWithoutHedging() throws Exception {
+        HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(executor, 1_000, 1_000);
+        AtomicBoolean secondStarted = new AtomicBoolean();
+
+        HedgedStrategyRunner.RaceResult<String> race = runner.race(strategies(
+                "first", () -> "found",
+                "second", () -> {
+                    secondStarted.set(true);
+                    return "found";
+                }), "found"::equals);
+
+        assertEquals("first", race.winner());
+        assertEquals(List.of("first"), race.launched());
+        assertFalse(secondStarted.get());
+    }
+
+    @Test
+    void slowStrategyIsHedgedAndLoserCancelled() throws Exception {
+        HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(executor, 50, 50);
+
+        HedgedStrategyRunner.RaceResult<String> race = runner.race(strategies(
+                "slow", () -> {
+                    Thread.sleep(10_000);
+                    return "found";
+                },
+                "fast", () -> "found"), "found"::equals);
+
+        assertEquals("fast", race.winner());
+        assertEquals(List.of("slow", "fast"), race.launched());
+        assertEventually(() -> Long.valueOf(1L).equals(statOf(runner, "slow", "cancelled")));
+    }
+
+    @Test
+    void failureLaunchesNextStrategyWithoutWaitingForHedge() throws Exception {
+        HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(executor, 10_000, 10_000);
+        long start = System.nanoTime();
+
+        HedgedStrategyRunner.RaceResult<String> race = runner.race(strategies(
+                "broken", () -> {
+                    throw new IllegalStateException("upstream down");
+                },
+                "backup", () -> "found"), "found"::equals);
+
+        assertEquals("backup", race.winner());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5_000, "không được chờ hết hedge delay");
+        assertEquals(1L, statOf(runner, "broken", "failures"));
+    }
+
+    @Test
+    void noWinnerKeepsCompletedResults() throws Exception {
+        HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(executor, 1_000, 1_000);
+
+        HedgedStrategyRunner.RaceResult<String> race = runner.race(strategies(
+                "first", () -> "not_found",
+                "second", () -> null), "found"::equals);
+
+        assertNull(race.winner());
+        assertEquals(List.of("not_found"), race.completedResults());
+        assertEquals(List.of("first", "second"), race.launched());
+    }
+
+    @Test
+    void rejectedHedgeIsSkippedInsteadOfRunningOnCaller() throws Exception {
+        ThreadPoolExecutor single = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>(), new ThreadPoolExecutor.AbortPolicy());
+        try {
+            HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(single, 20, 20);
+            Thread caller = Thread.currentThread();
+            AtomicBoolean ranOnCaller = new AtomicBoolean();
+
+            HedgedStrategyRunner.RaceResult<String> race = runner.race(strategies(
+                    "slow", () -> {
+                        Thread.sleep(200);
+                        return "found";
+                    },
+                    "hedge", () -> {
+                        ranOnCaller.set(Thread.currentThread() == caller);
+                        return "found";
+                    }), "found"::equals);
+
+            assertEquals("slow", race.winner());
+            assertEquals(List.of("slow"), race.launched());
+            assertFalse(ranOnCaller.get());
+            assertEquals(1L, statOf(runner, "hedge", "rejected"));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectedFirstStrategyFailsTheRace() {
+        HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(command -> {
+            throw new RejectedExecutionException("full");
+        }, 20, 20);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> runner.race(strategies("only", () -> "found", "other", () -> "found"), "found"::equals));
+    }
+
+    @Test
+    void orderPrefersStrategiesThatSucceed() throws Exception {
+        HedgedStrategyRunner<String> runner = new HedgedStrategyRunner<>(executor, 1_000, 1_000);
+        // Cùng độ trễ, chỉ khác tỉ lệ thành công
+        for (int i = 0; i < 3; i++) {
+            runner.race(strategies(
+                    "flaky", () -> {
+                        Thread.sleep(20);
+                        return "not_found";
+                    },
+                    "reliable", () -> {
+                        Thread.sleep(20);
+                        return "found";
+                    }), "found"::equals);
+        }
+
+        assertEquals(List.of("reliable", "flaky"), runner.order(List.of("flaky", "reliable")));
+    }
+
+    private static Map<String, Callable<String>> strategies(String firstName, Callable<String> first,
+                                                            String secondName, Callable<String> second) {
+        Map<String, Callable<String>> strategies = new LinkedHashMap<>();
+        strategies.put(firstName, first);
+        strategies.put(secondName, second);
+        return strategies;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object statOf(HedgedStrategyRunner<String> runner, String strategy, String field) {
+        Map<String, Object> entry = (Map<String, Object>) runner.getStats().get(strategy);
+        return entry != null ? entry.get(field) : null;
+    }
+
+    private static void assertEventually(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.call()) {
+            assertTrue(System.currentTimeMillis() < deadline, "điều kiện không xảy ra trong 5s");
+            Thread.sleep(10);
+        }
+    }
+}
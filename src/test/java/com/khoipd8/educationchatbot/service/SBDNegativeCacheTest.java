@@ -0,0 +1,103 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.service.SBDNegativeCache.BloomFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SBDNegativeCacheTest {
+
+    private SBDNegativeCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SBDNegativeCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 30L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 1_000);
+        ReflectionTestUtils.setField(cache, "filterBits", 1 << 16);
+        cache.init();
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1 << 20);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(sbd(i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(sbd(i)), "thiếu " + sbd(i));
+        }
+    }
+
+    @Test
+    void bloomFilterFalsePositiveRateStaysLow() {
+        BloomFilter filter = new BloomFilter(1 << 20);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(sbd(i));
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain(sbd(1_000_000 + i))) {
+                falsePositives++;
+            }
+        }
+        // Lý thuyết ~2e-6 với 1M bit, 10k phần tử, 4 hàm băm
+        assertTrue(falsePositives < probes / 1_000, "false positive quá cao: " + falsePositives);
+    }
+
+    @Test
+    void bloomFilterRoundsBitsUpToWholeWords() {
+        assertEquals(128, new BloomFilter(100).bitCount());
+        assertEquals(64, new BloomFilter(0).bitCount());
+    }
+
+    @Test
+    void recordedMissIsScopedToRegion() {
+        cache.recordMissing("01000001", "CN");
+
+        assertTrue(cache.isKnownMissing("01000001", "CN"));
+        assertTrue(cache.isKnownMissing(" 01000001 ", "Toàn quốc"));
+        assertFalse(cache.isKnownMissing("01000001", "MB"));
+        assertFalse(cache.isKnownMissing("01000002", "CN"));
+    }
+
+    @Test
+    void invalidateForgetsEveryRegion() {
+        cache.recordMissing("01000001", "CN");
+        cache.recordMissing("01000001", "MB");
+
+        cache.invalidate("01000001");
+
+        assertFalse(cache.isKnownMissing("01000001", "CN"));
+        assertFalse(cache.isKnownMissing("01000001", "MB"));
+    }
+
+    @Test
+    void expiredEntriesAreIgnoredAndDroppedOnRebuild() {
+        ReflectionTestUtils.setField(cache, "ttlMinutes", -1L);
+        cache.recordMissing("01000001", "CN");
+
+        assertFalse(cache.isKnownMissing("01000001", "CN"));
+        cache.rebuildFilter();
+        assertEquals(0, cache.getStats().get("entries"));
+    }
+
+    @Test
+    void disabledCacheNeverAnswers() {
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        cache.recordMissing("01000001", "CN");
+
+        assertFalse(cache.isKnownMissing("01000001", "CN"));
+        assertEquals(0L, cache.getStats().get("recorded"));
+    }
+
+    private static String sbd(int sequence) {
+        return String.format("%08d", sequence);
+    }
+}
@@ -0,0 +1,166 @@
+package com.khoipd8.educationchatbot.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SBDSingleFlightTest {
+
+    private SBDSingleFlight singleFlight;
+    private ExecutorService pool;
+
+    @BeforeEach
+    void setUp() {
+        singleFlight = new SBDSingleFlight();
+        ReflectionTestUtils.setField(singleFlight, "waitTimeoutMs", 5_000L);
+        pool = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallersShareOneExecutionButGetIndependentCopies() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Map<String, Object>> leader = pool.submit(() -> singleFlight.execute("lookup", "01000001", "CN",
+                blockingWork(release, found("01000001"))));
+        awaitInFlight(1);
+        Future<Map<String, Object>> waiter = pool.submit(() -> singleFlight.execute("lookup", "01000001", "CN",
+                () -> fail("request trùng SBD không được chạy lại")));
+        awaitStat("coalesced", 1L);
+        release.countDown();
+
+        Map<String, Object> leaderResult = leader.get(5, TimeUnit.SECONDS);
+        Map<String, Object> waiterResult = waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(leaderResult, waiterResult);
+        assertEquals(1L, singleFlight.getStats().get("executions"));
+
+        // Mỗi bên sửa bản của mình (kể cả map lồng nhau) mà không ảnh hưởng bên kia
+        leaderResult.put("source", "api");
+        nested(leaderResult).put("toán", 0.0);
+        assertFalse(waiterResult.containsKey("source"));
+        assertEquals(9.5, nested(waiterResult).get("toán"));
+    }
+
+    @Test
+    void errorInLeaderCompletesWaiters() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Map<String, Object>> leader = pool.submit(() -> singleFlight.execute("api", "01000002", "CN", () -> {
+            await(release);
+            throw new StackOverflowError("boom");
+        }));
+        awaitInFlight(1);
+        Future<Map<String, Object>> waiter = pool.submit(() -> singleFlight.execute("api", "01000002", "CN", HashMap::new));
+        awaitStat("coalesced", 1L);
+        release.countDown();
+
+        assertEquals("error", waiter.get(5, TimeUnit.SECONDS).get("status"));
+        Exception thrown = assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(StackOverflowError.class, thrown.getCause());
+        assertEquals(0, singleFlight.getStats().get("in_flight"));
+    }
+
+    @Test
+    void waiterGivesUpAfterTimeout() throws Exception {
+        ReflectionTestUtils.setField(singleFlight, "waitTimeoutMs", 100L);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.submit(() -> singleFlight.execute("lookup", "01000003", "CN", blockingWork(release, found("01000003"))));
+        awaitInFlight(1);
+
+        Map<String, Object> result = singleFlight.execute("lookup", "01000003", "CN", HashMap::new);
+
+        assertEquals("error", result.get("status"));
+        assertEquals(1L, singleFlight.getStats().get("wait_timeouts"));
+        release.countDown();
+    }
+
+    @Test
+    void differentOperationsForSameSbdRunOneAfterAnother() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondStarted = new CountDownLatch(1);
+        Future<Map<String, Object>> first = pool.submit(() -> singleFlight.execute("lookup", "01000004", "CN",
+                blockingWork(release, found("01000004"))));
+        awaitInFlight(1);
+        Future<Map<String, Object>> second = pool.submit(() -> singleFlight.execute("selenium", "01000004", "CN", () -> {
+            secondStarted.countDown();
+            return found("01000004");
+        }));
+
+        assertFalse(secondStarted.await(200, TimeUnit.MILLISECONDS), "selenium không được chạy khi lookup đang giữ lượt");
+        release.countDown();
+
+        assertEquals("found", first.get(5, TimeUnit.SECONDS).get("status"));
+        assertEquals("found", second.get(5, TimeUnit.SECONDS).get("status"));
+        assertEquals(2L, singleFlight.getStats().get("executions"));
+    }
+
+    @Test
+    void differentSbdsDoNotWaitForEachOther() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        pool.submit(() -> singleFlight.execute("lookup", "01000005", "CN", blockingWork(release, found("01000005"))));
+        awaitInFlight(1);
+
+        Map<String, Object> other = singleFlight.execute("lookup", "01000006", "CN", () -> found("01000006"));
+
+        assertEquals("01000006", other.get("sbd"));
+        release.countDown();
+    }
+
+    private static Supplier<Map<String, Object>> blockingWork(CountDownLatch release, Map<String, Object> result) {
+        return () -> {
+            await(release);
+            return result;
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Map<String, Object> found(String sbd) {
+        Map<String, Object> subjectScores = new HashMap<>();
+        subjectScores.put("toán", 9.5);
+        subjectScores.put("văn", null);
+        Map<String, Object> result = new HashMap<>();
+        result.put("status", "found");
+        result.put("sbd", sbd);
+        result.put("subject_scores", subjectScores);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> nested(Map<String, Object> result) {
+        return (Map<String, Object>) result.get("subject_scores");
+    }
+
+    private void awaitInFlight(int expected) throws InterruptedException {
+        awaitStat("in_flight", expected);
+    }
+
+    private void awaitStat(String name, Object expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!expected.equals(singleFlight.getStats().get(name))) {
+            assertTrue(System.currentTimeMillis() < deadline, "hết thời gian chờ " + name + " = " + expected);
+            Thread.sleep(5);
+        }
+    }
+}
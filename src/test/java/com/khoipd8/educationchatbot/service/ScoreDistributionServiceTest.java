@@ -0,0 +1,182 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.repository.CombinationScoreRepository;
+import com.khoipd8.educationchatbot.repository.ScoreRankingRepository;
+import com.khoipd8.educationchatbot.service.ScoreDistributionService.DistributionBuilder;
+import com.khoipd8.educationchatbot.service.ScoreDistributionService.ScoreDistribution;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.khoipd8.educationchatbot.service.ScoreDistributionService.MAX_BIN;
+import static com.khoipd8.educationchatbot.service.ScoreDistributionService.toBin;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ScoreDistributionServiceTest {
+
+    private CombinationScoreRepository combinationScoreRepository;
+    private ScoreRankingRepository scoreRankingRepository;
+    private ScoreDistributionService service;
+
+    @BeforeEach
+    void setUp() {
+        combinationScoreRepository = mock(CombinationScoreRepository.class);
+        scoreRankingRepository = mock(ScoreRankingRepository.class);
+        service = new ScoreDistributionService();
+        ReflectionTestUtils.setField(service, "combinationScoreRepository", combinationScoreRepository);
+        ReflectionTestUtils.setField(service, "scoreRankingRepository", scoreRankingRepository);
+        ReflectionTestUtils.setField(service, "minSample", 200);
+    }
+
+    @Test
+    void observedAnchorIsReproducedExactly() {
+        DistributionBuilder builder = new DistributionBuilder();
+        builder.addObserved(25.0, 3, 100, 5, 1000);
+
+        ScoreDistribution distribution = builder.build(200, () -> fail("prior không được dùng khi có điểm neo"));
+
+        assertEquals("upstream_rankings", distribution.source());
+        assertEquals(1000, distribution.total());
+        assertEquals(100, distribution.atOrAbove()[toBin(25.0) + 1]);
+        assertEquals(105, distribution.atOrAbove()[toBin(25.0)]);
+        assertEquals(0, distribution.atOrAbove()[MAX_BIN + 1]);
+    }
+
+    @Test
+    void interpolatesLinearlyBetweenAnchorsAndNeverIncreases() {
+        DistributionBuilder builder = new DistributionBuilder();
+        builder.addRankingAnchor(20.0, 500, -1, 2000);
+        builder.addRankingAnchor(25.0, 100, -1, 2000);
+
+        long[] atOrAbove = builder.build(200, () -> null).atOrAbove();
+
+        // Neo tại bin(20)+1 = 500 và bin(25)+1 = 100: điểm giữa nằm đúng giữa hai giá trị
+        int lower = toBin(20.0) + 1;
+        int upper = toBin(25.0) + 1;
+        assertEquals(300, atOrAbove[(lower + upper) / 2]);
+        for (int bin = 1; bin <= MAX_BIN + 1; bin++) {
+            assertTrue(atOrAbove[bin] <= atOrAbove[bin - 1], "mảng tích lũy phải không tăng tại bin " + bin);
+        }
+    }
+
+    @Test
+    void upstreamRankingsWinOverScoreRankings() {
+        DistributionBuilder builder = new DistributionBuilder();
+        builder.addRankingAnchor(22.0, 900, 10, 5000);
+        builder.addObserved(22.0, 1, 400, 4, 3000);
+
+        ScoreDistribution distribution = builder.build(200, () -> null);
+
+        assertEquals("upstream_rankings", distribution.source());
+        assertEquals(400, distribution.atOrAbove()[toBin(22.0) + 1]);
+    }
+
+    @Test
+    void sampleIsScaledToPriorTotal() {
+        DistributionBuilder builder = new DistributionBuilder();
+        builder.addObserved(20.0, 150, -1, -1, -1);
+        builder.addObserved(25.0, 50, -1, -1, -1);
+
+        ScoreDistribution distribution = builder.build(200, () -> new ScoreDistribution(flat(10_000), "prior"));
+
+        assertEquals("sample", distribution.source());
+        assertEquals(10_000, distribution.total());
+        assertEquals(2_500, distribution.atOrAbove()[toBin(25.0)]);
+        assertEquals(0, distribution.atOrAbove()[toBin(25.0) + 1]);
+    }
+
+    @Test
+    void notEnoughDataFallsBackToPrior() {
+        DistributionBuilder builder = new DistributionBuilder();
+        builder.addObserved(20.0, 10, -1, -1, -1);
+
+        assertNull(builder.build(200, () -> fail("chưa đủ mẫu thì không dựng phân bố")));
+    }
+
+    @Test
+    void scoreAtHigherCountFindsHighestMatchingScore() {
+        DistributionBuilder builder = new DistributionBuilder();
+        builder.addObserved(24.0, 1, 50, 10, 1000);
+
+        ScoreDistribution distribution = builder.build(200, () -> null);
+
+        assertEquals(24.0, distribution.scoreAtHigherCount(50));
+        assertEquals(0.0, distribution.scoreAtHigherCount(1000));
+    }
+
+    @Test
+    void rebuildIgnoresEstimatedRanksExcludedByTheQuery() {
+        // Dòng chỉ có thứ hạng ước lượng: query trả MAX(...) = null cho các cột hạng
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{2025, "A00", "CN", 24.0, 5L, null, null, null});
+        when(scoreRankingRepository.findRankingPoints()).thenReturn(List.of());
+        when(combinationScoreRepository.aggregateScoreDistribution()).thenReturn(rows);
+
+        service.rebuild();
+
+        // Không có neo thật, mẫu chưa đủ -> vẫn dùng prior
+        assertEquals("prior", service.getDistribution(2025, "A00", "Toàn quốc").source());
+    }
+
+    @Test
+    void syntheticRankingRowsAreNotAnchors() {
+        // Dòng sinh từ mô hình (nguồn null) không được quay lại làm neo cho phân bố
+        List<Object[]> rankingRows = new ArrayList<>();
+        rankingRows.add(new Object[]{2025, "A00", "CN", 24.0, 1_000, 20, 50_000, null});
+        when(scoreRankingRepository.findRankingPoints()).thenReturn(rankingRows);
+        when(combinationScoreRepository.aggregateScoreDistribution()).thenReturn(List.of());
+
+        service.rebuild();
+
+        assertEquals("prior", service.getDistribution(2025, "A00", "CN").source());
+    }
+
+    @Test
+    void crawledRankingRowsAreAnchors() {
+        List<Object[]> rankingRows = new ArrayList<>();
+        rankingRows.add(new Object[]{2025, "A00", "CN", 24.0, 1_000, 20, 50_000, "crawled"});
+        when(scoreRankingRepository.findRankingPoints()).thenReturn(rankingRows);
+        when(combinationScoreRepository.aggregateScoreDistribution()).thenReturn(List.of());
+
+        service.rebuild();
+
+        ScoreDistribution distribution = service.getDistribution(2025, "A00", "CN");
+        assertEquals("score_rankings", distribution.source());
+        assertEquals(999, distribution.atOrAbove()[toBin(24.0) + 1]);
+    }
+
+    @Test
+    void applyEstimateMarksRanksAsEstimated() {
+        CombinationScore combScore = new CombinationScore();
+        combScore.setCombinationCode("A00");
+        combScore.setRegion("Toàn quốc");
+        combScore.setTotalScore(24.0);
+
+        service.applyEstimate(combScore, 2025);
+
+        assertEquals("estimated", combScore.getRankSource());
+        assertNotNull(combScore.getStudentsWithHigherScore());
+        assertTrue(combScore.getTotalStudentsInCombination() > 0);
+    }
+
+    @Test
+    void priorCacheIsBoundedForUnknownCombinations() {
+        for (int i = 0; i < 100; i++) {
+            service.getDistribution(2000 + i, "X" + i, "khu vực " + i);
+        }
+
+        assertEquals(1, service.getStats().get("prior_only_keys"));
+    }
+
+    private static long[] flat(long total) {
+        long[] atOrAbove = new long[MAX_BIN + 2];
+        atOrAbove[0] = total;
+        return atOrAbove;
+    }
+}
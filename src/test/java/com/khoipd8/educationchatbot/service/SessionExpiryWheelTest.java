@@ -0,0 +1,64 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.service.ChatSessionService.SessionExpiryWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionExpiryWheelTest {
+
+    private static final long TICK_MS = 1_000;
+
+    @Test
+    void slotsCoverTheIdleTimeout() {
+        SessionExpiryWheel wheel = new SessionExpiryWheel(TICK_MS, 10, 0);
+
+        assertTrue(wheel.getSlotCount() > 10);
+        assertEquals(0, Integer.bitCount(wheel.getSlotCount()) - 1, "số slot phải là lũy thừa của 2");
+    }
+
+    @Test
+    void entryIsNeverReturnedBeforeItsDeadline() {
+        SessionExpiryWheel wheel = new SessionExpiryWheel(TICK_MS, 10, 0);
+        wheel.schedule("a", 5_001);
+
+        // Deadline được làm tròn lên tick 6
+        assertTrue(wheel.advance(5_999).isEmpty());
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("a"), wheel.advance(6_000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void eachEntryIsReturnedOnce() {
+        SessionExpiryWheel wheel = new SessionExpiryWheel(TICK_MS, 10, 0);
+        wheel.schedule("a", 2_000);
+        wheel.schedule("b", 3_000);
+
+        assertEquals(List.of("a"), wheel.advance(2_500));
+        assertEquals(List.of("b"), wheel.advance(3_000));
+        assertTrue(wheel.advance(3_500).isEmpty());
+    }
+
+    @Test
+    void advanceAfterLongPauseSweepsEverySlotOnce() {
+        SessionExpiryWheel wheel = new SessionExpiryWheel(TICK_MS, 10, 0);
+        Set<String> scheduled = new HashSet<>();
+        for (int i = 1; i <= 10; i++) {
+            String sessionId = "s" + i;
+            wheel.schedule(sessionId, i * TICK_MS);
+            scheduled.add(sessionId);
+        }
+
+        // Trễ nhiều vòng: vẫn lấy đủ, mỗi session đúng 1 lần
+        List<String> due = wheel.advance(1_000 * TICK_MS);
+
+        assertEquals(scheduled.size(), due.size());
+        assertEquals(scheduled, new HashSet<>(due));
+        assertEquals(0, wheel.size());
+    }
+}
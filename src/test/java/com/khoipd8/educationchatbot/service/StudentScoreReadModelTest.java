@@ -0,0 +1,95 @@
+package com.khoipd8.educationchatbot.service;
+
+import com.khoipd8.educationchatbot.entity.CombinationScore;
+import com.khoipd8.educationchatbot.entity.StudentScore;
+import com.khoipd8.educationchatbot.repository.StudentScoreRepository;
+import com.khoipd8.educationchatbot.service.StudentScoreReadModel.StudentScoreAggregate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StudentScoreReadModelTest {
+
+    private StudentScoreRepository studentScoreRepository;
+    private StudentScoreReadModel readModel;
+
+    @BeforeEach
+    void setUp() {
+        studentScoreRepository = mock(StudentScoreRepository.class);
+        readModel = new StudentScoreReadModel();
+        ReflectionTestUtils.setField(readModel, "studentScoreRepository", studentScoreRepository);
+        ReflectionTestUtils.setField(readModel, "maxEntries", 100);
+        ReflectionTestUtils.setField(readModel, "ttlMinutes", 30L);
+    }
+
+    @Test
+    void secondReadIsServedFromCache() {
+        when(studentScoreRepository.findWithCombinationsBySbd("01000001")).thenReturn(rows("01000001", 8.0));
+
+        readModel.findBySbd("01000001");
+        readModel.findBySbd(" 01000001 ");
+
+        assertEquals(1L, readModel.getStats().get("hits"));
+        assertEquals(1L, readModel.getStats().get("misses"));
+    }
+
+    @Test
+    void callersGetIndependentCopies() {
+        when(studentScoreRepository.findWithCombinationsBySbd("01000001")).thenReturn(rows("01000001", 8.0));
+
+        StudentScoreAggregate first = readModel.findBySbd("01000001").orElseThrow();
+        first.student().setScoreMath(0.0);
+        first.combinations().get(0).setTotalScore(0.0);
+        StudentScoreAggregate second = readModel.findBySbd("01000001").orElseThrow();
+
+        assertEquals(8.0, second.student().getScoreMath());
+        assertEquals(24.0, second.combinations().get(0).getTotalScore());
+        assertSame(second.student(), second.combinations().get(0).getStudentScore());
+        assertNotSame(first.student(), second.student());
+    }
+
+    @Test
+    void evictDuringLoadKeepsStaleDataOutOfCache() {
+        // Một request khác ghi điểm mới và evict trong lúc query đang chạy
+        when(studentScoreRepository.findWithCombinationsBySbd("01000001")).thenAnswer(invocation -> {
+            readModel.evict("01000001");
+            return rows("01000001", 8.0);
+        });
+
+        readModel.findBySbd("01000001");
+
+        assertEquals(0, readModel.getStats().get("entries"));
+        assertEquals(1L, readModel.getStats().get("stale_puts_skipped"));
+    }
+
+    @Test
+    void evictRemovesCachedEntry() {
+        when(studentScoreRepository.findWithCombinationsBySbd("01000001")).thenReturn(rows("01000001", 8.0));
+        readModel.findBySbd("01000001");
+
+        readModel.evict("01000001");
+        when(studentScoreRepository.findWithCombinationsBySbd("01000001")).thenReturn(rows("01000001", 9.0));
+
+        assertEquals(9.0, readModel.findBySbd("01000001").orElseThrow().student().getScoreMath());
+    }
+
+    private static List<Object[]> rows(String sbd, double math) {
+        StudentScore student = new StudentScore();
+        student.setSbd(sbd);
+        student.setScoreMath(math);
+        CombinationScore combination = new CombinationScore();
+        combination.setCombinationCode("A00");
+        combination.setTotalScore(24.0);
+        combination.setStudentScore(student);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{student, combination});
+        return rows;
+    }
+}